@@ -17,6 +17,16 @@ public abstract class AbstractApplication implements Application {
      */
     private final Device device;
 
+    /**
+     * limits how fast this AbstractApplication sends Messages; null for no limit
+     */
+    private volatile RateLimiter rateLimiter = null;
+
+    /**
+     * coalesces small Messages sent by this AbstractApplication into batches; null to send every Message on its own
+     */
+    private volatile Coalescer coalescer = null;
+
     /**
      * Creates a new AbstractApplication with the given Device it will be connected to.
      *
@@ -63,13 +73,69 @@ public abstract class AbstractApplication implements Application {
      * @return whether the Message was successfully sent and received
      * @throws NullPointerException when the message is null
      * Logs a warning message when this Application is not connected to a port, so it can't receive a Message
-     * Calls device.sendMessage(message)
+     * Calls MessageTracer.stamp(message, APPLICATION_SEND)
+     * Calls message.sentBy(identifier, port) with the Device's identifier and this Application's port when the Message
+     *   has no sender yet, so the recipient's DuplicateFilter, the Scheduler and the TrafficProfiler see who sent it
+     * Calls coalescer.submit(message, send) if there is a Coalescer, so the Message may be sent later in a batch
+     * Calls device.trySendMessage(message), through rateLimiter.submit if there is a RateLimiter
+     * Calls trySendMessage(message)
      */
     public boolean sendMessage(Message message) {
+        return trySendMessage(message) == SendOutcome.SENT;
+    }
+
+    /**
+     * Sends a Message like sendMessage(message), telling a refusal by the recipient's Application apart from other failures.
+     *
+     * @param message the Message to be sent from this Application
+     * @return what became of the Message
+     * @throws NullPointerException when the message is null
+     */
+    @Override
+    public SendOutcome trySendMessage(Message message) {
         Objects.requireNonNull(message);
-        if (!connectedToAPort())
+        MessageTracer.stamp(message, MessageTracer.Hop.APPLICATION_SEND);
+        Integer port = device instanceof AbstractDevice abstractDevice ? abstractDevice.appMapping.get(this) : device.appMapping().get(this);
+        if (port == null)
             logger.log(Level.WARNING, "application %s is not connected to a port on device %s so messages cannot be received".formatted(this, device));
-        return device.sendMessage(message);
+        else if (message.sender().isEmpty())
+            message = message.sentBy(device.identifier(), port);
+        Coalescer coalescer = this.coalescer;
+        if (coalescer != null)
+            return coalescer.submit(message, this::send);
+        return send(message);
+    }
+
+    /**
+     * Sends the given Message, single or batch, down to the Device past any RateLimiter.
+     *
+     * @param message the Message to send
+     * @return what became of the Message
+     */
+    private SendOutcome send(Message message) {
+        RateLimiter rateLimiter = this.rateLimiter;
+        if (rateLimiter != null)
+            return rateLimiter.submit(message, device::trySendMessage);
+        return device.trySendMessage(message);
+    }
+
+    /**
+     * Sets the RateLimiter that limits how fast this AbstractApplication sends Messages.
+     *
+     * @param rateLimiter the RateLimiter to use or null for no limit
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Sets the Coalescer that batches small Messages this AbstractApplication sends to the same destination.
+     *
+     * @param coalescer the Coalescer to use or null to send every Message on its own; a Coalescer being replaced
+     *   should be flushed
+     */
+    public void setCoalescer(Coalescer coalescer) {
+        this.coalescer = coalescer;
     }
 
     /**
@@ -86,7 +152,7 @@ public abstract class AbstractApplication implements Application {
      * @param payload the contents of the Message that was broadcast
      * @return whether this Message was successfully broadcast
      * @throws NullPointerException when the payload is null
-     * Logs a warning message and returns false when the payload is not a binary string
+     * Logs a warning message, commits a FlightEvents.Reject event and returns false when the payload is not a binary string
      * Logs a warning message when this Application is not connected to a port, so it can't receive a Message
      * Calls device.sendBroadcastMessage(payload)
      */
@@ -94,6 +160,7 @@ public abstract class AbstractApplication implements Application {
         Objects.requireNonNull(payload);
         if (!Message.binaryString(payload)) {
             logger.log(Level.WARNING, "payload is not in the correct format (binary string)");
+            FlightEvents.reject(FlightEvents.Reason.INVALID_PAYLOAD, payload);
             return false;
         }
         if (!connectedToAPort())
@@ -1,4 +1,5 @@
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -12,31 +13,90 @@ public abstract class AbstractDevice implements Device {
      */
     protected static final Logger logger = Logger.getLogger(AbstractDevice.class.getName());
 
+    /**
+     * number of slots of the route cache, a power of two
+     */
+    private static final int ROUTE_CACHE_SIZE = 16;
+
+    /**
+     * whether each subclass leaves receiveMessage(Message) as it is, looked up once per class
+     */
+    private static final ClassValue<Boolean> DIRECT_DELIVERY = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("receiveMessage", Message.class).getDeclaringClass() == AbstractDevice.class;
+            }
+            catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
     /**
      * a unique ID for each AbstractDevice to guarantee that the Motherboard this AbstractDevice is connected to can always identify it
      */
     protected int identifier;
 
     /**
-     * mapping of port to Application; each port can only have one Application listening on it
+     * mapping of port to Application; each port can only have one Application listening on it;
+     * changed under portLock and read without locking
+     */
+    protected final Map<Integer, Application> portMapping = new ConcurrentHashMap<>();
+
+    /**
+     * mapping of Application to port; each Application can only listen on one port;
+     * changed under portLock and read without locking
      */
-    protected final Map<Integer, Application> portMapping = new HashMap<>();
+    protected final Map<Application, Integer> appMapping = new ConcurrentHashMap<>();
 
     /**
-     * mapping of Application to port; each Application can only listen on one port
+     * held while portMapping and appMapping are changed together, so concurrent attaches and detaches can't
+     * leave them disagreeing; receiveMessage never takes it
      */
-    protected final Map<Application, Integer> appMapping = new HashMap<>();
+    protected final Object portLock = new Object();
 
     /**
-     * whether this AbstractDevice wants to receive broadcast messages or not
+     * whether this AbstractDevice wants to receive broadcast messages or not; written before the Motherboard is told,
+     * so its recount always sees the latest value
      */
-    protected boolean receiveBroadcast;
+    private volatile boolean receiveBroadcast;
 
     /**
      * the Motherboard this AbstractDevice is connected to
      */
     protected Motherboard motherboard = null;
 
+    /**
+     * limits how fast this AbstractDevice sends Messages; null for no limit
+     */
+    protected volatile RateLimiter rateLimiter = null;
+
+    /**
+     * chooses the port of received Messages from their payload; null to always use the Message's port
+     */
+    protected volatile ContentRouter router = null;
+
+    /**
+     * suppresses Messages this AbstractDevice already received; null to deliver every Message
+     */
+    protected volatile DuplicateFilter duplicateFilter = null;
+
+    /**
+     * live counters of this AbstractDevice, exposed over JMX by its Motherboard
+     */
+    protected final DeviceMetrics metrics = new DeviceMetrics(this);
+
+    /**
+     * direct-mapped cache of the Routes this AbstractDevice recently sent Messages along, by recipient and port
+     */
+    private final Motherboard.Route[] routes = new Motherboard.Route[ROUTE_CACHE_SIZE];
+
+    /**
+     * whether receiveMessage(Message) is not overridden, so senders may hand Messages to a cached Application
+     */
+    private final boolean directDelivery;
+
     /**
      * Creates a new AbstractDevice with the given identifier and set whether it wants to receive broadcast messages.
      *
@@ -46,22 +106,65 @@ public abstract class AbstractDevice implements Device {
     protected AbstractDevice(int identifier, boolean receiveBroadcast) {
         this.identifier = identifier;
         this.receiveBroadcast = receiveBroadcast;
+        this.directDelivery = DIRECT_DELIVERY.get(getClass());
     }
 
     /**
      * @param message the Message to be sent
      * @return whether this AbstractDevice is connected to a Motherboard and can therefore send the Message up
      * @throws NullPointerException if the Message is null
-     * Logs a warning message if this AbstractDevice is not connected to a Motherboard
-     * Calls motherboard.sendMessage(message) to send the Message up
+     * Logs a warning message and commits a FlightEvents.Reject event if this AbstractDevice is not connected to a Motherboard
+     * Calls MessageTracer.stamp(message, DEVICE_SEND)
+     * Calls motherboard.trySendMessage(message, route) to send the Message up, through rateLimiter.submit if there is a RateLimiter;
+     *   the Route to the recipient comes from the route cache while the Motherboard's topology version is unchanged
+     *   and from motherboard.resolve(recipient, port) otherwise
+     * Counts the Message once it is sent up, and whether its Route was cached, in metrics()
+     * Calls trySendMessage(message)
      */
     public boolean sendMessage(Message message) {
+        return trySendMessage(message) == SendOutcome.SENT;
+    }
+
+    /**
+     * @param message the Message to be sent
+     * @return what became of the Message, which is FAILED if this AbstractDevice is not connected to a Motherboard
+     * @throws NullPointerException if the Message is null
+     */
+    @Override
+    public SendOutcome trySendMessage(Message message) {
         Objects.requireNonNull(message);
+        MessageTracer.stamp(message, MessageTracer.Hop.DEVICE_SEND);
         if (!connectedToMotherboard()) {
             logger.log(Level.WARNING, "couldn't send message from device with ID %d because it is not connected to a motherboard".formatted(identifier));
-            return false;
+            FlightEvents.reject(FlightEvents.Reason.NOT_CONNECTED, message);
+            return SendOutcome.FAILED;
+        }
+        metrics.sent();
+        Motherboard.Route route = route(message);
+        RateLimiter rateLimiter = this.rateLimiter;
+        if (rateLimiter != null)
+            return rateLimiter.submit(message, delayed -> motherboard.trySendMessage(delayed, route));
+        return motherboard.trySendMessage(message, route);
+    }
+
+    /**
+     * Returns the Route to the recipient and port of the given Message, from the route cache if it is still valid.
+     *
+     * @param message the Message to send
+     * @return the Route to the recipient, or null if the Motherboard has no Device with its identifier
+     */
+    private Motherboard.Route route(Message message) {
+        int slot = (message.recipient() * 31 + message.port()) & (ROUTE_CACHE_SIZE - 1);
+        Motherboard.Route route = routes[slot];
+        if (route != null && route.matches(message) && route.version() == motherboard.topologyVersion()) {
+            metrics.routeCached(true);
+            return route;
         }
-        return motherboard.sendMessage(message);
+        metrics.routeCached(false);
+        route = motherboard.resolve(message.recipient(), message.port());
+        if (route != null)
+            routes[slot] = route;
+        return route;
     }
 
     /**
@@ -70,16 +173,19 @@ public abstract class AbstractDevice implements Device {
      * @throws NullPointerException if the payload is null
      * Logs a warning message and returns false when the payload string is not binary
      * Logs a warning message and returns false if this AbstractDevice is not connected to a Motherboard
+     * Commits a FlightEvents.Reject event whenever it returns false
      * Calls motherboard.sendBroadcastMessage(payload)
      */
     public boolean sendBroadcastMessage(String payload) {
         Objects.requireNonNull(payload);
         if (!Message.binaryString(payload)) {
             logger.log(Level.WARNING, "payload is not in the correct format (binary string)");
+            FlightEvents.reject(FlightEvents.Reason.INVALID_PAYLOAD, payload);
             return false;
         }
         if (!connectedToMotherboard()) {
             logger.log(Level.WARNING, "couldn't send message from device with ID %d because it is not connected to a motherboard".formatted(identifier));
+            FlightEvents.reject(FlightEvents.Reason.NOT_CONNECTED, payload);
             return false;
         }
         return motherboard.sendBroadcastMessage(payload);
@@ -87,19 +193,153 @@ public abstract class AbstractDevice implements Device {
 
     /**
      * @param message the Message to be received
-     * @return whether an Application is on the specified port for this AbstractDevice and the Message can be delivered there
+     * @return whether an Application is on the port for this AbstractDevice and the Message can be delivered there;
+     *   the port is the one chosen by the ContentRouter if one of its rules matches, and the Message's port otherwise
      * @throws NullPointerException if the Message is null
-     * Logs a warning message and returns false if no Application is on the specified port for this AbstractDevice
-     * Calls device.receiveMessage(message) to pass the Message along
+     * Logs a warning message, commits a FlightEvents.Reject event and returns false if PayloadChecksum.check(message) fails
+     * Unpacks a batch Message and delivers each of its Messages on its own
+     * Logs a warning message if no Application is on the specified port for this AbstractDevice, and returns false
+     *   unless the Motherboard's DeadLetterQueue holds the Message for retrying
+     * Commits a FlightEvents.Reject event and returns true without delivering it if the Message is a duplicate
+     * Logs a warning message, commits a FlightEvents.Reject event and returns false if the Message's ID is too old for
+     *   the DuplicateFilter to tell, so the sender knows it wasn't delivered
+     * Logs at FINE, commits a FlightEvents.Reject event and returns false if the Application refuses the Message,
+     *   which the DuplicateFilter then forgets so it can be sent again
+     * Calls MessageTracer.stamp(message, hop) for DEVICE_RECEIVE, APPLICATION_RECEIVE and HANDLER_RETURN
+     * Commits a FlightEvents.Delivery event, or a FlightEvents.Reject event if no Application is on the port
+     * Calls motherboard.deadLetter(message) if no Application is on the port and this AbstractDevice is connected
+     * Calls application.offerMessage(message) to pass the Message along
+     * Counts the Message as delivered, rejected or a duplicate in metrics()
      */
     public boolean receiveMessage(Message message) {
+        return receiveMessage(message, null);
+    }
+
+    /**
+     * Receives the given Message like receiveMessage(message), delivering it to the given Application when it was
+     * already resolved for the Message's port and no ContentRouter may choose another one.
+     *
+     * @param message the Message to be received
+     * @param resolved the Application on the Message's port as cached by the sender, or null to look it up
+     * @return whether the Message was delivered
+     * @throws NullPointerException if the Message is null
+     * Calls tryReceiveMessage(message, resolved)
+     */
+    protected boolean receiveMessage(Message message, Application resolved) {
+        return tryReceiveMessage(message, resolved) == SendOutcome.SENT;
+    }
+
+    /**
+     * Receives the given Message like receiveMessage(message), or through an overriding receiveMessage(message) if a
+     * subclass replaced it, telling a refusal by the Application apart from other failures.
+     *
+     * @param message the Message to be received
+     * @return what became of the Message
+     * @throws NullPointerException if the Message is null
+     */
+    protected SendOutcome tryReceiveMessage(Message message) {
+        return directDelivery ? tryReceiveMessage(message, null) : SendOutcome.of(receiveMessage(message));
+    }
+
+    /**
+     * Receives the given Message like receiveMessage(message, resolved), telling a refusal by the Application apart
+     * from other failures.
+     *
+     * @param message the Message to be received
+     * @param resolved the Application on the Message's port as cached by the sender, or null to look it up
+     * @return SENT if the Message was delivered, suppressed as a duplicate or held by the DeadLetterQueue, REFUSED if
+     *   the Application refused it and FAILED otherwise
+     * @throws NullPointerException if the Message is null
+     */
+    protected SendOutcome tryReceiveMessage(Message message, Application resolved) {
         Objects.requireNonNull(message);
-        if (!portMapping.containsKey(message.port())) {
-            logger.log(Level.WARNING, "no application is listening on port %d for device with ID %d to deliver the message to".formatted(message.port(), message.recipient()));
+        MessageTracer.stamp(message, MessageTracer.Hop.DEVICE_RECEIVE);
+        if (!PayloadChecksum.check(message)) {
+            logger.log(Level.WARNING, "payload of the message to port %d of device with ID %d doesn't match its checksum".formatted(message.port(), message.recipient()));
+            FlightEvents.reject(FlightEvents.Reason.CORRUPTED, message);
+            metrics.rejected();
+            return SendOutcome.FAILED;
+        }
+        if (message.isBatch())
+            return SendOutcome.of(receiveBatch(message));
+        int port = message.port();
+        ContentRouter router = this.router;
+        if (router != null) {
+            int routed = router.route(message.payload());
+            if (routed >= 0)
+                port = routed;
+        }
+        Application application = router == null && resolved != null ? resolved : portMapping.get(port);
+        if (application == null) {
+            logger.log(Level.WARNING, "no application is listening on port %d for device with ID %d to deliver the message to".formatted(port, message.recipient()));
+            FlightEvents.reject(FlightEvents.Reason.NO_APPLICATION, message);
+            metrics.rejected();
+            Motherboard motherboard = this.motherboard;
+            return SendOutcome.of(motherboard != null && motherboard.deadLetter(message));
+        }
+        // only Messages about to be delivered are recorded, so a Message retried after a missing port isn't lost
+        DuplicateFilter duplicateFilter = this.duplicateFilter;
+        if (duplicateFilter != null && message.id() != 0) {
+            DuplicateFilter.Verdict verdict = duplicateFilter.check(message);
+            if (verdict == DuplicateFilter.Verdict.DUPLICATE) {
+                FlightEvents.reject(FlightEvents.Reason.DUPLICATE, message);
+                metrics.duplicate();
+                return SendOutcome.SENT;
+            }
+            if (verdict == DuplicateFilter.Verdict.TOO_OLD) {
+                logger.log(Level.WARNING, "message with ID %d to device with ID %d is too old to tell whether it is a duplicate and was refused".formatted(message.id(), message.recipient()));
+                FlightEvents.reject(FlightEvents.Reason.STALE, message);
+                metrics.rejected();
+                return SendOutcome.FAILED;
+            }
+        }
+        MessageTracer.stamp(message, MessageTracer.Hop.APPLICATION_RECEIVE);
+        FlightEvents.Delivery event = new FlightEvents.Delivery();
+        event.begin();
+        if (!application.offerMessage(message)) {
+            // a refusal is back-pressure a sender may retry, so it isn't logged as a warning on every attempt
+            logger.log(Level.FINE, "application on port %d of device with ID %d can't keep up so the message was refused".formatted(port, message.recipient()));
+            FlightEvents.reject(FlightEvents.Reason.REFUSED, message);
+            metrics.rejected();
+            if (duplicateFilter != null)
+                duplicateFilter.forget(message);
+            return SendOutcome.REFUSED;
+        }
+        metrics.delivered();
+        if (event.shouldCommit()) {
+            event.recipient = message.recipient();
+            event.port = message.port();
+            event.payloadLength = message.payloadLength();
+            event.commit();
+        }
+        MessageTracer.stamp(message, MessageTracer.Hop.HANDLER_RETURN);
+        return SendOutcome.SENT;
+    }
+
+    /**
+     * Delivers every Message coalesced into the given batch Message on its own, in order.
+     *
+     * @param batch a Message whose payload was framed by Coalescer.pack
+     * @return whether every Message of the batch was delivered; the others are still delivered when one isn't, so false
+     *   doesn't mean the batch can be sent again, and the Coalescer only counts it as failed
+     * Logs a warning message, commits a FlightEvents.Reject event and returns false if the batch can't be unpacked
+     * Calls receiveMessage(message) for every Message of the batch
+     */
+    private boolean receiveBatch(Message batch) {
+        List<Message> messages;
+        try {
+            messages = Coalescer.unpack(batch);
+        }
+        catch (IllegalArgumentException e) {
+            logger.log(Level.WARNING, "batch message to port %d of device with ID %d can't be unpacked: %s".formatted(batch.port(), batch.recipient(), e.getMessage()));
+            FlightEvents.reject(FlightEvents.Reason.CORRUPTED, batch);
+            metrics.rejected();
             return false;
         }
-        portMapping.get(message.port()).receiveMessage(message);
-        return true;
+        boolean delivered = true;
+        for (Message message : messages)
+            delivered &= receiveMessage(message);
+        return delivered;
     }
 
     /**
@@ -137,16 +377,31 @@ public abstract class AbstractDevice implements Device {
     }
 
     /**
-     * @return an unmodifiable copy of portMapping
+     * @return an unmodifiable copy of portMapping, taken while no Application is being added or removed
      */
     public Map<Integer, Application> portMapping() {
-        return Map.copyOf(portMapping);
+        synchronized (portLock) {
+            return Map.copyOf(portMapping);
+        }
     }
 
     /**
-     * @return an unmodifiable copy of appMapping
+     * @return an unmodifiable copy of appMapping, taken while no Application is being added or removed
      */
-    public Map<Application, Integer> appMapping() { return Map.copyOf(appMapping); }
+    public Map<Application, Integer> appMapping() {
+        synchronized (portLock) {
+            return Map.copyOf(appMapping);
+        }
+    }
+
+    /**
+     * @param port a port of this AbstractDevice
+     * @return the Application on the port for a sender to deliver to directly, or null if there is none or
+     *   receiveMessage is overridden so Messages must go through it
+     */
+    protected Application applicationOn(int port) {
+        return directDelivery ? portMapping.get(port) : null;
+    }
 
     /**
      * @param application the Application to check for
@@ -163,33 +418,51 @@ public abstract class AbstractDevice implements Device {
      * @throws NullPointerException if Application is null
      * Logs warning message and returns false when the port is already taken by another Application
      * Logs warning message and returns false if this Application is already listening on a port
-     * Adds to portMapping and appMapping otherwise
+     * Adds to appMapping and then portMapping otherwise, under portLock, so a reader of portMapping never sees an
+     *   Application missing from appMapping
+     * Calls motherboard.topologyChanged() and motherboard.retryDeadLetters(identifier) if successful and this
+     *   AbstractDevice is connected
      */
     public boolean addApplication(int port, Application application) {
         Objects.requireNonNull(application);
-        if (portMapping.containsKey(port)) {
-            logger.log(Level.WARNING, "application %s couldn't be connected to port %d on device with ID %d because the port is already taken by application %s".formatted(application, port, identifier, portMapping.get(port)));
-            return false;
+        synchronized (portLock) {
+            Application taken = portMapping.get(port);
+            if (taken != null) {
+                logger.log(Level.WARNING, "application %s couldn't be connected to port %d on device with ID %d because the port is already taken by application %s".formatted(application, port, identifier, taken));
+                return false;
+            }
+            Integer connected = appMapping.get(application);
+            if (connected != null) {
+                logger.log(Level.WARNING, "this application %s is already connected to port %d so it was not connected to given port %d".formatted(application, connected, port));
+                return false;
+            }
+            appMapping.put(application, port);
+            portMapping.put(port, application);
+            metrics.applicationChanged(true);
         }
-        if (appMapping.containsKey(application)) {
-            logger.log(Level.WARNING, "this application %s is already connected to port %d so it was not connected to given port %d".formatted(application, appMapping.get(application), port));
-            return false;
+        if (connectedToMotherboard()) {
+            motherboard.topologyChanged();
+            motherboard.retryDeadLetters(identifier);
         }
-        portMapping.put(port, application);
-        appMapping.put(application, port);
         return true;
     }
 
     /**
      * @param port the port number the Application to be removed is at
      * @return whether an Application exists at that port and was removed successfully
-     * If successful, removes the Application from appMapping and portMapping
+     * If successful, removes the Application from portMapping and then appMapping, under portLock
+     * Calls motherboard.topologyChanged() if successful and this AbstractDevice is connected
      */
     public boolean removeApplication(int port) {
-        if (!portMapping.containsKey(port))
-            return false;
-        appMapping.remove(portMapping.get(port));
-        portMapping.remove(port);
+        synchronized (portLock) {
+            Application application = portMapping.remove(port);
+            if (application == null)
+                return false;
+            appMapping.remove(application);
+            metrics.applicationChanged(false);
+        }
+        if (connectedToMotherboard())
+            motherboard.topologyChanged();
         return true;
     }
 
@@ -202,9 +475,45 @@ public abstract class AbstractDevice implements Device {
 
     /**
      * @param receiveBroadcast sets if this AbstractDevice wants to receive broadcast messages
+     * Calls motherboard.subscriptionChanged(this) if it changed and this AbstractDevice is connected
      */
     public void setReceiveBroadcast(boolean receiveBroadcast) {
+        if (this.receiveBroadcast == receiveBroadcast)
+            return;
         this.receiveBroadcast = receiveBroadcast;
+        Motherboard motherboard = this.motherboard;
+        if (motherboard != null)
+            motherboard.subscriptionChanged(this);
+    }
+
+    /**
+     * @return the live counters of this AbstractDevice
+     */
+    public DeviceMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * @param rateLimiter the RateLimiter limiting how fast this AbstractDevice sends Messages, or null for no limit
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * @param router the ContentRouter choosing the port of received Messages from their payload, or null to always
+     *   deliver to the Message's port
+     */
+    public void setRouter(ContentRouter router) {
+        this.router = router;
+    }
+
+    /**
+     * @param duplicateFilter the DuplicateFilter suppressing Messages this AbstractDevice already received, or null
+     *   to deliver every Message
+     */
+    public void setDuplicateFilter(DuplicateFilter duplicateFilter) {
+        this.duplicateFilter = duplicateFilter;
     }
 
     /**
@@ -218,15 +527,18 @@ public abstract class AbstractDevice implements Device {
      * @param motherboard the Motherboard to connect this Device to
      * @return whether this AbstractDevice was successfully connected to the given Motherboard
      * @throws NullPointerException when the Motherboard is null
-     * Calls motherboard.hasDeviceWithID(this.identifier)
-     * Calls motherboard.addDevice(this)
+     * Calls motherboard.addDevice(this), which fails if the Motherboard already has a Device with the identifier
+     * Connects before calling addDevice, since it retries dead letters to this AbstractDevice, and disconnects again if it fails
      */
     public boolean setMotherboard(Motherboard motherboard) {
         Objects.requireNonNull(motherboard);
-        if (motherboard.hasDeviceWithID(this.identifier))
-            return false;
+        Motherboard previous = this.motherboard;
+        Arrays.fill(routes, null);
         this.motherboard = motherboard;
-        motherboard.addDevice(this);
+        if (!motherboard.addDevice(this)) {
+            this.motherboard = previous;
+            return false;
+        }
         return true;
     }
 }
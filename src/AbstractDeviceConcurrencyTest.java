@@ -0,0 +1,151 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AbstractDeviceConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    private final Logger logger = Logger.getLogger(AbstractDevice.class.getName());
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS + 2);
+    private Level level;
+
+    @Before
+    public void setup() {
+        // losing a race logs a warning every time, which would flood the output
+        level = logger.getLevel();
+        logger.setLevel(Level.OFF);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        logger.setLevel(level);
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Runs the given task on THREADS threads released at the same time and waits for all of them.
+     */
+    private void race(Runnable task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures)
+            future.get(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Asserts that the two mappings of the given device are each other's inverse.
+     */
+    private static void assertConsistent(AbstractDevice device) {
+        synchronized (device.portLock) {
+            assertEquals(device.portMapping.size(), device.appMapping.size());
+            for (Map.Entry<Integer, Application> entry : device.portMapping.entrySet())
+                assertEquals(device.appMapping.get(entry.getValue()), entry.getKey());
+            assertEquals(device.metrics().getApplications(), device.portMapping.size());
+        }
+    }
+
+    @Test
+    public void oneApplicationPerPort() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            Mock.MockDevice device = new Mock.MockDevice(1, false);
+            AtomicInteger connected = new AtomicInteger();
+            race(() -> {
+                if (new Mock.MockApplication(device).connectToPort(7))
+                    connected.incrementAndGet();
+            });
+            assertEquals(connected.get(), 1);
+            assertEquals(device.portMapping().size(), 1);
+            assertConsistent(device);
+        }
+    }
+
+    @Test
+    public void onePortPerApplication() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            Mock.MockDevice device = new Mock.MockDevice(1, false);
+            Mock.MockApplication application = new Mock.MockApplication(device);
+            AtomicInteger port = new AtomicInteger();
+            AtomicInteger connected = new AtomicInteger();
+            race(() -> {
+                if (application.connectToPort(port.incrementAndGet()))
+                    connected.incrementAndGet();
+            });
+            assertEquals(connected.get(), 1);
+            assertEquals(device.appMapping().size(), 1);
+            assertConsistent(device);
+        }
+    }
+
+    @Test
+    public void churnWhileReceiving() throws Exception {
+        int ports = 4;
+        Mock.MockDevice device = new Mock.MockDevice(1, false);
+        AtomicLong delivered = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Mock.MockApplication> applications = new ArrayList<>();
+        for (int i = 0; i < 2 * ports; i++) {
+            applications.add(new Mock.MockApplication(device) {
+                @Override
+                public void receiveMessage(Message message) {
+                    delivered.incrementAndGet();
+                }
+            });
+        }
+
+        // the receive path and the checker run alongside the churn and must never see torn state
+        Future<?> receiver = executor.submit(() -> {
+            while (running.get()) {
+                device.receiveMessage(new Message(1, ThreadLocalRandom.current().nextInt(ports), "1"));
+            }
+        });
+        Future<?> checker = executor.submit(() -> {
+            while (running.get())
+                assertConsistent(device);
+        });
+
+        race(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 2_000; i++) {
+                if (random.nextBoolean())
+                    applications.get(random.nextInt(applications.size())).connectToPort(random.nextInt(ports));
+                else
+                    device.removeApplication(random.nextInt(ports));
+            }
+        });
+        running.set(false);
+        receiver.get(30, TimeUnit.SECONDS);
+        checker.get(30, TimeUnit.SECONDS);
+
+        assertConsistent(device);
+        for (Mock.MockApplication application : applications)
+            assertEquals(application.connectedToAPort(), device.appMapping().containsKey(application));
+        assertEquals(device.metrics().getMessagesDelivered(), delivered.get());
+    }
+}
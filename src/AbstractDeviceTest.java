@@ -27,6 +27,7 @@ public class AbstractDeviceTest {
         // device has not been connected to a motherboard so sending a message fails
         assertFalse(sender.sendMessage(message));
         assertTrue(handler.getLastLog().orElse("").contains("couldn't send message from device"));
+        assertEquals(sender.metrics().getMessagesSent(), 0);
 
         Motherboard motherboard = new Motherboard();
         sender.setMotherboard(motherboard);
@@ -193,5 +194,89 @@ public class AbstractDeviceTest {
 
         assertTrue(device1.setMotherboard(motherboard));
         assertFalse(duplicate.setMotherboard(motherboard));
+        assertFalse(duplicate.connectedToMotherboard());
+
+        // the Device already counts as connected while the Motherboard adds it, and keeps its old Motherboard on failure
+        Map<Integer, Boolean> connectedWhileAdded = new HashMap<>();
+        Motherboard watching = new Motherboard() {
+            @Override
+            protected boolean addDevice(Device device) {
+                connectedWhileAdded.put(device.identifier(), device.connectedToMotherboard());
+                return super.addDevice(device);
+            }
+        };
+        Mock.MockDevice device2 = new Mock.MockDevice(2, false);
+        assertTrue(device2.setMotherboard(watching));
+        assertTrue(connectedWhileAdded.get(2));
+        assertFalse(new Mock.MockDevice(2, false).setMotherboard(watching));
+        assertFalse(device2.setMotherboard(watching));
+        assertTrue(device2.connectedToMotherboard());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void routeCache() {
+        Motherboard motherboard = new Motherboard();
+        Mock.MockDevice sender = new Mock.MockDevice(1, false);
+        Mock.MockDevice recipient = new Mock.MockDevice(2, false);
+        sender.setMotherboard(motherboard);
+        recipient.setMotherboard(motherboard);
+        int[] received = new int[2];
+        new Mock.MockApplication(recipient) {
+            @Override
+            public void receiveMessage(Message message) {
+                received[0]++;
+            }
+        }.connectToPort(1);
+        DeviceMetrics metrics = sender.metrics();
+
+        assertTrue(sender.sendMessage(Message.of(2, 1, "1")));
+        assertTrue(sender.sendMessage(Message.of(2, 1, "1")));
+        assertTrue(sender.sendMessage(Message.of(2, 1, "1")));
+        assertEquals(received[0], 3);
+        assertEquals(metrics.getRouteCacheMisses(), 1);
+        assertEquals(metrics.getRouteCacheHits(), 2);
+
+        // a port change bumps the topology version, so the cached Application isn't used anymore
+        long version = motherboard.topologyVersion();
+        recipient.removeApplication(1);
+        assertTrue(motherboard.topologyVersion() > version);
+        new Mock.MockApplication(recipient) {
+            @Override
+            public void receiveMessage(Message message) {
+                received[1]++;
+            }
+        }.connectToPort(1);
+        assertTrue(sender.sendMessage(Message.of(2, 1, "1")));
+        assertEquals(received[0], 3);
+        assertEquals(received[1], 1);
+        assertEquals(metrics.getRouteCacheMisses(), 2);
+
+        // so does a rename
+        assertTrue(recipient.setIdentifier(3));
+        assertFalse(sender.sendMessage(Message.of(2, 1, "1")));
+        assertTrue(sender.sendMessage(Message.of(3, 1, "1")));
+        assertEquals(received[1], 2);
+    }
+
+    @Test
+    public void routeCacheRespectsOverriddenReceive() {
+        Motherboard motherboard = new Motherboard();
+        Mock.MockDevice sender = new Mock.MockDevice(1, false);
+        int[] intercepted = new int[1];
+        Mock.MockDevice recipient = new Mock.MockDevice(2, false) {
+            @Override
+            public boolean receiveMessage(Message message) {
+                intercepted[0]++;
+                return super.receiveMessage(message);
+            }
+        };
+        sender.setMotherboard(motherboard);
+        recipient.setMotherboard(motherboard);
+        new Mock.MockApplication(recipient).connectToPort(1);
+        assertNull(recipient.applicationOn(1));
+
+        sender.sendMessage(Message.of(2, 1, "1"));
+        sender.sendMessage(Message.of(2, 1, "1"));
+        assertEquals(intercepted[0], 2);
+    }
+}
@@ -0,0 +1,335 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Skeletal implementation of the MotherboardLink interface that owns the frame format shared by every link
+ * and the RemoteDevices standing in for the Devices on the other side.
+ * A frame is a type byte followed by its body; subclasses only move frames, by claiming room for a frame,
+ * letting this class write it in place and then committing it.
+ * An announce lists every local Device, and the other side withdraws the RemoteDevices of those no longer listed, so
+ * subclasses keep both sides in step by calling reannounce from their I/O thread.
+ */
+public abstract class AbstractLink implements MotherboardLink {
+
+    /**
+     * Logger to log descriptive warning messages instead of throwing exceptions
+     */
+    private static final Logger logger = Logger.getLogger(AbstractLink.class.getName());
+
+    /** frame listing the identifiers of the sender's Devices */
+    protected static final byte ANNOUNCE = 1;
+    /** frame carrying a Message */
+    protected static final byte MESSAGE = 2;
+    /** frame carrying a broadcast payload */
+    protected static final byte BROADCAST = 3;
+
+    /** Message flag: the sender headers are set */
+    private static final byte HAS_SENDER = 1;
+    /** Message flag: the Message is a reply */
+    private static final byte REPLY = 2;
+    /** Message flag: the payload is a batch of coalesced Messages */
+    private static final byte BATCH = 4;
+    /** Message flag: the Message expires after the time to live in the frame */
+    private static final byte EXPIRES = 8;
+
+    /**
+     * bytes in a MESSAGE frame before the payload: type, recipient, port, flags, sender, senderPort, correlation, id,
+     * remaining time to live in nanoseconds, codec
+     */
+    private static final int MESSAGE_HEADER = 1 + 4 + 4 + 1 + 4 + 4 + 8 + 8 + 8 + 1;
+
+    /**
+     * the PayloadCodecs payloads can be sent with, indexed by the codec byte of a frame
+     */
+    private static final PayloadCodec[] CODECS = {new BitPackingCodec(), new RunLengthCodec()};
+
+    /**
+     * the local Motherboard
+     */
+    protected final Motherboard motherboard;
+
+    /**
+     * the RemoteDevices connected to the local Motherboard on behalf of the other side
+     */
+    private final List<RemoteDevice> remoteDevices = new ArrayList<>();
+
+    /**
+     * the topology version of the local Motherboard the last announce listed the Devices of
+     */
+    private volatile long announcedVersion = -1;
+
+    /**
+     * Creates a new AbstractLink for the given Motherboard.
+     *
+     * @param motherboard the local Motherboard
+     * @throws NullPointerException when the Motherboard is null
+     */
+    protected AbstractLink(Motherboard motherboard) {
+        this.motherboard = Objects.requireNonNull(motherboard);
+    }
+
+    /**
+     * Claims room for a frame of the given length.
+     *
+     * @param length the number of bytes in the frame
+     * @return a buffer to write exactly length bytes to from its position, or null if the frame can't be sent
+     */
+    protected abstract ByteBuffer claim(int length);
+
+    /**
+     * Sends the frame written to a buffer returned by claim.
+     *
+     * @param frame the buffer returned by claim, with the frame written to it
+     */
+    protected abstract void commit(ByteBuffer frame);
+
+    /**
+     * @param message the Message addressed to a Device on the other side
+     * @return whether room for the frame could be claimed
+     * Sends a payload already encoded with a codec both sides know as is, and bit-packs it otherwise
+     */
+    public boolean forward(Message message) {
+        int codecIndex = codecIndex(message.codec());
+        byte[] payload;
+        if (codecIndex >= 0) {
+            payload = message.encodedPayload();
+        }
+        else {
+            codecIndex = 0;
+            payload = CODECS[0].encode(message.payload());
+        }
+        ByteBuffer frame = claim(MESSAGE_HEADER + payload.length);
+        if (frame == null)
+            return false;
+        byte flags = (byte) ((message.sender().isPresent() ? HAS_SENDER : 0) | (message.isReply() ? REPLY : 0)
+                | (message.isBatch() ? BATCH : 0) | (message.expires() ? EXPIRES : 0));
+        frame.put(MESSAGE)
+                .putInt(message.recipient())
+                .putInt(message.port())
+                .put(flags)
+                .putInt(message.sender().orElse(0))
+                .putInt(message.senderPort())
+                .putLong(message.correlation())
+                .putLong(message.id())
+                .putLong(message.remainingTtlNanos())
+                .put((byte) codecIndex)
+                .put(payload);
+        commit(frame);
+        return true;
+    }
+
+    /**
+     * @param payload the binary string to broadcast
+     * @return whether room for the frame could be claimed
+     */
+    public boolean relayBroadcast(String payload) {
+        byte[] packed = CODECS[0].encode(payload);
+        ByteBuffer frame = claim(1 + packed.length);
+        if (frame == null)
+            return false;
+        commit(frame.put(BROADCAST).put(packed));
+        return true;
+    }
+
+    /**
+     * @return the identifiers of the RemoteDevices
+     */
+    public synchronized List<Integer> remoteDevices() {
+        return remoteDevices.stream().map(RemoteDevice::identifier).toList();
+    }
+
+    /**
+     * Sends the identifiers of the local Devices, leaving out the RemoteDevices of any link.
+     *
+     * @return whether room for the frame could be claimed
+     */
+    protected boolean announce() {
+        // read the version first, so a Device attaching while the list is taken is announced again
+        long version = motherboard.topologyVersion();
+        List<Integer> local = new ArrayList<>();
+        for (Device device : motherboard.devices().values()) {
+            if (!(device instanceof RemoteDevice))
+                local.add(device.identifier());
+        }
+        ByteBuffer frame = claim(1 + 4 + 4 * local.size());
+        if (frame == null)
+            return false;
+        frame.put(ANNOUNCE).putInt(local.size());
+        local.forEach(frame::putInt);
+        commit(frame);
+        announcedVersion = version;
+        return true;
+    }
+
+    /**
+     * Announces the local Devices again if the topology of the local Motherboard changed since the last announce.
+     *
+     * @return whether the last announce is up to date or room for a new one could be claimed
+     * Calls announce()
+     */
+    protected boolean reannounce() {
+        return motherboard.topologyVersion() == announcedVersion || announce();
+    }
+
+    /**
+     * Handles one frame from the other side. A malformed frame, or a Device or Application that throws while the
+     * frame is delivered, only costs that frame, so the link keeps running.
+     *
+     * @param frame the frame from its type byte to its end
+     * Logs a warning and drops the frame if its type is unknown, it is malformed or delivering it throws
+     */
+    protected void handle(ByteBuffer frame) {
+        try {
+            dispatch(frame);
+        }
+        catch (RuntimeException e) {
+            logger.log(Level.WARNING, "link of motherboard %s dropped a frame that failed: %s".formatted(motherboard, e));
+        }
+    }
+
+    /**
+     * Checks and acts on one frame from the other side; see handle.
+     *
+     * @param frame the frame from its type byte to its end
+     * Logs a warning and drops the frame if its type is unknown or it is malformed
+     */
+    private void dispatch(ByteBuffer frame) {
+        if (!frame.hasRemaining()) {
+            logger.log(Level.WARNING, "link of motherboard %s received an empty frame".formatted(motherboard));
+            return;
+        }
+        switch (frame.get()) {
+            case ANNOUNCE -> {
+                int count = frame.remaining() >= Integer.BYTES ? frame.getInt() : -1;
+                if (count < 0 || frame.remaining() != (long) Integer.BYTES * count) {
+                    logger.log(Level.WARNING, "link of motherboard %s received a malformed announce frame".formatted(motherboard));
+                    return;
+                }
+                Set<Integer> identifiers = new LinkedHashSet<>();
+                for (int i = 0; i < count; i++)
+                    identifiers.add(frame.getInt());
+                updateRemoteDevices(identifiers);
+            }
+            case MESSAGE -> {
+                if (frame.remaining() < MESSAGE_HEADER - 1) {
+                    logger.log(Level.WARNING, "link of motherboard %s received a truncated message frame".formatted(motherboard));
+                    return;
+                }
+                int recipient = frame.getInt();
+                int port = frame.getInt();
+                byte flags = frame.get();
+                int sender = frame.getInt();
+                int senderPort = frame.getInt();
+                long correlation = frame.getLong();
+                long id = frame.getLong();
+                long ttlNanos = frame.getLong();
+                int codecIndex = frame.get();
+                if (codecIndex < 0 || codecIndex >= CODECS.length || id < 0 || ttlNanos < 0) {
+                    logger.log(Level.WARNING, "link of motherboard %s received a message frame with codec %d, ID %d and time to live %d".formatted(motherboard, codecIndex, id, ttlNanos));
+                    return;
+                }
+                PayloadCodec codec = CODECS[codecIndex];
+                byte[] payload = new byte[frame.remaining()];
+                frame.get(payload);
+                if (!codec.isValid(payload)) {
+                    logger.log(Level.WARNING, "link of motherboard %s received a message frame for device with ID %d with a malformed payload".formatted(motherboard, recipient));
+                    return;
+                }
+                Message message = Message.ofEncoded(recipient, port, payload, codec);
+                if ((flags & HAS_SENDER) != 0)
+                    message = message.withSender(sender, senderPort);
+                if (correlation != 0)
+                    message = message.withCorrelation(correlation, (flags & REPLY) != 0);
+                if (id != 0)
+                    message = message.withId(id);
+                if ((flags & BATCH) != 0)
+                    message = message.asBatch();
+                // the time spent on the link isn't known, so the Message expires no earlier than it would have
+                if ((flags & EXPIRES) != 0)
+                    message = message.withTtl(ttlNanos, TimeUnit.NANOSECONDS);
+                motherboard.sendMessage(message);
+            }
+            case BROADCAST -> {
+                byte[] packed = new byte[frame.remaining()];
+                frame.get(packed);
+                if (!CODECS[0].isValid(packed)) {
+                    logger.log(Level.WARNING, "link of motherboard %s received a malformed broadcast frame".formatted(motherboard));
+                    return;
+                }
+                RemoteDevice origin;
+                synchronized (this) {
+                    origin = remoteDevices.isEmpty() ? null : remoteDevices.get(0);
+                }
+                motherboard.sendBroadcastMessage(CODECS[0].decode(packed), origin);
+            }
+            default -> logger.log(Level.WARNING, "link of motherboard %s received a frame of unknown type".formatted(motherboard));
+        }
+    }
+
+    /**
+     * Disconnects every RemoteDevice of this link from the local Motherboard.
+     */
+    protected synchronized void removeRemoteDevices() {
+        for (RemoteDevice device : remoteDevices)
+            motherboard.removeDevice(device.identifier());
+        remoteDevices.clear();
+    }
+
+    /**
+     * Disconnects the RemoteDevices of Devices the other side no longer has and connects one for each new Device.
+     * When the RemoteDevice subscribed to broadcasts is withdrawn, the next one takes over.
+     *
+     * @param identifiers the identifiers of every Device on the other side; emptied of those already connected
+     */
+    private synchronized void updateRemoteDevices(Set<Integer> identifiers) {
+        Iterator<RemoteDevice> iterator = remoteDevices.iterator();
+        while (iterator.hasNext()) {
+            RemoteDevice device = iterator.next();
+            if (!identifiers.remove(device.identifier())) {
+                motherboard.removeDevice(device.identifier());
+                iterator.remove();
+            }
+        }
+        if (!remoteDevices.isEmpty())
+            remoteDevices.get(0).setReceiveBroadcast(true);
+        for (int identifier : identifiers)
+            addRemoteDevice(identifier);
+    }
+
+    /**
+     * Connects a RemoteDevice for the given identifier unless the local Motherboard already has a Device with it.
+     * The first RemoteDevice subscribes to broadcasts on behalf of the whole other side.
+     *
+     * @param identifier the identifier of a Device on the other side
+     * Logs a warning if the local Motherboard already has a Device with the identifier
+     */
+    private synchronized void addRemoteDevice(int identifier) {
+        RemoteDevice device = new RemoteDevice(identifier, remoteDevices.isEmpty(), this);
+        if (device.setMotherboard(motherboard))
+            remoteDevices.add(device);
+        else
+            logger.log(Level.WARNING, "remote device with ID %d clashes with a device on motherboard %s and can't be reached".formatted(identifier, motherboard));
+    }
+
+    /**
+     * Returns the position in CODECS of a codec of the same class as the given one.
+     *
+     * @param codec the codec to look up, or null
+     * @return the index of the codec or -1 if it can't be sent as is
+     */
+    private static int codecIndex(PayloadCodec codec) {
+        for (int i = 0; codec != null && i < CODECS.length; i++) {
+            if (CODECS[i].getClass() == codec.getClass())
+                return i;
+        }
+        return -1;
+    }
+}
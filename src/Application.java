@@ -35,6 +35,17 @@ public interface Application {
      */
     boolean sendMessage(Message message);
 
+    /**
+     * Sends a Message from this Application like sendMessage(message), telling a refusal by the recipient's
+     * Application apart from other failures, so a sender can retry only what back-pressure turned away.
+     *
+     * @param message the Message to send
+     * @return what became of the Message; by default SENT or FAILED from sendMessage(message)
+     */
+    default SendOutcome trySendMessage(Message message) {
+        return SendOutcome.of(sendMessage(message));
+    }
+
     /**
      * Receive the Message sent to this Application and handle it accordingly.
      *
@@ -42,6 +53,18 @@ public interface Application {
      */
     void receiveMessage(Message message);
 
+    /**
+     * Offers the Message sent to this Application, which may refuse it when it can't keep up.
+     * Returns whether the Message was accepted; a refusal reaches the sender as a failed send.
+     *
+     * @param message the Message to receive and handle
+     * @return whether this Application accepted the Message; by default it always does, after receiveMessage(message)
+     */
+    default boolean offerMessage(Message message) {
+        receiveMessage(message);
+        return true;
+    }
+
     /**
      * Broadcast a Message to any Device open to receiving them.
      * Return whether this Message was successfully broadcast.
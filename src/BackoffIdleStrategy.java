@@ -0,0 +1,93 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Adaptive wait strategy for a thread polling for work: it busy-spins first, then yields, then parks for
+ * exponentially longer up to a maximum, and goes back to spinning as soon as there is work again.
+ * One instance must only be used by one thread.
+ */
+public class BackoffIdleStrategy {
+
+    /**
+     * number of idle calls spent spinning
+     */
+    private final int maxSpins;
+
+    /**
+     * number of idle calls spent yielding after spinning
+     */
+    private final int maxYields;
+
+    /**
+     * the first park time in nanoseconds
+     */
+    private final long minParkNanos;
+
+    /**
+     * the longest park time in nanoseconds
+     */
+    private final long maxParkNanos;
+
+    /**
+     * number of idle calls since there was work
+     */
+    private long idleCalls = 0;
+
+    /**
+     * the next park time in nanoseconds
+     */
+    private long parkNanos;
+
+    /**
+     * Creates a new BackoffIdleStrategy.
+     *
+     * @param maxSpins number of idle calls spent spinning
+     * @param maxYields number of idle calls spent yielding after spinning
+     * @param minParkNanos the first park time in nanoseconds
+     * @param maxParkNanos the longest park time in nanoseconds
+     * @throws IllegalArgumentException when a count is negative or the park times are not positive and ordered
+     */
+    protected BackoffIdleStrategy(int maxSpins, int maxYields, long minParkNanos, long maxParkNanos) {
+        if (maxSpins < 0 || maxYields < 0)
+            throw new IllegalArgumentException("spin and yield counts cannot be negative");
+        if (minParkNanos <= 0 || maxParkNanos < minParkNanos)
+            throw new IllegalArgumentException("park times must be positive and the minimum can't exceed the maximum");
+        this.maxSpins = maxSpins;
+        this.maxYields = maxYields;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+        this.parkNanos = minParkNanos;
+    }
+
+    /**
+     * Waits according to how long there has been no work.
+     *
+     * @param workDone the amount of work done since the last call; any work resets the backoff
+     */
+    protected void idle(int workDone) {
+        if (workDone > 0) {
+            idleCalls = 0;
+            parkNanos = minParkNanos;
+            return;
+        }
+        idleCalls++;
+        if (idleCalls <= maxSpins) {
+            Thread.onSpinWait();
+        }
+        else if (idleCalls <= (long) maxSpins + maxYields) {
+            Thread.yield();
+        }
+        else {
+            LockSupport.parkNanos(parkNanos);
+            parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+        }
+    }
+
+    /**
+     * Returns the number of idle calls since there was work.
+     *
+     * @return how many times in a row idle was called without work
+     */
+    protected long idleCalls() {
+        return idleCalls;
+    }
+}
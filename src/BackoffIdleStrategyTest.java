@@ -0,0 +1,21 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BackoffIdleStrategyTest {
+
+    @Test
+    public void workResetsTheBackoff() {
+        BackoffIdleStrategy idle = new BackoffIdleStrategy(2, 2, 1_000, 4_000);
+        for (int i = 0; i < 8; i++)
+            idle.idle(0);
+        assertEquals(idle.idleCalls(), 8);
+        idle.idle(3);
+        assertEquals(idle.idleCalls(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unorderedParkTimes() {
+        new BackoffIdleStrategy(1, 1, 10, 5);
+    }
+}
@@ -0,0 +1,65 @@
+import java.nio.ByteBuffer;
+
+/**
+ * PayloadCodec that packs eight payload bits into each byte, most significant bit first,
+ * after a four-byte header holding the number of bits.
+ */
+public class BitPackingCodec implements PayloadCodec {
+
+    /**
+     * Creates a new BitPackingCodec.
+     */
+    protected BitPackingCodec() {
+        super();
+    }
+
+    /**
+     * @param payload a non-empty binary string
+     * @return the number of bits followed by the packed bits
+     */
+    public byte[] encode(String payload) {
+        int length = payload.length();
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + (length + 7) / 8).putInt(length);
+        for (int start = 0; start < length; start += 8) {
+            int packed = 0;
+            for (int bit = 0; bit < 8; bit++) {
+                packed <<= 1;
+                if (start + bit < length && payload.charAt(start + bit) == '1')
+                    packed |= 1;
+            }
+            buffer.put((byte) packed);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param encoded the bytes returned by encode
+     * @return the unpacked binary string
+     */
+    public String decode(byte[] encoded) {
+        int length = decodedLength(encoded);
+        char[] bits = new char[length];
+        for (int i = 0; i < length; i++)
+            bits[i] = (encoded[Integer.BYTES + i / 8] & (0x80 >>> (i % 8))) != 0 ? '1' : '0';
+        return new String(bits);
+    }
+
+    /**
+     * @param encoded the bytes returned by encode
+     * @return the number of bits in the header
+     */
+    public int decodedLength(byte[] encoded) {
+        return ByteBuffer.wrap(encoded).getInt();
+    }
+
+    /**
+     * @param encoded the bytes to check
+     * @return whether the bytes are a positive number of bits followed by exactly enough bytes to hold them
+     */
+    public boolean isValid(byte[] encoded) {
+        if (encoded.length < Integer.BYTES)
+            return false;
+        long length = decodedLength(encoded);
+        return length > 0 && encoded.length == Integer.BYTES + (length + 7) / 8;
+    }
+}
@@ -0,0 +1,34 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BitPackingCodecTest {
+
+    private final BitPackingCodec codec = new BitPackingCodec();
+
+    @Test
+    public void encode() {
+        assertArrayEquals(codec.encode("1"), new byte[] {0, 0, 0, 1, (byte) 0x80});
+        assertArrayEquals(codec.encode("101100001"), new byte[] {0, 0, 0, 9, (byte) 0xB0, (byte) 0x80});
+    }
+
+    @Test
+    public void decode() {
+        for (String payload : new String[] {"0", "1", "10110000", "101100001", "1".repeat(1000)})
+            assertEquals(codec.decode(codec.encode(payload)), payload);
+    }
+
+    @Test
+    public void decodedLength() {
+        assertEquals(codec.decodedLength(codec.encode("101100001")), 9);
+    }
+
+    @Test
+    public void isValid() {
+        assertTrue(codec.isValid(codec.encode("101100001")));
+        assertFalse(codec.isValid(new byte[] {0, 0, 0}));
+        assertFalse(codec.isValid(new byte[] {0, 0, 0, 0}));
+        assertFalse(codec.isValid(new byte[] {(byte) 0xFF, 0, 0, 1, 0}));
+        assertFalse(codec.isValid(new byte[] {0, 0, 0, 9, (byte) 0xB0}));
+    }
+}
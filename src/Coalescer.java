@@ -0,0 +1,461 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces small Messages sent to the same destination into one batch Message, like Nagle's algorithm, so a stream
+ * of tiny payloads pays for one traversal of the Devices and Motherboard instead of one per payload.
+ * A Message small enough is held per (recipient, port, sender) until the batch reaches its maximum size or the
+ * oldest Message in it has lingered for the linger time, and the batch is then sent as a single Message whose
+ * payload frames every held payload with a 16-bit length. The receiving AbstractDevice unpacks the batch and
+ * delivers each payload as its own Message, so Applications can't tell the difference.
+ * Messages with an ID, a correlation, a time to live or a trace are sent on their own, since a batch can't carry them,
+ * after the batch held for their destination so they don't overtake it. Batches and Messages taken from a
+ * destination get a turn in the order they are taken and are sent in that order, even when a full batch, a lingering
+ * batch and a Message that can't be coalesced are sent by different threads.
+ * Once a Message joins a batch, submit reports it as accepted; whether the batch is then delivered is only known when
+ * it is sent, possibly on the thread advancing the TimerWheel, so a batch that isn't delivered in full is counted by
+ * failed() instead of failing any one send.
+ */
+public class Coalescer {
+
+    /**
+     * number of bits of the length in front of every framed payload
+     */
+    private static final int LENGTH_BITS = 16;
+
+    /**
+     * the longest payload that can be framed
+     */
+    private static final int MAX_FRAMED_BITS = (1 << LENGTH_BITS) - 1;
+
+    /**
+     * the TimerWheel firing lingering batches
+     */
+    private final TimerWheel timers;
+
+    /**
+     * how long the first Message of a batch waits for others, in nanoseconds
+     */
+    private final long lingerNanos;
+
+    /**
+     * the framed size in bits at which a batch is sent without waiting
+     */
+    private final int maxBatchBits;
+
+    /**
+     * the longest payload that is coalesced; longer ones are sent on their own
+     */
+    private final int maxPayloadBits;
+
+    /**
+     * the batches being filled by destination; guarded by this
+     */
+    private final Map<Destination, Batch> batches = new HashMap<>();
+
+    /**
+     * the turns of destinations with a batch or Message being sent or waiting to be; guarded by this
+     */
+    private final Map<Destination, Turns> turns = new HashMap<>();
+
+    /**
+     * number of batch Messages sent
+     */
+    private final LongAdder batchesSent = new LongAdder();
+
+    /**
+     * number of Messages sent as part of a batch
+     */
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * number of batches whose send failed for at least one of their Messages
+     */
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Creates a new Coalescer.
+     *
+     * @param timers the TimerWheel firing lingering batches, which must be advancing
+     * @param linger how long the first Message of a batch waits for others before the batch is sent
+     * @param unit the unit of the linger time
+     * @param maxBatchBits the framed size in bits at which a batch is sent without waiting
+     * @param maxPayloadBits the longest payload that is coalesced, at most 65535 bits
+     * @throws NullPointerException when the TimerWheel is null
+     * @throws IllegalArgumentException when the linger time or a size is not positive or the payload size is too large
+     */
+    protected Coalescer(TimerWheel timers, long linger, TimeUnit unit, int maxBatchBits, int maxPayloadBits) {
+        if (linger <= 0 || maxBatchBits <= 0 || maxPayloadBits <= 0 || maxPayloadBits > MAX_FRAMED_BITS)
+            throw new IllegalArgumentException("linger and sizes must be positive and payloads at most %d bits".formatted(MAX_FRAMED_BITS));
+        this.timers = Objects.requireNonNull(timers);
+        this.lingerNanos = unit.toNanos(linger);
+        this.maxBatchBits = maxBatchBits;
+        this.maxPayloadBits = maxPayloadBits;
+    }
+
+    /**
+     * Adds the given Message to the batch of its destination, or sends it on its own if it can't be coalesced.
+     *
+     * @param message the Message to send
+     * @param send sends a Message, single or batch, past this Coalescer and returns what became of it
+     * @return SENT when the Message joined a batch, whether or not the batch was sent, and the result of send when
+     *   the Message is sent on its own
+     * Sends the batch held for the Message's destination first when the Message can't be coalesced, and waits for
+     *   batches of that destination still being sent by other threads
+     */
+    protected SendOutcome submit(Message message, Function<Message, SendOutcome> send) {
+        Objects.requireNonNull(message);
+        Destination destination = new Destination(message.recipient(), message.port(), message.sender().orElse(-1), message.senderPort(), message.sender().isPresent());
+        if (!coalescable(message)) {
+            Batch pending;
+            Turns turns;
+            long pendingTurn = 0;
+            long turn = 0;
+            synchronized (this) {
+                pending = batches.remove(destination);
+                turns = pending == null ? this.turns.get(destination) : turnsOf(destination);
+                if (turns != null && turns.owner == Thread.currentThread())
+                    turns = null;
+                if (turns != null) {
+                    if (pending != null)
+                        pendingTurn = turns.issued++;
+                    turn = turns.issued++;
+                }
+            }
+            if (pending != null) {
+                pending.linger.cancel();
+                send(pending, turns, pendingTurn);
+            }
+            // nothing held or being sent for the destination, or this thread is the one sending to it already, so
+            // there's nothing to overtake
+            if (turns == null)
+                return send.apply(message);
+            turns.await(turn);
+            try {
+                return send.apply(message);
+            }
+            finally {
+                served(destination, turns);
+            }
+        }
+        Batch full = null;
+        Turns turns = null;
+        long turn = 0;
+        synchronized (this) {
+            Batch batch = batches.get(destination);
+            if (batch == null) {
+                batch = new Batch(destination, message);
+                batches.put(destination, batch);
+                Batch lingering = batch;
+                batch.linger = timers.schedule(() -> linger(lingering), lingerNanos, TimeUnit.NANOSECONDS);
+            }
+            batch.add(message, send);
+            if (batch.frame.length() >= maxBatchBits) {
+                batches.remove(destination);
+                batch.linger.cancel();
+                full = batch;
+                turns = turnsOf(destination);
+                if (turns.owner == Thread.currentThread())
+                    turns = null;
+                else
+                    turn = turns.issued++;
+            }
+        }
+        if (full != null)
+            send(full, turns, turn);
+        return SendOutcome.SENT;
+    }
+
+    /**
+     * Sends every batch being filled now.
+     */
+    protected void flush() {
+        List<Batch> pending;
+        List<Turns> pendingTurns = new ArrayList<>();
+        long[] turn;
+        synchronized (this) {
+            pending = new ArrayList<>(batches.values());
+            batches.clear();
+            turn = new long[pending.size()];
+            for (int i = 0; i < pending.size(); i++) {
+                Turns turns = turnsOf(pending.get(i).destination);
+                pendingTurns.add(turns);
+                turn[i] = turns.issued++;
+            }
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            pending.get(i).linger.cancel();
+            send(pending.get(i), pendingTurns.get(i), turn[i]);
+        }
+    }
+
+    /**
+     * Returns the number of batch Messages sent.
+     *
+     * @return the number of batches
+     */
+    protected long batches() {
+        return batchesSent.sum();
+    }
+
+    /**
+     * Returns the number of Messages sent as part of a batch.
+     *
+     * @return the number of coalesced Messages
+     */
+    protected long coalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Returns the number of batches that weren't delivered in full.
+     *
+     * @return the number of failed batches
+     */
+    protected long failed() {
+        return failed.sum();
+    }
+
+    /**
+     * Frames the given payloads into the payload of one batch Message.
+     *
+     * @param payloads binary strings of at most 65535 bits
+     * @return every payload prefixed with its length as 16 bits
+     * @throws IllegalArgumentException when a payload is too long
+     */
+    protected static String pack(List<String> payloads) {
+        StringBuilder frame = new StringBuilder();
+        for (String payload : payloads)
+            frame(frame, payload);
+        return frame.toString();
+    }
+
+    /**
+     * Splits the payload of the given batch Message back into one Message per framed payload, addressed like the batch.
+     *
+     * @param batch a Message whose payload was framed by pack
+     * @return the Messages in the order they were added to the batch
+     * @throws IllegalArgumentException when the payload is not a valid batch
+     */
+    protected static List<Message> unpack(Message batch) {
+        String frame = batch.payload();
+        List<Message> messages = new ArrayList<>();
+        int position = 0;
+        while (position < frame.length()) {
+            if (position + LENGTH_BITS > frame.length())
+                throw new IllegalArgumentException("batch payload ends inside a length");
+            int length = Integer.parseInt(frame, position, position + LENGTH_BITS, 2);
+            position += LENGTH_BITS;
+            if (length == 0 || position + length > frame.length())
+                throw new IllegalArgumentException("batch payload has an invalid length %d".formatted(length));
+            Message message = new Message(batch.recipient(), batch.port(), frame.substring(position, position + length));
+            if (batch.sender().isPresent())
+                message = message.withSender(batch.sender().getAsInt(), batch.senderPort());
+            messages.add(message);
+            position += length;
+        }
+        return messages;
+    }
+
+    /**
+     * Appends the given payload and its length to the given frame.
+     */
+    private static void frame(StringBuilder frame, String payload) {
+        int length = payload.length();
+        if (length > MAX_FRAMED_BITS)
+            throw new IllegalArgumentException("payload of %d bits is too long to be framed".formatted(length));
+        for (int bit = LENGTH_BITS - 1; bit >= 0; bit--)
+            frame.append((length >>> bit & 1) == 0 ? '0' : '1');
+        frame.append(payload);
+    }
+
+    /**
+     * Returns whether the given Message can be sent as part of a batch.
+     */
+    private boolean coalescable(Message message) {
+        return message.payloadLength() <= maxPayloadBits && message.id() == 0 && message.correlation() == 0
+                && !message.expires() && !message.isBatch() && !message.isEncoded() && message.trace() == null;
+    }
+
+    /**
+     * Sends the given batch once its linger time has passed, unless it was already sent because it was full.
+     *
+     * @param batch the Batch whose linger time passed
+     */
+    private void linger(Batch batch) {
+        Turns turns;
+        long turn;
+        synchronized (this) {
+            if (!batches.remove(batch.destination, batch))
+                return;
+            turns = turnsOf(batch.destination);
+            turn = turns.issued++;
+        }
+        send(batch, turns, turn);
+    }
+
+    /**
+     * Returns the turns of the given destination, starting them if nothing is being sent to it; must hold this.
+     */
+    private Turns turnsOf(Destination destination) {
+        return turns.computeIfAbsent(destination, ignored -> new Turns());
+    }
+
+    /**
+     * Ends the turn being served for the given destination, dropping its turns once none is waiting.
+     */
+    private void served(Destination destination, Turns turns) {
+        synchronized (this) {
+            synchronized (turns) {
+                turns.owner = null;
+                turns.served++;
+                turns.notifyAll();
+                if (turns.served == turns.issued)
+                    this.turns.remove(destination);
+            }
+        }
+    }
+
+    /**
+     * Sends the given batch on its turn, as the single Message it holds if there is only one, and counts it if it
+     * fails.
+     *
+     * @param batch a Batch no longer being filled
+     * @param turns the turns of the batch's destination, or null to send it right away on a thread already sending
+     *   to the destination
+     * @param turn the turn taken for the batch
+     */
+    private void send(Batch batch, Turns turns, long turn) {
+        Message message = batch.first;
+        if (batch.count > 1) {
+            message = Message.of(batch.destination.recipient(), batch.destination.port(), batch.frame.toString()).asBatch();
+            if (batch.destination.hasSender())
+                message = message.withSender(batch.destination.sender(), batch.destination.senderPort());
+            batchesSent.increment();
+            coalesced.add(batch.count);
+        }
+        if (turns == null) {
+            if (batch.send.apply(message) != SendOutcome.SENT)
+                failed.increment();
+            return;
+        }
+        turns.await(turn);
+        try {
+            if (batch.send.apply(message) != SendOutcome.SENT)
+                failed.increment();
+        }
+        finally {
+            served(batch.destination, turns);
+        }
+    }
+
+    /**
+     * Where the Messages of a batch go and come from.
+     *
+     * @param recipient the identifier of the recipient Device
+     * @param port the port on the recipient
+     * @param sender the identifier of the sending Device, if hasSender
+     * @param senderPort the port of the sending Application, if hasSender
+     * @param hasSender whether the Messages have sender headers
+     */
+    private record Destination(int recipient, int port, int sender, int senderPort, boolean hasSender) {}
+
+    /**
+     * The order in which the batches and Messages taken from one destination are sent, like tickets at a counter.
+     */
+    private static class Turns {
+
+        /**
+         * the next turn to take; guarded by the Coalescer
+         */
+        private long issued = 0;
+
+        /**
+         * the turn being served, or waiting to be once taken; guarded by this
+         */
+        private long served = 0;
+
+        /**
+         * the thread sending on the turn being served, so a send it makes to the same destination while delivering
+         * inline goes through instead of waiting for itself
+         */
+        private volatile Thread owner = null;
+
+        /**
+         * Waits until the given turn is served, without giving up on interrupts since the sends before it will end.
+         */
+        private synchronized void await(long turn) {
+            boolean interrupted = false;
+            while (served != turn) {
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            owner = Thread.currentThread();
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The Messages held for one destination.
+     */
+    private static class Batch {
+
+        /**
+         * the destination of every Message in this Batch
+         */
+        private final Destination destination;
+
+        /**
+         * the first Message added, sent as it is if no other joins it
+         */
+        private final Message first;
+
+        /**
+         * the framed payloads added so far
+         */
+        private final StringBuilder frame = new StringBuilder();
+
+        /**
+         * number of Messages added
+         */
+        private int count = 0;
+
+        /**
+         * sends the Batch; the one given with the latest Message
+         */
+        private Function<Message, SendOutcome> send;
+
+        /**
+         * sends the Batch once the first Message has lingered long enough
+         */
+        private TimerWheel.Timeout linger;
+
+        /**
+         * Creates a new empty Batch for the given destination, starting with the given Message.
+         */
+        private Batch(Destination destination, Message first) {
+            this.destination = destination;
+            this.first = first;
+        }
+
+        /**
+         * Frames the payload of the given Message into this Batch.
+         */
+        private void add(Message message, Function<Message, SendOutcome> send) {
+            frame(frame, message.payload());
+            count++;
+            this.send = send;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CoalescerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final TimerWheel timers = new TimerWheel(1, TimeUnit.MILLISECONDS, 64, now::get);
+    private final Motherboard motherboard = new Motherboard();
+    private final Mock.MockDevice from = new Mock.MockDevice(1, false);
+    private final Mock.MockDevice to = new Mock.MockDevice(2, false);
+    private final List<Message> received = new ArrayList<>();
+    private Mock.MockApplication sender;
+
+    @Before
+    public void setup() {
+        from.setMotherboard(motherboard);
+        to.setMotherboard(motherboard);
+        sender = new Mock.MockApplication(from);
+        sender.connectToPort(1);
+        new Mock.MockApplication(to) {
+            @Override
+            public void receiveMessage(Message message) {
+                received.add(message);
+            }
+        }.connectToPort(1);
+    }
+
+    private void advance(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+        timers.advance();
+    }
+
+    @Test
+    public void constructor() {
+        assertThrows(NullPointerException.class, () -> new Coalescer(null, 1, TimeUnit.MILLISECONDS, 64, 8));
+        assertThrows(IllegalArgumentException.class, () -> new Coalescer(timers, 0, TimeUnit.MILLISECONDS, 64, 8));
+        assertThrows(IllegalArgumentException.class, () -> new Coalescer(timers, 1, TimeUnit.MILLISECONDS, 0, 8));
+        assertThrows(IllegalArgumentException.class, () -> new Coalescer(timers, 1, TimeUnit.MILLISECONDS, 64, 1 << 16));
+    }
+
+    @Test
+    public void packAndUnpack() {
+        String frame = Coalescer.pack(List.of("1", "0101", "11"));
+        assertEquals(frame.length(), 3 * 16 + 7);
+        Message batch = Message.of(2, 3, frame).withSender(1, 4).asBatch();
+        List<Message> messages = Coalescer.unpack(batch);
+        assertEquals(messages.size(), 3);
+        assertEquals(messages.get(1).payload(), "0101");
+        assertEquals(messages.get(2).recipient(), 2);
+        assertEquals(messages.get(2).port(), 3);
+        assertEquals(messages.get(2).sender().getAsInt(), 1);
+        assertEquals(messages.get(2).senderPort(), 4);
+
+        assertThrows(IllegalArgumentException.class, () -> Coalescer.unpack(Message.of(2, 3, "0000000000000001").asBatch()));
+        assertThrows(IllegalArgumentException.class, () -> Coalescer.unpack(Message.of(2, 3, "101").asBatch()));
+    }
+
+    @Test
+    public void lingerFlushesOneBatch() {
+        Coalescer coalescer = new Coalescer(timers, 5, TimeUnit.MILLISECONDS, 1024, 8);
+        sender.setCoalescer(coalescer);
+        for (int i = 1; i <= 4; i++)
+            assertTrue(sender.sendMessage(Message.of(2, 1, Integer.toBinaryString(i))));
+        assertTrue(received.isEmpty());
+
+        advance(10);
+        assertEquals(received.size(), 4);
+        for (int i = 1; i <= 4; i++)
+            assertEquals(received.get(i - 1).payload(), Integer.toBinaryString(i));
+        assertEquals(coalescer.batches(), 1);
+        assertEquals(coalescer.coalesced(), 4);
+        // the Motherboard only routed the batch
+        assertEquals(motherboard.metrics().getMessagesSent(), 1);
+        assertEquals(to.metrics().getMessagesDelivered(), 4);
+    }
+
+    @Test
+    public void fullBatchIsSentAtOnce() {
+        Coalescer coalescer = new Coalescer(timers, 5, TimeUnit.MILLISECONDS, 3 * 17, 8);
+        sender.setCoalescer(coalescer);
+        sender.sendMessage(Message.of(2, 1, "1"));
+        sender.sendMessage(Message.of(2, 1, "1"));
+        assertTrue(received.isEmpty());
+        assertTrue(sender.sendMessage(Message.of(2, 1, "1")));
+        assertEquals(received.size(), 3);
+
+        // the cancelled linger doesn't send anything again
+        advance(10);
+        assertEquals(received.size(), 3);
+    }
+
+    @Test
+    public void someMessagesAreSentOnTheirOwn() {
+        Coalescer coalescer = new Coalescer(timers, 5, TimeUnit.MILLISECONDS, 1024, 4);
+        sender.setCoalescer(coalescer);
+        assertTrue(sender.sendMessage(Message.of(2, 1, "11111")));
+        assertTrue(sender.sendMessage(Message.of(2, 1, "1").withId(1)));
+        assertTrue(sender.sendMessage(Message.of(2, 1, "1").withTtl(1, TimeUnit.SECONDS)));
+        assertEquals(received.size(), 3);
+
+        // a lone Message is sent as it is
+        sender.sendMessage(Message.of(2, 1, "1"));
+        advance(10);
+        assertFalse(received.get(3).isBatch());
+        assertEquals(received.get(3).payload(), "1");
+        assertEquals(coalescer.batches(), 0);
+    }
+
+    @Test
+    public void destinationsAreBatchedApart() {
+        Mock.MockDevice other = new Mock.MockDevice(3, false);
+        other.setMotherboard(motherboard);
+        List<Message> otherReceived = new ArrayList<>();
+        new Mock.MockApplication(other) {
+            @Override
+            public void receiveMessage(Message message) {
+                otherReceived.add(message);
+            }
+        }.connectToPort(1);
+        Coalescer coalescer = new Coalescer(timers, 5, TimeUnit.MILLISECONDS, 1024, 8);
+        sender.setCoalescer(coalescer);
+        sender.sendMessage(Message.of(2, 1, "1"));
+        sender.sendMessage(Message.of(3, 1, "10"));
+        sender.sendMessage(Message.of(2, 1, "11"));
+        sender.sendMessage(Message.of(3, 1, "100").withSender(1, 5));
+        coalescer.flush();
+
+        assertEquals(received.size(), 2);
+        assertEquals(otherReceived.size(), 2);
+        // Messages from different sender ports go in separate batches, so they are sent on their own
+        assertEquals(otherReceived.stream().filter(message -> message.senderPort() == 5).count(), 1);
+        assertEquals(coalescer.batches(), 1);
+    }
+
+    @Test
+    public void messageSentOnItsOwnDoesntOvertakeTheBatch() {
+        Coalescer coalescer = new Coalescer(timers, 5, TimeUnit.MILLISECONDS, 1024, 4);
+        sender.setCoalescer(coalescer);
+        sender.sendMessage(Message.of(2, 1, "1"));
+        sender.sendMessage(Message.of(2, 1, "10"));
+        assertTrue(sender.sendMessage(Message.of(2, 1, "11111")));
+
+        assertEquals(received.size(), 3);
+        assertEquals(received.get(0).payload(), "1");
+        assertEquals(received.get(1).payload(), "10");
+        assertEquals(received.get(2).payload(), "11111");
+        assertEquals(coalescer.batches(), 1);
+
+        // the cancelled linger doesn't send anything again
+        advance(10);
+        assertEquals(received.size(), 3);
+    }
+
+    @Test
+    public void messageSentOnItsOwnWaitsForALingeringBatch() throws InterruptedException {
+        Coalescer coalescer = new Coalescer(timers, 5, TimeUnit.MILLISECONDS, 1024, 4);
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Function<Message, SendOutcome> send = message -> {
+            if (message.isBatch()) {
+                sending.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            }
+            sent.add(message.isBatch() ? "batch" : message.payload());
+            return SendOutcome.SENT;
+        };
+        coalescer.submit(Message.of(2, 1, "1"), send);
+        coalescer.submit(Message.of(2, 1, "10"), send);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        Thread timer = new Thread(timers::advance);
+        timer.start();
+        assertTrue(sending.await(10, TimeUnit.SECONDS));
+
+        // the batch already left the Coalescer but is still being sent
+        Thread other = new Thread(() -> coalescer.submit(Message.of(2, 1, "11111"), send));
+        other.start();
+        other.join(100);
+        assertTrue(other.isAlive());
+        release.countDown();
+        other.join();
+        timer.join();
+        assertEquals(sent, List.of("batch", "11111"));
+    }
+
+    @Test
+    public void failedBatchIsCounted() {
+        Coalescer coalescer = new Coalescer(timers, 5, TimeUnit.MILLISECONDS, 2 * 17, 8);
+        sender.setCoalescer(coalescer);
+        // nothing listens on port 2, so the batch isn't delivered but both Messages were accepted into it
+        assertTrue(sender.sendMessage(Message.of(2, 2, "1")));
+        assertTrue(sender.sendMessage(Message.of(2, 2, "1")));
+        assertEquals(coalescer.batches(), 1);
+        assertEquals(coalescer.failed(), 1);
+        assertTrue(received.isEmpty());
+    }
+}
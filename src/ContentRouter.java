@@ -0,0 +1,184 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Chooses the port a Message is delivered to from the shape of its payload.
+ * Each rule is a pattern over the payload bits made of '0', '1' and '.' for either bit, optionally ending in '*'
+ * for any remaining bits; a pattern without '*' only matches payloads of exactly its length.
+ * Every rule is compiled into one deterministic automaton over the payload bits, so routing a payload is a single
+ * scan whatever the number of rules. When several rules match, the one added first wins.
+ */
+public class ContentRouter {
+
+    /**
+     * the largest number of states the automaton may have
+     */
+    private static final int MAX_STATES = 1 << 20;
+
+    /**
+     * the state from which no rule can match anymore
+     */
+    private static final int DEAD = 0;
+
+    /**
+     * the state before the first bit
+     */
+    private static final int START = 1;
+
+    /**
+     * transitions[2 * state + bit] is the state after reading bit in state
+     */
+    private final int[] transitions;
+
+    /**
+     * ports[state] is the port of the first rule matching a payload that ends in state, or -1 if none does
+     */
+    private final int[] ports;
+
+    /**
+     * Compiles the given rules; see Builder.
+     *
+     * @param patterns the patterns in the order they were added
+     * @param rulePorts rulePorts[i] is the port of patterns[i]
+     */
+    private ContentRouter(List<String> patterns, int[] rulePorts) {
+        // the states of the non-deterministic automaton are the positions in each pattern, numbered consecutively
+        int[] offsets = new int[patterns.size() + 1];
+        for (int rule = 0; rule < patterns.size(); rule++)
+            offsets[rule + 1] = offsets[rule] + length(patterns.get(rule)) + 1;
+
+        List<BitSet> sets = new ArrayList<>();
+        Map<BitSet, Integer> numbers = new HashMap<>();
+        sets.add(new BitSet());
+        numbers.put(sets.get(DEAD), DEAD);
+        BitSet start = new BitSet();
+        for (int rule = 0; rule < patterns.size(); rule++)
+            start.set(offsets[rule]);
+        numbers.putIfAbsent(start, START);
+        sets.add(start);
+
+        int[] transitions = new int[16];
+        int[] ports = new int[8];
+        for (int state = 0; state < sets.size(); state++) {
+            BitSet set = sets.get(state);
+            if (2 * state + 1 >= transitions.length)
+                transitions = Arrays.copyOf(transitions, transitions.length * 2);
+            if (state >= ports.length)
+                ports = Arrays.copyOf(ports, ports.length * 2);
+            ports[state] = -1;
+            for (int bit = 0; bit < 2; bit++) {
+                BitSet next = new BitSet();
+                char symbol = bit == 0 ? '0' : '1';
+                for (int rule = 0; rule < patterns.size(); rule++) {
+                    String pattern = patterns.get(rule);
+                    int length = length(pattern);
+                    for (int position = set.nextSetBit(offsets[rule]); position >= 0 && position < offsets[rule + 1]; position = set.nextSetBit(position + 1)) {
+                        int index = position - offsets[rule];
+                        if (index < length && (pattern.charAt(index) == '.' || pattern.charAt(index) == symbol))
+                            next.set(position + 1);
+                        else if (index == length && length < pattern.length())
+                            next.set(position);
+                    }
+                }
+                Integer number = numbers.get(next);
+                if (number == null) {
+                    if (sets.size() >= MAX_STATES)
+                        throw new IllegalArgumentException("routing rules need more than %d states".formatted(MAX_STATES));
+                    number = sets.size();
+                    numbers.put(next, number);
+                    sets.add(next);
+                }
+                transitions[2 * state + bit] = number;
+            }
+            for (int rule = 0; rule < patterns.size(); rule++) {
+                if (set.get(offsets[rule] + length(patterns.get(rule)))) {
+                    ports[state] = rulePorts[rule];
+                    break;
+                }
+            }
+        }
+        this.transitions = Arrays.copyOf(transitions, 2 * sets.size());
+        this.ports = Arrays.copyOf(ports, sets.size());
+    }
+
+    /**
+     * Returns the port of the first rule matching the given payload.
+     *
+     * @param payload a binary string
+     * @return the port to deliver to, or -1 if no rule matches
+     * @throws NullPointerException when the payload is null
+     */
+    protected int route(String payload) {
+        int state = START;
+        for (int i = 0; i < payload.length() && state != DEAD; i++)
+            state = transitions[2 * state + (payload.charAt(i) - '0')];
+        return ports[state];
+    }
+
+    /**
+     * Returns the number of states of the compiled automaton, including the state where no rule can match.
+     *
+     * @return the number of states
+     */
+    protected int states() {
+        return ports.length;
+    }
+
+    /**
+     * Returns the number of bits a pattern matches before its trailing '*', if any.
+     */
+    private static int length(String pattern) {
+        return pattern.endsWith("*") ? pattern.length() - 1 : pattern.length();
+    }
+
+    /**
+     * Collects routing rules in order and compiles them into a ContentRouter.
+     */
+    public static class Builder {
+
+        /**
+         * the patterns in the order they were added
+         */
+        private final List<String> patterns = new ArrayList<>();
+
+        /**
+         * ports.get(i) is the port of patterns.get(i)
+         */
+        private final List<Integer> ports = new ArrayList<>();
+
+        /**
+         * Adds a rule delivering payloads matching the given pattern to the given port.
+         *
+         * @param pattern '0', '1' and '.' for either bit, optionally followed by '*' for any remaining bits
+         * @param port the port matching payloads are delivered to
+         * @return this Builder
+         * @throws NullPointerException when the pattern is null
+         * @throws IllegalArgumentException when the pattern has other characters or the port is negative
+         */
+        protected Builder route(String pattern, int port) {
+            Objects.requireNonNull(pattern);
+            if (!pattern.matches("[01.]*\\*?"))
+                throw new IllegalArgumentException("pattern %s must be made of 0, 1 and . optionally followed by *".formatted(pattern));
+            if (port < 0)
+                throw new IllegalArgumentException("port cannot be negative");
+            patterns.add(pattern);
+            ports.add(port);
+            return this;
+        }
+
+        /**
+         * Compiles the rules added so far.
+         *
+         * @return a new ContentRouter
+         * @throws IllegalArgumentException when the rules need too many states
+         */
+        protected ContentRouter build() {
+            return new ContentRouter(patterns, ports.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ContentRouterTest {
+
+    @Test
+    public void prefixAndExactRules() {
+        ContentRouter router = new ContentRouter.Builder()
+                .route("1101*", 7)
+                .route("11", 3)
+                .route("0.0", 4)
+                .build();
+
+        assertEquals(router.route("1101"), 7);
+        assertEquals(router.route("110100111"), 7);
+        assertEquals(router.route("11"), 3);
+        assertEquals(router.route("110"), -1);
+        assertEquals(router.route("000"), 4);
+        assertEquals(router.route("010"), 4);
+        assertEquals(router.route("0100"), -1);
+        assertEquals(router.route("1"), -1);
+    }
+
+    @Test
+    public void firstRuleWins() {
+        ContentRouter router = new ContentRouter.Builder()
+                .route("1*", 1)
+                .route("10*", 2)
+                .route("*", 9)
+                .build();
+
+        assertEquals(router.route("10"), 1);
+        assertEquals(router.route("0"), 9);
+        assertEquals(router.route(""), 9);
+    }
+
+    @Test
+    public void manyRulesCompileToOneAutomaton() {
+        ContentRouter.Builder builder = new ContentRouter.Builder();
+        for (int i = 0; i < 256; i++)
+            builder.route(String.format("%8s", Integer.toBinaryString(i)).replace(' ', '0') + "*", i);
+        ContentRouter router = builder.build();
+
+        // one state per prefix of up to 8 bits plus the dead state
+        assertEquals(router.states(), 512);
+        assertEquals(router.route("11111111"), 255);
+        assertEquals(router.route("000000110101"), 3);
+        assertEquals(router.route("0000001"), -1);
+    }
+
+    @Test
+    public void invalidRules() {
+        ContentRouter.Builder builder = new ContentRouter.Builder();
+        assertThrows(IllegalArgumentException.class, () -> builder.route("12", 1));
+        assertThrows(IllegalArgumentException.class, () -> builder.route("1*1", 1));
+        assertThrows(IllegalArgumentException.class, () -> builder.route("1", -1));
+        assertThrows(NullPointerException.class, () -> builder.route(null, 1));
+        assertEquals(builder.build().route("1"), -1);
+    }
+
+    @Test
+    public void deviceRoutesByContent() {
+        Mock.MockDevice device = new Mock.MockDevice(1, true);
+        StringBuilder received = new StringBuilder();
+        new Mock.MockApplication(device) {
+            @Override
+            public void receiveMessage(Message message) {
+                received.append('a');
+            }
+        }.connectToPort(1);
+        new Mock.MockApplication(device) {
+            @Override
+            public void receiveMessage(Message message) {
+                received.append('b');
+            }
+        }.connectToPort(7);
+        device.setRouter(new ContentRouter.Builder().route("1101*", 7).build());
+
+        assertTrue(device.receiveMessage(Message.of(1, 1, "110111")));
+        assertTrue(device.receiveMessage(Message.of(1, 1, "0")));
+        assertEquals(received.toString(), "ba");
+    }
+}
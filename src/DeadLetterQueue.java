@@ -0,0 +1,374 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds Messages a Motherboard couldn't deliver, because no Device had the recipient's identifier or no
+ * Application listened on the port, and retries them with exponential backoff until they are delivered or expire.
+ * Retries and expiries are Timeouts on a shared TimerWheel, so waiting Messages cost no thread; a Message is also
+ * retried at the next tick once a Device with its recipient's identifier attaches or an Application is added to it.
+ * A retried Message is recognized by identity when it fails again, even on a Scheduler's thread after the retry
+ * returned, so it is rescheduled rather than held twice. A Message a Scheduler accepted is remembered until its expiry
+ * for that, while one resent without a Scheduler was delivered by the time the retry returned and is forgotten.
+ * The queue is bounded and refuses Messages when the held and remembered ones fill it.
+ */
+public class DeadLetterQueue {
+
+    /**
+     * Logger to log descriptive warning messages instead of throwing exceptions
+     */
+    private static final Logger logger = Logger.getLogger(DeadLetterQueue.class.getName());
+
+    /**
+     * Where a Message offered to this DeadLetterQueue is.
+     */
+    private enum State {
+        /** waiting for its next retry */
+        HELD,
+        /** being resent by retry */
+        RETRYING,
+        /** resent without failing so far; a Scheduler may still fail it */
+        SENT
+    }
+
+    /**
+     * the Motherboard Messages are resent through
+     */
+    private final Motherboard motherboard;
+
+    /**
+     * the TimerWheel firing retries and expiries
+     */
+    private final TimerWheel timers;
+
+    /**
+     * the largest number of Messages held at once
+     */
+    private final int capacity;
+
+    /**
+     * how long a Message is held before it is dropped, in nanoseconds
+     */
+    private final long expiryNanos;
+
+    /**
+     * the delay before the first retry, in nanoseconds
+     */
+    private final long initialBackoffNanos;
+
+    /**
+     * the longest delay between retries, in nanoseconds
+     */
+    private final long maxBackoffNanos;
+
+    /**
+     * the held Messages by recipient identifier; guarded by this
+     */
+    private final Map<Integer, List<Entry>> entries = new HashMap<>();
+
+    /**
+     * every Entry that hasn't expired yet, by the identity of its Message; guarded by this
+     */
+    private final Map<Message, Entry> tracked = new IdentityHashMap<>();
+
+    /**
+     * number of held Messages; guarded by this
+     */
+    private int size = 0;
+
+    /**
+     * number of resent Messages remembered in case the Scheduler that accepted them fails them; guarded by this
+     */
+    private int sent = 0;
+
+    /**
+     * number of Messages dropped because they expired; guarded by this
+     */
+    private long expired = 0;
+
+    /**
+     * number of Messages refused because the queue was full; guarded by this
+     */
+    private long overflowed = 0;
+
+    /**
+     * Creates a new DeadLetterQueue for the given Motherboard; it is used once passed to motherboard.setDeadLetterQueue.
+     *
+     * @param motherboard the Motherboard whose undeliverable Messages are held
+     * @param timers the TimerWheel firing retries and expiries, which must be advancing
+     * @param capacity the largest number of Messages held at once
+     * @param expiry how long a Message is held before it is dropped
+     * @param initialBackoff the delay before the first retry, doubled after every failed retry
+     * @param maxBackoff the longest delay between retries
+     * @param unit the unit of expiry and the backoffs
+     * @throws NullPointerException when the Motherboard, TimerWheel or unit is null
+     * @throws IllegalArgumentException when the capacity, expiry or a backoff is not positive or the backoffs are out of order
+     */
+    protected DeadLetterQueue(Motherboard motherboard, TimerWheel timers, int capacity, long expiry,
+                              long initialBackoff, long maxBackoff, TimeUnit unit) {
+        if (capacity <= 0 || expiry <= 0 || initialBackoff <= 0 || maxBackoff < initialBackoff)
+            throw new IllegalArgumentException("capacity, expiry and backoffs must be positive and the initial backoff can't exceed the maximum");
+        this.motherboard = Objects.requireNonNull(motherboard);
+        this.timers = Objects.requireNonNull(timers);
+        this.capacity = capacity;
+        this.expiryNanos = unit.toNanos(expiry);
+        this.initialBackoffNanos = unit.toNanos(initialBackoff);
+        this.maxBackoffNanos = unit.toNanos(maxBackoff);
+    }
+
+    /**
+     * Holds the given Message for retrying; a Message this queue is retrying or has retried is rescheduled instead.
+     *
+     * @param message the Message that couldn't be delivered
+     * @return whether the Message is held
+     * Logs a warning and returns false if the held and remembered Messages fill the queue
+     */
+    protected synchronized boolean offer(Message message) {
+        Objects.requireNonNull(message);
+        Entry current = tracked.get(message);
+        if (current != null) {
+            switch (current.state) {
+                // retry reschedules it once the resend returns
+                case RETRYING -> current.failed = true;
+                // it failed on another thread after the resend returned
+                case SENT -> {
+                    sent--;
+                    reschedule(current);
+                }
+                case HELD -> {}
+            }
+            return true;
+        }
+        if (size + sent >= capacity) {
+            overflowed++;
+            logger.log(Level.WARNING, "dead letter queue of motherboard %s is full so the message to device with ID %d was dropped".formatted(motherboard, message.recipient()));
+            return false;
+        }
+        Entry entry = new Entry(message);
+        tracked.put(message, entry);
+        hold(entry);
+        entry.expiry = timers.schedule(() -> expire(entry), expiryNanos, TimeUnit.NANOSECONDS);
+        entry.retry = timers.schedule(() -> retry(entry), entry.backoffNanos, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    /**
+     * Retries every Message held for the given recipient at the next tick instead of waiting for its backoff.
+     *
+     * @param identifier the identifier of a Device that attached or gained an Application
+     */
+    protected synchronized void attached(int identifier) {
+        List<Entry> held = entries.get(identifier);
+        if (held == null)
+            return;
+        for (Entry entry : held) {
+            if (entry.retry.cancel())
+                entry.retry = timers.schedule(() -> retry(entry), 0, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Returns the number of Messages held.
+     *
+     * @return the number of Messages waiting to be retried
+     */
+    protected synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of Messages dropped because they expired.
+     *
+     * @return the number of expired Messages
+     */
+    protected synchronized long expired() {
+        return expired;
+    }
+
+    /**
+     * Returns the number of Messages refused because the queue was full.
+     *
+     * @return the number of Messages that didn't fit
+     */
+    protected synchronized long overflowed() {
+        return overflowed;
+    }
+
+    /**
+     * Returns the Motherboard this DeadLetterQueue resends through.
+     *
+     * @return the Motherboard given at construction
+     */
+    protected Motherboard motherboard() {
+        return motherboard;
+    }
+
+    /**
+     * Resends the Message of the given Entry, and reschedules it with a doubled backoff if it is still undeliverable.
+     * A Message whose time to live passed while it was held is dropped and counted as expired instead.
+     * A resent Message is forgotten unless a Scheduler took it, since it can then still fail later.
+     *
+     * @param entry the Entry whose retry fired
+     * Calls motherboard.sendMessage(message)
+     */
+    private void retry(Entry entry) {
+        synchronized (this) {
+            if (!release(entry))
+                return;
+            if (entry.message.isExpired()) {
+                entry.expiry.cancel();
+                tracked.remove(entry.message);
+                expired++;
+                return;
+            }
+            entry.state = State.RETRYING;
+            entry.failed = false;
+        }
+        try {
+            motherboard.sendMessage(entry.message);
+        }
+        catch (RuntimeException e) {
+            synchronized (this) {
+                entry.failed = true;
+            }
+            throw e;
+        }
+        finally {
+            synchronized (this) {
+                if (entry.expired) {
+                    tracked.remove(entry.message);
+                    if (entry.failed)
+                        expired++;
+                }
+                else if (entry.failed) {
+                    reschedule(entry);
+                }
+                else if (motherboard.scheduler().isPresent()) {
+                    entry.state = State.SENT;
+                    sent++;
+                }
+                else {
+                    entry.expiry.cancel();
+                    tracked.remove(entry.message);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the Message of the given Entry because it has been held too long.
+     * A Message being retried is dropped by the retry if it fails, and a resent Message is just forgotten.
+     *
+     * @param entry the Entry whose expiry fired
+     * Logs a warning if the Message was still held
+     */
+    private void expire(Entry entry) {
+        synchronized (this) {
+            entry.expired = true;
+            if (entry.state == State.RETRYING)
+                return;
+            tracked.remove(entry.message);
+            if (entry.state == State.SENT)
+                sent--;
+            if (!release(entry))
+                return;
+            entry.retry.cancel();
+            expired++;
+        }
+        logger.log(Level.WARNING, "message to device with ID %d expired in the dead letter queue of motherboard %s".formatted(entry.message.recipient(), motherboard));
+    }
+
+    /**
+     * Holds the given Entry again with a doubled backoff after its Message failed again; the caller holds the lock.
+     *
+     * @param entry the Entry whose resend failed
+     */
+    private void reschedule(Entry entry) {
+        entry.backoffNanos = Math.min(entry.backoffNanos << 1, maxBackoffNanos);
+        hold(entry);
+        entry.retry = timers.schedule(() -> retry(entry), entry.backoffNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds the given Entry to the held Messages; the caller holds the lock.
+     *
+     * @param entry the Entry to hold
+     */
+    private void hold(Entry entry) {
+        entries.computeIfAbsent(entry.message.recipient(), identifier -> new ArrayList<>()).add(entry);
+        entry.state = State.HELD;
+        size++;
+    }
+
+    /**
+     * Removes the given Entry from the held Messages; the caller holds the lock.
+     *
+     * @param entry the Entry to remove
+     * @return whether the Entry was held
+     */
+    private boolean release(Entry entry) {
+        if (entry.state != State.HELD)
+            return false;
+        List<Entry> held = entries.get(entry.message.recipient());
+        if (held == null || !held.remove(entry))
+            return false;
+        if (held.isEmpty())
+            entries.remove(entry.message.recipient());
+        size--;
+        return true;
+    }
+
+    /**
+     * A Message offered to the queue and the state of its retries.
+     */
+    private class Entry {
+
+        /**
+         * the Message to resend
+         */
+        private final Message message;
+
+        /**
+         * where the Message is; guarded by the queue
+         */
+        private State state = State.HELD;
+
+        /**
+         * the delay before the next retry, in nanoseconds; guarded by the queue
+         */
+        private long backoffNanos = initialBackoffNanos;
+
+        /**
+         * the next retry; guarded by the queue
+         */
+        private TimerWheel.Timeout retry;
+
+        /**
+         * drops the Message once it is held too long; guarded by the queue
+         */
+        private TimerWheel.Timeout expiry;
+
+        /**
+         * whether the expiry has fired; guarded by the queue
+         */
+        private boolean expired = false;
+
+        /**
+         * whether the Message was undeliverable again during the current retry; guarded by the queue
+         */
+        private boolean failed = false;
+
+        /**
+         * Creates a new Entry for the given Message.
+         */
+        private Entry(Message message) {
+            this.message = message;
+        }
+    }
+}
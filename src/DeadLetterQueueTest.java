@@ -0,0 +1,202 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DeadLetterQueueTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final TimerWheel wheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 64, clock::get);
+    private final Motherboard motherboard = new Motherboard();
+    private final DeadLetterQueue queue = new DeadLetterQueue(motherboard, wheel, 2, 100, 10, 40, TimeUnit.MILLISECONDS);
+    private final List<Message> received = new ArrayList<>();
+
+    public DeadLetterQueueTest() {
+        motherboard.setDeadLetterQueue(queue);
+    }
+
+    private void sleep(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+        wheel.advance();
+    }
+
+    private Mock.MockDevice receiver(int identifier) {
+        Mock.MockDevice device = new Mock.MockDevice(identifier, true);
+        new Mock.MockApplication(device) {
+            @Override
+            public void receiveMessage(Message message) {
+                received.add(message);
+            }
+        }.connectToPort(7);
+        return device;
+    }
+
+    @Test
+    public void constructor() {
+        assertThrows(IllegalArgumentException.class, () -> new DeadLetterQueue(motherboard, wheel, 0, 1, 1, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new DeadLetterQueue(motherboard, wheel, 1, 1, 2, 1, TimeUnit.SECONDS));
+        assertThrows(NullPointerException.class, () -> new DeadLetterQueue(null, wheel, 1, 1, 1, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new Motherboard().setDeadLetterQueue(queue));
+    }
+
+    @Test
+    public void retriedOnceTheDeviceAttaches() {
+        // the Message is held, so the send counts as accepted
+        assertTrue(motherboard.sendMessage(Message.of(1, 7, "101")));
+        assertEquals(queue.size(), 1);
+
+        receiver(1).setMotherboard(motherboard);
+        assertTrue(received.isEmpty());
+        sleep(1);
+        assertEquals(received.size(), 1);
+        assertEquals(received.get(0).payload(), "101");
+        assertEquals(queue.size(), 0);
+        // delivered inline, so it is forgotten at once along with its expiry
+        assertEquals(wheel.size(), 0);
+        sleep(100);
+        assertEquals(queue.expired(), 0);
+    }
+
+    @Test
+    public void retriedOnceTheApplicationIsAdded() {
+        Mock.MockDevice device = new Mock.MockDevice(1, true);
+        device.setMotherboard(motherboard);
+        assertTrue(motherboard.sendMessage(Message.of(1, 7, "11")));
+        assertEquals(queue.size(), 1);
+
+        new Mock.MockApplication(device) {
+            @Override
+            public void receiveMessage(Message message) {
+                received.add(message);
+            }
+        }.connectToPort(7);
+        sleep(1);
+        assertEquals(received.size(), 1);
+        assertEquals(queue.size(), 0);
+    }
+
+    @Test
+    public void retriedWithBackoff() {
+        motherboard.sendMessage(Message.of(1, 7, "1"));
+        sleep(10);
+        // the first retry failed, so the next one is 20ms later
+        assertEquals(queue.size(), 1);
+        motherboard.addDevice(new Mock.MockDevice(2, true));
+        assertEquals(queue.size(), 1);
+
+        // attaching without going through the motherboard's hook is only picked up by the backoff
+        Mock.MockDevice device = receiver(1);
+        motherboard.setDeadLetterQueue(null);
+        device.setMotherboard(motherboard);
+        motherboard.setDeadLetterQueue(queue);
+        sleep(19);
+        assertTrue(received.isEmpty());
+        sleep(1);
+        assertEquals(received.size(), 1);
+        assertEquals(queue.size(), 0);
+    }
+
+    @Test
+    public void expires() {
+        motherboard.sendMessage(Message.of(1, 7, "1"));
+        sleep(99);
+        assertEquals(queue.size(), 1);
+        sleep(1);
+        assertEquals(queue.size(), 0);
+        assertEquals(queue.expired(), 1);
+        assertEquals(wheel.size(), 0);
+    }
+
+    @Test
+    public void bounded() {
+        assertTrue(motherboard.sendMessage(Message.of(1, 7, "1")));
+        assertTrue(motherboard.sendMessage(Message.of(2, 7, "1")));
+        assertFalse(motherboard.sendMessage(Message.of(3, 7, "1")));
+        assertEquals(queue.size(), 2);
+        assertEquals(queue.overflowed(), 1);
+    }
+
+    @Test
+    public void droppedWithoutQueue() {
+        motherboard.setDeadLetterQueue(null);
+        assertFalse(motherboard.sendMessage(Message.of(1, 7, "1")));
+        assertEquals(queue.size(), 0);
+        assertEquals(wheel.size(), 0);
+    }
+
+    @Test
+    public void retryFailingOnSchedulerThreadIsRescheduled() {
+        List<Runnable> pending = new ArrayList<>();
+        motherboard.setScheduler((device, message) -> pending.add(() -> device.receiveMessage(message)));
+        Mock.MockDevice device = new Mock.MockDevice(1, true);
+        device.setMotherboard(motherboard);
+
+        assertTrue(motherboard.sendMessage(Message.of(1, 7, "1")));
+        pending.remove(0).run();
+        assertEquals(queue.size(), 1);
+
+        // the retry is accepted by the Scheduler and only fails once the Scheduler delivers it
+        sleep(10);
+        assertEquals(queue.size(), 0);
+        assertEquals(pending.size(), 1);
+        pending.remove(0).run();
+        assertEquals(queue.size(), 1);
+
+        // it is the same Entry with a doubled backoff, not a new one
+        sleep(19);
+        assertTrue(pending.isEmpty());
+        sleep(1);
+        assertEquals(pending.size(), 1);
+        new Mock.MockApplication(device) {
+            @Override
+            public void receiveMessage(Message message) {
+                received.add(message);
+            }
+        }.connectToPort(7);
+        pending.remove(0).run();
+        assertEquals(received.size(), 1);
+        assertEquals(queue.size(), 0);
+        sleep(100);
+        assertEquals(queue.expired(), 0);
+    }
+
+    @Test
+    public void messagesASchedulerTookCountTowardsTheCapacity() {
+        List<Runnable> pending = new ArrayList<>();
+        receiver(1).setMotherboard(motherboard);
+        // nothing listens on port 8, so both are held
+        assertTrue(motherboard.sendMessage(Message.of(1, 8, "1")));
+        assertTrue(motherboard.sendMessage(Message.of(1, 8, "10")));
+        motherboard.setScheduler((device, message) -> pending.add(() -> device.receiveMessage(message)));
+
+        // both retries are accepted by the Scheduler, which may still fail them
+        sleep(10);
+        assertEquals(queue.size(), 0);
+        assertEquals(pending.size(), 2);
+        motherboard.setScheduler(null);
+        assertFalse(motherboard.sendMessage(Message.of(2, 7, "1")));
+        assertEquals(queue.overflowed(), 1);
+
+        // forgotten once they expire, which frees the room
+        sleep(90);
+        assertEquals(queue.expired(), 0);
+        assertTrue(motherboard.sendMessage(Message.of(2, 7, "1")));
+        assertEquals(queue.size(), 1);
+    }
+
+    @Test
+    public void expiredMessageIsCountedWhenRetried() throws InterruptedException {
+        assertTrue(motherboard.sendMessage(Message.of(1, 7, "1").withTtl(20, TimeUnit.MILLISECONDS)));
+        Thread.sleep(30);
+        receiver(1).setMotherboard(motherboard);
+        sleep(1);
+        assertTrue(received.isEmpty());
+        assertEquals(queue.size(), 0);
+        assertEquals(queue.expired(), 1);
+        assertEquals(wheel.size(), 0);
+    }
+}
@@ -14,6 +14,17 @@ public interface Device {
      */
     boolean sendMessage(Message message);
 
+    /**
+     * Sends a Message from this Device like sendMessage(message), telling a refusal by the recipient's Application
+     * apart from other failures. A Device overriding sendMessage must override this method to match.
+     *
+     * @param message Message to be sent
+     * @return what became of the Message; by default SENT or FAILED from sendMessage(message)
+     */
+    default SendOutcome trySendMessage(Message message) {
+        return SendOutcome.of(sendMessage(message));
+    }
+
     /**
      * Broadcast a Message to any Device open to receiving them.
      * Return whether this Message was successfully broadcast.
@@ -0,0 +1,66 @@
+/**
+ * Management interface of an AbstractDevice, registered with its Motherboard's MBeans.
+ * Every attribute is read from counters kept up to date as Messages flow, never from a copy of the port mapping.
+ */
+public interface DeviceMXBean {
+
+    /**
+     * @return the identifier of the Device
+     */
+    int getIdentifier();
+
+    /**
+     * @return the number of Applications on the Device
+     */
+    int getApplications();
+
+    /**
+     * @return whether the Device wants to receive broadcast messages
+     */
+    boolean isReceivingBroadcasts();
+
+    /**
+     * @return the number of Messages the Device sent
+     */
+    long getMessagesSent();
+
+    /**
+     * @return the number of Messages delivered to an Application of the Device
+     */
+    long getMessagesDelivered();
+
+    /**
+     * @return the number of Messages the Device received but couldn't deliver
+     */
+    long getMessagesRejected();
+
+    /**
+     * @return the number of Messages suppressed as duplicates
+     */
+    long getDuplicatesSuppressed();
+
+    /**
+     * @return the number of sends whose route to the recipient came from the Device's route cache
+     */
+    long getRouteCacheHits();
+
+    /**
+     * @return the number of sends whose route to the recipient had to be looked up on the Motherboard
+     */
+    long getRouteCacheMisses();
+
+    /**
+     * @return the number of Messages the Device sent per second
+     */
+    double getSentPerSecond();
+
+    /**
+     * @return the number of Messages delivered per second
+     */
+    double getDeliveredPerSecond();
+
+    /**
+     * @return the number of Messages rejected per second
+     */
+    double getRejectedPerSecond();
+}
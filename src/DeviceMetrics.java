@@ -0,0 +1,172 @@
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters of an AbstractDevice, updated by the AbstractDevice as Applications connect and Messages flow and
+ * exposed over JMX as a DeviceMXBean.
+ */
+public class DeviceMetrics implements DeviceMXBean {
+
+    /**
+     * the AbstractDevice the counters belong to
+     */
+    private final AbstractDevice device;
+
+    /**
+     * number of Applications on the AbstractDevice
+     */
+    private final AtomicInteger applications = new AtomicInteger();
+
+    /**
+     * Messages the AbstractDevice sent
+     */
+    private final Meter sent = new Meter();
+
+    /**
+     * Messages delivered to an Application
+     */
+    private final Meter delivered = new Meter();
+
+    /**
+     * Messages received but not delivered
+     */
+    private final Meter rejected = new Meter();
+
+    /**
+     * Messages suppressed as duplicates
+     */
+    private final LongAdder duplicates = new LongAdder();
+
+    /**
+     * sends whose Route came from the route cache
+     */
+    private final LongAdder routeCacheHits = new LongAdder();
+
+    /**
+     * sends whose Route had to be resolved by the Motherboard
+     */
+    private final LongAdder routeCacheMisses = new LongAdder();
+
+    /**
+     * Creates new DeviceMetrics for the given AbstractDevice.
+     *
+     * @param device the AbstractDevice the counters belong to
+     * @throws NullPointerException when the AbstractDevice is null
+     */
+    protected DeviceMetrics(AbstractDevice device) {
+        this.device = Objects.requireNonNull(device);
+    }
+
+    /**
+     * Counts an Application that was added or removed.
+     *
+     * @param added whether the Application was added
+     */
+    protected void applicationChanged(boolean added) {
+        if (added)
+            applications.incrementAndGet();
+        else
+            applications.decrementAndGet();
+    }
+
+    /**
+     * Counts a sent Message.
+     */
+    protected void sent() {
+        sent.mark();
+    }
+
+    /**
+     * Counts a Message delivered to an Application.
+     */
+    protected void delivered() {
+        delivered.mark();
+    }
+
+    /**
+     * Counts a received Message that couldn't be delivered.
+     */
+    protected void rejected() {
+        rejected.mark();
+    }
+
+    /**
+     * Counts a Message suppressed as a duplicate.
+     */
+    protected void duplicate() {
+        duplicates.increment();
+    }
+
+    /**
+     * Counts a send and whether its Route was cached.
+     *
+     * @param hit whether the Route came from the route cache
+     */
+    protected void routeCached(boolean hit) {
+        if (hit)
+            routeCacheHits.increment();
+        else
+            routeCacheMisses.increment();
+    }
+
+    @Override
+    public int getIdentifier() {
+        return device.identifier();
+    }
+
+    @Override
+    public int getApplications() {
+        return applications.get();
+    }
+
+    @Override
+    public boolean isReceivingBroadcasts() {
+        return device.receiveBroadcast();
+    }
+
+    @Override
+    public long getMessagesSent() {
+        return sent.count();
+    }
+
+    @Override
+    public long getMessagesDelivered() {
+        return delivered.count();
+    }
+
+    @Override
+    public long getMessagesRejected() {
+        return rejected.count();
+    }
+
+    @Override
+    public long getDuplicatesSuppressed() {
+        return duplicates.sum();
+    }
+
+    @Override
+    public long getRouteCacheHits() {
+        return routeCacheHits.sum();
+    }
+
+    @Override
+    public long getRouteCacheMisses() {
+        return routeCacheMisses.sum();
+    }
+
+    @Override
+    public double getSentPerSecond() {
+        return sent.rate();
+    }
+
+    @Override
+    public double getDeliveredPerSecond() {
+        return delivered.rate();
+    }
+
+    @Override
+    public double getRejectedPerSecond() {
+        return rejected.rate();
+    }
+}
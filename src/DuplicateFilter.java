@@ -0,0 +1,264 @@
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Suppresses Messages a Device has already received, so retries and bridges can resend without the Applications
+ * seeing the same Message twice. Each sender numbers its Messages with increasing IDs, and for every sender this
+ * DuplicateFilter keeps a sliding window bitmap of the IDs seen just below the highest one, like the anti-replay
+ * window of IPsec. An ID below the window is too old to tell apart; it is reported as such rather than as a
+ * duplicate, so a Message held up longer than the window, by a retry for instance, is refused visibly instead of lost.
+ * Memory is fixed: one bitmap per sender, up to a maximum number of senders. A Message without a sender header passes
+ * unfiltered, since Messages from unknown senders can't be told apart by ID; AbstractApplication stamps its Device and
+ * port on every Message it sends, so only Messages sent straight through a Device lack one.
+ */
+public class DuplicateFilter {
+
+    /**
+     * What a DuplicateFilter makes of a Message.
+     */
+    public enum Verdict {
+        /** the ID wasn't seen before, or the Message has no ID */
+        NEW,
+        /** the ID was already seen */
+        DUPLICATE,
+        /** the ID is below the window, so whether it was seen is unknown */
+        TOO_OLD
+    }
+
+    /**
+     * Logger to log descriptive warning messages instead of throwing exceptions
+     */
+    private static final Logger logger = Logger.getLogger(DuplicateFilter.class.getName());
+
+    /**
+     * number of IDs below the highest one each window remembers, a multiple of 64
+     */
+    private final int windowSize;
+
+    /**
+     * the largest number of senders with a window
+     */
+    private final int maxSenders;
+
+    /**
+     * windows by sender key; guarded by this
+     */
+    private final LongMap<Window> windows;
+
+    /**
+     * the window of the sender whose key is 0, which LongMap reserves; guarded by this
+     */
+    private Window zeroWindow = null;
+
+    /**
+     * number of Messages suppressed; guarded by this
+     */
+    private long suppressed = 0;
+
+    /**
+     * number of Messages whose ID was below the window; guarded by this
+     */
+    private long tooOld = 0;
+
+    /**
+     * whether the warning about too many senders was logged; guarded by this
+     */
+    private boolean warned = false;
+
+    /**
+     * Creates a new DuplicateFilter.
+     *
+     * @param windowSize how many IDs below the highest one are remembered per sender, rounded up to a multiple of 64
+     * @param maxSenders the largest number of senders whose Messages are filtered; Messages from further senders pass unfiltered
+     * @throws IllegalArgumentException when the window size or maximum number of senders is not positive
+     */
+    protected DuplicateFilter(int windowSize, int maxSenders) {
+        if (windowSize <= 0 || maxSenders <= 0)
+            throw new IllegalArgumentException("window size and maximum number of senders must be positive");
+        this.windowSize = (windowSize + 63) & ~63;
+        this.maxSenders = maxSenders;
+        this.windows = new LongMap<>(Math.min(maxSenders, 1024));
+    }
+
+    /**
+     * Records the ID of the given Message and returns whether it is the first time it is seen.
+     *
+     * @param message a Message with an ID
+     * @return false if the Message is a duplicate or too old to tell, true otherwise, including when it has no ID
+     * Calls check(message)
+     */
+    protected boolean accept(Message message) {
+        return check(message) == Verdict.NEW;
+    }
+
+    /**
+     * Records the ID of the given Message and tells whether it is new, a duplicate or too old to tell.
+     *
+     * @param message a Message with an ID
+     * @return NEW if the ID wasn't seen before, including when the Message has no ID or sender or its sender has no window
+     * Logs a warning the first time a sender can't be given a window because there are too many senders
+     */
+    protected synchronized Verdict check(Message message) {
+        long id = message.id();
+        if (id == 0 || message.sender().isEmpty())
+            return Verdict.NEW;
+        Window window = window(message);
+        if (window == null)
+            return Verdict.NEW;
+        Verdict verdict = window.accept(id);
+        if (verdict == Verdict.DUPLICATE)
+            suppressed++;
+        else if (verdict == Verdict.TOO_OLD)
+            tooOld++;
+        return verdict;
+    }
+
+    /**
+     * Forgets the ID of the given Message, which was accepted but couldn't be delivered, so it is accepted again.
+     *
+     * @param message a Message this DuplicateFilter accepted
+     */
+    protected synchronized void forget(Message message) {
+        long id = message.id();
+        if (id == 0 || message.sender().isEmpty())
+            return;
+        long key = ((long) message.sender().getAsInt() << 32) | (message.senderPort() & 0xFFFFFFFFL);
+        Window window = key == 0 ? zeroWindow : windows.get(key);
+        if (window != null)
+            window.forget(id);
+    }
+
+    /**
+     * Returns the number of Messages suppressed as duplicates.
+     *
+     * @return the number of suppressed Messages
+     */
+    protected synchronized long suppressed() {
+        return suppressed;
+    }
+
+    /**
+     * Returns the number of Messages whose ID was too old to tell whether it was seen.
+     *
+     * @return the number of Messages below the window
+     */
+    protected synchronized long tooOld() {
+        return tooOld;
+    }
+
+    /**
+     * Returns the number of senders with a window.
+     *
+     * @return the number of windows
+     */
+    protected synchronized int senders() {
+        return windows.size() + (zeroWindow != null ? 1 : 0);
+    }
+
+    /**
+     * Returns the window of the sender of the given Message, creating it if there is room; the caller holds the lock.
+     *
+     * @param message the Message whose sender to look up, which has a sender
+     * @return the window of the sender or null if there are too many senders
+     */
+    private Window window(Message message) {
+        long key = ((long) message.sender().getAsInt() << 32) | (message.senderPort() & 0xFFFFFFFFL);
+        if (key == 0) {
+            if (zeroWindow == null && senders() < maxSenders)
+                zeroWindow = new Window(windowSize);
+            return zeroWindow;
+        }
+        Window window = windows.get(key);
+        if (window == null) {
+            if (senders() >= maxSenders) {
+                if (!warned)
+                    logger.log(Level.WARNING, "duplicate filter has reached %d senders so messages from device with ID %d are not filtered".formatted(maxSenders, message.sender().getAsInt()));
+                warned = true;
+                return null;
+            }
+            window = new Window(windowSize);
+            windows.put(key, window);
+        }
+        return window;
+    }
+
+    /**
+     * The IDs seen from one sender: the highest one and a bitmap of the windowSize IDs up to it.
+     */
+    private static class Window {
+
+        /**
+         * the bit of id is set if id was seen, for ids in (highest - windowSize, highest]
+         */
+        private final long[] bits;
+
+        /**
+         * the highest ID seen, or 0 if none
+         */
+        private long highest = 0;
+
+        /**
+         * Creates a new empty Window.
+         *
+         * @param windowSize a multiple of 64
+         */
+        private Window(int windowSize) {
+            this.bits = new long[windowSize >>> 6];
+        }
+
+        /**
+         * Records the given ID.
+         *
+         * @param id a non-zero Message ID
+         * @return NEW if the ID was not seen before and is within the window
+         */
+        private Verdict accept(long id) {
+            long size = (long) bits.length << 6;
+            if (id > highest) {
+                // the bits of the IDs the window slides onto still hold IDs a window older, so clear them
+                if (id - highest >= size) {
+                    Arrays.fill(bits, 0);
+                }
+                else {
+                    for (long next = highest + 1; next <= id; next++)
+                        bits[index(next)] &= ~mask(next);
+                }
+                highest = id;
+                bits[index(id)] |= mask(id);
+                return Verdict.NEW;
+            }
+            if (highest - id >= size)
+                return Verdict.TOO_OLD;
+            int index = index(id);
+            if ((bits[index] & mask(id)) != 0)
+                return Verdict.DUPLICATE;
+            bits[index] |= mask(id);
+            return Verdict.NEW;
+        }
+
+        /**
+         * Forgets the given ID if it is within the window.
+         *
+         * @param id a non-zero Message ID
+         */
+        private void forget(long id) {
+            if (id <= highest && highest - id < (long) bits.length << 6)
+                bits[index(id)] &= ~mask(id);
+        }
+
+        /**
+         * Returns the word of the bitmap holding the bit of the given ID.
+         */
+        private int index(long id) {
+            return (int) ((id >>> 6) % bits.length);
+        }
+
+        /**
+         * Returns the bit of the given ID within its word.
+         */
+        private static long mask(long id) {
+            return 1L << (id & 63);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DuplicateFilterTest {
+
+    private final DuplicateFilter filter = new DuplicateFilter(128, 4);
+
+    private static Message from(int sender, long id) {
+        return Message.of(1, 1, "1").withSender(sender, 0).withId(id);
+    }
+
+    @Test
+    public void constructor() {
+        assertThrows(IllegalArgumentException.class, () -> new DuplicateFilter(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new DuplicateFilter(64, 0));
+        assertThrows(IllegalArgumentException.class, () -> Message.of(1, 1, "1").withId(0));
+    }
+
+    @Test
+    public void duplicatesAreSuppressed() {
+        assertTrue(filter.accept(from(1, 1)));
+        assertTrue(filter.accept(from(1, 3)));
+        assertFalse(filter.accept(from(1, 1)));
+        assertFalse(filter.accept(from(1, 3)));
+        // out of order but within the window
+        assertTrue(filter.accept(from(1, 2)));
+        // the same ID from another sender, or another Application of the same sender, is another Message
+        assertTrue(filter.accept(from(2, 1)));
+        assertTrue(filter.accept(Message.of(1, 1, "1").withSender(1, 3).withId(1)));
+        // Messages without a sender can't be told apart, so they always pass
+        assertTrue(filter.accept(Message.of(1, 1, "1").withId(1)));
+        assertTrue(filter.accept(Message.of(1, 1, "1").withId(1)));
+        // Messages without an ID always pass
+        assertTrue(filter.accept(Message.of(1, 1, "1")));
+        assertTrue(filter.accept(Message.of(1, 1, "1")));
+        assertEquals(filter.suppressed(), 2);
+    }
+
+    @Test
+    public void windowSlides() {
+        for (long id = 1; id <= 1000; id++)
+            assertTrue(filter.accept(from(1, id)));
+        for (long id = 873; id <= 1000; id++)
+            assertFalse(filter.accept(from(1, id)));
+        // too old to tell apart, which is not a duplicate
+        assertFalse(filter.accept(from(1, 872)));
+        assertEquals(filter.check(from(1, 1)), DuplicateFilter.Verdict.TOO_OLD);
+        assertEquals(filter.check(from(1, 1000)), DuplicateFilter.Verdict.DUPLICATE);
+        assertEquals(filter.tooOld(), 2);
+
+        // a jump further than the window forgets everything below it
+        assertTrue(filter.accept(from(1, 5000)));
+        assertTrue(filter.accept(from(1, 4999)));
+        assertFalse(filter.accept(from(1, 4999)));
+    }
+
+    @Test
+    public void gapsWithinTheWindowAreNotRemembered() {
+        assertTrue(filter.accept(from(1, 1)));
+        assertTrue(filter.accept(from(1, 129)));
+        // 129 slid onto the bit of 1, which must now be free for 65..128
+        assertTrue(filter.accept(from(1, 65)));
+        assertTrue(filter.accept(from(1, 128)));
+        assertFalse(filter.accept(from(1, 1)));
+    }
+
+    @Test
+    public void boundedSenders() {
+        for (int sender = 0; sender < 4; sender++)
+            assertTrue(filter.accept(from(sender, 1)));
+        assertEquals(filter.senders(), 4);
+        // a fifth sender is not filtered
+        assertTrue(filter.accept(from(9, 1)));
+        assertTrue(filter.accept(from(9, 1)));
+        assertEquals(filter.senders(), 4);
+    }
+
+    @Test
+    public void deviceDeliversOnce() {
+        List<Message> received = new ArrayList<>();
+        Mock.MockDevice device = new Mock.MockDevice(1, true);
+        new Mock.MockApplication(device) {
+            @Override
+            public void receiveMessage(Message message) {
+                received.add(message);
+            }
+        }.connectToPort(1);
+        device.setDuplicateFilter(filter);
+
+        Message message = from(2, 7);
+        assertTrue(device.receiveMessage(message));
+        assertTrue(device.receiveMessage(message));
+        assertEquals(received, List.of(message));
+
+        // a Message held up past the window is refused rather than reported as delivered
+        assertTrue(device.receiveMessage(from(2, 10_000)));
+        assertFalse(device.receiveMessage(from(2, 8)));
+        assertEquals(received.size(), 2);
+        assertEquals(device.metrics().getMessagesRejected(), 1);
+    }
+
+    @Test
+    public void sendersReusingAnIdAreBothDelivered() {
+        Motherboard motherboard = new Motherboard();
+        List<Message> received = new ArrayList<>();
+        Mock.MockDevice device = new Mock.MockDevice(1, false);
+        device.setMotherboard(motherboard);
+        new Mock.MockApplication(device) {
+            @Override
+            public void receiveMessage(Message message) {
+                received.add(message);
+            }
+        }.connectToPort(1);
+        device.setDuplicateFilter(filter);
+        List<Mock.MockApplication> senders = new ArrayList<>();
+        for (int identifier = 2; identifier <= 3; identifier++) {
+            Mock.MockDevice sender = new Mock.MockDevice(identifier, false);
+            sender.setMotherboard(motherboard);
+            Mock.MockApplication application = new Mock.MockApplication(sender);
+            application.connectToPort(4);
+            senders.add(application);
+        }
+
+        // both senders number their first Message 1, which the sender headers stamped on send keep apart
+        assertTrue(senders.get(0).sendMessage(Message.of(1, 1, "1").withId(1)));
+        assertTrue(senders.get(1).sendMessage(Message.of(1, 1, "10").withId(1)));
+        assertEquals(received.size(), 2);
+        assertEquals(received.get(0).sender().getAsInt(), 2);
+        assertEquals(received.get(1).sender().getAsInt(), 3);
+        assertEquals(received.get(1).senderPort(), 4);
+
+        // a resend from either is still suppressed
+        assertTrue(senders.get(1).sendMessage(Message.of(1, 1, "10").withId(1)));
+        assertEquals(received.size(), 2);
+        assertEquals(filter.suppressed(), 1);
+    }
+}
@@ -0,0 +1,208 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Holder of the Java Flight Recorder events emitted on the Message path.
+ * Every event is disabled unless a recording enables it, in which case the JIT reduces it to a flag check.
+ */
+public class FlightEvents {
+
+    /**
+     * Why a Message or broadcast payload was not delivered.
+     */
+    public enum Reason {
+        /** the payload is not a binary string */
+        INVALID_PAYLOAD,
+        /** the sending Device is not connected to a Motherboard */
+        NOT_CONNECTED,
+        /** no Device with the recipient's identifier is connected to the Motherboard */
+        NO_DEVICE,
+        /** no Application is listening on the Message's port */
+        NO_APPLICATION,
+        /** the Message's time to live passed before it was delivered */
+        EXPIRED,
+        /** the Message was over a RateLimiter's limit */
+        THROTTLED,
+        /** the Message's payload doesn't match its checksum */
+        CORRUPTED,
+        /** the Message was already received */
+        DUPLICATE,
+        /** the Message's ID was too old for the DuplicateFilter to tell whether it was already received */
+        STALE,
+        /** the Application on the Message's port couldn't keep up and refused it */
+        REFUSED
+    }
+
+    /**
+     * Creates a new FlightEvents instance which is useless which is why this constructor is private.
+     */
+    private FlightEvents() {
+        super();
+    }
+
+    /**
+     * Commits a Reject event for the given Message if rejections are being recorded.
+     *
+     * @param reason why the Message was rejected
+     * @param message the rejected Message
+     */
+    protected static void reject(Reason reason, Message message) {
+        Reject event = new Reject();
+        if (event.shouldCommit()) {
+            event.reason = reason.name();
+            event.recipient = message.recipient();
+            event.port = message.port();
+            event.payloadLength = message.payloadLength();
+            event.commit();
+        }
+    }
+
+    /**
+     * Commits a Reject event for the given broadcast payload if rejections are being recorded.
+     *
+     * @param reason why the broadcast was rejected
+     * @param payload the rejected broadcast payload
+     */
+    protected static void reject(Reason reason, String payload) {
+        Reject event = new Reject();
+        if (event.shouldCommit()) {
+            event.reason = reason.name();
+            event.recipient = -1;
+            event.port = -1;
+            event.payloadLength = payload.length();
+            event.commit();
+        }
+    }
+
+    /**
+     * A Message routed by a Motherboard; the duration covers the lookup and the hand-off to the recipient.
+     */
+    @Name("pcic.MessageSend")
+    @Label("Message Send")
+    @Category("PCIC")
+    @Description("A Message routed by a Motherboard")
+    protected static class Send extends Event {
+
+        /**
+         * identifier of the recipient Device
+         */
+        @Label("Recipient")
+        protected int recipient;
+
+        /**
+         * port of the recipient Application
+         */
+        @Label("Port")
+        protected int port;
+
+        /**
+         * number of bits in the payload
+         */
+        @Label("Payload Length")
+        protected int payloadLength;
+
+        /**
+         * whether the recipient received the Message or the Scheduler accepted it
+         */
+        @Label("Delivered")
+        protected boolean delivered;
+
+        /**
+         * Fills in the fields that describe the given Message.
+         *
+         * @param message the Message being sent
+         */
+        protected void describe(Message message) {
+            recipient = message.recipient();
+            port = message.port();
+            payloadLength = message.payloadLength();
+        }
+    }
+
+    /**
+     * A Message handed to an Application by an AbstractDevice; the duration covers the Application's handler.
+     */
+    @Name("pcic.MessageDelivery")
+    @Label("Message Delivery")
+    @Category("PCIC")
+    @Description("A Message handed to the Application listening on its port")
+    protected static class Delivery extends Event {
+
+        /**
+         * identifier of the recipient Device
+         */
+        @Label("Recipient")
+        protected int recipient;
+
+        /**
+         * port of the recipient Application
+         */
+        @Label("Port")
+        protected int port;
+
+        /**
+         * number of bits in the payload
+         */
+        @Label("Payload Length")
+        protected int payloadLength;
+    }
+
+    /**
+     * A broadcast fanned out by a Motherboard; the duration covers every subscriber's handler.
+     */
+    @Name("pcic.Broadcast")
+    @Label("Broadcast")
+    @Category("PCIC")
+    @Description("A broadcast payload fanned out to every subscribed Device")
+    protected static class Broadcast extends Event {
+
+        /**
+         * number of bits in the payload
+         */
+        @Label("Payload Length")
+        protected int payloadLength;
+
+        /**
+         * number of Devices the payload was handed to
+         */
+        @Label("Fan-out")
+        protected int fanOut;
+    }
+
+    /**
+     * A Message or broadcast payload that was not delivered.
+     */
+    @Name("pcic.MessageReject")
+    @Label("Message Reject")
+    @Category("PCIC")
+    @Description("A Message or broadcast that could not be delivered")
+    protected static class Reject extends Event {
+
+        /**
+         * name of the Reason the Message was rejected
+         */
+        @Label("Reason")
+        protected String reason;
+
+        /**
+         * identifier of the recipient Device, or -1 for a broadcast
+         */
+        @Label("Recipient")
+        protected int recipient;
+
+        /**
+         * port of the recipient Application, or -1 for a broadcast
+         */
+        @Label("Port")
+        protected int port;
+
+        /**
+         * number of bits in the payload
+         */
+        @Label("Payload Length")
+        protected int payloadLength;
+    }
+}
@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FlightEventsTest {
+
+    /**
+     * Runs the given action while recording every PCIC event and returns the recorded events.
+     */
+    private static List<RecordedEvent> record(Runnable action) throws IOException {
+        Path file = Files.createTempFile("pcic", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : List.of("pcic.MessageSend", "pcic.MessageDelivery", "pcic.Broadcast", "pcic.MessageReject"))
+                recording.enable(name);
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).toList();
+    }
+
+    @Test
+    public void sendAndDeliver() throws IOException {
+        Motherboard motherboard = new Motherboard();
+        Mock.MockDevice device = new Mock.MockDevice(1, false);
+        device.setMotherboard(motherboard);
+        new Mock.MockApplication(device).connectToPort(2);
+
+        List<RecordedEvent> events = record(() -> device.sendMessage(Message.of(1, 2, "1010")));
+
+        List<RecordedEvent> sends = named(events, "pcic.MessageSend");
+        assertEquals(sends.size(), 1);
+        assertEquals(sends.get(0).getInt("recipient"), 1);
+        assertEquals(sends.get(0).getInt("port"), 2);
+        assertEquals(sends.get(0).getInt("payloadLength"), 4);
+        assertTrue(sends.get(0).getBoolean("delivered"));
+        assertEquals(named(events, "pcic.MessageDelivery").size(), 1);
+        assertTrue(named(events, "pcic.MessageReject").isEmpty());
+    }
+
+    @Test
+    public void broadcast() throws IOException {
+        Motherboard motherboard = new Motherboard();
+        new Mock.MockDevice(1, true).setMotherboard(motherboard);
+        new Mock.MockDevice(2, true).setMotherboard(motherboard);
+        new Mock.MockDevice(3, false).setMotherboard(motherboard);
+
+        List<RecordedEvent> events = record(() -> motherboard.sendBroadcastMessage("11"));
+
+        List<RecordedEvent> broadcasts = named(events, "pcic.Broadcast");
+        assertEquals(broadcasts.size(), 1);
+        assertEquals(broadcasts.get(0).getInt("fanOut"), 2);
+        assertEquals(broadcasts.get(0).getInt("payloadLength"), 2);
+    }
+
+    @Test
+    public void reject() throws IOException {
+        Motherboard motherboard = new Motherboard();
+        Mock.MockDevice connected = new Mock.MockDevice(1, false);
+        Mock.MockDevice disconnected = new Mock.MockDevice(2, false);
+        connected.setMotherboard(motherboard);
+
+        List<RecordedEvent> events = record(() -> {
+            connected.sendMessage(Message.of(9, 0, "1"));
+            connected.sendMessage(Message.of(1, 0, "1"));
+            disconnected.sendMessage(Message.of(1, 0, "1"));
+            connected.sendBroadcastMessage("not binary");
+        });
+
+        List<String> reasons = named(events, "pcic.MessageReject").stream().map(event -> event.getString("reason")).sorted().toList();
+        assertEquals(reasons, List.of("INVALID_PAYLOAD", "NOT_CONNECTED", "NO_APPLICATION", "NO_DEVICE"));
+    }
+}
@@ -0,0 +1,321 @@
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Scheduler that splits a Motherboard into independent lanes, like the lanes of a PCIe link, each with its own
+ * queue and worker thread. Every Message is hashed by its (sender, recipient) pair to a lane, so the Messages of
+ * one pair are delivered in the order they were sent while unrelated flows are delivered in parallel.
+ * Unlike ShardedScheduler, a Device may be handed Messages by several lanes at once, one per sender.
+ * Every lane counts the Messages it delivered and the time its worker was busy, from which the utilization of each
+ * lane and the imbalance between them are worked out.
+ */
+public class LaneScheduler implements Scheduler {
+
+    /**
+     * Logger to log descriptive warning messages instead of throwing exceptions
+     */
+    private static final Logger logger = Logger.getLogger(LaneScheduler.class.getName());
+
+    /**
+     * the sender hashed for Messages without one
+     */
+    private static final int NO_SENDER = -1;
+
+    /**
+     * the lanes of this LaneScheduler
+     */
+    private final Lane[] lanes;
+
+    /**
+     * whether this LaneScheduler has been started and not shut down yet
+     */
+    private volatile boolean running = false;
+
+    /**
+     * System.nanoTime() when this LaneScheduler was last started
+     */
+    private volatile long startedAt = 0;
+
+    /**
+     * Creates a new LaneScheduler with the given number of lanes.
+     *
+     * @param laneCount the number of lanes, each with its own worker thread
+     * @throws IllegalArgumentException when the lane count is not positive
+     */
+    protected LaneScheduler(int laneCount) {
+        if (laneCount <= 0)
+            throw new IllegalArgumentException("lane count must be positive");
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++)
+            lanes[i] = new Lane(i);
+    }
+
+    /**
+     * Starts the worker thread of every lane.
+     * Returns whether this LaneScheduler was started by this call.
+     *
+     * @return false if this LaneScheduler was already running
+     */
+    protected synchronized boolean start() {
+        if (running)
+            return false;
+        running = true;
+        startedAt = System.nanoTime();
+        for (Lane lane : lanes) {
+            lane.thread = new Thread(() -> loop(lane), "lane-" + lane.index);
+            lane.thread.setDaemon(true);
+            lane.thread.start();
+        }
+        return true;
+    }
+
+    /**
+     * Stops every lane after it has delivered the Messages already queued on it and waits for its thread to end.
+     *
+     * @throws InterruptedException when interrupted while waiting for a lane to stop
+     */
+    protected synchronized void shutdown() throws InterruptedException {
+        if (!running)
+            return;
+        running = false;
+        for (Lane lane : lanes)
+            lane.queue.offer(Lane.STOP);
+        for (Lane lane : lanes)
+            lane.thread.join();
+    }
+
+    /**
+     * Returns the number of lanes of this LaneScheduler.
+     *
+     * @return the number of lanes
+     */
+    protected int laneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Returns the lane the given Message is delivered on, from the hash of its sender and recipient. Every Message an
+     * AbstractApplication sends carries its sender, so only Messages sent straight through a Device share the lane of
+     * their recipient.
+     *
+     * @param message the Message to look up
+     * @return the index of the lane of the Message's (sender, recipient) pair
+     */
+    protected int laneOf(Message message) {
+        long pair = ((long) message.sender().orElse(NO_SENDER) << 32) | (message.recipient() & 0xFFFFFFFFL);
+        // mix the bits so pairs that differ in either half spread over the lanes
+        pair *= 0x9E3779B97F4A7C15L;
+        return Math.floorMod((int) (pair ^ (pair >>> 32)), lanes.length);
+    }
+
+    /**
+     * @param recipient the Device the Message was routed to
+     * @param message the Message to deliver
+     * @return whether the Message was queued on its lane
+     * @throws NullPointerException if the Device or the Message is null
+     * Logs a warning and returns false if this LaneScheduler is not running, or stopped before the Message was queued
+     */
+    public boolean deliver(Device recipient, Message message) {
+        Objects.requireNonNull(recipient);
+        Objects.requireNonNull(message);
+        if (!running) {
+            logger.log(Level.WARNING, "couldn't deliver message to device with ID %d because scheduler %s is not running".formatted(recipient.identifier(), this));
+            return false;
+        }
+        Lane lane = lanes[laneOf(message)];
+        Delivery delivery = new Delivery(recipient, message);
+        lane.queued.increment();
+        lane.queue.offer(delivery);
+        // a shutdown between the check and the offer may have stopped the worker already, so take the Message back
+        // unless the worker's last drain delivered it
+        if (!running && lane.queue.remove(delivery)) {
+            lane.queued.decrement();
+            logger.log(Level.WARNING, "couldn't deliver message to device with ID %d because scheduler %s is not running".formatted(recipient.identifier(), this));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of Messages queued on every lane and not yet handed to their Device
+     */
+    @Override
+    public long queued() {
+        long queued = 0;
+        for (Lane lane : lanes)
+            queued += lane.queued.sum();
+        return queued;
+    }
+
+    /**
+     * Returns the number of Messages queued on the given lane.
+     *
+     * @param lane the index of a lane
+     * @return the number of Messages waiting on the lane
+     */
+    protected long queued(int lane) {
+        return lanes[lane].queued.sum();
+    }
+
+    /**
+     * Returns the number of Messages the given lane has delivered.
+     *
+     * @param lane the index of a lane
+     * @return the number of Messages handed to their Device by the lane
+     */
+    protected long delivered(int lane) {
+        return lanes[lane].delivered.sum();
+    }
+
+    /**
+     * Returns the share of time the worker of the given lane spent delivering since this LaneScheduler started.
+     *
+     * @param lane the index of a lane
+     * @return the utilization of the lane between 0 and 1, or 0 if this LaneScheduler was never started
+     */
+    protected double utilization(int lane) {
+        long startedAt = this.startedAt;
+        if (startedAt == 0)
+            return 0;
+        long elapsed = System.nanoTime() - startedAt;
+        return elapsed <= 0 ? 0 : Math.min(1, (double) lanes[lane].busyNanos.sum() / elapsed);
+    }
+
+    /**
+     * Returns how unevenly Messages are spread over the lanes: the number delivered by the busiest lane divided by
+     * the average number delivered per lane.
+     *
+     * @return 1 when every lane delivered as many Messages, up to the lane count when one lane delivered them all;
+     *   1 before any Message is delivered
+     */
+    protected double imbalance() {
+        long total = 0;
+        long busiest = 0;
+        for (Lane lane : lanes) {
+            long delivered = lane.delivered.sum();
+            total += delivered;
+            busiest = Math.max(busiest, delivered);
+        }
+        return total == 0 ? 1 : busiest * (double) lanes.length / total;
+    }
+
+    /**
+     * Runs the worker of the given lane until it takes the stop marker.
+     *
+     * @param lane the lane owned by the calling thread
+     */
+    private void loop(Lane lane) {
+        while (true) {
+            Delivery delivery;
+            try {
+                delivery = lane.queue.take();
+            }
+            catch (InterruptedException e) {
+                logger.log(Level.WARNING, "lane %d of scheduler %s was interrupted and stopped".formatted(lane.index, this));
+                return;
+            }
+            if (delivery == Lane.STOP) {
+                // a send racing the shutdown may have queued behind the marker
+                while ((delivery = lane.queue.poll()) != null)
+                    run(lane, delivery);
+                return;
+            }
+            run(lane, delivery);
+        }
+    }
+
+    /**
+     * Hands the given Delivery over on the given lane and counts it.
+     *
+     * @param lane the lane the Delivery was queued on
+     * @param delivery the Delivery to hand over
+     */
+    private static void run(Lane lane, Delivery delivery) {
+        long start = System.nanoTime();
+        lane.queued.decrement();
+        handle(delivery);
+        lane.delivered.increment();
+        lane.busyNanos.add(System.nanoTime() - start);
+    }
+
+    /**
+     * Hands the given Delivery to its Device.
+     *
+     * @param delivery the Delivery to hand over
+     * Logs a warning if the Device throws, so one faulty Device can't stop the lane
+     * Drops the Message and commits a FlightEvents.Reject event if it expired while queued
+     */
+    private static void handle(Delivery delivery) {
+        if (delivery.message().isExpired()) {
+            FlightEvents.reject(FlightEvents.Reason.EXPIRED, delivery.message());
+            return;
+        }
+        try {
+            delivery.recipient().receiveMessage(delivery.message());
+        }
+        catch (RuntimeException e) {
+            logger.log(Level.WARNING, "device with ID %d threw while receiving a message: %s".formatted(delivery.recipient().identifier(), e));
+        }
+    }
+
+    /**
+     * A Message waiting to be handed to the Device it was routed to.
+     *
+     * @param recipient the Device to hand the Message to
+     * @param message the Message to deliver
+     */
+    private record Delivery(Device recipient, Message message) {}
+
+    /**
+     * One lane: a queue and the worker that drains it.
+     */
+    private static class Lane {
+
+        /**
+         * queued after the last Delivery to stop the worker
+         */
+        private static final Delivery STOP = new Delivery(null, null);
+
+        /**
+         * position of this Lane in its LaneScheduler
+         */
+        private final int index;
+
+        /**
+         * Messages waiting to be delivered, in the order they were sent
+         */
+        private final LinkedBlockingQueue<Delivery> queue = new LinkedBlockingQueue<>();
+
+        /**
+         * number of Messages queued and not yet handed over
+         */
+        private final LongAdder queued = new LongAdder();
+
+        /**
+         * number of Messages handed over
+         */
+        private final LongAdder delivered = new LongAdder();
+
+        /**
+         * time the worker spent handing Messages over, in nanoseconds
+         */
+        private final LongAdder busyNanos = new LongAdder();
+
+        /**
+         * the worker thread of this Lane
+         */
+        private volatile Thread thread;
+
+        /**
+         * Creates a new empty Lane.
+         *
+         * @param index position of this Lane in its LaneScheduler
+         */
+        private Lane(int index) {
+            this.index = index;
+        }
+    }
+}
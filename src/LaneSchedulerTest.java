@@ -0,0 +1,147 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LaneSchedulerTest {
+
+    @Test
+    public void constructor() {
+        assertThrows(IllegalArgumentException.class, () -> new LaneScheduler(0));
+        assertEquals(new LaneScheduler(4).laneCount(), 4);
+    }
+
+    @Test
+    public void laneOf() {
+        LaneScheduler scheduler = new LaneScheduler(8);
+        Message message = Message.of(5, 1, "1").withSender(3, 0);
+        assertEquals(scheduler.laneOf(message), scheduler.laneOf(Message.of(5, 2, "10").withSender(3, 1)));
+        Set<Integer> used = new HashSet<>();
+        for (int sender = 0; sender < 64; sender++)
+            used.add(scheduler.laneOf(Message.of(1, 1, "1").withSender(sender, 0)));
+        assertEquals(used.size(), 8);
+    }
+
+    @Test
+    public void notRunning() {
+        LaneScheduler scheduler = new LaneScheduler(2);
+        assertFalse(scheduler.deliver(new Mock.MockDevice(1, false), Message.of(1, 1, "1")));
+        assertEquals(scheduler.utilization(0), 0, 0);
+        assertEquals(scheduler.imbalance(), 1, 0);
+    }
+
+    @Test
+    public void perPairOrder() throws InterruptedException {
+        int senders = 16, perSender = 500;
+        LaneScheduler scheduler = new LaneScheduler(4);
+        Motherboard motherboard = new Motherboard();
+        motherboard.setScheduler(scheduler);
+        Map<Integer, List<Integer>> received = new ConcurrentHashMap<>();
+        new Mock.MockDevice(1, false) {
+            @Override
+            public boolean receiveMessage(Message message) {
+                received.computeIfAbsent(message.sender().getAsInt(), sender -> new ArrayList<>())
+                        .add(Integer.parseInt(message.payload(), 2));
+                return true;
+            }
+        }.setMotherboard(motherboard);
+        assertTrue(scheduler.start());
+        assertFalse(scheduler.start());
+
+        for (int i = 0; i < perSender; i++) {
+            for (int sender = 0; sender < senders; sender++)
+                assertTrue(motherboard.sendMessage(Message.of(1, 1, Integer.toBinaryString(i)).withSender(sender, 0)));
+        }
+        scheduler.shutdown();
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < perSender; i++)
+            expected.add(i);
+        for (int sender = 0; sender < senders; sender++) {
+            // each lane only hands Messages of its own senders over, so every sender's list has one writer
+            assertEquals(received.get(sender), expected);
+        }
+        long delivered = 0;
+        for (int lane = 0; lane < scheduler.laneCount(); lane++) {
+            delivered += scheduler.delivered(lane);
+            assertEquals(scheduler.queued(lane), 0);
+            assertTrue(scheduler.utilization(lane) >= 0 && scheduler.utilization(lane) <= 1);
+        }
+        assertEquals(delivered, senders * perSender);
+        assertEquals(scheduler.queued(), 0);
+        assertTrue(scheduler.imbalance() >= 1 && scheduler.imbalance() <= scheduler.laneCount());
+    }
+
+    @Test
+    public void imbalance() throws InterruptedException {
+        LaneScheduler scheduler = new LaneScheduler(4);
+        Mock.MockDevice device = new Mock.MockDevice(1, false);
+        scheduler.start();
+        for (int i = 0; i < 10; i++)
+            scheduler.deliver(device, Message.of(1, 1, "1").withSender(2, 0));
+        scheduler.shutdown();
+        // one pair only ever uses one lane
+        assertEquals(scheduler.imbalance(), 4, 1e-9);
+    }
+
+    @Test
+    public void deliverRacingShutdown() throws InterruptedException {
+        LaneScheduler scheduler = new LaneScheduler(2);
+        AtomicInteger received = new AtomicInteger();
+        Mock.MockDevice device = new Mock.MockDevice(1, false) {
+            @Override
+            public boolean receiveMessage(Message message) {
+                received.incrementAndGet();
+                return true;
+            }
+        };
+        scheduler.start();
+        AtomicInteger accepted = new AtomicInteger();
+        Thread sender = new Thread(() -> {
+            for (int i = 0; scheduler.deliver(device, Message.of(1, 1, "1").withSender(i, 0)); i++)
+                accepted.incrementAndGet();
+        });
+        sender.start();
+        Thread.sleep(5);
+        scheduler.shutdown();
+        sender.join();
+
+        // every accepted Message was delivered and none is left behind the stopped workers
+        assertEquals(received.get(), accepted.get());
+        assertEquals(scheduler.queued(), 0);
+    }
+
+    @Test
+    public void plainTrafficIsSpreadBySender() throws InterruptedException {
+        LaneScheduler scheduler = new LaneScheduler(8);
+        Motherboard motherboard = new Motherboard();
+        motherboard.setScheduler(scheduler);
+        Set<Integer> lanes = ConcurrentHashMap.newKeySet();
+        Mock.MockDevice recipient = new Mock.MockDevice(100, false) {
+            @Override
+            public boolean receiveMessage(Message message) {
+                lanes.add(scheduler.laneOf(message));
+                return true;
+            }
+        };
+        recipient.setMotherboard(motherboard);
+        scheduler.start();
+        for (int sender = 0; sender < 64; sender++) {
+            Mock.MockDevice device = new Mock.MockDevice(sender, false);
+            device.setMotherboard(motherboard);
+            Mock.MockApplication application = new Mock.MockApplication(device);
+            application.connectToPort(1);
+            // a plain Message, which is stamped with its sender on the way out
+            assertTrue(application.sendMessage(Message.of(100, 1, "1")));
+        }
+        scheduler.shutdown();
+        assertEquals(lanes.size(), 8);
+    }
+}
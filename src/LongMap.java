@@ -0,0 +1,204 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive long keys to values, so lookups neither box keys nor allocate entries.
+ * Uses linear probing with backward-shift deletion; the key 0 is reserved to mark empty slots.
+ * Not thread-safe.
+ *
+ * @param <V> the type of value held in this LongMap
+ */
+public class LongMap<V> {
+
+    /**
+     * the largest number of slots a LongMap can have
+     */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * keys[i] is the key in slot i or 0 if the slot is empty
+     */
+    private long[] keys;
+
+    /**
+     * values[i] is the value mapped to keys[i]
+     */
+    private V[] values;
+
+    /**
+     * mask to turn a hash into a slot index
+     */
+    private int mask;
+
+    /**
+     * number of keys in this LongMap
+     */
+    private int size = 0;
+
+    /**
+     * Creates a new LongMap that can hold the given number of keys without resizing.
+     *
+     * @param expectedSize how many keys this LongMap is expected to hold
+     * @throws IllegalArgumentException when the expected size is negative
+     */
+    protected LongMap(int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("expected size cannot be negative");
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Returns the value mapped to the given key.
+     *
+     * @param key the non-zero key to look up
+     * @return the value mapped to the key or null if there is none
+     */
+    protected V get(long key) {
+        if (key == 0)
+            return null;
+        for (int index = slot(key); keys[index] != 0; index = (index + 1) & mask) {
+            if (keys[index] == key)
+                return values[index];
+        }
+        return null;
+    }
+
+    /**
+     * Maps the given key to the given value.
+     *
+     * @param key the non-zero key
+     * @param value the value to map the key to
+     * @return the value previously mapped to the key or null if there was none
+     * @throws IllegalArgumentException when the key is 0
+     */
+    protected V put(long key, V value) {
+        if (key == 0)
+            throw new IllegalArgumentException("key cannot be 0");
+        int index = slot(key);
+        for (; keys[index] != 0; index = (index + 1) & mask) {
+            if (keys[index] == key) {
+                V previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > (keys.length >> 1) + (keys.length >> 2))
+            allocate(keys.length << 1);
+        return null;
+    }
+
+    /**
+     * Removes the given key and the value mapped to it.
+     *
+     * @param key the key to remove
+     * @return the value that was mapped to the key or null if there was none
+     */
+    protected V remove(long key) {
+        if (key == 0)
+            return null;
+        for (int index = slot(key); keys[index] != 0; index = (index + 1) & mask) {
+            if (keys[index] == key) {
+                V previous = values[index];
+                shiftBack(index);
+                size--;
+                return previous;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of keys in this LongMap.
+     *
+     * @return the number of keys
+     */
+    protected int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether this LongMap has no keys.
+     *
+     * @return whether this LongMap is empty
+     */
+    protected boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every key from this LongMap while keeping its capacity.
+     */
+    protected void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Fills the emptied slot at the given index by moving back the keys probed past it.
+     *
+     * @param index the slot that was just emptied
+     */
+    private void shiftBack(int index) {
+        int hole = index;
+        for (int next = (hole + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            // move the key back if its home slot is not cyclically between the hole and where it sits
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = 0;
+        values[hole] = null;
+    }
+
+    /**
+     * Replaces the slots of this LongMap with the given number of slots and re-inserts every key.
+     *
+     * @param capacity the new number of slots, a power of two
+     */
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        long[] oldKeys = keys;
+        V[] oldValues = values;
+        keys = new long[capacity];
+        values = (V[]) new Object[capacity];
+        mask = capacity - 1;
+        if (oldKeys == null)
+            return;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int index = slot(oldKeys[i]);
+                while (keys[index] != 0)
+                    index = (index + 1) & mask;
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the home slot of the given key.
+     *
+     * @param key the key to hash
+     * @return the index of the first slot to probe
+     */
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Returns the number of slots needed to hold the given number of keys at a load factor of 3/4.
+     *
+     * @param expectedSize the number of keys to hold
+     * @return a power of two of at least 2
+     */
+    private static int capacityFor(int expectedSize) {
+        long needed = Math.max(2, (long) expectedSize * 4 / 3 + 1);
+        return (int) Math.min(MAX_CAPACITY, Long.highestOneBit(needed - 1) << 1);
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LongMapTest {
+
+    @Test
+    public void constructor() {
+        assertThrows(IllegalArgumentException.class, () -> new LongMap<String>(-1));
+        assertTrue(new LongMap<String>(0).isEmpty());
+    }
+
+    @Test
+    public void putAndGet() {
+        LongMap<String> map = new LongMap<>(0);
+
+        assertThrows(IllegalArgumentException.class, () -> map.put(0, "zero"));
+
+        assertNull(map.put(1, "one"));
+        assertNull(map.put(-7, "minus seven"));
+        assertEquals(map.put(1, "uno"), "one");
+        assertEquals(map.get(1), "uno");
+        assertEquals(map.get(-7), "minus seven");
+        assertNull(map.get(2));
+        assertNull(map.get(0));
+        assertEquals(map.size(), 2);
+    }
+
+    @Test
+    public void remove() {
+        LongMap<String> map = new LongMap<>(4);
+        map.put(1, "one");
+
+        assertNull(map.remove(2));
+        assertNull(map.remove(0));
+        assertEquals(map.remove(1), "one");
+        assertNull(map.remove(1));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void clear() {
+        LongMap<String> map = new LongMap<>(4);
+        map.put(1, "one");
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+    }
+
+    @Test
+    public void matchesHashMap() {
+        LongMap<Long> map = new LongMap<>(2);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(293);
+
+        for (int i = 0; i < 50_000; i++) {
+            // a small key range forces long probe chains, collisions and deletions in the middle of chains
+            long key = random.nextInt(2_000) + 1;
+            if (random.nextBoolean())
+                assertEquals(map.put(key, (long) i), expected.put(key, (long) i));
+            else
+                assertEquals(map.remove(key), expected.remove(key));
+            assertEquals(map.size(), expected.size());
+        }
+        for (long key = 1; key <= 2_000; key++)
+            assertEquals(map.get(key), expected.get(key));
+    }
+}
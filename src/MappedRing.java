@@ -0,0 +1,176 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Lock-free single-producer/single-consumer ring of variable-length records laid out in a ByteBuffer,
+ * usually a region of a memory-mapped file shared by two processes.
+ * The region starts with the consumer's position and the producer's position on separate cache lines,
+ * followed by the record data. Each record is a length followed by its bytes, padded to 8 bytes;
+ * a length of -1 tells the consumer to skip to the start of the data because the next record didn't fit at the end.
+ * Positions are published with release stores and read with acquire loads, so neither side ever makes a system call.
+ */
+public class MappedRing {
+
+    /**
+     * view of the region as longs with acquire and release access
+     */
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    /**
+     * offset of the consumer's position, the total number of bytes consumed
+     */
+    private static final int HEAD = 0;
+
+    /**
+     * offset of the producer's position, the total number of bytes produced; a cache line away from HEAD
+     */
+    private static final int TAIL = 64;
+
+    /**
+     * offset of the record data
+     */
+    private static final int DATA = 128;
+
+    /**
+     * length marking the padding at the end of the data
+     */
+    private static final int PADDING = -1;
+
+    /**
+     * the region holding the positions and the data
+     */
+    private final ByteBuffer region;
+
+    /**
+     * number of bytes of record data, a power of two
+     */
+    private final int capacity;
+
+    /**
+     * the producer's position once the claimed record is committed; only used by the producer
+     */
+    private long claimedTail = -1;
+
+    /**
+     * Returns the size of the region a MappedRing with the given data capacity needs.
+     *
+     * @param capacity the number of bytes of record data, a power of two
+     * @return the number of bytes in the region
+     */
+    protected static int regionSize(int capacity) {
+        return DATA + capacity;
+    }
+
+    /**
+     * Creates a new MappedRing over the given region; a new region must be zeroed.
+     *
+     * @param region a direct buffer whose start is aligned to 8 bytes
+     * @throws NullPointerException when the region is null
+     * @throws IllegalArgumentException when the region is not direct, not aligned, or its data isn't a power of two
+     */
+    protected MappedRing(ByteBuffer region) {
+        this.region = Objects.requireNonNull(region).slice().order(ByteOrder.nativeOrder());
+        this.capacity = region.remaining() - DATA;
+        if (!region.isDirect() || this.region.alignmentOffset(0, 8) != 0)
+            throw new IllegalArgumentException("region must be a direct buffer aligned to 8 bytes");
+        if (capacity < 16 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("the data of the region must be a power of two of at least 16 bytes");
+    }
+
+    /**
+     * Claims room for a record of the given length; must only be called by the producer.
+     * Nothing is visible to the consumer until commit is called.
+     *
+     * @param length the number of bytes in the record
+     * @return a buffer to write exactly length bytes to, or null if the ring is full
+     */
+    protected ByteBuffer claim(int length) {
+        int size = align(Integer.BYTES + length);
+        long tail = (long) LONGS.getOpaque(region, TAIL);
+        long head = (long) LONGS.getAcquire(region, HEAD);
+        int index = (int) (tail & (capacity - 1));
+        int padding = capacity - index < size ? capacity - index : 0;
+        if (size > capacity || tail + padding + size - head > capacity)
+            return null;
+        if (padding > 0) {
+            region.putInt(DATA + index, PADDING);
+            tail += padding;
+            index = 0;
+        }
+        region.putInt(DATA + index, length);
+        claimedTail = tail + size;
+        return region.slice(DATA + index + Integer.BYTES, length).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Makes the claimed record visible to the consumer; must only be called by the producer.
+     *
+     * @throws IllegalStateException when no record is claimed
+     */
+    protected void commit() {
+        if (claimedTail < 0)
+            throw new IllegalStateException("no record is claimed");
+        LONGS.setRelease(region, TAIL, claimedTail);
+        claimedTail = -1;
+    }
+
+    /**
+     * Hands every record committed so far to the given handler and frees them; must only be called by the consumer.
+     * The buffer handed to the handler is only valid while the handler runs, and a record is freed even if the
+     * handler throws. A length that doesn't fit the committed data means the region was corrupted by the other
+     * process, so every record committed so far is dropped.
+     *
+     * @param handler the handler of the records
+     * @return the number of records handled
+     * @throws IllegalStateException when a record length is out of range, after dropping the committed records
+     */
+    protected int read(Consumer<ByteBuffer> handler) {
+        long head = (long) LONGS.getOpaque(region, HEAD);
+        long tail = (long) LONGS.getAcquire(region, TAIL);
+        int records = 0;
+        while (head < tail) {
+            int index = (int) (head & (capacity - 1));
+            int length = region.getInt(DATA + index);
+            if (length == PADDING) {
+                head += capacity - index;
+                continue;
+            }
+            if (length < 0 || Integer.BYTES + (long) length > Math.min(capacity - index, tail - head)) {
+                LONGS.setRelease(region, HEAD, tail);
+                throw new IllegalStateException("record length %d at offset %d is out of range".formatted(length, index));
+            }
+            ByteBuffer record = region.slice(DATA + index + Integer.BYTES, length).order(ByteOrder.BIG_ENDIAN);
+            head += align(Integer.BYTES + length);
+            records++;
+            try {
+                handler.accept(record);
+            }
+            catch (RuntimeException e) {
+                LONGS.setRelease(region, HEAD, head);
+                throw e;
+            }
+        }
+        LONGS.setRelease(region, HEAD, head);
+        return records;
+    }
+
+    /**
+     * Returns the number of bytes of record data.
+     *
+     * @return the capacity of this MappedRing
+     */
+    protected int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Rounds the given size up to a multiple of 8.
+     */
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+}
@@ -0,0 +1,120 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MappedRingTest {
+
+    private final MappedRing ring = new MappedRing(ByteBuffer.allocateDirect(MappedRing.regionSize(64)));
+
+    private int readInts(List<Integer> into) {
+        return ring.read(record -> into.add(record.getInt()));
+    }
+
+    @Test
+    public void recordsAreInvisibleUntilCommitted() {
+        ring.claim(4).putInt(42);
+        List<Integer> read = new ArrayList<>();
+        assertEquals(readInts(read), 0);
+        ring.commit();
+        assertEquals(readInts(read), 1);
+        assertEquals(read, List.of(42));
+    }
+
+    @Test
+    public void fullRingRefusesClaims() {
+        // each record of 4 bytes takes 8 bytes, so 8 fit in 64
+        for (int i = 0; i < 8; i++) {
+            ring.claim(4).putInt(i);
+            ring.commit();
+        }
+        assertNull(ring.claim(4));
+        assertNull(ring.claim(100));
+        List<Integer> read = new ArrayList<>();
+        assertEquals(readInts(read), 8);
+        assertEquals(read, List.of(0, 1, 2, 3, 4, 5, 6, 7));
+        assertNotNull(ring.claim(4));
+    }
+
+    @Test
+    public void recordsWrapAround() {
+        List<Integer> read = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            // 20 bytes take 24, so records regularly don't fit at the end of the data
+            ByteBuffer record = ring.claim(20);
+            assertNotNull(record);
+            record.putInt(i).put(new byte[16]);
+            ring.commit();
+            assertEquals(readInts(read), 1);
+        }
+        assertEquals(read.size(), 100);
+        for (int i = 0; i < 100; i++)
+            assertEquals((int) read.get(i), i);
+    }
+
+    @Test
+    public void producerAndConsumerOnDifferentThreads() throws InterruptedException {
+        int count = 10_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                ByteBuffer record;
+                while ((record = ring.claim(4)) == null)
+                    Thread.yield();
+                record.putInt(i);
+                ring.commit();
+            }
+        });
+        producer.start();
+        List<Integer> read = new ArrayList<>();
+        while (read.size() < count) {
+            if (readInts(read) == 0)
+                Thread.yield();
+        }
+        producer.join();
+        for (int i = 0; i < count; i++)
+            assertEquals((int) read.get(i), i);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void heapBufferIsRejected() {
+        new MappedRing(ByteBuffer.allocate(MappedRing.regionSize(64)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void commitWithoutClaim() {
+        ring.commit();
+    }
+
+    @Test
+    public void throwingHandlerStillFreesRecord() {
+        ring.claim(4).putInt(1);
+        ring.commit();
+        assertThrows(IllegalStateException.class, () -> ring.read(record -> {
+            throw new IllegalStateException("handler failed");
+        }));
+        List<Integer> read = new ArrayList<>();
+        assertEquals(readInts(read), 0);
+    }
+
+    @Test
+    public void corruptLengthDropsCommittedRecords() {
+        ByteBuffer region = ByteBuffer.allocateDirect(MappedRing.regionSize(64)).order(ByteOrder.nativeOrder());
+        MappedRing corrupt = new MappedRing(region);
+        corrupt.claim(4).putInt(1);
+        corrupt.commit();
+        // the length of the first record, right after the two positions
+        region.putInt(128, 1000);
+        assertThrows(IllegalStateException.class, () -> corrupt.read(record -> {}));
+        assertEquals(corrupt.read(record -> {}), 0);
+
+        corrupt.claim(4).putInt(7);
+        corrupt.commit();
+        List<Integer> read = new ArrayList<>();
+        assertEquals(corrupt.read(record -> read.add(record.getInt())), 1);
+        assertEquals(read, List.of(7));
+    }
+}
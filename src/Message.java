@@ -1,4 +1,6 @@
 import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents a Message that will be sent from Applications and Devices to other Devices and Applications.
@@ -14,9 +16,65 @@ public class Message {
      */
     private final int port;
     /**
-     * the binary string payload
+     * the binary string payload; null until decoded if this Message was created in encoded form
      */
-    private final String payload;
+    private volatile String payload;
+    /**
+     * the payload encoded by codec, or null if this Message is not encoded
+     */
+    private final byte[] encoded;
+    /**
+     * the PayloadCodec the payload was encoded with, or null if this Message is not encoded
+     */
+    private final PayloadCodec codec;
+    /**
+     * whether the sender and senderPort headers are set
+     */
+    private final boolean hasSender;
+    /**
+     * the unique Device ID of the sender, if hasSender
+     */
+    private final int sender;
+    /**
+     * the port of the sending Application on its Device, if hasSender
+     */
+    private final int senderPort;
+    /**
+     * the ID matching a request to its reply; 0 if this Message is neither
+     */
+    private final long correlation;
+    /**
+     * whether this Message is the reply to the request with the same correlation ID
+     */
+    private final boolean reply;
+    /**
+     * whether this Message expires at expiresAt
+     */
+    private final boolean expires;
+    /**
+     * the System.nanoTime() after which this Message is dropped instead of delivered, if expires
+     */
+    private final long expiresAt;
+    /**
+     * whether checksum holds the PayloadChecksum of the payload
+     */
+    private final boolean hasChecksum;
+    /**
+     * the CRC32C of the payload computed when this Message was created, if hasChecksum
+     */
+    private final int checksum;
+    /**
+     * the ID the sender numbered this Message with, increasing per sender; 0 if this Message has none
+     */
+    private final long id;
+    /**
+     * whether the payload is a batch of coalesced Messages framed by Coalescer.pack
+     */
+    private final boolean batch;
+    /**
+     * the per-hop timestamps while this Message is traced by a MessageTracer; never shared with another Message
+     */
+    private MessageTracer.Trace trace;
 
     /**
      * Creates a new Message with no error checking.
@@ -26,9 +84,34 @@ public class Message {
      * @param payload content of the Message itself
      */
     protected Message(int recipient, int port, String payload) {
+        this(recipient, port, payload, null, null, false, 0, 0, 0, false, false, 0, false, 0, 0, false, null);
+    }
+
+    /**
+     * Creates a Message with every header given; the with methods copy a Message through this constructor.
+     * The trace is copied rather than shared, so stamping or ending the trace of one Message leaves the other alone.
+     */
+    private Message(int recipient, int port, String payload, byte[] encoded, PayloadCodec codec,
+                    boolean hasSender, int sender, int senderPort, long correlation, boolean reply,
+                    boolean expires, long expiresAt, boolean hasChecksum, int checksum, long id, boolean batch,
+                    MessageTracer.Trace trace) {
         this.recipient = recipient;
         this.port = port;
         this.payload = payload;
+        this.encoded = encoded;
+        this.codec = codec;
+        this.hasSender = hasSender;
+        this.sender = sender;
+        this.senderPort = senderPort;
+        this.correlation = correlation;
+        this.reply = reply;
+        this.expires = expires;
+        this.expiresAt = expiresAt;
+        this.hasChecksum = hasChecksum;
+        this.checksum = checksum;
+        this.id = id;
+        this.batch = batch;
+        this.trace = trace == null ? null : trace.copy();
     }
 
     /**
@@ -41,25 +124,60 @@ public class Message {
      * @throws NullPointerException when the payload is null
      * @throws IllegalArgumentException when the payload is empty or only whitespace
      * @throws IllegalArgumentException when the payload isn't binary
-     * Calls Message.binaryString(payload)
+     * Calls PayloadInterner.lookup(payload) and only validates the payload if it isn't interned, then PayloadInterner.intern(payload),
+     *   which adds it on its second sighting
+     * Calls PayloadChecksum.compute(payload) while a PayloadChecksum is installed
      */
     protected static Message of(int recipient, int port, String payload) {
         Objects.requireNonNull(payload);
-        if (payload.trim().length() == 0)
-            throw new IllegalArgumentException("payload cannot be empty or only whitespace");
-        if (!binaryString(payload))
-            throw new IllegalArgumentException("payload must be a binary string");
+        String canonical = PayloadInterner.lookup(payload);
+        if (canonical != null) {
+            payload = canonical;
+        }
+        else {
+            if (payload.trim().length() == 0)
+                throw new IllegalArgumentException("payload cannot be empty or only whitespace");
+            if (!matchesBinary(payload))
+                throw new IllegalArgumentException("payload must be a binary string");
+            payload = PayloadInterner.intern(payload);
+        }
+        if (PayloadChecksum.enabled())
+            return new Message(recipient, port, payload, null, null, false, 0, 0, 0, false, false, 0, true, PayloadChecksum.compute(payload), 0, false, null);
         return new Message(recipient, port, payload);
     }
 
+    /**
+     * Static factory method to create a new Message from a payload encoded by the given PayloadCodec,
+     * such as one read back from a transport or a file. The payload is only decoded when it is read.
+     *
+     * @param recipient the unique Device identifier to send the Message to
+     * @param port the unique port number of the Application on the Device to send the Message to
+     * @param encoded the payload as returned by codec.encode
+     * @param codec the PayloadCodec the payload was encoded with
+     * @return a new Message in encoded form
+     * @throws NullPointerException when the encoded payload or the codec is null
+     */
+    protected static Message ofEncoded(int recipient, int port, byte[] encoded, PayloadCodec codec) {
+        return new Message(recipient, port, null, Objects.requireNonNull(encoded), Objects.requireNonNull(codec),
+                false, 0, 0, 0, false, false, 0, false, 0, 0, false, null);
+    }
+
     /**
      * Static method to check if the given string is binary.
      *
      * @param string the string to match against
      * @return whether the string is binary
+     * Calls PayloadInterner.isInterned(string) and skips the check if the string is interned; never adds the string
      */
     protected static boolean binaryString(String string) {
         Objects.requireNonNull(string);
+        return PayloadInterner.isInterned(string) || matchesBinary(string);
+    }
+
+    /**
+     * Checks if the given string is binary without looking it up.
+     */
+    private static boolean matchesBinary(String string) {
         return string.matches("^[0|1]+$");
     }
 
@@ -87,6 +205,261 @@ public class Message {
      * @return payload of this Message
      */
     protected String payload() {
+        String payload = this.payload;
+        if (payload == null) {
+            payload = codec.decode(encoded);
+            this.payload = payload;
+        }
         return payload;
     }
+
+    /**
+     * Returns the number of bits in the payload of this Message without decoding it.
+     *
+     * @return the length of the payload
+     */
+    protected int payloadLength() {
+        String payload = this.payload;
+        return payload != null ? payload.length() : codec.decodedLength(encoded);
+    }
+
+    /**
+     * Returns a copy of this Message whose payload is encoded with the given PayloadCodec.
+     * The copy only holds the encoded form and decodes it the first time its payload is read.
+     *
+     * @param codec the PayloadCodec to encode the payload with
+     * @return this Message if it is already encoded with the codec, otherwise an encoded copy
+     * @throws NullPointerException when the codec is null
+     */
+    protected Message encode(PayloadCodec codec) {
+        Objects.requireNonNull(codec);
+        if (this.codec == codec)
+            return this;
+        return new Message(recipient, port, null, codec.encode(payload()), codec, hasSender, sender, senderPort,
+                correlation, reply, expires, expiresAt, hasChecksum, checksum, id, batch, trace);
+    }
+
+    /**
+     * Returns whether this Message carries an encoded payload.
+     *
+     * @return whether this Message was encoded with a PayloadCodec
+     */
+    protected boolean isEncoded() {
+        return codec != null;
+    }
+
+    /**
+     * Returns the PayloadCodec the payload of this Message was encoded with.
+     *
+     * @return the codec of this Message or null if it is not encoded
+     */
+    protected PayloadCodec codec() {
+        return codec;
+    }
+
+    /**
+     * Returns the encoded payload of this Message; must not be modified.
+     *
+     * @return the encoded payload or null if this Message is not encoded
+     */
+    protected byte[] encodedPayload() {
+        return encoded;
+    }
+
+    /**
+     * Returns a copy of this Message that says which Device and port it was sent from, so it can be replied to.
+     *
+     * @param sender the unique identifier of the sending Device
+     * @param senderPort the port of the sending Application on that Device
+     * @return a copy of this Message with the sender headers set
+     */
+    protected Message withSender(int sender, int senderPort) {
+        return new Message(recipient, port, payload, encoded, codec, true, sender, senderPort,
+                correlation, reply, expires, expiresAt, hasChecksum, checksum, id, batch, trace);
+    }
+
+    /**
+     * Returns a copy of this Message with the given sender headers as it leaves the sending Application. Unlike
+     * withSender, the copy keeps this Message's trace, since it is the same Message on its way and not a new one.
+     *
+     * @param sender the unique identifier of the sending Device
+     * @param senderPort the port of the sending Application on that Device
+     * @return a copy of this Message with the sender headers set and the same trace
+     */
+    protected Message sentBy(int sender, int senderPort) {
+        Message message = withSender(sender, senderPort);
+        message.trace = trace;
+        return message;
+    }
+
+    /**
+     * Returns a copy of this Message that is a request or the reply to a request with the given correlation ID.
+     *
+     * @param correlation the non-zero ID matching a request to its reply
+     * @param reply whether the copy is the reply rather than the request
+     * @return a copy of this Message with the correlation headers set
+     * @throws IllegalArgumentException when the correlation ID is 0
+     */
+    protected Message withCorrelation(long correlation, boolean reply) {
+        if (correlation == 0)
+            throw new IllegalArgumentException("correlation ID cannot be 0");
+        return new Message(recipient, port, payload, encoded, codec, hasSender, sender, senderPort,
+                correlation, reply, expires, expiresAt, hasChecksum, checksum, id, batch, trace);
+    }
+
+    /**
+     * Returns a copy of this Message that is dropped instead of delivered once the given time to live has passed.
+     *
+     * @param ttl how long from now the copy may still be delivered
+     * @param unit the unit of the time to live
+     * @return a copy of this Message that expires
+     */
+    protected Message withTtl(long ttl, TimeUnit unit) {
+        return new Message(recipient, port, payload, encoded, codec, hasSender, sender, senderPort,
+                correlation, reply, true, System.nanoTime() + unit.toNanos(ttl), hasChecksum, checksum, id, batch, trace);
+    }
+
+    /**
+     * Returns whether this Message has a time to live.
+     *
+     * @return whether this Message expires
+     */
+    protected boolean expires() {
+        return expires;
+    }
+
+    /**
+     * Returns how much of the time to live of this Message is left, for a copy sent elsewhere to expire at the same
+     * time.
+     *
+     * @return the remaining time to live in nanoseconds, not below 0, or 0 if this Message doesn't expire
+     */
+    protected long remainingTtlNanos() {
+        return expires ? Math.max(expiresAt - System.nanoTime(), 0) : 0;
+    }
+
+    /**
+     * Returns whether this Message has a time to live that has passed.
+     *
+     * @return whether this Message expired and must not be delivered
+     */
+    protected boolean isExpired() {
+        return expires && System.nanoTime() - expiresAt >= 0;
+    }
+
+    /**
+     * Returns a copy of this Message numbered with the given ID, so a Device with a DuplicateFilter receives it once
+     * however many times it is sent. A sender must number its Messages with increasing IDs.
+     *
+     * @param id the positive ID of the Message among those of its sender
+     * @return a copy of this Message with the ID set
+     * @throws IllegalArgumentException when the ID is not positive
+     */
+    protected Message withId(long id) {
+        if (id <= 0)
+            throw new IllegalArgumentException("message ID must be positive");
+        return new Message(recipient, port, payload, encoded, codec, hasSender, sender, senderPort,
+                correlation, reply, expires, expiresAt, hasChecksum, checksum, id, batch, trace);
+    }
+
+    /**
+     * Returns the ID the sender numbered this Message with.
+     *
+     * @return the ID of this Message or 0 if it has none
+     */
+    protected long id() {
+        return id;
+    }
+
+    /**
+     * Returns a copy of this Message whose payload is a batch of Messages framed by Coalescer.pack, which the
+     * receiving Device unpacks.
+     *
+     * @return a copy of this Message marked as a batch
+     */
+    protected Message asBatch() {
+        return new Message(recipient, port, payload, encoded, codec, hasSender, sender, senderPort,
+                correlation, reply, expires, expiresAt, hasChecksum, checksum, id, true, trace);
+    }
+
+    /**
+     * Returns whether the payload of this Message is a batch of Messages.
+     *
+     * @return whether this Message is a batch
+     */
+    protected boolean isBatch() {
+        return batch;
+    }
+
+    /**
+     * Returns whether this Message has a checksum of its payload.
+     *
+     * @return whether this Message was created while a PayloadChecksum was installed
+     */
+    protected boolean hasChecksum() {
+        return hasChecksum;
+    }
+
+    /**
+     * Returns the checksum of the payload; only meaningful if hasChecksum() is true.
+     *
+     * @return the CRC32C of the payload computed when this Message was created
+     */
+    protected int checksum() {
+        return checksum;
+    }
+
+    /**
+     * Returns the sender of this Message, if known.
+     *
+     * @return the identifier of the sending Device or an empty OptionalInt if the sender is unknown
+     */
+    protected OptionalInt sender() {
+        return hasSender ? OptionalInt.of(sender) : OptionalInt.empty();
+    }
+
+    /**
+     * Returns the port of the sending Application; only meaningful if sender() is present.
+     *
+     * @return port the sending Application listens on
+     */
+    protected int senderPort() {
+        return senderPort;
+    }
+
+    /**
+     * Returns the ID matching a request to its reply.
+     *
+     * @return the correlation ID of this Message or 0 if it is neither a request nor a reply
+     */
+    protected long correlation() {
+        return correlation;
+    }
+
+    /**
+     * Returns whether this Message is the reply to the request with the same correlation ID.
+     *
+     * @return whether this Message is a reply
+     */
+    protected boolean isReply() {
+        return reply;
+    }
+
+    /**
+     * Returns the trace a MessageTracer keeps on this Message.
+     *
+     * @return the trace of this Message or null if it isn't being traced
+     */
+    protected MessageTracer.Trace trace() {
+        return trace;
+    }
+
+    /**
+     * Sets the trace a MessageTracer keeps on this Message.
+     *
+     * @param trace the trace of this Message or null to stop tracing it
+     */
+    protected void setTrace(MessageTracer.Trace trace) {
+        this.trace = trace;
+    }
 }
@@ -0,0 +1,238 @@
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Application that exposes the Messages arriving on its port as a Flow.Publisher, so consumers pull them at their
+ * own pace instead of being called back. Messages wait in a bounded buffer until the Subscriber requests them;
+ * once the buffer is full further Messages are refused, which the sender sees as a failed send.
+ * Like a port, the publisher has at most one Subscriber at a time; after it cancels, another may subscribe and
+ * receives the Messages still buffered.
+ */
+public class MessagePublisher extends AbstractApplication implements Flow.Publisher<Message> {
+
+    /**
+     * Logger to log descriptive warning messages instead of throwing exceptions
+     */
+    private static final Logger logger = Logger.getLogger(MessagePublisher.class.getName());
+
+    /**
+     * Messages received and not yet requested
+     */
+    private final ArrayBlockingQueue<Message> buffer;
+
+    /**
+     * the Subscription of the current Subscriber; null when there is none
+     */
+    private final AtomicReference<PortSubscription> subscription = new AtomicReference<>();
+
+    /**
+     * number of Messages refused because the buffer was full
+     */
+    private final LongAdder refused = new LongAdder();
+
+    /**
+     * whether close was called, after which the Subscriber completes once the buffer is drained
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a new MessagePublisher on the given Device that buffers up to the given number of Messages.
+     *
+     * @param device the Device this MessagePublisher will be connected to
+     * @param capacity the largest number of Messages buffered until they are requested
+     * @throws IllegalArgumentException when the capacity is not positive
+     */
+    protected MessagePublisher(Device device, int capacity) {
+        super(device);
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Makes the given Subscriber the one Messages are published to.
+     *
+     * @param subscriber the Subscriber to publish to
+     * @throws NullPointerException when the Subscriber is null
+     * Signals onError with an IllegalStateException to the Subscriber if there already is one
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super Message> subscriber) {
+        Objects.requireNonNull(subscriber);
+        PortSubscription subscription = new PortSubscription(subscriber);
+        if (!this.subscription.compareAndSet(null, subscription)) {
+            subscription.cancelled = true;
+            subscriber.onSubscribe(subscription);
+            subscriber.onError(new IllegalStateException("port of device %s already has a subscriber".formatted(device())));
+            return;
+        }
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    /**
+     * Buffers the given Message for the Subscriber.
+     *
+     * @param message the Message that arrived on the port
+     * @return whether the Message was buffered
+     * Logs at FINE and returns false if the buffer is full or this MessagePublisher is closed, since a refusal is
+     *   back-pressure the sender may retry
+     */
+    @Override
+    public boolean offerMessage(Message message) {
+        Objects.requireNonNull(message);
+        if (closed || !buffer.offer(message)) {
+            refused.increment();
+            logger.log(Level.FINE, "message publisher on device %s refused a message because its buffer is full or it is closed".formatted(device()));
+            return false;
+        }
+        PortSubscription subscription = this.subscription.get();
+        if (subscription != null)
+            subscription.drain();
+        return true;
+    }
+
+    /**
+     * @param message the Message that arrived on the port
+     * Calls offerMessage(message)
+     */
+    @Override
+    public void receiveMessage(Message message) {
+        offerMessage(message);
+    }
+
+    /**
+     * Broadcasts are not addressed to a port, so they are not published.
+     *
+     * @param payload the broadcast payload
+     */
+    @Override
+    public void receiveBroadcastMessage(String payload) {}
+
+    /**
+     * Refuses further Messages and completes the Subscriber once it has received the buffered ones.
+     */
+    protected void close() {
+        closed = true;
+        PortSubscription subscription = this.subscription.get();
+        if (subscription != null)
+            subscription.drain();
+    }
+
+    /**
+     * Returns the number of Messages buffered and not yet requested.
+     *
+     * @return the number of buffered Messages
+     */
+    protected int buffered() {
+        return buffer.size();
+    }
+
+    /**
+     * Returns the number of Messages refused because the buffer was full or this MessagePublisher was closed.
+     *
+     * @return the number of refused Messages
+     */
+    protected long refused() {
+        return refused.sum();
+    }
+
+    /**
+     * The link between this MessagePublisher and its Subscriber; signals are serialized by whichever thread
+     * wins the work-in-progress counter.
+     */
+    private class PortSubscription implements Flow.Subscription {
+
+        /**
+         * the Subscriber Messages are published to
+         */
+        private final Flow.Subscriber<? super Message> subscriber;
+
+        /**
+         * number of Messages requested and not yet published, capped at Long.MAX_VALUE for unbounded
+         */
+        private final AtomicLong demand = new AtomicLong();
+
+        /**
+         * number of drain calls that still have to be run by the thread draining
+         */
+        private final AtomicInteger wip = new AtomicInteger();
+
+        /**
+         * whether the Subscriber cancelled or was signalled a terminal event
+         */
+        private volatile boolean cancelled = false;
+
+        /**
+         * the non-positive amount a request asked for, or 0; reported to the Subscriber by the next drain
+         */
+        private volatile long badRequest = 0;
+
+        /**
+         * Creates a new PortSubscription for the given Subscriber.
+         */
+        private PortSubscription(Flow.Subscriber<? super Message> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * @param n the number of further Messages the Subscriber wants
+         * Signals onError with an IllegalArgumentException and cancels if n is not positive
+         */
+        @Override
+        public void request(long n) {
+            if (n <= 0)
+                badRequest = n == 0 ? -1 : n;
+            else
+                demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            drain();
+        }
+
+        /**
+         * Stops publishing to the Subscriber; the buffered Messages are kept for the next one.
+         */
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscription.compareAndSet(this, null);
+        }
+
+        /**
+         * Publishes as many buffered Messages as are requested, and the terminal event when it is due.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0)
+                return;
+            int missed = 1;
+            do {
+                while (!cancelled) {
+                    if (badRequest != 0) {
+                        cancel();
+                        subscriber.onError(new IllegalArgumentException("non-positive request %d".formatted(badRequest)));
+                        break;
+                    }
+                    if (demand.get() == 0)
+                        break;
+                    Message message = buffer.poll();
+                    if (message == null)
+                        break;
+                    if (demand.get() != Long.MAX_VALUE)
+                        demand.decrementAndGet();
+                    subscriber.onNext(message);
+                }
+                if (!cancelled && closed && buffer.isEmpty()) {
+                    cancel();
+                    subscriber.onComplete();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
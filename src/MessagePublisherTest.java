@@ -0,0 +1,153 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MessagePublisherTest {
+
+    private final Motherboard motherboard = new Motherboard();
+    private final Mock.MockDevice device = new Mock.MockDevice(1, false);
+    private final Mock.MockDevice sender = new Mock.MockDevice(2, false);
+    private MessagePublisher publisher;
+
+    @Before
+    public void setup() {
+        device.setMotherboard(motherboard);
+        sender.setMotherboard(motherboard);
+        publisher = new MessagePublisher(device, 2);
+        publisher.connectToPort(1);
+    }
+
+    private static class Recorder implements Flow.Subscriber<Message> {
+        private final List<Message> received = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Message item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    @Test
+    public void constructor() {
+        assertThrows(IllegalArgumentException.class, () -> new MessagePublisher(device, 0));
+    }
+
+    @Test
+    public void honorsDemand() {
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        Message first = Message.of(1, 1, "1");
+        Message second = Message.of(1, 1, "10");
+        assertTrue(sender.sendMessage(first));
+        assertTrue(sender.sendMessage(second));
+        assertTrue(recorder.received.isEmpty());
+        assertEquals(publisher.buffered(), 2);
+
+        recorder.subscription.request(1);
+        assertEquals(recorder.received, List.of(first));
+        recorder.subscription.request(5);
+        assertEquals(recorder.received, List.of(first, second));
+
+        // outstanding demand is used as soon as Messages arrive
+        Message third = Message.of(1, 1, "11");
+        assertTrue(sender.sendMessage(third));
+        assertEquals(recorder.received, List.of(first, second, third));
+        assertEquals(publisher.buffered(), 0);
+    }
+
+    @Test
+    public void fullBufferRefusesSends() {
+        assertTrue(sender.sendMessage(Message.of(1, 1, "1")));
+        assertTrue(sender.sendMessage(Message.of(1, 1, "1")));
+        assertFalse(sender.sendMessage(Message.of(1, 1, "1")));
+        assertEquals(publisher.refused(), 1);
+        assertEquals(device.metrics().getMessagesRejected(), 1);
+
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        recorder.subscription.request(1);
+        assertTrue(sender.sendMessage(Message.of(1, 1, "1")));
+    }
+
+    @Test
+    public void refusedMessagesCanBeResent() {
+        device.setDuplicateFilter(new DuplicateFilter(64, 4));
+        assertTrue(sender.sendMessage(Message.of(1, 1, "1")));
+        assertTrue(sender.sendMessage(Message.of(1, 1, "1")));
+        Message message = Message.of(1, 1, "1").withSender(2, 0).withId(1);
+        assertFalse(sender.sendMessage(message));
+
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        recorder.subscription.request(3);
+        assertTrue(sender.sendMessage(message));
+        assertEquals(recorder.received.get(2), message);
+    }
+
+    @Test
+    public void oneSubscriberAtATime() {
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+        publisher.subscribe(first);
+        publisher.subscribe(second);
+        assertTrue(second.error instanceof IllegalStateException);
+        assertThrows(NullPointerException.class, () -> publisher.subscribe(null));
+
+        // after a cancel the next Subscriber gets the buffered Messages
+        Message message = Message.of(1, 1, "1");
+        sender.sendMessage(message);
+        first.subscription.cancel();
+        Recorder third = new Recorder();
+        publisher.subscribe(third);
+        third.subscription.request(1);
+        assertEquals(third.received, List.of(message));
+        assertTrue(first.received.isEmpty());
+    }
+
+    @Test
+    public void badRequest() {
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        recorder.subscription.request(0);
+        assertTrue(recorder.error instanceof IllegalArgumentException);
+        sender.sendMessage(Message.of(1, 1, "1"));
+        recorder.subscription.request(1);
+        assertTrue(recorder.received.isEmpty());
+    }
+
+    @Test
+    public void close() {
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        sender.sendMessage(Message.of(1, 1, "1"));
+        publisher.close();
+        assertFalse(recorder.completed);
+        assertFalse(sender.sendMessage(Message.of(1, 1, "1")));
+
+        recorder.subscription.request(Long.MAX_VALUE);
+        assertEquals(recorder.received.size(), 1);
+        assertTrue(recorder.completed);
+    }
+}
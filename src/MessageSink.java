@@ -0,0 +1,188 @@
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Flow.Subscriber that sends the Messages it receives through an Application, so a reactive pipeline can feed a
+ * Motherboard. It only ever has a fixed window of Messages requested, and requests the next one once a Message is
+ * sent; a send the recipient's Application refused is retried with backoff before the next Message is requested,
+ * which slows the upstream Publisher down to the pace the recipients keep. A refused Message that still can't be sent
+ * once the retry timeout passes is dropped, and so is a Message whose send failed for any other reason, since
+ * sending it again would fail the same way.
+ */
+public class MessageSink implements Flow.Subscriber<Message> {
+
+    /**
+     * Logger to log descriptive warning messages instead of throwing exceptions
+     */
+    private static final Logger logger = Logger.getLogger(MessageSink.class.getName());
+
+    /**
+     * the Application Messages are sent through
+     */
+    private final Application sender;
+
+    /**
+     * the number of Messages requested at once
+     */
+    private final int window;
+
+    /**
+     * how long a refused send is retried before the Message is dropped, in nanoseconds
+     */
+    private final long retryTimeoutNanos;
+
+    /**
+     * waits between retries; only used by the thread signalling onNext
+     */
+    private final BackoffIdleStrategy idle = new BackoffIdleStrategy(0, 10, TimeUnit.MICROSECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(1));
+
+    /**
+     * number of Messages sent
+     */
+    private final LongAdder sent = new LongAdder();
+
+    /**
+     * number of Messages dropped because they were refused past the retry timeout or couldn't be sent at all
+     */
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * the Subscription to the upstream Publisher; null until subscribed
+     */
+    private volatile Flow.Subscription subscription = null;
+
+    /**
+     * whether the upstream Publisher completed or failed
+     */
+    private volatile boolean done = false;
+
+    /**
+     * the error the upstream Publisher failed with, if any
+     */
+    private volatile Throwable error = null;
+
+    /**
+     * Creates a new MessageSink.
+     *
+     * @param sender the Application Messages are sent through
+     * @param window the number of Messages requested at once
+     * @param retryTimeout how long a refused send is retried before the Message is dropped
+     * @param unit the unit of the retry timeout
+     * @throws NullPointerException when the Application is null
+     * @throws IllegalArgumentException when the window is not positive or the retry timeout is negative
+     */
+    protected MessageSink(Application sender, int window, long retryTimeout, TimeUnit unit) {
+        if (window <= 0 || retryTimeout < 0)
+            throw new IllegalArgumentException("window must be positive and the retry timeout can't be negative");
+        this.sender = Objects.requireNonNull(sender);
+        this.window = window;
+        this.retryTimeoutNanos = unit.toNanos(retryTimeout);
+    }
+
+    /**
+     * @param subscription the Subscription to the upstream Publisher
+     * Cancels the given Subscription if this MessageSink is already subscribed, and requests the window otherwise
+     */
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription);
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(window);
+    }
+
+    /**
+     * @param message the Message to send
+     * Calls sender.trySendMessage(message) while the recipient's Application refuses it and the retry timeout hasn't
+     *   passed, then requests the next Message
+     * Logs a warning if the Message is dropped
+     */
+    @Override
+    public void onNext(Message message) {
+        Objects.requireNonNull(message);
+        long deadline = System.nanoTime() + retryTimeoutNanos;
+        SendOutcome outcome;
+        while ((outcome = sender.trySendMessage(message)) != SendOutcome.SENT) {
+            if (outcome != SendOutcome.REFUSED || System.nanoTime() - deadline >= 0) {
+                dropped.increment();
+                logger.log(Level.WARNING, "message to device with ID %d couldn't be sent so it was dropped".formatted(message.recipient()));
+                subscription.request(1);
+                return;
+            }
+            idle.idle(0);
+        }
+        idle.idle(1);
+        sent.increment();
+        subscription.request(1);
+    }
+
+    /**
+     * @param throwable the error the upstream Publisher failed with
+     */
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        done = true;
+    }
+
+    /**
+     * Marks the upstream Publisher as completed.
+     */
+    @Override
+    public void onComplete() {
+        done = true;
+    }
+
+    /**
+     * Stops requesting Messages from the upstream Publisher.
+     */
+    protected void cancel() {
+        Flow.Subscription subscription = this.subscription;
+        if (subscription != null)
+            subscription.cancel();
+    }
+
+    /**
+     * Returns the number of Messages sent.
+     *
+     * @return the number of sent Messages
+     */
+    protected long sent() {
+        return sent.sum();
+    }
+
+    /**
+     * Returns the number of Messages dropped because they were refused past the retry timeout or couldn't be sent at all.
+     *
+     * @return the number of dropped Messages
+     */
+    protected long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns whether the upstream Publisher completed or failed.
+     *
+     * @return whether no more Messages will arrive
+     */
+    protected boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Returns the error the upstream Publisher failed with, if any.
+     *
+     * @return the error or an empty Optional if the Publisher hasn't failed
+     */
+    protected Optional<Throwable> error() {
+        return Optional.ofNullable(error);
+    }
+}
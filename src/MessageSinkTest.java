@@ -0,0 +1,142 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MessageSinkTest {
+
+    @Test
+    public void constructor() {
+        Mock.MockApplication application = new Mock.MockApplication(new Mock.MockDevice(1, false));
+        assertThrows(NullPointerException.class, () -> new MessageSink(null, 1, 0, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new MessageSink(application, 0, 0, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new MessageSink(application, 1, -1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void requestsOneWindowAtATime() {
+        Mock.MockApplication application = new Mock.MockApplication(new Mock.MockDevice(1, false));
+        MessageSink sink = new MessageSink(application, 3, 0, TimeUnit.SECONDS);
+        List<Long> requests = new ArrayList<>();
+        sink.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                requests.add(n);
+            }
+
+            @Override
+            public void cancel() {}
+        });
+        assertEquals(requests, List.of(3L));
+
+        // not connected, so the Message is dropped once the timeout passes and the next one is requested
+        sink.onNext(Message.of(2, 1, "1"));
+        assertEquals(sink.dropped(), 1);
+        assertEquals(requests, List.of(3L, 1L));
+
+        sink.onComplete();
+        assertTrue(sink.isDone());
+        assertTrue(sink.error().isEmpty());
+    }
+
+    @Test
+    public void pipelineIntoPublisher() throws InterruptedException {
+        Motherboard motherboard = new Motherboard();
+        Mock.MockDevice from = new Mock.MockDevice(1, false);
+        Mock.MockDevice to = new Mock.MockDevice(2, false);
+        from.setMotherboard(motherboard);
+        to.setMotherboard(motherboard);
+        Mock.MockApplication application = new Mock.MockApplication(from);
+        application.connectToPort(1);
+        MessagePublisher publisher = new MessagePublisher(to, 4);
+        publisher.connectToPort(1);
+
+        List<Message> received = new ArrayList<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Message item) {
+                synchronized (received) {
+                    received.add(item);
+                }
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {}
+
+            @Override
+            public void onComplete() {}
+        });
+
+        MessageSink sink = new MessageSink(application, 8, 5, TimeUnit.SECONDS);
+        try (SubmissionPublisher<Message> upstream = new SubmissionPublisher<>()) {
+            upstream.subscribe(sink);
+            for (int i = 0; i < 100; i++)
+                upstream.submit(Message.of(2, 1, Integer.toBinaryString(i)));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!sink.isDone() && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertTrue(sink.isDone());
+        assertEquals(sink.sent(), 100);
+        assertEquals(sink.dropped(), 0);
+        synchronized (received) {
+            assertEquals(received.size(), 100);
+            assertEquals(received.get(99).payload(), Integer.toBinaryString(99));
+        }
+    }
+
+    @Test
+    public void onlyRefusalsAreRetried() {
+        Motherboard motherboard = new Motherboard();
+        Mock.MockDevice from = new Mock.MockDevice(1, false);
+        Mock.MockDevice to = new Mock.MockDevice(2, false);
+        from.setMotherboard(motherboard);
+        to.setMotherboard(motherboard);
+        Mock.MockApplication application = new Mock.MockApplication(from);
+        application.connectToPort(1);
+        int[] offers = {0};
+        Mock.MockApplication receiver = new Mock.MockApplication(to) {
+            @Override
+            public boolean offerMessage(Message message) {
+                // a failed send of its own while handling the Message doesn't change what the sink is told
+                sendMessage(Message.of(9, 1, "1"));
+                return ++offers[0] > 3;
+            }
+        };
+        receiver.connectToPort(1);
+        MessageSink sink = new MessageSink(application, 1, 10, TimeUnit.SECONDS);
+        sink.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {}
+
+            @Override
+            public void cancel() {}
+        });
+
+        // refused three times, then accepted
+        sink.onNext(Message.of(2, 1, "1"));
+        assertEquals(offers[0], 4);
+        assertEquals(sink.sent(), 1);
+
+        // no Device with ID 3, so the send fails straight away instead of being retried until the timeout
+        long start = System.nanoTime();
+        sink.onNext(Message.of(3, 1, "1"));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(sink.dropped(), 1);
+        assertEquals(sink.sent(), 1);
+    }
+}
@@ -1,3 +1,5 @@
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -45,4 +47,78 @@ public class MessageTest {
         Message message1 = Message.of(2, 2, "100");
         assertEquals(message1.payload(), "100");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void withSender() {
+        Message message = Message.of(2, 2, "100");
+        Message sent = message.withSender(1, 3);
+
+        assertTrue(message.sender().isEmpty());
+        assertEquals(sent.sender().getAsInt(), 1);
+        assertEquals(sent.senderPort(), 3);
+        assertEquals(sent.recipient(), 2);
+        assertEquals(sent.payload(), "100");
+    }
+
+    @Test
+    public void withCorrelation() {
+        Message message = Message.of(2, 2, "100").withSender(1, 3);
+
+        assertThrows(IllegalArgumentException.class, () -> message.withCorrelation(0, false));
+
+        Message request = message.withCorrelation(7, false);
+        Message reply = request.withCorrelation(7, true);
+        assertEquals(message.correlation(), 0);
+        assertEquals(request.correlation(), 7);
+        assertFalse(request.isReply());
+        assertTrue(reply.isReply());
+        assertEquals(reply.sender().getAsInt(), 1);
+    }
+
+    @Test
+    public void encode() {
+        PayloadCodec codec = new RunLengthCodec();
+        Message message = Message.of(2, 2, "1110").withSender(1, 1);
+
+        assertThrows(NullPointerException.class, () -> message.encode(null));
+
+        Message encoded = message.encode(codec);
+        assertFalse(message.isEncoded());
+        assertTrue(encoded.isEncoded());
+        assertSame(encoded.codec(), codec);
+        assertSame(encoded.encode(codec), encoded);
+        assertArrayEquals(encoded.encodedPayload(), new byte[] {1, 3, 1});
+        assertEquals(encoded.payloadLength(), 4);
+        assertEquals(encoded.payload(), "1110");
+        assertEquals(encoded.sender().getAsInt(), 1);
+    }
+
+    @Test
+    public void ofEncoded() {
+        PayloadCodec codec = new BitPackingCodec();
+
+        assertThrows(NullPointerException.class, () -> Message.ofEncoded(1, 1, null, codec));
+        assertThrows(NullPointerException.class, () -> Message.ofEncoded(1, 1, new byte[0], null));
+
+        Message message = Message.ofEncoded(1, 2, codec.encode("0110"), codec);
+        assertEquals(message.recipient(), 1);
+        assertEquals(message.port(), 2);
+        assertEquals(message.payloadLength(), 4);
+        assertEquals(message.payload(), "0110");
+    }
+
+    @Test
+    public void withTtl() {
+        Message message = Message.of(1, 2, "01").withSender(3, 4);
+        assertFalse(message.expires());
+        assertFalse(message.isExpired());
+
+        Message live = message.withTtl(1, TimeUnit.HOURS);
+        assertTrue(live.expires());
+        assertFalse(live.isExpired());
+        assertEquals(live.sender().getAsInt(), 3);
+        assertTrue(live.withCorrelation(5, false).expires());
+
+        assertTrue(message.withTtl(0, TimeUnit.SECONDS).isExpired());
+    }
+}
@@ -0,0 +1,277 @@
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Samples Messages on their way from the sending Application to the receiving Application's handler,
+ * stamps them with System.nanoTime() at every hop and aggregates the time spent between hops into histograms.
+ * Tracing is off until a MessageTracer is installed and costs a single volatile read per hop while it is off.
+ */
+public class MessageTracer {
+
+    /**
+     * The points on the Message path where a traced Message is stamped, in the order a Message passes them.
+     */
+    public enum Hop {
+        /** AbstractApplication.sendMessage */
+        APPLICATION_SEND,
+        /** AbstractDevice.sendMessage */
+        DEVICE_SEND,
+        /** Motherboard.sendMessage */
+        MOTHERBOARD_SEND,
+        /** AbstractDevice.receiveMessage */
+        DEVICE_RECEIVE,
+        /** right before the Application's receiveMessage handler is called */
+        APPLICATION_RECEIVE,
+        /** right after the Application's receiveMessage handler returned */
+        HANDLER_RETURN
+    }
+
+    /**
+     * the hops in order
+     */
+    private static final Hop[] HOPS = Hop.values();
+
+    /**
+     * the MessageTracer every hop reports to; null when tracing is off
+     */
+    private static volatile MessageTracer active = null;
+
+    /**
+     * one in this many Messages is traced
+     */
+    private final int sampleRate;
+
+    /**
+     * histograms[h] holds the time from the previous stamped hop to hop h
+     */
+    private final Histogram[] histograms = new Histogram[HOPS.length];
+
+    /**
+     * Creates a new MessageTracer that traces one in every sampleRate Messages.
+     *
+     * @param sampleRate how many Messages pass for every traced one; 1 traces every Message
+     * @throws IllegalArgumentException when the sample rate is not positive
+     */
+    protected MessageTracer(int sampleRate) {
+        if (sampleRate <= 0)
+            throw new IllegalArgumentException("sample rate must be positive");
+        this.sampleRate = sampleRate;
+        for (int i = 0; i < histograms.length; i++)
+            histograms[i] = new Histogram();
+    }
+
+    /**
+     * Makes the given MessageTracer the one every hop reports to.
+     *
+     * @param tracer the MessageTracer to install
+     * @throws NullPointerException when the tracer is null
+     */
+    protected static void install(MessageTracer tracer) {
+        active = Objects.requireNonNull(tracer);
+    }
+
+    /**
+     * Turns tracing off.
+     */
+    protected static void uninstall() {
+        active = null;
+    }
+
+    /**
+     * Returns the installed MessageTracer, if any.
+     *
+     * @return the installed MessageTracer or an empty Optional if tracing is off
+     */
+    protected static Optional<MessageTracer> active() {
+        return Optional.ofNullable(active);
+    }
+
+    /**
+     * Stamps the given Message at the given hop if tracing is on.
+     *
+     * @param message the Message passing the hop
+     * @param hop the hop the Message is passing
+     */
+    protected static void stamp(Message message, Hop hop) {
+        MessageTracer tracer = active;
+        if (tracer != null)
+            tracer.record(message, hop, System.nanoTime());
+    }
+
+    /**
+     * Records that the given Message passed the given hop at the given time.
+     * The sampling decision is made the first time a Message is seen, and a trace ends at HANDLER_RETURN.
+     *
+     * @param message the Message passing the hop
+     * @param hop the hop the Message is passing
+     * @param now System.nanoTime() when the Message passed the hop
+     */
+    protected void record(Message message, Hop hop, long now) {
+        Trace trace = message.trace();
+        if (trace == null || (trace != Trace.SKIPPED && hop.ordinal() <= trace.last)) {
+            trace = ThreadLocalRandom.current().nextInt(sampleRate) == 0 ? new Trace() : Trace.SKIPPED;
+            message.setTrace(trace);
+        }
+        if (trace != Trace.SKIPPED) {
+            if (trace.last >= 0)
+                histograms[hop.ordinal()].add(now - trace.times[trace.last]);
+            trace.times[hop.ordinal()] = now;
+            trace.last = hop.ordinal();
+        }
+        if (hop == Hop.HANDLER_RETURN)
+            message.setTrace(null);
+    }
+
+    /**
+     * Returns the number of latencies recorded for the time spent reaching the given hop.
+     *
+     * @param hop the hop to look up
+     * @return the number of traced Messages that reached the hop after an earlier stamped hop
+     */
+    protected long count(Hop hop) {
+        return histograms[hop.ordinal()].count.get();
+    }
+
+    /**
+     * Returns an upper bound for the given percentile of the time spent reaching the given hop.
+     *
+     * @param hop the hop to look up
+     * @param percentile the percentile between 0 and 100
+     * @return the percentile in nanoseconds, rounded up to a power of two, or 0 if nothing was recorded
+     */
+    protected long percentile(Hop hop, double percentile) {
+        return histograms[hop.ordinal()].percentile(percentile);
+    }
+
+    /**
+     * Clears every histogram of this MessageTracer.
+     */
+    protected void reset() {
+        for (Histogram histogram : histograms)
+            histogram.reset();
+    }
+
+    /**
+     * Returns a table with the count, mean, p50, p99 and maximum time in nanoseconds spent reaching each hop.
+     *
+     * @return a printable report of the per-hop latencies
+     */
+    protected String report() {
+        StringBuilder report = new StringBuilder("%-20s %10s %12s %12s %12s %12s%n".formatted("hop", "count", "mean(ns)", "p50(ns)", "p99(ns)", "max(ns)"));
+        for (Hop hop : HOPS) {
+            Histogram histogram = histograms[hop.ordinal()];
+            long count = histogram.count.get();
+            report.append("%-20s %10d %12d %12d %12d %12d%n".formatted(hop, count, count == 0 ? 0 : histogram.sum.get() / count,
+                    histogram.percentile(50), histogram.percentile(99), histogram.max.get()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Timestamps of one traced Message.
+     */
+    protected static class Trace {
+
+        /**
+         * marks a Message that was seen but not sampled
+         */
+        private static final Trace SKIPPED = new Trace();
+
+        /**
+         * times[h] is when the Message passed hop h
+         */
+        private final long[] times = new long[HOPS.length];
+
+        /**
+         * the last hop stamped, or -1 if none
+         */
+        private int last = -1;
+
+        /**
+         * Returns a Trace with the same timestamps for a copy of the traced Message, so each copy is stamped on its own.
+         *
+         * @return a new Trace, or SKIPPED if this Trace is SKIPPED
+         */
+        protected Trace copy() {
+            if (this == SKIPPED)
+                return SKIPPED;
+            Trace copy = new Trace();
+            System.arraycopy(times, 0, copy.times, 0, times.length);
+            copy.last = last;
+            return copy;
+        }
+    }
+
+    /**
+     * Lock-free histogram with one bucket per power of two.
+     */
+    private static class Histogram {
+
+        /**
+         * buckets[b] counts the values v with 2^(b-1) &lt; v &lt;= 2^b
+         */
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+
+        /**
+         * number of values recorded
+         */
+        private final AtomicLong count = new AtomicLong();
+
+        /**
+         * sum of the values recorded
+         */
+        private final AtomicLong sum = new AtomicLong();
+
+        /**
+         * largest value recorded
+         */
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Records the given value; negative values count as 0.
+         *
+         * @param value the value to record
+         */
+        private void add(long value) {
+            value = Math.max(value, 0);
+            buckets.incrementAndGet(value <= 1 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(value - 1));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        /**
+         * Returns the upper bound of the bucket holding the given percentile.
+         *
+         * @param percentile the percentile between 0 and 100
+         * @return the percentile rounded up to a power of two, or 0 if nothing was recorded
+         */
+        private long percentile(double percentile) {
+            long total = count.get();
+            if (total == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            for (int b = 0; b < buckets.length(); b++) {
+                seen += buckets.get(b);
+                if (seen >= rank)
+                    return Math.min(1L << b, max.get());
+            }
+            return max.get();
+        }
+
+        /**
+         * Clears this Histogram.
+         */
+        private void reset() {
+            for (int b = 0; b < buckets.length(); b++)
+                buckets.set(b, 0);
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+    }
+}
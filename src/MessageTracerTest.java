@@ -0,0 +1,112 @@
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MessageTracerTest {
+
+    @After
+    public void tearDown() {
+        MessageTracer.uninstall();
+    }
+
+    @Test
+    public void constructor() {
+        assertThrows(IllegalArgumentException.class, () -> new MessageTracer(0));
+    }
+
+    @Test
+    public void install() {
+        MessageTracer tracer = new MessageTracer(1);
+
+        assertThrows(NullPointerException.class, () -> MessageTracer.install(null));
+
+        assertEquals(MessageTracer.active(), Optional.empty());
+        MessageTracer.install(tracer);
+        assertEquals(MessageTracer.active(), Optional.of(tracer));
+        MessageTracer.uninstall();
+        assertEquals(MessageTracer.active(), Optional.empty());
+    }
+
+    @Test
+    public void record() {
+        MessageTracer tracer = new MessageTracer(1);
+        Message message = Message.of(1, 1, "100");
+
+        tracer.record(message, MessageTracer.Hop.APPLICATION_SEND, 100);
+        tracer.record(message, MessageTracer.Hop.MOTHERBOARD_SEND, 400);
+        tracer.record(message, MessageTracer.Hop.HANDLER_RETURN, 1000);
+
+        assertEquals(tracer.count(MessageTracer.Hop.APPLICATION_SEND), 0);
+        assertEquals(tracer.count(MessageTracer.Hop.MOTHERBOARD_SEND), 1);
+        assertEquals(tracer.percentile(MessageTracer.Hop.MOTHERBOARD_SEND, 99), 300);
+        assertEquals(tracer.percentile(MessageTracer.Hop.HANDLER_RETURN, 50), 600);
+        assertEquals(tracer.percentile(MessageTracer.Hop.DEVICE_SEND, 50), 0);
+        assertNull(message.trace());
+
+        // a Message that is sent again starts a new trace
+        tracer.record(message, MessageTracer.Hop.DEVICE_SEND, 2000);
+        tracer.record(message, MessageTracer.Hop.DEVICE_SEND, 5000);
+        tracer.record(message, MessageTracer.Hop.MOTHERBOARD_SEND, 5100);
+        assertEquals(tracer.count(MessageTracer.Hop.DEVICE_SEND), 0);
+        assertEquals(tracer.count(MessageTracer.Hop.MOTHERBOARD_SEND), 2);
+
+        tracer.reset();
+        assertEquals(tracer.count(MessageTracer.Hop.MOTHERBOARD_SEND), 0);
+    }
+
+    @Test
+    public void sampling() {
+        MessageTracer tracer = new MessageTracer(Integer.MAX_VALUE);
+        for (int i = 0; i < 100; i++) {
+            Message message = Message.of(1, 1, "1");
+            tracer.record(message, MessageTracer.Hop.APPLICATION_SEND, 0);
+            tracer.record(message, MessageTracer.Hop.HANDLER_RETURN, 10);
+        }
+        assertTrue(tracer.count(MessageTracer.Hop.HANDLER_RETURN) <= 1);
+    }
+
+    @Test
+    public void stamp() {
+        Motherboard motherboard = new Motherboard();
+        Mock.MockDevice sender = new Mock.MockDevice(1, false);
+        Mock.MockDevice receiver = new Mock.MockDevice(2, false);
+        Mock.MockApplication application = new Mock.MockApplication(sender);
+        sender.setMotherboard(motherboard);
+        receiver.setMotherboard(motherboard);
+        application.connectToPort(1);
+        new Mock.MockApplication(receiver).connectToPort(2);
+        Message message = Message.of(2, 2, "100");
+
+        // tracing is off so nothing is stamped
+        assertTrue(application.sendMessage(message));
+        assertNull(message.trace());
+
+        MessageTracer tracer = new MessageTracer(1);
+        MessageTracer.install(tracer);
+        assertTrue(application.sendMessage(message));
+        for (MessageTracer.Hop hop : MessageTracer.Hop.values())
+            assertEquals(tracer.count(hop), hop == MessageTracer.Hop.APPLICATION_SEND ? 0 : 1);
+        assertTrue(tracer.report().contains("HANDLER_RETURN"));
+    }
+
+    @Test
+    public void copiesDontShareTrace() {
+        MessageTracer tracer = new MessageTracer(1);
+        Message message = Message.of(1, 1, "100");
+        tracer.record(message, MessageTracer.Hop.APPLICATION_SEND, 100);
+        Message copy = message.withSender(2, 2);
+        assertNotNull(copy.trace());
+        assertNotSame(message.trace(), copy.trace());
+
+        // ending the copy's trace leaves the original's alone
+        tracer.record(copy, MessageTracer.Hop.HANDLER_RETURN, 400);
+        assertNull(copy.trace());
+        assertNotNull(message.trace());
+        tracer.record(message, MessageTracer.Hop.DEVICE_SEND, 150);
+        assertEquals(tracer.percentile(MessageTracer.Hop.DEVICE_SEND, 50), 50);
+        assertEquals(tracer.percentile(MessageTracer.Hop.HANDLER_RETURN, 50), 300);
+    }
+}
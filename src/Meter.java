@@ -0,0 +1,93 @@
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts events on the Message path and reports how many happened per second.
+ * Marking an event only increments a LongAdder, so concurrent senders don't contend on it; the rate is worked out
+ * when it is read, from the events counted since the previous reading at least a second earlier.
+ */
+public class Meter {
+
+    /**
+     * nanoseconds in a second, the shortest interval a rate is measured over
+     */
+    private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * number of events so far
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * source of the current time in nanoseconds
+     */
+    private final LongSupplier clock;
+
+    /**
+     * when the current interval started; guarded by this
+     */
+    private long intervalStart;
+
+    /**
+     * the count when the current interval started; guarded by this
+     */
+    private long intervalCount = 0;
+
+    /**
+     * events per second over the previous interval; guarded by this
+     */
+    private double rate = 0;
+
+    /**
+     * Creates a new Meter.
+     */
+    protected Meter() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * Creates a new Meter with the given clock.
+     *
+     * @param clock the source of the current time in nanoseconds
+     * @throws NullPointerException when the clock is null
+     */
+    protected Meter(LongSupplier clock) {
+        this.clock = Objects.requireNonNull(clock);
+        this.intervalStart = clock.getAsLong();
+    }
+
+    /**
+     * Counts one event.
+     */
+    protected void mark() {
+        count.increment();
+    }
+
+    /**
+     * Returns the number of events so far.
+     *
+     * @return the number of events
+     */
+    protected long count() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the number of events per second over the last interval of at least a second that has ended.
+     *
+     * @return the events per second, or 0 during the first second
+     */
+    protected synchronized double rate() {
+        long now = clock.getAsLong();
+        long elapsed = now - intervalStart;
+        if (elapsed >= SECOND_NANOS) {
+            long current = count.sum();
+            rate = (current - intervalCount) * (double) SECOND_NANOS / elapsed;
+            intervalStart = now;
+            intervalCount = current;
+        }
+        return rate;
+    }
+}
@@ -0,0 +1,42 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MeterTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final Meter meter = new Meter(now::get);
+
+    @Test
+    public void count() {
+        assertEquals(meter.count(), 0);
+        for (int i = 0; i < 5; i++)
+            meter.mark();
+        assertEquals(meter.count(), 5);
+    }
+
+    @Test
+    public void rate() {
+        for (int i = 0; i < 10; i++)
+            meter.mark();
+        // no second has ended yet
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(meter.rate(), 0, 0);
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        assertEquals(meter.rate(), 5, 1e-9);
+
+        // the rate holds until the next second ends
+        for (int i = 0; i < 30; i++)
+            meter.mark();
+        assertEquals(meter.rate(), 5, 1e-9);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(meter.rate(), 30, 1e-9);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(3));
+        assertEquals(meter.rate(), 0, 0);
+    }
+}
@@ -1,8 +1,17 @@
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * Represents a Motherboard which will have Devices connected to it and Applications on those Devices.
@@ -19,11 +28,78 @@ public class Motherboard {
      */
     private final Map<Integer, Device> devices;
 
+    /**
+     * how Messages are handed to the Device they were routed to; null to deliver inline on the caller's thread
+     */
+    private volatile Scheduler scheduler = null;
+
+    /**
+     * mapping of port to the PayloadCodec Messages to that port are encoded with in transit
+     */
+    private final Map<Integer, PayloadCodec> codecs = new ConcurrentHashMap<>();
+
+    /**
+     * holds Messages that couldn't be delivered for retrying; null to drop them
+     */
+    private volatile DeadLetterQueue deadLetters = null;
+
+    /**
+     * fires scheduled sends; null until set
+     */
+    private volatile TimerWheel timers = null;
+
+    /**
+     * mapping of port to the RateLimiter limiting how fast Messages are sent to that port
+     */
+    private final Map<Integer, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * the pool broadcasts are fanned out on in parallel; null to fan out on the caller's thread
+     */
+    private volatile ForkJoinPool broadcastPool = null;
+
+    /**
+     * the number of Devices subscribed to broadcasts from which broadcasts are fanned out in parallel
+     */
+    private volatile int broadcastThreshold = Integer.MAX_VALUE;
+
+    /**
+     * live counters of this Motherboard, exposed over JMX
+     */
+    private final MotherboardMetrics metrics = new MotherboardMetrics(this);
+
+    /**
+     * the MBeanServer this Motherboard and its Devices are registered with; null when not registered
+     */
+    private volatile MBeanServer mbeanServer = null;
+
+    /**
+     * bumped whenever a Device attaches, detaches or changes its Applications, so cached Routes can tell they are stale
+     */
+    private final AtomicLong topologyVersion = new AtomicLong();
+
+    /**
+     * counts Messages and broadcasts to find the heaviest senders and recipients; null to not profile traffic
+     */
+    private volatile TrafficProfiler profiler = null;
+
     /**
      * creates a new Motherboard with no connected devices
      */
     protected Motherboard() {
-        devices = new HashMap<>();
+        devices = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * creates a new Motherboard with no connected devices that can hold the given number of devices without resizing
+     *
+     * @param expectedDevices how many devices this Motherboard is expected to hold
+     * @throws IllegalArgumentException when the expected number of devices is negative
+     */
+    protected Motherboard(int expectedDevices) {
+        if (expectedDevices < 0)
+            throw new IllegalArgumentException("expected number of devices cannot be negative");
+        devices = new ConcurrentHashMap<>(expectedDevices);
     }
 
     /**
@@ -33,13 +109,20 @@ public class Motherboard {
      * @param device the Device to be added
      * @return whether this Motherboard already has a Device with the identifier, and if not, "connects" with it
      * @throws NullPointerException if the given Device is null
-     * Adds to devices if successful
+     * Adds to devices and bumps the topology version if successful
+     * Calls retryDeadLetters(identifier) if successful
+     * Registers the Device's MBean if successful and this Motherboard is registered
      */
     protected boolean addDevice(Device device) {
         Objects.requireNonNull(device);
-        if (devices.containsKey(device.identifier()))
+        if (devices.putIfAbsent(device.identifier(), device) != null)
             return false;
-        devices.put(device.identifier(), device);
+        topologyVersion.incrementAndGet();
+        metrics.attached(device);
+        MBeanServer server = this.mbeanServer;
+        if (server != null)
+            register(server, device);
+        retryDeadLetters(device.identifier());
         return true;
     }
 
@@ -49,12 +132,18 @@ public class Motherboard {
      *
      * @param identifier the unique identifier of the Device to be removed
      * @return whether the Device was successfully removed from this Motherboard
-     * Removes from devices if successful
+     * Removes from devices and bumps the topology version if successful
+     * Unregisters the Device's MBean if successful and this Motherboard is registered
      */
     protected boolean removeDevice(int identifier) {
-        if (!devices.containsKey(identifier))
+        Device device = devices.remove(identifier);
+        if (device == null)
             return false;
-        devices.remove(identifier);
+        topologyVersion.incrementAndGet();
+        metrics.detached(device);
+        MBeanServer server = this.mbeanServer;
+        if (server != null)
+            unregister(server, deviceName(identifier));
         return true;
     }
 
@@ -77,23 +166,427 @@ public class Motherboard {
         return devices.containsKey(identifier);
     }
 
+    /**
+     * Returns the current topology version, which changes whenever a Device attaches, detaches or changes its
+     * Applications.
+     *
+     * @return the topology version
+     */
+    protected long topologyVersion() {
+        return topologyVersion.get();
+    }
+
+    /**
+     * Bumps the topology version after a connected Device added or removed an Application.
+     */
+    protected void topologyChanged() {
+        topologyVersion.incrementAndGet();
+    }
+
+    /**
+     * Looks up the Device with the given identifier and the Application on the given port, for a sender to cache.
+     *
+     * @param recipient the identifier of the Device
+     * @param port the port of the Application
+     * @return a Route valid for the current topology version, or null if no Device has the identifier
+     */
+    protected Route resolve(int recipient, int port) {
+        // read the version first, so a change racing the lookup leaves the Route already stale
+        long version = topologyVersion.get();
+        Device device = devices.get(recipient);
+        if (device == null)
+            return null;
+        Application application = device instanceof AbstractDevice abstractDevice ? abstractDevice.applicationOn(port) : null;
+        return new Route(version, recipient, port, device, application);
+    }
+
+    /**
+     * Returns the live counters of this Motherboard.
+     *
+     * @return the MotherboardMetrics of this Motherboard
+     */
+    protected MotherboardMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns whether the given Device itself is connected to this Motherboard, not just one with its identifier.
+     *
+     * @param device the Device to look up
+     * @return whether the Device is connected to this Motherboard
+     */
+    protected boolean hasDevice(Device device) {
+        return devices.get(device.identifier()) == device;
+    }
+
+    /**
+     * Recounts the given Device as a broadcast subscriber after it started or stopped wanting broadcast messages.
+     *
+     * @param device the Device whose subscription changed
+     * Calls metrics.subscriptionChanged(device)
+     */
+    protected void subscriptionChanged(Device device) {
+        metrics.subscriptionChanged(device);
+    }
+
+    /**
+     * Registers the MBeans of this Motherboard and of every connected AbstractDevice with the given MBeanServer,
+     * and keeps registering and unregistering Devices as they attach and detach.
+     *
+     * @param server the MBeanServer to register with, usually ManagementFactory.getPlatformMBeanServer()
+     * @return whether this Motherboard's MBean was registered
+     * @throws NullPointerException when the MBeanServer is null
+     * Logs a warning and returns false if this Motherboard is already registered or an MBean can't be registered
+     */
+    protected synchronized boolean registerMBeans(MBeanServer server) {
+        Objects.requireNonNull(server);
+        if (mbeanServer != null) {
+            logger.log(Level.WARNING, "motherboard %s is already registered with an MBean server".formatted(this));
+            return false;
+        }
+        try {
+            server.registerMBean(metrics, name());
+        }
+        catch (JMException e) {
+            logger.log(Level.WARNING, "couldn't register motherboard %s: %s".formatted(this, e));
+            return false;
+        }
+        mbeanServer = server;
+        for (Device device : devices.values())
+            register(server, device);
+        return true;
+    }
+
+    /**
+     * Unregisters the MBeans of this Motherboard and its Devices, if registered.
+     */
+    protected synchronized void unregisterMBeans() {
+        MBeanServer server = this.mbeanServer;
+        if (server == null)
+            return;
+        mbeanServer = null;
+        for (int identifier : devices.keySet())
+            unregister(server, deviceName(identifier));
+        unregister(server, name());
+    }
+
+    /**
+     * Returns the name this Motherboard's MBean is registered under.
+     *
+     * @return PCIC:type=Motherboard,name=&lt;identity hash&gt;
+     */
+    protected ObjectName name() {
+        return objectName("PCIC:type=Motherboard,name=%x".formatted(System.identityHashCode(this)));
+    }
+
+    /**
+     * Returns the name the MBean of the Device with the given identifier is registered under.
+     *
+     * @param identifier the identifier of a connected Device
+     * @return PCIC:type=Device,motherboard=&lt;identity hash&gt;,identifier=&lt;identifier&gt;
+     */
+    protected ObjectName deviceName(int identifier) {
+        return objectName("PCIC:type=Device,motherboard=%x,identifier=%d".formatted(System.identityHashCode(this), identifier));
+    }
+
+    /**
+     * Parses the given MBean name, which is always well-formed.
+     */
+    private static ObjectName objectName(String name) {
+        try {
+            return new ObjectName(name);
+        }
+        catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Registers the MBean of the given Device if it keeps DeviceMetrics.
+     *
+     * @param server the MBeanServer to register with
+     * @param device the connected Device
+     * Logs a warning if the MBean can't be registered
+     */
+    private void register(MBeanServer server, Device device) {
+        if (!(device instanceof AbstractDevice abstractDevice))
+            return;
+        try {
+            server.registerMBean(abstractDevice.metrics(), deviceName(device.identifier()));
+        }
+        catch (JMException e) {
+            logger.log(Level.WARNING, "couldn't register device with ID %d of motherboard %s: %s".formatted(device.identifier(), this, e));
+        }
+    }
+
+    /**
+     * Unregisters the MBean with the given name if it is registered.
+     *
+     * @param server the MBeanServer it was registered with
+     * @param name the name of the MBean
+     */
+    private static void unregister(MBeanServer server, ObjectName name) {
+        try {
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+        }
+        catch (JMException e) {
+            logger.log(Level.WARNING, "couldn't unregister MBean %s: %s".formatted(name, e));
+        }
+    }
+
+    /**
+     * Sets the Scheduler this Motherboard hands Messages to once it has found their recipient.
+     *
+     * @param scheduler the Scheduler to use or null to deliver Messages inline on the sender's thread
+     */
+    protected void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Returns the Scheduler this Motherboard hands Messages to, if any.
+     *
+     * @return the Scheduler of this Motherboard or an empty Optional if Messages are delivered inline
+     */
+    protected Optional<Scheduler> scheduler() {
+        return Optional.ofNullable(scheduler);
+    }
+
+    /**
+     * Sets the PayloadCodec that Messages sent to the given port are encoded with when this Motherboard routes them to a
+     * RemoteDevice, so they cross the link in that encoding. Messages delivered in process are never encoded, since the
+     * recipient would only decode them again; the other side decodes the payload when its Application reads it.
+     *
+     * @param port the port whose Messages are encoded
+     * @param codec the PayloadCodec to encode with or null to stop encoding Messages to that port
+     */
+    protected void setCodec(int port, PayloadCodec codec) {
+        if (codec == null)
+            codecs.remove(port);
+        else
+            codecs.put(port, codec);
+    }
+
+    /**
+     * Sets the DeadLetterQueue that holds Messages this Motherboard or its Devices couldn't deliver for retrying.
+     *
+     * @param deadLetters the DeadLetterQueue created for this Motherboard or null to drop undeliverable Messages
+     * @throws IllegalArgumentException when the DeadLetterQueue was created for another Motherboard
+     */
+    protected void setDeadLetterQueue(DeadLetterQueue deadLetters) {
+        if (deadLetters != null && deadLetters.motherboard() != this)
+            throw new IllegalArgumentException("dead letter queue was created for another motherboard");
+        this.deadLetters = deadLetters;
+    }
+
+    /**
+     * Returns the DeadLetterQueue of this Motherboard, if any.
+     *
+     * @return the DeadLetterQueue of this Motherboard or an empty Optional if undeliverable Messages are dropped
+     */
+    protected Optional<DeadLetterQueue> deadLetterQueue() {
+        return Optional.ofNullable(deadLetters);
+    }
+
+    /**
+     * Hands the given undeliverable Message to the DeadLetterQueue, if any.
+     *
+     * @param message the Message that couldn't be delivered
+     * @return whether the Message is held for retrying
+     */
+    protected boolean deadLetter(Message message) {
+        DeadLetterQueue deadLetters = this.deadLetters;
+        return deadLetters != null && deadLetters.offer(message);
+    }
+
+    /**
+     * Has the DeadLetterQueue, if any, retry the Messages held for the given Device now.
+     *
+     * @param identifier the identifier of a Device that attached or gained an Application
+     */
+    protected void retryDeadLetters(int identifier) {
+        DeadLetterQueue deadLetters = this.deadLetters;
+        if (deadLetters != null)
+            deadLetters.attached(identifier);
+    }
+
+    /**
+     * Sets the RateLimiter that limits how fast Messages are sent to the given port of any Device.
+     *
+     * @param port the destination port to limit
+     * @param rateLimiter the RateLimiter to use or null to stop limiting Messages to that port
+     */
+    protected void setRateLimiter(int port, RateLimiter rateLimiter) {
+        if (rateLimiter == null)
+            rateLimiters.remove(port);
+        else
+            rateLimiters.put(port, rateLimiter);
+    }
+
+    /**
+     * Has broadcasts fanned out in parallel on the given pool once enough Devices of this Motherboard subscribe to them.
+     * Every broadcast still returns only once every subscribed Device has received it.
+     *
+     * @param pool the pool to fan out on or null to always fan out on the caller's thread
+     * @param threshold the number of Devices subscribed to broadcasts from which broadcasts are fanned out in parallel
+     * @throws IllegalArgumentException when the threshold is not positive
+     */
+    protected void setParallelBroadcast(ForkJoinPool pool, int threshold) {
+        if (threshold <= 0)
+            throw new IllegalArgumentException("parallel broadcast threshold must be positive");
+        this.broadcastThreshold = threshold;
+        this.broadcastPool = pool;
+    }
+
+    /**
+     * Sets the TimerWheel that fires the sends scheduled with sendMessageAfter.
+     *
+     * @param timers the TimerWheel to schedule sends on, which must be advancing, or null to refuse scheduled sends
+     */
+    protected void setTimerWheel(TimerWheel timers) {
+        this.timers = timers;
+    }
+
+    /**
+     * Sets the TrafficProfiler every Message sent and every broadcast through this Motherboard is counted by.
+     *
+     * @param profiler the TrafficProfiler to count traffic with or null to stop profiling
+     */
+    protected void setTrafficProfiler(TrafficProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Sends the given Message once the given delay has passed; if the Message expires before then it is dropped.
+     *
+     * @param message the Message to be sent
+     * @param delay how long to wait before sending the Message
+     * @param unit the unit of the delay
+     * @return a Timeout that can cancel the send
+     * @throws NullPointerException if the Message is null
+     * @throws IllegalStateException if this Motherboard has no TimerWheel
+     * Calls sendMessage(message) on the thread advancing the TimerWheel
+     */
+    protected TimerWheel.Timeout sendMessageAfter(Message message, long delay, TimeUnit unit) {
+        Objects.requireNonNull(message);
+        TimerWheel timers = this.timers;
+        if (timers == null)
+            throw new IllegalStateException("motherboard %s has no timer wheel to schedule sends on".formatted(this));
+        return timers.schedule(() -> sendMessage(message), delay, unit);
+    }
+
     /**
      * Sends the given Message to the Message's recipient if they are connected to this motherboard.
      * Returns whether the Message was successfully sent.
      *
      * @param message the Message to be sent
      * @return whether this Motherboard is connected to a Device with identifier matching the Message's recipient
+     *   and the Device received the Message, the Scheduler accepted it for delivery, or the DeadLetterQueue holds it
+     *   for retrying, so a sender that resends on false never duplicates a Message that may still be delivered
      * @throws NullPointerException if the Device is null
-     * Logs a warning and returns false when no Device with the Message's ID is connected to this Motherboard
-     * Calls device.receiveMessage(message)
+     * Logs a warning and returns false when the Message expired, without handing it to any Device
+     * Logs a warning when no Device with the Message's ID is connected to this Motherboard
+     * Returns the result of deadLetter(message) when there is no such Device
+     * Calls MessageTracer.stamp(message, MOTHERBOARD_SEND)
+     * Calls rateLimiter.submit(message, route) when the Message's port is rate limited, route(message) otherwise
+     * Commits a FlightEvents.Send event, and a FlightEvents.Reject event when the Message expired or there is no such Device
+     * Encodes the Message with the PayloadCodec of its port, if any and it isn't encoded already
+     * Calls device.receiveMessage(message) when there is no Scheduler
+     * Calls scheduler.deliver(device, message) otherwise
+     * Counts the Message and whether it was delivered in metrics()
+     * Calls sendMessage(message, null)
      */
     protected boolean sendMessage(Message message) {
+        return sendMessage(message, null);
+    }
+
+    /**
+     * Sends the given Message like sendMessage(message), to the Device of the given Route if it is still valid, so
+     * a sender that cached the Route skips looking the recipient up.
+     *
+     * @param message the Message to be sent
+     * @param route a Route from resolve for the Message's recipient and port, or null to look the recipient up
+     * @return whether the recipient received the Message or the Scheduler accepted it
+     * @throws NullPointerException if the Message is null
+     * Looks the recipient up as sendMessage(message) does if the topology version changed since the Route was resolved
+     * Calls device.receiveMessage(message, application) with the Route's Application, if any, when there is no Scheduler
+     * Calls profiler.record(message) if a TrafficProfiler is set
+     * Calls trySendMessage(message, route)
+     */
+    protected boolean sendMessage(Message message, Route route) {
+        return trySendMessage(message, route) == SendOutcome.SENT;
+    }
+
+    /**
+     * Sends the given Message like sendMessage(message, route), telling a refusal by the recipient's Application
+     * apart from other failures; a Message handed to a Scheduler is SENT, since it is only delivered later.
+     *
+     * @param message the Message to be sent
+     * @param route a Route from resolve for the Message's recipient and port, or null to look the recipient up
+     * @return what became of the Message
+     * @throws NullPointerException if the Message is null
+     */
+    protected SendOutcome trySendMessage(Message message, Route route) {
         Objects.requireNonNull(message);
-        if (!devices.containsKey(message.recipient())) {
+        MessageTracer.stamp(message, MessageTracer.Hop.MOTHERBOARD_SEND);
+        TrafficProfiler profiler = this.profiler;
+        if (profiler != null)
+            profiler.record(message);
+        SendOutcome outcome;
+        RateLimiter rateLimiter = rateLimiters.isEmpty() ? null : rateLimiters.get(message.port());
+        if (rateLimiter != null)
+            outcome = rateLimiter.submit(message, delayed -> route(delayed, route));
+        else
+            outcome = route(message, route);
+        metrics.sent(outcome == SendOutcome.SENT);
+        return outcome;
+    }
+
+    /**
+     * Hands the given Message to its recipient once it is past any RateLimiter; see sendMessage.
+     *
+     * @param message the Message to be routed
+     * @param route a cached Route for the Message, or null
+     * @return what became of the Message
+     */
+    private SendOutcome route(Message message, Route route) {
+        FlightEvents.Send event = new FlightEvents.Send();
+        event.begin();
+        if (message.isExpired()) {
+            logger.log(Level.WARNING, "message to device with ID %d expired before motherboard %s could deliver it".formatted(message.recipient(), this));
+            FlightEvents.reject(FlightEvents.Reason.EXPIRED, message);
+            return SendOutcome.FAILED;
+        }
+        if (route != null && (route.version() != topologyVersion.get() || !route.matches(message)))
+            route = null;
+        Device device = route != null ? route.device() : devices.get(message.recipient());
+        if (device == null) {
             logger.log(Level.WARNING, "no device with ID %d is connected to motherboard %s to send the message to".formatted(message.recipient(), this));
-            return false;
+            FlightEvents.reject(FlightEvents.Reason.NO_DEVICE, message);
+            return SendOutcome.of(deadLetter(message));
         }
-        return devices.get(message.recipient()).receiveMessage(message);
+        if (!codecs.isEmpty() && !message.isEncoded() && device instanceof RemoteDevice) {
+            PayloadCodec codec = codecs.get(message.port());
+            if (codec != null)
+                message = message.encode(codec);
+        }
+        Scheduler scheduler = this.scheduler;
+        SendOutcome outcome;
+        if (scheduler != null)
+            outcome = SendOutcome.of(scheduler.deliver(device, message));
+        else if (route != null && route.application() != null)
+            outcome = ((AbstractDevice) device).tryReceiveMessage(message, route.application());
+        else if (device instanceof AbstractDevice abstractDevice)
+            outcome = abstractDevice.tryReceiveMessage(message);
+        else
+            outcome = SendOutcome.of(device.receiveMessage(message));
+        if (event.shouldCommit()) {
+            event.describe(message);
+            event.delivered = outcome == SendOutcome.SENT;
+            event.commit();
+        }
+        return outcome;
     }
 
     /**
@@ -103,21 +596,199 @@ public class Motherboard {
      * @param payload the payload to broadcast
      * @return whether any Device received the broadcast message
      * @throws NullPointerException if the payload is null
-     * Logs a warning message and returns false if the payload is not binary
-     * Calls device.receiveBroadcast()
-     * Calls device.receiveBroadcastMessage(payload)
+     * Calls sendBroadcastMessage(payload, null)
      */
     protected boolean sendBroadcastMessage(String payload) {
+        return sendBroadcastMessage(payload, null);
+    }
+
+    /**
+     * Sends the given broadcast message to all Devices connected to this Motherboard that want to receive broadcast
+     * messages, except the Device it came from, so a Device relaying broadcasts from elsewhere doesn't get them back.
+     * Returns whether the payload was broadcast.
+     *
+     * @param payload the payload to broadcast
+     * @param origin the Device that must not receive the broadcast, or null
+     * @return whether the payload was broadcast
+     * @throws NullPointerException if the payload is null
+     * Calls broadcast(payload, origin)
+     */
+    protected boolean sendBroadcastMessage(String payload, Device origin) {
+        return broadcast(payload, origin) >= 0;
+    }
+
+    /**
+     * Sends the given broadcast message to all Devices connected to this Motherboard that want to receive broadcast
+     * messages, except the Device it came from, and waits until every one of them has received it.
+     * When there is a Scheduler, every Device is handed to it instead, so a Simulation runs the broadcast in virtual
+     * time along with its other events. Otherwise, once this Motherboard has at least the parallel broadcast
+     * threshold of Devices, they are split into chunks handed to the parallel broadcast pool.
+     *
+     * @param payload the payload to broadcast
+     * @param origin the Device that must not receive the broadcast, or null
+     * @return the number of Devices that received the broadcast message or whose delivery the Scheduler accepted,
+     *   or -1 if the payload is not binary
+     * @throws NullPointerException if the payload is null
+     * Logs a warning message and returns -1 if the payload is not binary
+     * Commits a FlightEvents.Broadcast event with the fan-out, or a FlightEvents.Reject event if the payload is not binary
+     * Calls device.receiveBroadcast()
+     * Calls device.receiveBroadcastMessage(payload) when there is no Scheduler
+     * Calls scheduler.deliverBroadcast(device, payload) otherwise
+     * Counts the broadcast and its fan-out in metrics()
+     * Calls profiler.recordBroadcast(origin) if a TrafficProfiler is set
+     */
+    protected int broadcast(String payload, Device origin) {
         Objects.requireNonNull(payload);
-        if (Message.binaryString(payload)) {
-            devices.values().stream().filter(Device::receiveBroadcast).forEach(device -> {
-                device.receiveBroadcastMessage(payload);
-            });
-            return true;
+        if (!Message.binaryString(payload)) {
+            logger.log(Level.WARNING, "payload is not in the correct format (binary string)");
+            FlightEvents.reject(FlightEvents.Reason.INVALID_PAYLOAD, payload);
+            return -1;
+        }
+        TrafficProfiler profiler = this.profiler;
+        if (profiler != null)
+            profiler.recordBroadcast(origin);
+        FlightEvents.Broadcast event = new FlightEvents.Broadcast();
+        event.begin();
+        int fanOut;
+        ForkJoinPool pool = this.broadcastPool;
+        Scheduler scheduler = this.scheduler;
+        if (scheduler != null) {
+            fanOut = 0;
+            for (Device device : devices.values()) {
+                if (device != origin && device.receiveBroadcast() && scheduler.deliverBroadcast(device, payload))
+                    fanOut++;
+            }
+        }
+        else if (pool != null && metrics.getBroadcastSubscribers() >= broadcastThreshold) {
+            Device[] subscribers = devices.values().toArray(new Device[0]);
+            int chunk = Math.max(64, subscribers.length / (pool.getParallelism() * 4));
+            fanOut = pool.invoke(new FanOut(subscribers, 0, subscribers.length, chunk, payload, origin));
         }
         else {
-            logger.log(Level.WARNING, "payload is not in the correct format (binary string)");
-            return false;
+            fanOut = 0;
+            for (Device device : devices.values()) {
+                if (device != origin && device.receiveBroadcast()) {
+                    device.receiveBroadcastMessage(payload);
+                    fanOut++;
+                }
+            }
+        }
+        metrics.broadcast(fanOut);
+        if (event.shouldCommit()) {
+            event.payloadLength = payload.length();
+            event.fanOut = fanOut;
+            event.commit();
+        }
+        return fanOut;
+    }
+
+    /**
+     * Broadcasts the given payload without waiting for the Devices to receive it.
+     * The broadcast runs on the parallel broadcast pool if there is one and no Scheduler, and on the caller's thread
+     * otherwise, since a Scheduler such as a Simulation may only be used by one thread.
+     *
+     * @param payload the payload to broadcast
+     * @return a future completed with the result of broadcast(payload, null) once every Device has received it
+     * @throws NullPointerException if the payload is null
+     */
+    protected CompletableFuture<Integer> broadcastAsync(String payload) {
+        Objects.requireNonNull(payload);
+        ForkJoinPool pool = this.broadcastPool;
+        if (pool == null || scheduler != null)
+            return CompletableFuture.completedFuture(broadcast(payload, null));
+        return CompletableFuture.supplyAsync(() -> broadcast(payload, null), pool);
+    }
+
+    /**
+     * A Device and the Application on one of its ports as resolved at a topology version.
+     *
+     * @param version the topology version the Route was resolved at
+     * @param recipient the identifier of the Device
+     * @param port the port of the Application
+     * @param device the Device with the identifier
+     * @param application the Application on the port if the Device is an AbstractDevice, or null
+     */
+    protected record Route(long version, int recipient, int port, Device device, Application application) {
+
+        /**
+         * Returns whether this Route is for the recipient and port of the given Message.
+         *
+         * @param message a Message to send
+         * @return whether the Message goes where this Route leads
+         */
+        protected boolean matches(Message message) {
+            return message.recipient() == recipient && message.port() == port;
+        }
+    }
+
+    /**
+     * Hands a broadcast payload to a range of Devices, splitting the range in half until it is one chunk.
+     */
+    private static class FanOut extends RecursiveTask<Integer> {
+
+        /**
+         * version of the serialized form ForkJoinTask inherits
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * every connected Device when the broadcast started
+         */
+        private final Device[] devices;
+
+        /**
+         * the range of devices this FanOut hands the payload to
+         */
+        private final int from, to;
+
+        /**
+         * the largest range handled without splitting
+         */
+        private final int chunk;
+
+        /**
+         * the payload to broadcast
+         */
+        private final String payload;
+
+        /**
+         * the Device that must not receive the broadcast, or null
+         */
+        private final Device origin;
+
+        /**
+         * Creates a new FanOut for the given range of Devices.
+         */
+        private FanOut(Device[] devices, int from, int to, int chunk, String payload, Device origin) {
+            this.devices = devices;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.payload = payload;
+            this.origin = origin;
+        }
+
+        /**
+         * @return the number of Devices in the range that received the payload
+         */
+        @Override
+        protected Integer compute() {
+            if (to - from > chunk) {
+                int middle = (from + to) >>> 1;
+                FanOut left = new FanOut(devices, from, middle, chunk, payload, origin);
+                left.fork();
+                int right = new FanOut(devices, middle, to, chunk, payload, origin).compute();
+                return left.join() + right;
+            }
+            int fanOut = 0;
+            for (int i = from; i < to; i++) {
+                Device device = devices[i];
+                if (device != origin && device.receiveBroadcast()) {
+                    device.receiveBroadcastMessage(payload);
+                    fanOut++;
+                }
+            }
+            return fanOut;
         }
     }
 }
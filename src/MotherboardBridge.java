@@ -0,0 +1,349 @@
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Links a Motherboard to a Motherboard in another process or on another host over a non-blocking NIO channel,
+ * either TCP or a Unix domain socket. Once connected, both sides announce their Devices, and each side connects a
+ * RemoteDevice for every Device of the other side, so sending a Message to a remote Device is transparent.
+ * Broadcasts are relayed across the bridge in both directions.
+ * Frames are prefixed with their length, queued by the sending threads and written in batches by one
+ * selector-driven I/O thread, which also announces the local Devices again whenever they change.
+ */
+public class MotherboardBridge extends AbstractLink {
+
+    /**
+     * Logger to log descriptive warning messages instead of throwing exceptions
+     */
+    private static final Logger logger = Logger.getLogger(MotherboardBridge.class.getName());
+
+    /**
+     * size of the buffers used to batch writes and to read
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * the largest frame accepted from the other side; a longer length prefix means the stream is corrupt
+     */
+    private static final int MAX_FRAME = 64 * 1024 * 1024;
+
+    /**
+     * how often the I/O thread checks whether the local Devices changed and must be announced again, in milliseconds
+     */
+    private static final long ANNOUNCE_INTERVAL_MILLIS = 50;
+
+    /**
+     * the selector driving the I/O thread
+     */
+    private final Selector selector;
+
+    /**
+     * frames waiting to be written by the I/O thread
+     */
+    private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+
+    /**
+     * whether the selector was already woken up for the frames in outbound
+     */
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+
+    /**
+     * batches frames into as few writes as possible; only used by the I/O thread
+     */
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * the batch or oversized frame being written; only used by the I/O thread
+     */
+    private ByteBuffer writing = null;
+
+    /**
+     * accumulates bytes until a whole frame has arrived; only used by the I/O thread
+     */
+    private ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * the channel accepting the other side, while listening
+     */
+    private ServerSocketChannel server = null;
+
+    /**
+     * the channel to the other side once connected
+     */
+    private volatile SocketChannel channel = null;
+
+    /**
+     * the I/O thread
+     */
+    private final Thread ioThread;
+
+    /**
+     * whether this MotherboardBridge has been closed
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a new MotherboardBridge for the given Motherboard and starts its I/O thread.
+     *
+     * @param motherboard the local Motherboard
+     * @throws NullPointerException when the Motherboard is null
+     * @throws IOException when the selector can't be opened
+     */
+    protected MotherboardBridge(Motherboard motherboard) throws IOException {
+        super(motherboard);
+        this.selector = Selector.open();
+        this.ioThread = new Thread(this::loop, "bridge-io");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    /**
+     * Waits for the other side to connect at the given address.
+     *
+     * @param address a TCP address or a UnixDomainSocketAddress
+     * @return the address actually bound, which tells the chosen port when the given port is 0
+     * @throws IOException when the address can't be bound
+     */
+    protected SocketAddress listen(SocketAddress address) throws IOException {
+        ServerSocketChannel server = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        this.server = server;
+        register(server, SelectionKey.OP_ACCEPT);
+        return server.getLocalAddress();
+    }
+
+    /**
+     * Connects to the other side listening at the given address.
+     *
+     * @param address a TCP address or a UnixDomainSocketAddress
+     * @throws IOException when the connection fails
+     */
+    protected void connect(SocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        channel.configureBlocking(false);
+        attach(channel);
+    }
+
+    /**
+     * Returns whether this MotherboardBridge is connected to the other side.
+     *
+     * @return whether a channel to the other side is open
+     */
+    protected boolean connected() {
+        SocketChannel channel = this.channel;
+        return channel != null && channel.isOpen();
+    }
+
+    /**
+     * Closes the channels, stops the I/O thread and disconnects the RemoteDevices from the local Motherboard.
+     */
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            ioThread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        removeRemoteDevices();
+    }
+
+    /**
+     * Runs the I/O loop until this MotherboardBridge is closed.
+     */
+    private void loop() {
+        try {
+            while (!closed) {
+                selector.select(ANNOUNCE_INTERVAL_MILLIS);
+                wakeupPending.set(false);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable())
+                        accept();
+                    else if (key.isReadable())
+                        read();
+                }
+                selector.selectedKeys().clear();
+                if (connected())
+                    reannounce();
+                flush();
+            }
+        }
+        catch (IOException e) {
+            logger.log(Level.WARNING, "bridge of motherboard %s lost its connection: %s".formatted(motherboard, e));
+        }
+        finally {
+            closeQuietly(server);
+            closeQuietly(channel);
+            closeQuietly(selector);
+        }
+    }
+
+    /**
+     * Accepts the other side and stops listening.
+     *
+     * @throws IOException when accepting fails
+     */
+    private void accept() throws IOException {
+        SocketChannel accepted = server.accept();
+        if (accepted == null)
+            return;
+        server.close();
+        server = null;
+        accepted.configureBlocking(false);
+        attach(accepted);
+    }
+
+    /**
+     * Starts using the given channel to the other side and announces the local Devices.
+     *
+     * @param channel the connected channel
+     * @throws IOException when the channel can't be registered
+     */
+    private void attach(SocketChannel channel) throws IOException {
+        this.channel = channel;
+        register(channel, SelectionKey.OP_READ);
+        announce();
+    }
+
+    /**
+     * Registers the given channel with the selector.
+     * The registration only takes effect on the next select, so the I/O thread is woken up afterwards.
+     *
+     * @param channel the channel to register
+     * @param operations the operations to select on
+     * @throws IOException when the channel is closed
+     */
+    private void register(SelectableChannel channel, int operations) throws IOException {
+        channel.register(selector, operations);
+        selector.wakeup();
+    }
+
+    /**
+     * Reads what is available and handles every complete frame.
+     *
+     * @throws IOException when the other side closed the connection, reading failed or a frame length is out of range
+     */
+    private void read() throws IOException {
+        if (channel.read(readBuffer) < 0)
+            throw new IOException("connection closed by the other side");
+        readBuffer.flip();
+        while (readBuffer.remaining() >= Integer.BYTES) {
+            int length = readBuffer.getInt(readBuffer.position());
+            // frames are only delimited by their length, so there is no way to resynchronize after a bad one
+            if (length <= 0 || length > MAX_FRAME)
+                throw new IOException("frame length %d from the other side is out of range".formatted(length));
+            if (readBuffer.remaining() < Integer.BYTES + length) {
+                if (Integer.BYTES + length > readBuffer.capacity()) {
+                    ByteBuffer larger = ByteBuffer.allocate(Integer.BYTES + length);
+                    larger.put(readBuffer);
+                    readBuffer = larger;
+                    return;
+                }
+                break;
+            }
+            readBuffer.getInt();
+            ByteBuffer body = readBuffer.slice(readBuffer.position(), length);
+            readBuffer.position(readBuffer.position() + length);
+            handle(body);
+        }
+        readBuffer.compact();
+    }
+
+    /**
+     * Writes queued frames in batches until everything is written or the socket is full.
+     *
+     * @throws IOException when writing fails
+     */
+    private void flush() throws IOException {
+        SocketChannel channel = this.channel;
+        if (channel == null)
+            return;
+        while (true) {
+            if (writing == null || !writing.hasRemaining()) {
+                writing = nextBatch();
+                if (writing == null)
+                    break;
+            }
+            channel.write(writing);
+            if (writing.hasRemaining()) {
+                channel.keyFor(selector).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+        }
+        channel.keyFor(selector).interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Copies as many queued frames as fit into the batch buffer.
+     *
+     * @return the batch buffer ready to be written, a single frame larger than the batch buffer, or null if nothing is queued
+     */
+    private ByteBuffer nextBatch() {
+        ByteBuffer frame = outbound.peek();
+        if (frame == null)
+            return null;
+        if (frame.remaining() > writeBuffer.capacity())
+            return outbound.poll();
+        writeBuffer.clear();
+        while ((frame = outbound.peek()) != null && frame.remaining() <= writeBuffer.remaining())
+            writeBuffer.put(outbound.poll());
+        return writeBuffer.flip();
+    }
+
+    /**
+     * @param length the number of bytes in the frame
+     * @return a heap buffer holding the length prefix, or null if the bridge is not connected
+     */
+    @Override
+    protected ByteBuffer claim(int length) {
+        if (!connected())
+            return null;
+        return ByteBuffer.allocate(Integer.BYTES + length).putInt(length);
+    }
+
+    /**
+     * Queues the given frame and wakes the I/O thread up if it may be waiting.
+     *
+     * @param frame the buffer returned by claim, with the frame written to it
+     */
+    @Override
+    protected void commit(ByteBuffer frame) {
+        outbound.add(frame.flip());
+        if (Thread.currentThread() != ioThread && wakeupPending.compareAndSet(false, true))
+            selector.wakeup();
+    }
+
+    /**
+     * Closes the given resource, ignoring errors.
+     *
+     * @param closeable the resource to close, or null
+     */
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null)
+            return;
+        try {
+            closeable.close();
+        }
+        catch (Exception e) {
+            logger.log(Level.FINE, "couldn't close %s: %s".formatted(closeable, e));
+        }
+    }
+}
@@ -0,0 +1,225 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MotherboardBridgeTest {
+
+    private final Motherboard left = new Motherboard();
+    private final Motherboard right = new Motherboard();
+    private final BlockingQueue<Message> rightReceived = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> leftBroadcasts = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> rightBroadcasts = new LinkedBlockingQueue<>();
+    private MotherboardBridge leftBridge;
+    private MotherboardBridge rightBridge;
+
+    private Mock.MockDevice device(Motherboard motherboard, int identifier, BlockingQueue<String> broadcasts) {
+        Mock.MockDevice device = new Mock.MockDevice(identifier, true) {
+            @Override
+            public void receiveBroadcastMessage(String payload) {
+                broadcasts.add(payload);
+            }
+        };
+        device.setMotherboard(motherboard);
+        return device;
+    }
+
+    private void link(SocketAddress address) throws IOException, InterruptedException {
+        device(left, 1, leftBroadcasts);
+        Mock.MockDevice receiver = device(right, 2, rightBroadcasts);
+        new Mock.MockApplication(receiver) {
+            @Override
+            public void receiveMessage(Message message) {
+                rightReceived.add(message);
+            }
+        }.connectToPort(7);
+
+        leftBridge = new MotherboardBridge(left);
+        rightBridge = new MotherboardBridge(right);
+        SocketAddress bound = rightBridge.listen(address);
+        leftBridge.connect(bound);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((!left.hasDeviceWithID(2) || !right.hasDeviceWithID(1)) && System.nanoTime() < deadline)
+            Thread.sleep(5);
+    }
+
+    @After
+    public void tearDown() {
+        if (leftBridge != null)
+            leftBridge.close();
+        if (rightBridge != null)
+            rightBridge.close();
+    }
+
+    @Test
+    public void forwardOverTcp() throws Exception {
+        link(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        assertTrue(leftBridge.connected());
+        assertEquals(leftBridge.remoteDevices(), List.of(2));
+        assertEquals(rightBridge.remoteDevices(), List.of(1));
+
+        assertTrue(left.sendMessage(Message.of(2, 7, "1011").withSender(1, 3).withCorrelation(9, false)));
+        Message received = rightReceived.poll(5, TimeUnit.SECONDS);
+        assertNotNull(received);
+        assertEquals(received.recipient(), 2);
+        assertEquals(received.port(), 7);
+        assertEquals(received.payload(), "1011");
+        assertEquals(received.sender().getAsInt(), 1);
+        assertEquals(received.senderPort(), 3);
+        assertEquals(received.correlation(), 9);
+        assertFalse(received.isReply());
+    }
+
+    @Test
+    public void timeToLiveCrossesTheLink() throws Exception {
+        link(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        assertTrue(left.sendMessage(Message.of(2, 7, "1").withTtl(1, TimeUnit.MINUTES)));
+        assertTrue(left.sendMessage(Message.of(2, 7, "10")));
+        Message expiring = rightReceived.poll(5, TimeUnit.SECONDS);
+        Message lasting = rightReceived.poll(5, TimeUnit.SECONDS);
+        assertNotNull(expiring);
+        assertNotNull(lasting);
+        assertTrue(expiring.expires());
+        assertFalse(expiring.isExpired());
+        assertTrue(expiring.remainingTtlNanos() <= TimeUnit.MINUTES.toNanos(1));
+        assertFalse(lasting.expires());
+    }
+
+    @Test
+    public void forwardEncodedOverUnixSocket() throws Exception {
+        Path path = Files.createTempDirectory("pcic").resolve("bridge.sock");
+        try {
+            link(UnixDomainSocketAddress.of(path));
+
+            String sparse = "0".repeat(100_000) + "1";
+            left.sendMessage(Message.of(2, 7, sparse).encode(new RunLengthCodec()));
+            Message received = rightReceived.poll(5, TimeUnit.SECONDS);
+            assertNotNull(received);
+            assertTrue(received.codec() instanceof RunLengthCodec);
+            assertEquals(received.payload(), sparse);
+        }
+        finally {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(path.getParent());
+        }
+    }
+
+    @Test
+    public void manyMessagesAreBatched() throws Exception {
+        link(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        int count = 10_000;
+        CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < count; i++)
+                left.sendMessage(Message.of(2, 7, Integer.toBinaryString(i + 1)));
+        }).get(10, TimeUnit.SECONDS);
+
+        for (int i = 0; i < count; i++) {
+            Message received = rightReceived.poll(5, TimeUnit.SECONDS);
+            assertNotNull(received);
+            assertEquals(received.payload(), Integer.toBinaryString(i + 1));
+        }
+    }
+
+    @Test
+    public void relayBroadcast() throws Exception {
+        link(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        assertTrue(left.sendBroadcastMessage("101"));
+        assertEquals(leftBroadcasts.poll(5, TimeUnit.SECONDS), "101");
+        assertEquals(rightBroadcasts.poll(5, TimeUnit.SECONDS), "101");
+
+        assertTrue(right.sendBroadcastMessage("11"));
+        assertEquals(leftBroadcasts.poll(5, TimeUnit.SECONDS), "11");
+        assertEquals(rightBroadcasts.poll(5, TimeUnit.SECONDS), "11");
+
+        // a relayed broadcast is not relayed back
+        Thread.sleep(100);
+        assertTrue(leftBroadcasts.isEmpty());
+        assertTrue(rightBroadcasts.isEmpty());
+    }
+
+    @Test
+    public void devicesAddedAndRemovedLaterAreAnnounced() throws Exception {
+        link(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        device(left, 3, leftBroadcasts);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!right.hasDeviceWithID(3) && System.nanoTime() < deadline)
+            Thread.sleep(5);
+        assertEquals(rightBridge.remoteDevices(), List.of(1, 3));
+
+        // withdrawing the RemoteDevice subscribed for the other side hands broadcasts over to the next one
+        left.removeDevice(1);
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (right.hasDeviceWithID(1) && System.nanoTime() < deadline)
+            Thread.sleep(5);
+        assertEquals(rightBridge.remoteDevices(), List.of(3));
+        assertEquals(right.broadcast("101", null), 2);
+        assertEquals(leftBroadcasts.poll(5, TimeUnit.SECONDS), "101");
+    }
+
+    @Test
+    public void close() throws Exception {
+        link(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        leftBridge.close();
+        assertFalse(leftBridge.connected());
+        assertFalse(left.hasDeviceWithID(2));
+        assertFalse(leftBridge.forward(Message.of(2, 7, "1")));
+        assertFalse(leftBridge.relayBroadcast("1"));
+    }
+
+    private static ByteBuffer messageFrame(long id, long ttlNanos, byte codec, byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(43 + payload.length);
+        frame.put((byte) 2).putInt(2).putInt(7).put((byte) 8).putInt(0).putInt(0).putLong(0).putLong(id).putLong(ttlNanos).put(codec).put(payload);
+        return frame.flip();
+    }
+
+    @Test
+    public void badFramesAreDropped() throws Exception {
+        link(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        new Mock.MockApplication((AbstractDevice) right.devices().get(2)) {
+            @Override
+            public void receiveMessage(Message message) {
+                throw new IllegalStateException("handler failed");
+            }
+        }.connectToPort(8);
+        byte[] packed = new BitPackingCodec().encode("101");
+
+        rightBridge.handle(messageFrame(1, 0, (byte) 9, packed));
+        rightBridge.handle(messageFrame(1, 0, (byte) -1, packed));
+        rightBridge.handle(messageFrame(-5, 0, (byte) 0, packed));
+        rightBridge.handle(messageFrame(1, -1, (byte) 0, packed));
+        rightBridge.handle(messageFrame(1, 0, (byte) 0, new byte[] {0, 0, 0, 99, 1}));
+        // a Message whose time to live ran out on the way is dropped
+        rightBridge.handle(messageFrame(1, 0, (byte) 0, packed));
+        rightBridge.handle(ByteBuffer.wrap(new byte[] {2, 0, 0}));
+        rightBridge.handle(ByteBuffer.wrap(new byte[] {1, 0, 0, 0, 5}));
+        rightBridge.handle(ByteBuffer.allocate(0));
+        assertTrue(rightReceived.isEmpty());
+
+        // a handler that throws on the I/O thread doesn't take the link down
+        left.sendMessage(Message.of(2, 8, "1"));
+        assertTrue(left.sendMessage(Message.of(2, 7, "11")));
+        Message received = rightReceived.poll(5, TimeUnit.SECONDS);
+        assertNotNull(received);
+        assertEquals(received.payload(), "11");
+        assertTrue(leftBridge.connected());
+    }
+}
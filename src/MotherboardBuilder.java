@@ -0,0 +1,169 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Builds a Motherboard with many Devices and Applications at once.
+ * Devices and Applications are checked for clashes as they are added, each with a single hash lookup into tables
+ * presized from the expected counts, so build only has to connect them to a Motherboard that is already large
+ * enough to hold every Device.
+ */
+public class MotherboardBuilder {
+
+    /**
+     * the Devices to connect keyed by identifier
+     */
+    private final Map<Integer, Device> devices;
+
+    /**
+     * the Applications to connect in the order they were added
+     */
+    private final List<Application> applications;
+
+    /**
+     * applications.get(i) listens on ports.get(i)
+     */
+    private final List<Integer> ports;
+
+    /**
+     * every taken port, as the Device identifier in the high bits and the port in the low bits
+     */
+    private final Set<Long> takenPorts;
+
+    /**
+     * the Applications already added, to catch one added on two ports
+     */
+    private final Set<Application> addedApplications;
+
+    /**
+     * whether build has been called
+     */
+    private boolean built = false;
+
+    /**
+     * Creates a new MotherboardBuilder sized for the given numbers of Devices and Applications.
+     *
+     * @param expectedDevices how many Devices will be added
+     * @param expectedApplications how many Applications will be added
+     * @throws IllegalArgumentException when an expected count is negative
+     */
+    protected MotherboardBuilder(int expectedDevices, int expectedApplications) {
+        if (expectedDevices < 0 || expectedApplications < 0)
+            throw new IllegalArgumentException("expected counts cannot be negative");
+        this.devices = new HashMap<>(capacityFor(expectedDevices));
+        this.applications = new ArrayList<>(expectedApplications);
+        this.ports = new ArrayList<>(expectedApplications);
+        this.takenPorts = new HashSet<>(capacityFor(expectedApplications));
+        this.addedApplications = new HashSet<>(capacityFor(expectedApplications));
+    }
+
+    /**
+     * Adds a Device to be connected to the Motherboard.
+     *
+     * @param device the Device, not connected to any Motherboard
+     * @return this MotherboardBuilder
+     * @throws NullPointerException when the Device is null
+     * @throws IllegalArgumentException when a Device with the same identifier was already added
+     * @throws IllegalStateException when the Motherboard was already built
+     */
+    protected MotherboardBuilder addDevice(Device device) {
+        Objects.requireNonNull(device);
+        checkNotBuilt();
+        if (devices.putIfAbsent(device.identifier(), device) != null)
+            throw new IllegalArgumentException("a device with ID %d was already added".formatted(device.identifier()));
+        return this;
+    }
+
+    /**
+     * Adds every given Device to be connected to the Motherboard.
+     *
+     * @param devices the Devices, none connected to any Motherboard
+     * @return this MotherboardBuilder
+     * @throws NullPointerException when the collection or a Device is null
+     * @throws IllegalArgumentException when two Devices share an identifier
+     * @throws IllegalStateException when the Motherboard was already built
+     * Calls addDevice(device) for each Device
+     */
+    protected MotherboardBuilder addDevices(Collection<? extends Device> devices) {
+        for (Device device : devices)
+            addDevice(device);
+        return this;
+    }
+
+    /**
+     * Adds an Application to listen on the given port of its Device, which must have been added already.
+     *
+     * @param port the port the Application will listen on
+     * @param application the Application, not listening on any port
+     * @return this MotherboardBuilder
+     * @throws NullPointerException when the Application is null
+     * @throws IllegalArgumentException when the Application's Device wasn't added, the port is taken on that Device,
+     *   or the Application was already added
+     * @throws IllegalStateException when the Motherboard was already built
+     */
+    protected MotherboardBuilder addApplication(int port, Application application) {
+        Objects.requireNonNull(application);
+        checkNotBuilt();
+        Device device = application.device();
+        if (device == null || devices.get(device.identifier()) != device)
+            throw new IllegalArgumentException("the device of application %s was not added".formatted(application));
+        if (!takenPorts.add(((long) device.identifier() << 32) | (port & 0xFFFFFFFFL)))
+            throw new IllegalArgumentException("port %d of device with ID %d is already taken".formatted(port, device.identifier()));
+        if (!addedApplications.add(application))
+            throw new IllegalArgumentException("application %s was already added".formatted(application));
+        applications.add(application);
+        ports.add(port);
+        return this;
+    }
+
+    /**
+     * Builds the Motherboard, connecting every Device to it and every Application to its port.
+     * The Motherboard is presized for the Devices added, so it never resizes while they are connected.
+     *
+     * @return the new Motherboard
+     * @throws IllegalStateException when the Motherboard was already built, or a Device or Application was
+     *   changed after it was added so that it can no longer be connected
+     * Calls device.setMotherboard(motherboard)
+     * Calls device.addApplication(port, application)
+     */
+    protected Motherboard build() {
+        checkNotBuilt();
+        built = true;
+        Motherboard motherboard = new Motherboard(devices.size());
+        for (Device device : devices.values()) {
+            if (!device.setMotherboard(motherboard))
+                throw new IllegalStateException("device with ID %d could not be connected".formatted(device.identifier()));
+        }
+        for (int i = 0; i < applications.size(); i++) {
+            Application application = applications.get(i);
+            if (!application.device().addApplication(ports.get(i), application))
+                throw new IllegalStateException("application %s could not be connected to port %d".formatted(application, ports.get(i)));
+        }
+        return motherboard;
+    }
+
+    /**
+     * Throws if build has been called.
+     *
+     * @throws IllegalStateException when the Motherboard was already built
+     */
+    private void checkNotBuilt() {
+        if (built)
+            throw new IllegalStateException("motherboard was already built");
+    }
+
+    /**
+     * Returns the initial capacity a HashMap or HashSet needs to hold the given number of entries without resizing.
+     *
+     * @param expected the number of entries
+     * @return the initial capacity at the default load factor of 3/4
+     */
+    private static int capacityFor(int expected) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) expected * 4 / 3 + 1);
+    }
+}
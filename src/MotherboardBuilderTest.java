@@ -0,0 +1,57 @@
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MotherboardBuilderTest {
+
+    @Test
+    public void build() {
+        Mock.MockDevice first = new Mock.MockDevice(1, true);
+        Mock.MockDevice second = new Mock.MockDevice(2, false);
+        Mock.MockApplication application = new Mock.MockApplication(first);
+        Motherboard motherboard = new MotherboardBuilder(2, 1)
+                .addDevices(List.of(first, second))
+                .addApplication(5, application)
+                .build();
+
+        assertEquals(motherboard.devices(), Map.of(1, first, 2, second));
+        assertTrue(first.connectedToMotherboard());
+        assertTrue(second.connectedToMotherboard());
+        assertEquals(first.portMapping(), Map.of(5, application));
+        assertTrue(motherboard.sendMessage(Message.of(1, 5, "1")));
+    }
+
+    @Test
+    public void duplicatesAreRejectedWhenAdded() {
+        Mock.MockDevice device = new Mock.MockDevice(1, true);
+        MotherboardBuilder builder = new MotherboardBuilder(2, 2).addDevice(device);
+        assertThrows(IllegalArgumentException.class, () -> builder.addDevice(new Mock.MockDevice(1, false)));
+
+        Mock.MockApplication application = new Mock.MockApplication(device);
+        builder.addApplication(5, application);
+        assertThrows(IllegalArgumentException.class, () -> builder.addApplication(5, new Mock.MockApplication(device)));
+        assertThrows(IllegalArgumentException.class, () -> builder.addApplication(6, application));
+        assertThrows(IllegalArgumentException.class, () -> builder.addApplication(5, new Mock.MockApplication(new Mock.MockDevice(2, true))));
+        assertThrows(NullPointerException.class, () -> builder.addDevice(null));
+
+        assertEquals(builder.build().devices().keySet(), Set.of(1));
+    }
+
+    @Test
+    public void buildOnlyOnce() {
+        MotherboardBuilder builder = new MotherboardBuilder(0, 0);
+        builder.build();
+        assertThrows(IllegalStateException.class, builder::build);
+        assertThrows(IllegalStateException.class, () -> builder.addDevice(new Mock.MockDevice(1, true)));
+    }
+
+    @Test
+    public void negativeCounts() {
+        assertThrows(IllegalArgumentException.class, () -> new MotherboardBuilder(-1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new MotherboardBuilder(0, -1));
+    }
+}
@@ -0,0 +1,38 @@
+import java.util.List;
+
+/**
+ * Represents a connection from a Motherboard to a Motherboard elsewhere, such as in another process or on another host.
+ */
+public interface MotherboardLink extends AutoCloseable {
+
+    /**
+     * Sends the given Message to the Device it is addressed to on the other side.
+     * Returns whether the Message was handed to the link.
+     *
+     * @param message the Message addressed to a Device on the other side
+     * @return whether the Message was handed to the link
+     */
+    boolean forward(Message message);
+
+    /**
+     * Broadcasts the given payload on the other side.
+     * Returns whether the broadcast was handed to the link.
+     *
+     * @param payload the binary string to broadcast
+     * @return whether the broadcast was handed to the link
+     */
+    boolean relayBroadcast(String payload);
+
+    /**
+     * Returns the identifiers of the Devices on the other side that are reachable through this link.
+     *
+     * @return the identifiers of the remote Devices
+     */
+    List<Integer> remoteDevices();
+
+    /**
+     * Disconnects from the other side and disconnects the remote Devices from the local Motherboard.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,76 @@
+/**
+ * Management interface of a Motherboard, registered with Motherboard.registerMBeans.
+ * Every attribute is read from counters kept up to date as Messages flow, never from a copy of the Devices.
+ */
+public interface MotherboardMXBean {
+
+    /**
+     * @return the number of Devices connected to the Motherboard
+     */
+    int getDevices();
+
+    /**
+     * @return the number of connected Devices that want to receive broadcast messages
+     */
+    int getBroadcastSubscribers();
+
+    /**
+     * @return the number of Messages sent through the Motherboard
+     */
+    long getMessagesSent();
+
+    /**
+     * @return the number of sent Messages a Device received or the Scheduler accepted
+     */
+    long getMessagesDelivered();
+
+    /**
+     * @return the number of sent Messages that were not delivered
+     */
+    long getMessagesRejected();
+
+    /**
+     * @return the number of Messages sent per second
+     */
+    double getSentPerSecond();
+
+    /**
+     * @return the number of Messages delivered per second
+     */
+    double getDeliveredPerSecond();
+
+    /**
+     * @return the number of Messages rejected per second
+     */
+    double getRejectedPerSecond();
+
+    /**
+     * @return the number of payloads broadcast
+     */
+    long getBroadcasts();
+
+    /**
+     * @return the number of Devices the last broadcast reached
+     */
+    int getLastFanOut();
+
+    /**
+     * @return the largest number of Devices a broadcast reached
+     */
+    int getLargestFanOut();
+
+    /**
+     * @return the average number of Devices a broadcast reached
+     */
+    double getAverageFanOut();
+
+    /**
+     * @return the number of Messages queued in the Scheduler and not yet handed to their Device
+     */
+    long getSchedulerQueueDepth();
+
+    /**
+     * @return the number of Messages held in the DeadLetterQueue
+     */
+    int getDeadLetterQueueDepth();
+}
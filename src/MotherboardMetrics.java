@@ -0,0 +1,210 @@
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters of a Motherboard, updated by the Motherboard as Devices attach and Messages flow and exposed over JMX
+ * as a MotherboardMXBean.
+ */
+public class MotherboardMetrics implements MotherboardMXBean {
+
+    /**
+     * the Motherboard whose Scheduler and DeadLetterQueue are sampled for queue depths
+     */
+    private final Motherboard motherboard;
+
+    /**
+     * number of connected Devices
+     */
+    private final AtomicInteger devices = new AtomicInteger();
+
+    /**
+     * the connected Devices that want to receive broadcast messages; guarded by this MotherboardMetrics
+     */
+    private final Set<Device> subscribers = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * the size of subscribers, readable without the lock by every broadcast
+     */
+    private volatile int subscriberCount = 0;
+
+    /**
+     * Messages sent through the Motherboard
+     */
+    private final Meter sent = new Meter();
+
+    /**
+     * sent Messages a Device received or the Scheduler accepted
+     */
+    private final Meter delivered = new Meter();
+
+    /**
+     * sent Messages that were not delivered
+     */
+    private final Meter rejected = new Meter();
+
+    /**
+     * number of payloads broadcast
+     */
+    private final LongAdder broadcasts = new LongAdder();
+
+    /**
+     * total number of Devices reached by every broadcast
+     */
+    private final LongAdder fanOutTotal = new LongAdder();
+
+    /**
+     * number of Devices the last broadcast reached
+     */
+    private volatile int lastFanOut = 0;
+
+    /**
+     * largest number of Devices a broadcast reached
+     */
+    private final AtomicInteger largestFanOut = new AtomicInteger();
+
+    /**
+     * Creates new MotherboardMetrics for the given Motherboard.
+     *
+     * @param motherboard the Motherboard the counters belong to
+     * @throws NullPointerException when the Motherboard is null
+     */
+    protected MotherboardMetrics(Motherboard motherboard) {
+        this.motherboard = Objects.requireNonNull(motherboard);
+    }
+
+    /**
+     * Counts a Device that attached.
+     *
+     * @param device the attached Device
+     */
+    protected void attached(Device device) {
+        devices.incrementAndGet();
+        subscriptionChanged(device);
+    }
+
+    /**
+     * Counts a Device that detached.
+     *
+     * @param device the detached Device
+     */
+    protected void detached(Device device) {
+        devices.decrementAndGet();
+        subscriptionChanged(device);
+    }
+
+    /**
+     * Counts the given Device as a subscriber if it is connected and wants broadcast messages, and stops counting it
+     * otherwise. Reads both from the Device and the Motherboard rather than trusting the caller, so attaching,
+     * detaching and flipping the subscription may race in any order and the last one to get here counts it right.
+     *
+     * @param device the Device that attached, detached or started or stopped wanting broadcast messages
+     */
+    protected synchronized void subscriptionChanged(Device device) {
+        if (device.receiveBroadcast() && motherboard.hasDevice(device))
+            subscribers.add(device);
+        else
+            subscribers.remove(device);
+        subscriberCount = subscribers.size();
+    }
+
+    /**
+     * Counts a sent Message and whether it was delivered.
+     *
+     * @param wasDelivered whether a Device received the Message or the Scheduler accepted it
+     */
+    protected void sent(boolean wasDelivered) {
+        sent.mark();
+        if (wasDelivered)
+            delivered.mark();
+        else
+            rejected.mark();
+    }
+
+    /**
+     * Counts a broadcast and the number of Devices it reached.
+     *
+     * @param fanOut the number of Devices that received the broadcast
+     */
+    protected void broadcast(int fanOut) {
+        broadcasts.increment();
+        fanOutTotal.add(fanOut);
+        lastFanOut = fanOut;
+        if (fanOut > largestFanOut.get())
+            largestFanOut.accumulateAndGet(fanOut, Math::max);
+    }
+
+    @Override
+    public int getDevices() {
+        return devices.get();
+    }
+
+    @Override
+    public int getBroadcastSubscribers() {
+        return subscriberCount;
+    }
+
+    @Override
+    public long getMessagesSent() {
+        return sent.count();
+    }
+
+    @Override
+    public long getMessagesDelivered() {
+        return delivered.count();
+    }
+
+    @Override
+    public long getMessagesRejected() {
+        return rejected.count();
+    }
+
+    @Override
+    public double getSentPerSecond() {
+        return sent.rate();
+    }
+
+    @Override
+    public double getDeliveredPerSecond() {
+        return delivered.rate();
+    }
+
+    @Override
+    public double getRejectedPerSecond() {
+        return rejected.rate();
+    }
+
+    @Override
+    public long getBroadcasts() {
+        return broadcasts.sum();
+    }
+
+    @Override
+    public int getLastFanOut() {
+        return lastFanOut;
+    }
+
+    @Override
+    public int getLargestFanOut() {
+        return largestFanOut.get();
+    }
+
+    @Override
+    public double getAverageFanOut() {
+        long count = broadcasts.sum();
+        return count == 0 ? 0 : (double) fanOutTotal.sum() / count;
+    }
+
+    @Override
+    public long getSchedulerQueueDepth() {
+        return motherboard.scheduler().map(Scheduler::queued).orElse(0L);
+    }
+
+    @Override
+    public int getDeadLetterQueueDepth() {
+        return motherboard.deadLetterQueue().map(DeadLetterQueue::size).orElse(0);
+    }
+}
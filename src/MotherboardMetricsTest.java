@@ -0,0 +1,171 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MotherboardMetricsTest {
+
+    @Test
+    public void devicesAndSubscribers() {
+        Motherboard motherboard = new Motherboard();
+        MotherboardMetrics metrics = motherboard.metrics();
+        Mock.MockDevice subscriber = new Mock.MockDevice(1, true);
+        Mock.MockDevice other = new Mock.MockDevice(2, false);
+        subscriber.setMotherboard(motherboard);
+        other.setMotherboard(motherboard);
+        assertEquals(metrics.getDevices(), 2);
+        assertEquals(metrics.getBroadcastSubscribers(), 1);
+
+        other.setReceiveBroadcast(true);
+        other.setReceiveBroadcast(true);
+        assertEquals(metrics.getBroadcastSubscribers(), 2);
+
+        assertTrue(other.setIdentifier(3));
+        assertEquals(metrics.getDevices(), 2);
+        assertEquals(metrics.getBroadcastSubscribers(), 2);
+
+        motherboard.removeDevice(1);
+        assertEquals(metrics.getDevices(), 1);
+        assertEquals(metrics.getBroadcastSubscribers(), 1);
+        // a removed Device no longer counts
+        subscriber.setReceiveBroadcast(false);
+        assertEquals(metrics.getBroadcastSubscribers(), 1);
+    }
+
+    @Test
+    public void subscriptionsFlippedWhileAttaching() throws InterruptedException {
+        Motherboard motherboard = new Motherboard();
+        MotherboardMetrics metrics = motherboard.metrics();
+        List<Mock.MockDevice> devices = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            devices.add(new Mock.MockDevice(i, false));
+        Thread flipper = new Thread(() -> {
+            for (int round = 0; round < 20; round++) {
+                for (Mock.MockDevice device : devices)
+                    device.setReceiveBroadcast(round % 2 == 0);
+            }
+        });
+        flipper.start();
+        for (Mock.MockDevice device : devices)
+            device.setMotherboard(motherboard);
+        for (int i = 0; i < 100; i++)
+            motherboard.removeDevice(i);
+        flipper.join();
+
+        // the last round unsubscribed everyone, whatever order it raced attaching and detaching in
+        assertEquals(metrics.getBroadcastSubscribers(), 0);
+        for (Mock.MockDevice device : devices.subList(0, 50))
+            device.setReceiveBroadcast(true);
+        for (Mock.MockDevice device : devices.subList(100, 130))
+            device.setReceiveBroadcast(true);
+        assertEquals(metrics.getBroadcastSubscribers(), 30);
+    }
+
+    @Test
+    public void messagesAndBroadcasts() {
+        Motherboard motherboard = new Motherboard();
+        motherboard.setParallelBroadcast(ForkJoinPool.commonPool(), 1);
+        MotherboardMetrics metrics = motherboard.metrics();
+        Mock.MockDevice device = new Mock.MockDevice(1, true);
+        device.setMotherboard(motherboard);
+        new Mock.MockApplication(device).connectToPort(1);
+        new Mock.MockDevice(2, true).setMotherboard(motherboard);
+
+        assertTrue(device.sendMessage(Message.of(1, 1, "1")));
+        assertFalse(device.sendMessage(Message.of(1, 2, "1")));
+        assertFalse(device.sendMessage(Message.of(9, 1, "1")));
+        assertEquals(metrics.getMessagesSent(), 3);
+        assertEquals(metrics.getMessagesDelivered(), 1);
+        assertEquals(metrics.getMessagesRejected(), 2);
+
+        DeviceMetrics deviceMetrics = device.metrics();
+        assertEquals(deviceMetrics.getMessagesSent(), 3);
+        assertEquals(deviceMetrics.getMessagesDelivered(), 1);
+        assertEquals(deviceMetrics.getMessagesRejected(), 1);
+        assertEquals(deviceMetrics.getApplications(), 1);
+        device.removeApplication(1);
+        assertEquals(deviceMetrics.getApplications(), 0);
+
+        motherboard.broadcast("1", null);
+        motherboard.broadcast("1", device);
+        assertEquals(metrics.getBroadcasts(), 2);
+        assertEquals(metrics.getLastFanOut(), 1);
+        assertEquals(metrics.getLargestFanOut(), 2);
+        assertEquals(metrics.getAverageFanOut(), 1.5, 1e-9);
+
+        assertEquals(metrics.getSchedulerQueueDepth(), 0);
+        assertEquals(metrics.getDeadLetterQueueDepth(), 0);
+    }
+
+    @Test
+    public void schedulerQueueDepth() throws InterruptedException {
+        Motherboard motherboard = new Motherboard();
+        ShardedScheduler scheduler = new ShardedScheduler(1, 16);
+        motherboard.setScheduler(scheduler);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        new Mock.MockDevice(1, false) {
+            @Override
+            public boolean receiveMessage(Message message) {
+                entered.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        }.setMotherboard(motherboard);
+        scheduler.start();
+
+        for (int i = 0; i < 3; i++)
+            assertTrue(motherboard.sendMessage(Message.of(1, 1, "1")));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        // the first Message is being handed over and the rest are waiting behind it
+        assertEquals(motherboard.metrics().getSchedulerQueueDepth(), 3);
+
+        release.countDown();
+        scheduler.shutdown();
+        assertEquals(motherboard.metrics().getSchedulerQueueDepth(), 0);
+    }
+
+    @Test
+    public void registerMBeans() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Motherboard motherboard = new Motherboard();
+        Mock.MockDevice device = new Mock.MockDevice(1, true);
+        device.setMotherboard(motherboard);
+
+        assertTrue(motherboard.registerMBeans(server));
+        assertFalse(motherboard.registerMBeans(server));
+        try {
+            MotherboardMXBean board = JMX.newMXBeanProxy(server, motherboard.name(), MotherboardMXBean.class);
+            assertEquals(board.getDevices(), 1);
+            assertTrue(server.isRegistered(motherboard.deviceName(1)));
+
+            new Mock.MockDevice(2, false).setMotherboard(motherboard);
+            DeviceMXBean added = JMX.newMXBeanProxy(server, motherboard.deviceName(2), DeviceMXBean.class);
+            assertEquals(added.getIdentifier(), 2);
+            assertFalse(added.isReceivingBroadcasts());
+            assertEquals(board.getDevices(), 2);
+
+            motherboard.removeDevice(2);
+            assertFalse(server.isRegistered(motherboard.deviceName(2)));
+        }
+        finally {
+            motherboard.unregisterMBeans();
+        }
+        assertFalse(server.isRegistered(motherboard.name()));
+        assertFalse(server.isRegistered(motherboard.deviceName(1)));
+    }
+}
@@ -1,5 +1,13 @@
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import org.junit.Before;
@@ -89,4 +97,164 @@ public class MotherboardTest {
         assertFalse(motherboard.sendBroadcastMessage(notBinary));
         assertTrue(handler.getLastLog().orElse("").contains("payload is not in the correct format (binary string)"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void setScheduler() {
+        Motherboard motherboard = new Motherboard();
+        Mock.MockDevice device = new Mock.MockDevice(1, false);
+        device.setMotherboard(motherboard);
+        Message message = Message.of(1, 1, "100");
+        List<Message> scheduled = new ArrayList<>();
+
+        assertEquals(motherboard.scheduler(), Optional.empty());
+        // without a Scheduler, the device is called inline and has no application on port 1
+        assertFalse(motherboard.sendMessage(message));
+
+        Scheduler scheduler = (recipient, delivered) -> scheduled.add(delivered);
+        motherboard.setScheduler(scheduler);
+        assertEquals(motherboard.scheduler(), Optional.of(scheduler));
+        assertTrue(motherboard.sendMessage(message));
+        assertEquals(scheduled, List.of(message));
+
+        motherboard.setScheduler(null);
+        assertEquals(motherboard.scheduler(), Optional.empty());
+    }
+
+    @Test
+    public void sendMessageAfter() {
+        Motherboard motherboard = new Motherboard();
+        List<Message> received = new ArrayList<>();
+        Mock.MockDevice device = new Mock.MockDevice(1, false);
+        device.setMotherboard(motherboard);
+        new Mock.MockApplication(device) {
+            @Override
+            public void receiveMessage(Message message) {
+                received.add(message);
+            }
+        }.connectToPort(1);
+        Message message = Message.of(1, 1, "1");
+
+        assertThrows(IllegalStateException.class, () -> motherboard.sendMessageAfter(message, 1, TimeUnit.MILLISECONDS));
+
+        AtomicLong clock = new AtomicLong();
+        TimerWheel wheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 8, clock::get);
+        motherboard.setTimerWheel(wheel);
+        motherboard.sendMessageAfter(message, 5, TimeUnit.MILLISECONDS);
+        motherboard.sendMessageAfter(message, 5, TimeUnit.MILLISECONDS).cancel();
+        clock.set(TimeUnit.MILLISECONDS.toNanos(4));
+        wheel.advance();
+        assertTrue(received.isEmpty());
+        clock.set(TimeUnit.MILLISECONDS.toNanos(5));
+        wheel.advance();
+        assertEquals(received, List.of(message));
+    }
+
+    @Test
+    public void expiredMessagesAreDropped() {
+        Motherboard motherboard = new Motherboard();
+        List<Message> received = new ArrayList<>();
+        Mock.MockDevice device = new Mock.MockDevice(1, false);
+        device.setMotherboard(motherboard);
+        new Mock.MockApplication(device) {
+            @Override
+            public void receiveMessage(Message message) {
+                received.add(message);
+            }
+        }.connectToPort(1);
+
+        assertFalse(motherboard.sendMessage(Message.of(1, 1, "1").withTtl(0, TimeUnit.SECONDS)));
+        assertTrue(received.isEmpty());
+        assertEquals(handler.getLastLog().orElse(""), "message to device with ID 1 expired before motherboard %s could deliver it".formatted(motherboard));
+        assertTrue(motherboard.sendMessage(Message.of(1, 1, "1").withTtl(1, TimeUnit.HOURS)));
+        assertEquals(received.size(), 1);
+    }
+
+    @Test
+    public void parallelBroadcast() throws Exception {
+        Motherboard motherboard = new Motherboard();
+        AtomicInteger received = new AtomicInteger();
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        Mock.MockDevice origin = null;
+        for (int i = 0; i < 1000; i++) {
+            Mock.MockDevice device = new Mock.MockDevice(i, i % 4 != 0) {
+                @Override
+                public void receiveBroadcastMessage(String payload) {
+                    received.incrementAndGet();
+                    threads.add(Thread.currentThread());
+                }
+            };
+            device.setMotherboard(motherboard);
+            if (i == 1)
+                origin = device;
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> motherboard.setParallelBroadcast(ForkJoinPool.commonPool(), 0));
+        assertEquals(motherboard.broadcast("1", null), 750);
+        assertEquals(motherboard.broadcast("2", null), -1);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            motherboard.setParallelBroadcast(pool, 100);
+            received.set(0);
+            assertEquals(motherboard.broadcast("1", origin), 749);
+            assertEquals(received.get(), 749);
+            assertEquals((int) motherboard.broadcastAsync("01").get(5, TimeUnit.SECONDS), 750);
+            assertTrue(motherboard.sendBroadcastMessage("1"));
+
+            motherboard.setParallelBroadcast(pool, 2000);
+            received.set(0);
+            assertEquals(motherboard.broadcast("1", null), 750);
+            assertEquals(received.get(), 750);
+
+            // the threshold counts subscribers, not connected Devices
+            motherboard.setParallelBroadcast(pool, 800);
+            threads.clear();
+            assertEquals(motherboard.broadcast("1", null), 750);
+            assertEquals(threads, Set.of(Thread.currentThread()));
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void setCodec() {
+        Motherboard motherboard = new Motherboard();
+        Mock.MockDevice device = new Mock.MockDevice(1, false);
+        device.setMotherboard(motherboard);
+        List<Message> received = new ArrayList<>();
+        new Mock.MockApplication(device) {
+            @Override
+            public void receiveMessage(Message message) {
+                received.add(message);
+            }
+        }.connectToPort(1);
+        List<Message> forwarded = new ArrayList<>();
+        new RemoteDevice(2, false, new MotherboardLink() {
+            public boolean forward(Message message) {
+                return forwarded.add(message);
+            }
+            public boolean relayBroadcast(String payload) {
+                return false;
+            }
+            public List<Integer> remoteDevices() {
+                return List.of(2);
+            }
+            public void close() {}
+        }).setMotherboard(motherboard);
+        PayloadCodec codec = new RunLengthCodec();
+        motherboard.setCodec(1, codec);
+
+        // in-process delivery is never encoded
+        assertTrue(motherboard.sendMessage(Message.of(1, 1, "0000")));
+        assertFalse(received.get(0).isEncoded());
+
+        assertTrue(motherboard.sendMessage(Message.of(2, 1, "0000")));
+        assertSame(forwarded.get(0).codec(), codec);
+        assertEquals(forwarded.get(0).payload(), "0000");
+
+        motherboard.setCodec(1, null);
+        assertTrue(motherboard.sendMessage(Message.of(2, 1, "0000")));
+        assertFalse(forwarded.get(1).isEncoded());
+    }
+}
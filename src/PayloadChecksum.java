@@ -0,0 +1,161 @@
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+/**
+ * Protects Message payloads against corruption on their way through Devices and codecs with CRC32C checksums.
+ * While a PayloadChecksum is installed, Message.of computes the checksum of the payload once, over its bits packed
+ * eight to a byte and followed by its length, with the JDK's CRC32C which the JIT compiles to the CPU's CRC
+ * instructions. AbstractDevice.receiveMessage verifies one in every sampleRate checksummed Messages before delivering
+ * them and rejects those whose payload no longer matches. A bit-packed payload already holds the same bytes as the
+ * checksummed form, so it is verified as it is; only payloads encoded with another codec are decoded to verify them.
+ * Checksums are off until a PayloadChecksum is installed and cost a single volatile read per Message while off.
+ */
+public class PayloadChecksum {
+
+    /**
+     * the PayloadChecksum Messages are checksummed and verified with; null when checksums are off
+     */
+    private static volatile PayloadChecksum active = null;
+
+    /**
+     * one in this many checksummed Messages is verified at delivery
+     */
+    private final int sampleRate;
+
+    /**
+     * number of Messages whose checksum matched
+     */
+    private final LongAdder verified = new LongAdder();
+
+    /**
+     * number of Messages whose checksum didn't match
+     */
+    private final LongAdder corrupted = new LongAdder();
+
+    /**
+     * Creates a new PayloadChecksum that verifies one in every sampleRate checksummed Messages.
+     *
+     * @param sampleRate how many checksummed Messages are delivered for every verified one; 1 verifies every Message
+     * @throws IllegalArgumentException when the sample rate is not positive
+     */
+    protected PayloadChecksum(int sampleRate) {
+        if (sampleRate <= 0)
+            throw new IllegalArgumentException("sample rate must be positive");
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Makes the given PayloadChecksum the one Messages are checksummed and verified with.
+     *
+     * @param checksum the PayloadChecksum to install
+     * @throws NullPointerException when the PayloadChecksum is null
+     */
+    protected static void install(PayloadChecksum checksum) {
+        active = Objects.requireNonNull(checksum);
+    }
+
+    /**
+     * Turns checksums off; Messages that already have one keep it but are no longer verified.
+     */
+    protected static void uninstall() {
+        active = null;
+    }
+
+    /**
+     * Returns the installed PayloadChecksum, if any.
+     *
+     * @return the installed PayloadChecksum or an empty Optional if checksums are off
+     */
+    protected static Optional<PayloadChecksum> active() {
+        return Optional.ofNullable(active);
+    }
+
+    /**
+     * Returns whether new Messages get a checksum.
+     *
+     * @return whether a PayloadChecksum is installed
+     */
+    protected static boolean enabled() {
+        return active != null;
+    }
+
+    /**
+     * Verifies the checksum of the given Message if it has one and is sampled.
+     *
+     * @param message the Message about to be delivered
+     * @return false only if the Message was verified and its payload doesn't match its checksum
+     * Checksums the encoded payload without decoding it if the Message is bit-packed
+     */
+    protected static boolean check(Message message) {
+        PayloadChecksum checksum = active;
+        if (checksum == null || !message.hasChecksum())
+            return true;
+        if (checksum.sampleRate > 1 && ThreadLocalRandom.current().nextInt(checksum.sampleRate) != 0)
+            return true;
+        int actual = message.codec() instanceof BitPackingCodec ? computePacked(message.encodedPayload()) : compute(message.payload());
+        if (actual == message.checksum()) {
+            checksum.verified.increment();
+            return true;
+        }
+        checksum.corrupted.increment();
+        return false;
+    }
+
+    /**
+     * Computes the CRC32C of the given binary string's bits packed eight to a byte, followed by its length.
+     *
+     * @param payload a binary string
+     * @return the checksum of the payload
+     */
+    protected static int compute(String payload) {
+        int length = payload.length();
+        byte[] packed = new byte[(length + 7) / 8 + Integer.BYTES];
+        for (int i = 0; i < length; i++) {
+            if (payload.charAt(i) == '1')
+                packed[i >>> 3] |= (byte) (0x80 >>> (i & 7));
+        }
+        int end = packed.length - Integer.BYTES;
+        packed[end] = (byte) (length >>> 24);
+        packed[end + 1] = (byte) (length >>> 16);
+        packed[end + 2] = (byte) (length >>> 8);
+        packed[end + 3] = (byte) length;
+        CRC32C crc = new CRC32C();
+        crc.update(packed);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Computes the checksum of a payload encoded by a BitPackingCodec, whose bytes are those compute packs with the
+     * length moved to the front, so the result is the same as compute of the decoded payload.
+     *
+     * @param encoded the bytes returned by BitPackingCodec.encode
+     * @return the checksum of the encoded payload
+     */
+    protected static int computePacked(byte[] encoded) {
+        CRC32C crc = new CRC32C();
+        crc.update(encoded, Integer.BYTES, encoded.length - Integer.BYTES);
+        crc.update(encoded, 0, Integer.BYTES);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns the number of Messages whose checksum was verified and matched.
+     *
+     * @return the number of verified Messages
+     */
+    protected long verified() {
+        return verified.sum();
+    }
+
+    /**
+     * Returns the number of Messages whose checksum was verified and didn't match.
+     *
+     * @return the number of corrupted Messages
+     */
+    protected long corrupted() {
+        return corrupted.sum();
+    }
+}
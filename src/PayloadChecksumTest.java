@@ -0,0 +1,95 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PayloadChecksumTest {
+
+    @After
+    public void tearDown() {
+        PayloadChecksum.uninstall();
+    }
+
+    @Test
+    public void constructor() {
+        assertThrows(IllegalArgumentException.class, () -> new PayloadChecksum(0));
+        assertThrows(NullPointerException.class, () -> PayloadChecksum.install(null));
+    }
+
+    @Test
+    public void computedOnlyWhileInstalled() {
+        assertFalse(Message.of(1, 1, "101").hasChecksum());
+
+        PayloadChecksum.install(new PayloadChecksum(1));
+        Message message = Message.of(1, 1, "101");
+        assertTrue(message.hasChecksum());
+        assertEquals(message.checksum(), PayloadChecksum.compute("101"));
+        assertTrue(message.withSender(2, 2).hasChecksum());
+        assertTrue(message.encode(new RunLengthCodec()).hasChecksum());
+    }
+
+    @Test
+    public void lengthIsPartOfTheChecksum() {
+        assertNotEquals(PayloadChecksum.compute("1"), PayloadChecksum.compute("10"));
+        assertNotEquals(PayloadChecksum.compute("0"), PayloadChecksum.compute("00"));
+        assertEquals(PayloadChecksum.compute("10110"), PayloadChecksum.compute("10110"));
+    }
+
+    @Test
+    public void bitPackedPayloadIsVerifiedWithoutDecoding() {
+        assertEquals(PayloadChecksum.computePacked(new BitPackingCodec().encode("101100111")), PayloadChecksum.compute("101100111"));
+
+        PayloadChecksum checksum = new PayloadChecksum(1);
+        PayloadChecksum.install(checksum);
+        int[] decodes = {0};
+        PayloadCodec codec = new BitPackingCodec() {
+            @Override
+            public String decode(byte[] encoded) {
+                decodes[0]++;
+                return super.decode(encoded);
+            }
+        };
+        Message message = Message.of(1, 1, "101100111").encode(codec);
+        assertTrue(PayloadChecksum.check(message));
+        assertEquals(decodes[0], 0);
+        assertEquals(checksum.verified(), 1);
+    }
+
+    @Test
+    public void corruptedPayloadIsRejected() {
+        PayloadChecksum checksum = new PayloadChecksum(1);
+        PayloadChecksum.install(checksum);
+        List<Message> received = new ArrayList<>();
+        Mock.MockDevice device = new Mock.MockDevice(1, true);
+        new Mock.MockApplication(device) {
+            @Override
+            public void receiveMessage(Message message) {
+                received.add(message);
+            }
+        }.connectToPort(1);
+
+        Message message = Message.of(1, 1, "10110011");
+        assertTrue(device.receiveMessage(message));
+
+        Message corrupted = message.encode(new BitPackingCodec());
+        // flip the first payload bit after the 4-byte length header
+        corrupted.encodedPayload()[4] ^= (byte) 0x80;
+        assertFalse(device.receiveMessage(corrupted));
+
+        assertEquals(received, List.of(message));
+        assertEquals(checksum.verified(), 1);
+        assertEquals(checksum.corrupted(), 1);
+    }
+
+    @Test
+    public void notVerifiedOnceUninstalled() {
+        PayloadChecksum.install(new PayloadChecksum(1));
+        Message corrupted = Message.of(1, 1, "1").encode(new BitPackingCodec());
+        corrupted.encodedPayload()[4] ^= (byte) 0x80;
+        PayloadChecksum.uninstall();
+        assertTrue(PayloadChecksum.check(corrupted));
+    }
+}
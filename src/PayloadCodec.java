@@ -0,0 +1,38 @@
+/**
+ * Represents a compact binary encoding of the binary string payload of a Message.
+ */
+public interface PayloadCodec {
+
+    /**
+     * Encodes the given binary string payload.
+     *
+     * @param payload a non-empty binary string
+     * @return the encoded payload
+     */
+    byte[] encode(String payload);
+
+    /**
+     * Decodes a payload encoded by this PayloadCodec.
+     *
+     * @param encoded the bytes returned by encode
+     * @return the binary string payload
+     */
+    String decode(byte[] encoded);
+
+    /**
+     * Returns the number of bits in a payload encoded by this PayloadCodec without decoding it.
+     *
+     * @param encoded the bytes returned by encode
+     * @return the length of the binary string payload
+     */
+    int decodedLength(byte[] encoded);
+
+    /**
+     * Checks that the given bytes are well formed for this PayloadCodec, such as bytes read from a link, without
+     * decoding them.
+     *
+     * @param encoded the bytes to check
+     * @return whether decode returns a non-empty binary string for the bytes
+     */
+    boolean isValid(byte[] encoded);
+}
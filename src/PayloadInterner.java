@@ -0,0 +1,236 @@
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache mapping repeated payloads to one canonical, already validated instance.
+ * While a PayloadInterner is installed, Message.of and Message.binaryString look a payload up before validating it:
+ * on a hit the binary check is skipped and Message.of hands out the canonical instance instead of its own copy.
+ * Only Message.of adds payloads it validated, and only on their second sighting, so a stream of payloads that never
+ * repeat doesn't take the lock or churn the cache; sightings are kept by hash in a table written without locking.
+ * The cache holds up to a fixed number of payloads; when it is full the CLOCK algorithm evicts one that wasn't looked
+ * up since the hand last passed it, so the payloads in steady use stay cached.
+ * Interning is off until a PayloadInterner is installed and costs a single volatile read per payload while off.
+ */
+public class PayloadInterner {
+
+    /**
+     * the PayloadInterner payloads are looked up in; null when interning is off
+     */
+    private static volatile PayloadInterner active = null;
+
+    /**
+     * the longest payload that is interned
+     */
+    private final int maxLength;
+
+    /**
+     * the cached payloads by value, each with its slot
+     */
+    private final ConcurrentHashMap<String, Entry> entries;
+
+    /**
+     * slots[i] is the payload cached in slot i, or null; guarded by this
+     */
+    private final String[] slots;
+
+    /**
+     * referenced[i] is set when the payload in slot i is looked up and cleared when the hand passes it;
+     * written without synchronization since a lost update only costs an early eviction
+     */
+    private final boolean[] referenced;
+
+    /**
+     * hashes of payloads that missed once and weren't added yet, each in the slot picked by its low bits; written
+     * without synchronization since a lost update only delays adding a payload and a collision only adds one early
+     */
+    private final int[] seen;
+
+    /**
+     * the slot the CLOCK hand points to; guarded by this
+     */
+    private int hand = 0;
+
+    /**
+     * number of lookups that found the payload
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * number of lookups that didn't find the payload
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a new PayloadInterner.
+     *
+     * @param capacity the largest number of payloads cached
+     * @param maxLength the longest payload that is interned; longer ones are validated every time
+     * @throws IllegalArgumentException when the capacity or maximum length is not positive
+     */
+    protected PayloadInterner(int capacity, int maxLength) {
+        if (capacity <= 0 || maxLength <= 0)
+            throw new IllegalArgumentException("capacity and maximum length must be positive");
+        this.maxLength = maxLength;
+        this.entries = new ConcurrentHashMap<>(capacity);
+        this.slots = new String[capacity];
+        this.referenced = new boolean[capacity];
+        this.seen = new int[Integer.highestOneBit(Math.min(capacity, 1 << 20)) << 2];
+    }
+
+    /**
+     * Makes the given PayloadInterner the one payloads are looked up in.
+     *
+     * @param interner the PayloadInterner to install
+     * @throws NullPointerException when the PayloadInterner is null
+     */
+    protected static void install(PayloadInterner interner) {
+        active = Objects.requireNonNull(interner);
+    }
+
+    /**
+     * Turns interning off; Messages keep the canonical payloads they already hold.
+     */
+    protected static void uninstall() {
+        active = null;
+    }
+
+    /**
+     * Returns whether payloads are interned.
+     *
+     * @return whether a PayloadInterner is installed
+     */
+    protected static boolean enabled() {
+        return active != null;
+    }
+
+    /**
+     * Returns the canonical instance of the given payload if the installed PayloadInterner has it.
+     *
+     * @param payload a payload about to be validated
+     * @return the canonical instance, which is known to be a binary string, or null if interning is off or it isn't cached
+     */
+    protected static String lookup(String payload) {
+        PayloadInterner interner = active;
+        return interner == null ? null : interner.get(payload);
+    }
+
+    /**
+     * Returns whether the installed PayloadInterner has the given payload, without counting a hit or a miss.
+     *
+     * @param payload a payload about to be validated
+     * @return whether the payload is cached and so known to be a binary string
+     */
+    protected static boolean isInterned(String payload) {
+        PayloadInterner interner = active;
+        return interner != null && payload.length() <= interner.maxLength && interner.entries.containsKey(payload);
+    }
+
+    /**
+     * Adds the given validated payload to the installed PayloadInterner if it was seen before.
+     *
+     * @param payload a payload that is known to be a non-empty binary string
+     * @return the canonical instance of the payload, or the payload itself if interning is off, it is too long or it
+     *   is seen for the first time
+     */
+    protected static String intern(String payload) {
+        PayloadInterner interner = active;
+        return interner == null || !interner.admit(payload) ? payload : interner.add(payload);
+    }
+
+    /**
+     * Returns whether the given payload, which isn't cached, was seen before, and records it as seen otherwise.
+     *
+     * @param payload a payload that is known to be a non-empty binary string
+     * @return whether the payload should be added
+     */
+    protected boolean admit(String payload) {
+        if (payload.length() > maxLength)
+            return false;
+        int hash = payload.hashCode();
+        int index = hash & (seen.length - 1);
+        if (seen[index] == hash)
+            return true;
+        seen[index] = hash;
+        return false;
+    }
+
+    /**
+     * Returns the canonical instance of the given payload if it is cached, and marks it as referenced.
+     *
+     * @param payload the payload to look up
+     * @return the canonical instance or null
+     */
+    protected String get(String payload) {
+        if (payload.length() > maxLength)
+            return null;
+        Entry entry = entries.get(payload);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        referenced[entry.slot] = true;
+        hits.increment();
+        return entry.payload;
+    }
+
+    /**
+     * Caches the given payload, evicting one that wasn't referenced recently if the cache is full.
+     *
+     * @param payload a payload that is known to be a non-empty binary string
+     * @return the canonical instance of the payload
+     */
+    protected synchronized String add(String payload) {
+        if (payload.length() > maxLength)
+            return payload;
+        Entry existing = entries.get(payload);
+        if (existing != null)
+            return existing.payload;
+        while (referenced[hand]) {
+            referenced[hand] = false;
+            hand = (hand + 1) % slots.length;
+        }
+        if (slots[hand] != null)
+            entries.remove(slots[hand]);
+        slots[hand] = payload;
+        // a new payload starts unreferenced, so one seen only once is the first to go
+        entries.put(payload, new Entry(payload, hand));
+        hand = (hand + 1) % slots.length;
+        return payload;
+    }
+
+    /**
+     * Returns the number of payloads cached.
+     *
+     * @return the number of cached payloads
+     */
+    protected int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups that found the payload.
+     *
+     * @return the number of hits
+     */
+    protected long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that didn't find the payload.
+     *
+     * @return the number of misses
+     */
+    protected long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * A cached payload and the slot it occupies.
+     *
+     * @param payload the canonical instance
+     * @param slot the index of its slot
+     */
+    private record Entry(String payload, int slot) {}
+}
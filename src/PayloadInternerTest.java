@@ -0,0 +1,92 @@
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PayloadInternerTest {
+
+    @After
+    public void tearDown() {
+        PayloadInterner.uninstall();
+    }
+
+    @Test
+    public void constructor() {
+        assertThrows(IllegalArgumentException.class, () -> new PayloadInterner(0, 8));
+        assertThrows(IllegalArgumentException.class, () -> new PayloadInterner(8, 0));
+        assertThrows(NullPointerException.class, () -> PayloadInterner.install(null));
+    }
+
+    @Test
+    public void offUntilInstalled() {
+        String payload = new String("1010");
+        assertFalse(PayloadInterner.enabled());
+        assertNull(PayloadInterner.lookup(payload));
+        assertSame(PayloadInterner.intern(payload), payload);
+        assertSame(Message.of(1, 1, payload).payload(), payload);
+    }
+
+    @Test
+    public void repeatedPayloadsShareOneInstance() {
+        PayloadInterner interner = new PayloadInterner(4, 16);
+        PayloadInterner.install(interner);
+        String first = new String("1010");
+        String second = new String("1010");
+        String third = new String("1010");
+        assertNotSame(first, second);
+
+        // a payload is only added on its second sighting
+        assertSame(Message.of(1, 1, first).payload(), first);
+        assertEquals(interner.size(), 0);
+        assertSame(Message.of(2, 2, second).payload(), second);
+        assertSame(Message.of(3, 3, third).payload(), second);
+        assertEquals(interner.hits(), 1);
+        assertEquals(interner.misses(), 2);
+
+        // a hit skips validation but invalid payloads are still refused
+        assertTrue(Message.binaryString(new String("1010")));
+        assertThrows(IllegalArgumentException.class, () -> Message.of(1, 1, "102"));
+        assertThrows(IllegalArgumentException.class, () -> Message.of(1, 1, " "));
+        assertFalse(Message.binaryString("102"));
+        assertEquals(interner.size(), 1);
+
+        // binaryString only checks, so it never adds what it validated
+        assertTrue(Message.binaryString("11"));
+        assertTrue(Message.binaryString("11"));
+        assertEquals(interner.size(), 1);
+        assertEquals(interner.hits(), 1);
+    }
+
+    @Test
+    public void longPayloadsAreNotInterned() {
+        PayloadInterner interner = new PayloadInterner(4, 4);
+        PayloadInterner.install(interner);
+        String payload = "10101";
+        Message.of(1, 1, payload);
+        assertNotSame(Message.of(1, 1, new String(payload)).payload(), payload);
+        assertEquals(interner.size(), 0);
+    }
+
+    @Test
+    public void clockKeepsReferencedPayloads() {
+        PayloadInterner interner = new PayloadInterner(3, 16);
+        interner.add("1");
+        interner.add("10");
+        interner.add("11");
+        assertEquals(interner.get("1"), "1");
+        assertEquals(interner.get("11"), "11");
+
+        // "10" is the only one not looked up since it was added, so it makes room
+        interner.add("100");
+        assertEquals(interner.size(), 3);
+        assertNull(interner.get("10"));
+        assertNotNull(interner.get("1"));
+        assertNotNull(interner.get("11"));
+        assertNotNull(interner.get("100"));
+
+        // with every payload referenced the hand clears them all and evicts the next one
+        interner.add("101");
+        assertEquals(interner.size(), 3);
+        assertNotNull(interner.get("101"));
+    }
+}
@@ -0,0 +1,243 @@
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Token bucket limiting how fast Messages are sent through a Device, an Application or to a port of a Motherboard.
+ * The bucket refills at a fixed rate up to its burst size; a send over the limit is either rejected or delayed
+ * on a TimerWheel until a token is available, depending on the Policy.
+ * The bucket is kept as the single time at which it will be full again and updated with compare-and-set,
+ * so concurrent senders never block each other.
+ */
+public class RateLimiter {
+
+    /**
+     * Logger to log descriptive warning messages instead of throwing exceptions
+     */
+    private static final Logger logger = Logger.getLogger(RateLimiter.class.getName());
+
+    /**
+     * What happens to a send over the limit.
+     */
+    public enum Policy {
+        /** the send fails */
+        REJECT,
+        /** the send is scheduled for when a token is available, unless that is further away than the maximum delay */
+        DELAY
+    }
+
+    /**
+     * what happens to a send over the limit
+     */
+    private final Policy policy;
+
+    /**
+     * nanoseconds it takes to refill one token
+     */
+    private final long intervalNanos;
+
+    /**
+     * how far the bucket's full time may be ahead of now while a token is still available, in nanoseconds
+     */
+    private final long toleranceNanos;
+
+    /**
+     * the longest a send is delayed before it is rejected instead, in nanoseconds
+     */
+    private final long maxDelayNanos;
+
+    /**
+     * fires delayed sends; null for the REJECT Policy
+     */
+    private final TimerWheel timers;
+
+    /**
+     * source of the current time in nanoseconds
+     */
+    private final LongSupplier clock;
+
+    /**
+     * the time at which the bucket would be full again if no more tokens were taken
+     */
+    private final AtomicLong fullAt;
+
+    /**
+     * number of sends let through at once
+     */
+    private final LongAdder admitted = new LongAdder();
+
+    /**
+     * number of sends delayed
+     */
+    private final LongAdder delayed = new LongAdder();
+
+    /**
+     * number of delayed sends that failed once their token was available
+     */
+    private final LongAdder delayedFailed = new LongAdder();
+
+    /**
+     * number of sends rejected
+     */
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates a new RateLimiter that rejects sends over the limit.
+     *
+     * @param permitsPerSecond how many sends per second are let through on average
+     * @param burst how many sends can be let through at once after a quiet period
+     * @throws IllegalArgumentException when the rate or burst is not positive
+     */
+    protected RateLimiter(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, Policy.REJECT, null, 0, TimeUnit.NANOSECONDS, System::nanoTime);
+    }
+
+    /**
+     * Creates a new RateLimiter that delays sends over the limit on the given TimerWheel.
+     *
+     * @param permitsPerSecond how many sends per second are let through on average
+     * @param burst how many sends can be let through at once after a quiet period
+     * @param timers the TimerWheel firing delayed sends, which must be advancing
+     * @param maxDelay the longest a send is delayed before it is rejected instead
+     * @param unit the unit of the maximum delay
+     * @throws IllegalArgumentException when the rate or burst is not positive or the maximum delay is negative
+     * @throws NullPointerException when the TimerWheel is null
+     */
+    protected RateLimiter(double permitsPerSecond, int burst, TimerWheel timers, long maxDelay, TimeUnit unit) {
+        this(permitsPerSecond, burst, Policy.DELAY, Objects.requireNonNull(timers), maxDelay, unit, System::nanoTime);
+    }
+
+    /**
+     * Creates a new RateLimiter with the given clock.
+     *
+     * @param permitsPerSecond how many sends per second are let through on average
+     * @param burst how many sends can be let through at once after a quiet period
+     * @param policy what happens to a send over the limit
+     * @param timers the TimerWheel firing delayed sends; only used by the DELAY Policy
+     * @param maxDelay the longest a send is delayed before it is rejected instead
+     * @param unit the unit of the maximum delay
+     * @param clock the source of the current time in nanoseconds
+     * @throws IllegalArgumentException when the rate or burst is not positive, the maximum delay is negative,
+     *   or the DELAY Policy has no TimerWheel
+     * @throws NullPointerException when the Policy or clock is null
+     */
+    protected RateLimiter(double permitsPerSecond, int burst, Policy policy, TimerWheel timers, long maxDelay, TimeUnit unit, LongSupplier clock) {
+        if (!(permitsPerSecond > 0) || burst <= 0 || maxDelay < 0)
+            throw new IllegalArgumentException("rate and burst must be positive and the maximum delay can't be negative");
+        if (policy == Policy.DELAY && timers == null)
+            throw new IllegalArgumentException("delaying sends needs a timer wheel");
+        this.policy = Objects.requireNonNull(policy);
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.maxDelayNanos = policy == Policy.DELAY ? unit.toNanos(maxDelay) : 0;
+        this.timers = timers;
+        this.clock = Objects.requireNonNull(clock);
+        this.fullAt = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * Takes a token for the given Message and sends it now, later or not at all.
+     *
+     * @param message the Message to send
+     * @param send sends the Message past this RateLimiter and returns what became of it
+     * @return the result of send when the Message is sent now, SENT when it is delayed, FAILED when it is rejected
+     * Logs a warning and commits a FlightEvents.Reject event when the Message is rejected
+     * Counts a delayed send that doesn't return SENT in delayedFailed(), since no caller is left to tell
+     */
+    protected SendOutcome submit(Message message, Function<Message, SendOutcome> send) {
+        long delay = acquire();
+        if (delay == 0) {
+            admitted.increment();
+            return send.apply(message);
+        }
+        if (delay > 0) {
+            delayed.increment();
+            timers.schedule(() -> {
+                if (send.apply(message) != SendOutcome.SENT)
+                    delayedFailed.increment();
+            }, delay, TimeUnit.NANOSECONDS);
+            return SendOutcome.SENT;
+        }
+        rejected.increment();
+        logger.log(Level.WARNING, "message to device with ID %d was over the rate limit and rejected".formatted(message.recipient()));
+        FlightEvents.reject(FlightEvents.Reason.THROTTLED, message);
+        return SendOutcome.FAILED;
+    }
+
+    /**
+     * Returns the number of sends let through at once.
+     *
+     * @return the number of admitted sends
+     */
+    protected long admitted() {
+        return admitted.sum();
+    }
+
+    /**
+     * Returns the number of sends delayed until a token was available.
+     *
+     * @return the number of delayed sends
+     */
+    protected long delayed() {
+        return delayed.sum();
+    }
+
+    /**
+     * Returns the number of delayed sends that failed once their token was available.
+     *
+     * @return the number of failed delayed sends
+     */
+    protected long delayedFailed() {
+        return delayedFailed.sum();
+    }
+
+    /**
+     * Returns the number of sends rejected.
+     *
+     * @return the number of rejected sends
+     */
+    protected long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the number of sends that were over the limit, whether they were delayed or rejected.
+     *
+     * @return the number of throttled sends
+     */
+    protected long throttled() {
+        return delayed.sum() + rejected.sum();
+    }
+
+    /**
+     * Returns what happens to a send over the limit.
+     *
+     * @return the Policy of this RateLimiter
+     */
+    protected Policy policy() {
+        return policy;
+    }
+
+    /**
+     * Takes a token if one is available now or within the maximum delay.
+     *
+     * @return 0 if a token was taken for now, how many nanoseconds to wait if one was taken for later, or -1 if none was taken
+     */
+    private long acquire() {
+        while (true) {
+            long now = clock.getAsLong();
+            long current = fullAt.get();
+            long start = current - now > 0 ? current : now;
+            long wait = start - now - toleranceNanos;
+            if (wait > maxDelayNanos)
+                return -1;
+            if (fullAt.compareAndSet(current, start + intervalNanos))
+                return Math.max(0, wait);
+        }
+    }
+}
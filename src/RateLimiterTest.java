@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final TimerWheel wheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 64, clock::get);
+    private final List<Message> sent = new ArrayList<>();
+    private final Message message = Message.of(1, 1, "1");
+
+    private SendOutcome send(Message message) {
+        sent.add(message);
+        return SendOutcome.SENT;
+    }
+
+    private void sleep(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+        wheel.advance();
+    }
+
+    @Test
+    public void constructor() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(1, 0));
+        assertThrows(NullPointerException.class, () -> new RateLimiter(1, 1, null, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(1, 1, RateLimiter.Policy.DELAY, null, 1, TimeUnit.SECONDS, clock::get));
+    }
+
+    @Test
+    public void rejectOverLimit() {
+        // 1000 per second is one token per millisecond, with a burst of 3
+        RateLimiter limiter = new RateLimiter(1000, 3, RateLimiter.Policy.REJECT, null, 0, TimeUnit.NANOSECONDS, clock::get);
+        assertEquals(limiter.policy(), RateLimiter.Policy.REJECT);
+        for (int i = 0; i < 3; i++)
+            assertEquals(limiter.submit(message, this::send), SendOutcome.SENT);
+        assertEquals(limiter.submit(message, this::send), SendOutcome.FAILED);
+        assertEquals(sent.size(), 3);
+
+        sleep(1);
+        assertEquals(limiter.submit(message, this::send), SendOutcome.SENT);
+        assertEquals(limiter.submit(message, this::send), SendOutcome.FAILED);
+
+        // the bucket never holds more than the burst
+        sleep(100);
+        for (int i = 0; i < 3; i++)
+            assertEquals(limiter.submit(message, this::send), SendOutcome.SENT);
+        assertEquals(limiter.submit(message, this::send), SendOutcome.FAILED);
+
+        assertEquals(limiter.admitted(), 7);
+        assertEquals(limiter.rejected(), 3);
+        assertEquals(limiter.throttled(), 3);
+    }
+
+    @Test
+    public void delayOverLimit() {
+        RateLimiter limiter = new RateLimiter(1000, 1, RateLimiter.Policy.DELAY, wheel, 2, TimeUnit.MILLISECONDS, clock::get);
+        assertEquals(limiter.submit(message, this::send), SendOutcome.SENT);
+        assertEquals(limiter.submit(message, this::send), SendOutcome.SENT);
+        assertEquals(limiter.submit(message, this::send), SendOutcome.SENT);
+        // a third token would be 3ms away, further than the maximum delay
+        assertEquals(limiter.submit(message, this::send), SendOutcome.FAILED);
+        assertEquals(sent.size(), 1);
+
+        sleep(1);
+        assertEquals(sent.size(), 2);
+        sleep(1);
+        assertEquals(sent.size(), 3);
+        assertEquals(limiter.admitted(), 1);
+        assertEquals(limiter.delayed(), 2);
+        assertEquals(limiter.rejected(), 1);
+        assertEquals(limiter.delayedFailed(), 0);
+    }
+
+    @Test
+    public void delayedSendsGoInOrderAndFailuresAreCounted() {
+        RateLimiter limiter = new RateLimiter(1000, 1, RateLimiter.Policy.DELAY, wheel, 10, TimeUnit.MILLISECONDS, clock::get);
+        List<Integer> order = new ArrayList<>();
+        limiter.submit(message, this::send);
+        for (int i = 0; i < 4; i++) {
+            int index = i;
+            limiter.submit(message, sending -> {
+                order.add(index);
+                return index % 2 == 0 ? SendOutcome.SENT : SendOutcome.FAILED;
+            });
+        }
+        // one advance runs every delayed send
+        sleep(10);
+        assertEquals(order, List.of(0, 1, 2, 3));
+        assertEquals(limiter.delayedFailed(), 2);
+    }
+
+    @Test
+    public void concurrentSendersNeverOvershoot() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(1000, 500, RateLimiter.Policy.REJECT, null, 0, TimeUnit.NANOSECONDS, clock::get);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1000; i++)
+                    limiter.submit(message, sending -> SendOutcome.SENT);
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(limiter.admitted(), 500);
+        assertEquals(limiter.rejected(), 3500);
+    }
+
+    @Test
+    public void limitsOnTheMessagePath() {
+        Motherboard motherboard = new Motherboard();
+        Mock.MockDevice device = new Mock.MockDevice(1, true);
+        device.setMotherboard(motherboard);
+        List<Message> received = new ArrayList<>();
+        Mock.MockApplication application = new Mock.MockApplication(device) {
+            @Override
+            public void receiveMessage(Message message) {
+                received.add(message);
+            }
+        };
+        application.connectToPort(1);
+
+        RateLimiter portLimit = new RateLimiter(1000, 1, RateLimiter.Policy.REJECT, null, 0, TimeUnit.NANOSECONDS, clock::get);
+        motherboard.setRateLimiter(1, portLimit);
+        assertTrue(application.sendMessage(message));
+        assertFalse(application.sendMessage(message));
+        motherboard.setRateLimiter(1, null);
+
+        RateLimiter deviceLimit = new RateLimiter(1000, 1, RateLimiter.Policy.REJECT, null, 0, TimeUnit.NANOSECONDS, clock::get);
+        device.setRateLimiter(deviceLimit);
+        assertTrue(application.sendMessage(message));
+        assertFalse(application.sendMessage(message));
+        device.setRateLimiter(null);
+
+        RateLimiter applicationLimit = new RateLimiter(1000, 1, RateLimiter.Policy.REJECT, null, 0, TimeUnit.NANOSECONDS, clock::get);
+        application.setRateLimiter(applicationLimit);
+        assertTrue(application.sendMessage(message));
+        assertFalse(application.sendMessage(message));
+
+        assertEquals(received.size(), 3);
+        assertEquals(portLimit.rejected() + deviceLimit.rejected() + applicationLimit.rejected(), 3);
+    }
+}
@@ -0,0 +1,46 @@
+import java.util.Objects;
+
+/**
+ * Stand-in for a Device on the other side of a MotherboardLink.
+ * Messages it receives are forwarded across the link instead of being handed to a local Application.
+ */
+public class RemoteDevice extends AbstractDevice {
+
+    /**
+     * the link Messages to this RemoteDevice are forwarded through
+     */
+    private final MotherboardLink link;
+
+    /**
+     * Creates a new RemoteDevice for the Device with the given identifier on the other side of the given link.
+     *
+     * @param identifier the identifier of the Device on the other side
+     * @param receiveBroadcast whether broadcasts are relayed to the other side through this RemoteDevice
+     * @param link the link to forward Messages through
+     * @throws NullPointerException when the link is null
+     */
+    protected RemoteDevice(int identifier, boolean receiveBroadcast, MotherboardLink link) {
+        super(identifier, receiveBroadcast);
+        this.link = Objects.requireNonNull(link);
+    }
+
+    /**
+     * @param message the Message to forward
+     * @return the result of link.forward(message)
+     * @throws NullPointerException if the Message is null
+     */
+    @Override
+    public boolean receiveMessage(Message message) {
+        Objects.requireNonNull(message);
+        return link.forward(message);
+    }
+
+    /**
+     * @param payload the broadcast payload to relay to the other side
+     * Calls link.relayBroadcast(payload)
+     */
+    @Override
+    public void receiveBroadcastMessage(String payload) {
+        link.relayBroadcast(payload);
+    }
+}
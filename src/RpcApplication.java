@@ -0,0 +1,206 @@
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Skeletal Application that adds request/response calls on top of fire-and-forget Messages.
+ * A call stamps the request with this Application's address and a correlation ID, keeps the pending call in a table
+ * keyed by that ID and completes the returned CompletableFuture when the reply arrives or the timeout fires.
+ * Requests received by this Application are answered with the result of handleRequest.
+ */
+public abstract class RpcApplication extends AbstractApplication {
+
+    /**
+     * Logger to log descriptive warning messages instead of throwing exceptions
+     */
+    private static final Logger logger = Logger.getLogger(RpcApplication.class.getName());
+
+    /**
+     * the TimerWheel that fires the timeouts of pending calls
+     */
+    private final TimerWheel timers;
+
+    /**
+     * calls waiting for a reply keyed by correlation ID; guarded by itself
+     */
+    private final LongMap<PendingCall> pending = new LongMap<>(1024);
+
+    /**
+     * the correlation ID of the last call made
+     */
+    private long lastCorrelation = 0;
+
+    /**
+     * the port this RpcApplication listens on; replies are addressed to it
+     */
+    private volatile int port;
+
+    /**
+     * whether this RpcApplication has connected to a port
+     */
+    private volatile boolean connected = false;
+
+    /**
+     * Creates a new RpcApplication on the given Device whose call timeouts are fired by the given TimerWheel.
+     *
+     * @param device the Device this RpcApplication will be connected to
+     * @param timers the TimerWheel firing call timeouts, usually shared by many RpcApplications
+     * @throws NullPointerException when the TimerWheel is null
+     */
+    protected RpcApplication(Device device, TimerWheel timers) {
+        super(device);
+        this.timers = Objects.requireNonNull(timers);
+    }
+
+    /**
+     * @param port the port to have this RpcApplication listen on
+     * @return the result of device.addApplication(port, this)
+     * Remembers the port so replies can be addressed to it
+     */
+    @Override
+    public boolean connectToPort(int port) {
+        if (!super.connectToPort(port))
+            return false;
+        this.port = port;
+        this.connected = true;
+        return true;
+    }
+
+    /**
+     * Sends a request with the given payload and returns a future completed with the reply.
+     *
+     * @param recipient the identifier of the Device to call
+     * @param port the port of the Application to call
+     * @param payload the binary string payload of the request
+     * @param timeout how long to wait for the reply
+     * @param unit the unit of the timeout
+     * @return a CompletableFuture completed with the reply, or exceptionally with a TimeoutException when the timeout
+     *   passes first, or with an IllegalStateException when this RpcApplication has no port or the request isn't sent
+     * @throws NullPointerException when the payload is null
+     * @throws IllegalArgumentException when the payload is not a non-empty binary string
+     * Calls sendMessage(request)
+     */
+    protected CompletableFuture<Message> call(int recipient, int port, String payload, long timeout, TimeUnit unit) {
+        Message request = Message.of(recipient, port, payload);
+        CompletableFuture<Message> future = new CompletableFuture<>();
+        if (!connected) {
+            future.completeExceptionally(new IllegalStateException("application %s must be connected to a port to receive replies".formatted(this)));
+            return future;
+        }
+        PendingCall call = new PendingCall(future);
+        long correlation;
+        synchronized (pending) {
+            do {
+                correlation = ++lastCorrelation;
+            } while (correlation == 0 || pending.get(correlation) != null);
+            pending.put(correlation, call);
+        }
+        long id = correlation;
+        call.timeout = timers.schedule(() -> {
+            if (complete(id) != null)
+                future.completeExceptionally(new TimeoutException("no reply to call %d within %d %s".formatted(id, timeout, unit)));
+        }, timeout, unit);
+        if (!sendMessage(request.withSender(device().identifier(), this.port).withCorrelation(id, false)) && complete(id) != null)
+            future.completeExceptionally(new IllegalStateException("request %d could not be sent to device with ID %d".formatted(id, recipient)));
+        return future;
+    }
+
+    /**
+     * Returns the number of calls waiting for a reply.
+     *
+     * @return the number of pending calls
+     */
+    protected int pendingCalls() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Receives a Message and dispatches it by kind.
+     *
+     * @param message the Message to receive
+     * Completes the pending call if the Message is a reply; logs a warning if no call is waiting for it
+     * Sends the result of handleRequest(message) back to the sender if the Message is a request
+     * Calls handleMessage(message) otherwise
+     */
+    @Override
+    public final void receiveMessage(Message message) {
+        if (message.isReply()) {
+            PendingCall call = complete(message.correlation());
+            if (call == null)
+                logger.log(Level.WARNING, "reply %d arrived at application %s but no call is waiting for it".formatted(message.correlation(), this));
+            else
+                call.future.complete(message);
+        }
+        else if (message.correlation() != 0 && message.sender().isPresent()) {
+            String reply = handleRequest(message);
+            if (reply != null)
+                sendMessage(Message.of(message.sender().getAsInt(), message.senderPort(), reply)
+                        .withSender(device().identifier(), port)
+                        .withCorrelation(message.correlation(), true));
+        }
+        else {
+            handleMessage(message);
+        }
+    }
+
+    /**
+     * Handles a request sent to this RpcApplication and returns the payload of the reply.
+     *
+     * @param request the request to handle
+     * @return the binary string payload of the reply, or null to not reply
+     */
+    protected abstract String handleRequest(Message request);
+
+    /**
+     * Handles a Message that is neither a request nor a reply; does nothing unless overridden.
+     *
+     * @param message the Message to handle
+     */
+    protected void handleMessage(Message message) {}
+
+    /**
+     * Removes the call with the given correlation ID from the pending table and cancels its timeout.
+     *
+     * @param correlation the correlation ID of the call
+     * @return the call that was pending or null if it was already completed
+     */
+    private PendingCall complete(long correlation) {
+        PendingCall call;
+        synchronized (pending) {
+            call = pending.remove(correlation);
+        }
+        if (call != null && call.timeout != null)
+            call.timeout.cancel();
+        return call;
+    }
+
+    /**
+     * A call waiting for its reply.
+     */
+    private static class PendingCall {
+
+        /**
+         * the future handed to the caller
+         */
+        private final CompletableFuture<Message> future;
+
+        /**
+         * the timeout that fails the call; null until scheduled
+         */
+        private volatile TimerWheel.Timeout timeout = null;
+
+        /**
+         * Creates a new PendingCall for the given future.
+         *
+         * @param future the future handed to the caller
+         */
+        private PendingCall(CompletableFuture<Message> future) {
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RpcApplicationTest {
+
+    private final Logger logger = Logger.getLogger(RpcApplication.class.getName());
+    private final LoggerTestingHandler handler = new LoggerTestingHandler();
+    private final AtomicLong clock = new AtomicLong();
+    private final TimerWheel timers = new TimerWheel(1, TimeUnit.MILLISECONDS, 64, clock::get);
+    private final Motherboard motherboard = new Motherboard();
+    private final Mock.MockDevice clientDevice = new Mock.MockDevice(1, false);
+    private final Mock.MockDevice serverDevice = new Mock.MockDevice(2, false);
+
+    /**
+     * Replies with the inverted payload, or doesn't reply to payloads starting with 0.
+     */
+    private class Inverter extends RpcApplication {
+
+        private Message lastOneWay = null;
+
+        private Inverter(Device device) {
+            super(device, timers);
+        }
+
+        @Override
+        protected String handleRequest(Message request) {
+            if (request.payload().startsWith("0"))
+                return null;
+            return request.payload().replace('1', 'x').replace('0', '1').replace('x', '0');
+        }
+
+        @Override
+        protected void handleMessage(Message message) {
+            lastOneWay = message;
+        }
+
+        @Override
+        public void receiveBroadcastMessage(String payload) {}
+    }
+
+    private final Inverter client = new Inverter(clientDevice);
+    private final Inverter server = new Inverter(serverDevice);
+
+    @Before
+    public void setup() {
+        logger.addHandler(handler);
+        clientDevice.setMotherboard(motherboard);
+        serverDevice.setMotherboard(motherboard);
+    }
+
+    @Test
+    public void call() throws Exception {
+        assertTrue(client.call(2, 7, "10", 1, TimeUnit.SECONDS).isCompletedExceptionally());
+
+        client.connectToPort(5);
+        server.connectToPort(7);
+
+        assertThrows(NullPointerException.class, () -> client.call(2, 7, null, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> client.call(2, 7, "2", 1, TimeUnit.SECONDS));
+
+        CompletableFuture<Message> reply = client.call(2, 7, "1100", 1, TimeUnit.SECONDS);
+        assertTrue(reply.isDone());
+        assertEquals(reply.get().payload(), "0011");
+        assertEquals(reply.get().sender().getAsInt(), 2);
+        assertEquals(reply.get().senderPort(), 7);
+        assertTrue(reply.get().isReply());
+        assertEquals(client.pendingCalls(), 0);
+        assertEquals(timers.size(), 0);
+    }
+
+    @Test
+    public void callNotSent() {
+        client.connectToPort(5);
+
+        CompletableFuture<Message> reply = client.call(9, 7, "1", 1, TimeUnit.SECONDS);
+        ExecutionException thrown = assertThrows(ExecutionException.class, reply::get);
+        assertTrue(thrown.getCause() instanceof IllegalStateException);
+        assertEquals(client.pendingCalls(), 0);
+    }
+
+    @Test
+    public void timeout() {
+        client.connectToPort(5);
+        server.connectToPort(7);
+
+        CompletableFuture<Message> reply = client.call(2, 7, "01", 10, TimeUnit.MILLISECONDS);
+        assertFalse(reply.isDone());
+        assertEquals(client.pendingCalls(), 1);
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        timers.advance();
+        ExecutionException thrown = assertThrows(ExecutionException.class, reply::get);
+        assertTrue(thrown.getCause() instanceof TimeoutException);
+        assertEquals(client.pendingCalls(), 0);
+    }
+
+    @Test
+    public void receiveMessage() {
+        client.connectToPort(5);
+        handler.clearLogRecords();
+
+        Message oneWay = Message.of(1, 5, "1");
+        client.receiveMessage(oneWay);
+        assertSame(client.lastOneWay, oneWay);
+
+        client.receiveMessage(Message.of(1, 5, "1").withCorrelation(42, true));
+        assertTrue(handler.getLastLog().orElse("").contains("no call is waiting for it"));
+    }
+
+    @Test
+    public void manyOutstandingCalls() {
+        client.connectToPort(5);
+        server.connectToPort(7);
+        int calls = 100_000;
+        for (int i = 0; i < calls; i++)
+            client.call(2, 7, "0", 1, TimeUnit.SECONDS);
+        assertEquals(client.pendingCalls(), calls);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(timers.advance(), calls);
+        assertEquals(client.pendingCalls(), 0);
+    }
+}
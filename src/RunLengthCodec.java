@@ -0,0 +1,121 @@
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * PayloadCodec for payloads with long runs of 0s and 1s such as bitmaps and sparse flags.
+ * The first byte is the value of the first bit, followed by the length of every run as an unsigned varint.
+ */
+public class RunLengthCodec implements PayloadCodec {
+
+    /**
+     * Creates a new RunLengthCodec.
+     */
+    protected RunLengthCodec() {
+        super();
+    }
+
+    /**
+     * @param payload a non-empty binary string
+     * @return the first bit followed by the run lengths
+     */
+    public byte[] encode(String payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        char current = payload.charAt(0);
+        out.write(current == '1' ? 1 : 0);
+        int run = 0;
+        for (int i = 0; i < payload.length(); i++) {
+            if (payload.charAt(i) != current) {
+                writeVarint(out, run);
+                current = payload.charAt(i);
+                run = 0;
+            }
+            run++;
+        }
+        writeVarint(out, run);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param encoded the bytes returned by encode
+     * @return the binary string made of the runs
+     */
+    public String decode(byte[] encoded) {
+        char[] bits = new char[decodedLength(encoded)];
+        char current = encoded[0] == 1 ? '1' : '0';
+        int filled = 0;
+        int position = 1;
+        while (position < encoded.length) {
+            int run = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte next = encoded[position++];
+                run |= (next & 0x7F) << shift;
+                if (next >= 0)
+                    break;
+            }
+            Arrays.fill(bits, filled, filled + run, current);
+            filled += run;
+            current = current == '1' ? '0' : '1';
+        }
+        return new String(bits);
+    }
+
+    /**
+     * @param encoded the bytes returned by encode
+     * @return the sum of the run lengths
+     */
+    public int decodedLength(byte[] encoded) {
+        int length = 0;
+        int run = 0;
+        int shift = 0;
+        for (int position = 1; position < encoded.length; position++) {
+            run |= (encoded[position] & 0x7F) << shift;
+            shift += 7;
+            if (encoded[position] >= 0) {
+                length += run;
+                run = 0;
+                shift = 0;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @param encoded the bytes to check
+     * @return whether the bytes are a first bit followed by complete, positive run lengths adding up to at most Integer.MAX_VALUE
+     */
+    public boolean isValid(byte[] encoded) {
+        if (encoded.length < 2 || (encoded[0] != 0 && encoded[0] != 1) || encoded[encoded.length - 1] < 0)
+            return false;
+        long length = 0;
+        long run = 0;
+        int shift = 0;
+        for (int position = 1; position < encoded.length; position++) {
+            if (shift > 28)
+                return false;
+            run |= (long) (encoded[position] & 0x7F) << shift;
+            shift += 7;
+            if (encoded[position] >= 0) {
+                if (run == 0)
+                    return false;
+                length += run;
+                run = 0;
+                shift = 0;
+            }
+        }
+        return length <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Writes the given non-negative value as an unsigned LEB128 varint.
+     *
+     * @param out the stream to write to
+     * @param value the value to write
+     */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -0,0 +1,43 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RunLengthCodecTest {
+
+    private final RunLengthCodec codec = new RunLengthCodec();
+
+    @Test
+    public void encode() {
+        assertArrayEquals(codec.encode("0"), new byte[] {0, 1});
+        assertArrayEquals(codec.encode("1100010"), new byte[] {1, 2, 3, 1, 1});
+        // a run of 300 takes a two-byte varint
+        assertArrayEquals(codec.encode("1".repeat(300)), new byte[] {1, (byte) 0xAC, 0x02});
+    }
+
+    @Test
+    public void decode() {
+        for (String payload : new String[] {"0", "1", "1100010", "0".repeat(10_000) + "1" + "0".repeat(200)})
+            assertEquals(codec.decode(codec.encode(payload)), payload);
+    }
+
+    @Test
+    public void decodedLength() {
+        assertEquals(codec.decodedLength(codec.encode("0".repeat(10_000) + "11")), 10_002);
+    }
+
+    @Test
+    public void compressesRuns() {
+        String sparse = "0".repeat(100_000) + "1" + "0".repeat(100_000);
+        assertTrue(codec.encode(sparse).length < 10);
+    }
+
+    @Test
+    public void isValid() {
+        assertTrue(codec.isValid(codec.encode("0".repeat(10_000) + "11")));
+        assertFalse(codec.isValid(new byte[] {0}));
+        assertFalse(codec.isValid(new byte[] {2, 1}));
+        assertFalse(codec.isValid(new byte[] {0, (byte) 0x80}));
+        assertFalse(codec.isValid(new byte[] {0, 0}));
+        assertFalse(codec.isValid(new byte[] {0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 1}));
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Represents a strategy a Motherboard uses to deliver a Message to the Device it was routed to.
+ */
+public interface Scheduler {
+
+    /**
+     * Delivers the given Message to the given Device, either right away or at a later point.
+     * Returns whether the Message was delivered or accepted for delivery.
+     *
+     * @param recipient the Device the Message was routed to
+     * @param message the Message to deliver
+     * @return whether the Message was delivered or accepted for delivery
+     */
+    boolean deliver(Device recipient, Message message);
+
+    /**
+     * Hands the given broadcast payload to the given Device, either right away or at a later point.
+     * Returns whether the payload was delivered or accepted for delivery.
+     *
+     * @param recipient a Device that wants to receive broadcast messages
+     * @param payload the broadcast payload
+     * @return whether the payload was delivered or accepted for delivery
+     * Calls recipient.receiveBroadcastMessage(payload) right away unless overridden
+     */
+    default boolean deliverBroadcast(Device recipient, String payload) {
+        recipient.receiveBroadcastMessage(payload);
+        return true;
+    }
+
+    /**
+     * Returns the number of Messages accepted for delivery and not yet handed to their Device.
+     *
+     * @return the number of queued Messages; 0 for a Scheduler that delivers right away
+     */
+    default long queued() {
+        return 0;
+    }
+}
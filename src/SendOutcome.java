@@ -0,0 +1,21 @@
+/**
+ * What became of a Message handed to a send, for senders that retry back-pressure but not other failures.
+ */
+public enum SendOutcome {
+    /** the recipient received the Message, or a Scheduler, Coalescer, RateLimiter or DeadLetterQueue took it */
+    SENT,
+    /** the Application on the Message's port couldn't keep up and refused it, so sending it again later may succeed */
+    REFUSED,
+    /** the Message couldn't be sent for any other reason, so sending it again would fail the same way */
+    FAILED;
+
+    /**
+     * Returns the SendOutcome of a send that only tells whether it succeeded.
+     *
+     * @param sent whether the Message was sent
+     * @return SENT if it was, FAILED otherwise
+     */
+    protected static SendOutcome of(boolean sent) {
+        return sent ? SENT : FAILED;
+    }
+}
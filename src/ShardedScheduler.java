@@ -0,0 +1,463 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Scheduler that pins every Device to one of a fixed number of event-loop threads (shards), usually one per core.
+ * A Device is only ever handed Messages by the thread of its own shard, so Devices and Applications need no locking.
+ * Messages sent from a shard to a Device on the same shard are delivered inline; Messages sent to a Device on
+ * another shard go through a single-producer/single-consumer ring dedicated to that pair of shards, and through an
+ * overflow queue of the same pair while the ring is full, so Messages between two shards keep their order.
+ * Messages sent from threads that don't belong to this ShardedScheduler go through a shared inbound queue.
+ */
+public class ShardedScheduler implements Scheduler {
+
+    /**
+     * Logger to log descriptive warning messages instead of throwing exceptions
+     */
+    private static final Logger logger = Logger.getLogger(ShardedScheduler.class.getName());
+
+    /**
+     * how long an idle shard parks before checking its queues again
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * the shards of this ShardedScheduler
+     */
+    private final Shard[] shards;
+
+    /**
+     * whether this ShardedScheduler has been started and not shut down yet
+     */
+    private volatile boolean running = false;
+
+    /**
+     * number of Messages queued and not yet handed to their Device
+     */
+    private final LongAdder queued = new LongAdder();
+
+    /**
+     * Creates a new ShardedScheduler with one shard per available processor.
+     */
+    protected ShardedScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), 1024);
+    }
+
+    /**
+     * Creates a new ShardedScheduler with the given number of shards.
+     *
+     * @param shardCount the number of event-loop threads
+     * @param ringCapacity the capacity of each ring between two shards
+     * @throws IllegalArgumentException when the shard count or ring capacity is not positive
+     */
+    protected ShardedScheduler(int shardCount, int ringCapacity) {
+        if (shardCount <= 0)
+            throw new IllegalArgumentException("shard count must be positive");
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++)
+            shards[i] = new Shard(i, shardCount, ringCapacity);
+    }
+
+    /**
+     * Starts the event-loop thread of every shard.
+     * Returns whether this ShardedScheduler was started by this call.
+     *
+     * @return false if this ShardedScheduler was already running
+     */
+    protected synchronized boolean start() {
+        if (running)
+            return false;
+        running = true;
+        for (Shard shard : shards) {
+            shard.thread = new ShardThread(this, shard);
+            shard.thread.start();
+        }
+        return true;
+    }
+
+    /**
+     * Stops every shard after it has delivered the Messages already queued for it and waits for its thread to end.
+     *
+     * @throws InterruptedException when interrupted while waiting for a shard to stop
+     */
+    protected synchronized void shutdown() throws InterruptedException {
+        if (!running)
+            return;
+        running = false;
+        for (Shard shard : shards)
+            LockSupport.unpark(shard.thread);
+        for (Shard shard : shards)
+            shard.thread.join();
+    }
+
+    /**
+     * Returns the number of shards of this ShardedScheduler.
+     *
+     * @return the number of shards
+     */
+    protected int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the shard the given Device is pinned to.
+     *
+     * @param device the Device to look up
+     * @return the index of the shard that owns the Device
+     */
+    protected int shardOf(Device device) {
+        return Math.floorMod(device.identifier(), shards.length);
+    }
+
+    /**
+     * @param recipient the Device the Message was routed to
+     * @param message the Message to deliver
+     * @return the result of recipient.receiveMessage(message) when delivered inline, otherwise whether the Message was queued
+     * @throws NullPointerException if the Device or the Message is null
+     * Logs a warning and returns false if this ShardedScheduler is not running, or stopped before the Message was
+     *   handed over, in which case the Message is taken back unless a shard already claimed it
+     * Delivers inline when the calling thread is the shard that owns the recipient
+     */
+    public boolean deliver(Device recipient, Message message) {
+        Objects.requireNonNull(recipient);
+        Objects.requireNonNull(message);
+        if (!running) {
+            logger.log(Level.WARNING, "couldn't deliver message to device with ID %d because scheduler %s is not running".formatted(recipient.identifier(), this));
+            return false;
+        }
+        Shard target = shards[shardOf(recipient)];
+        Delivery delivery = new Delivery(recipient, message);
+        if (Thread.currentThread() instanceof ShardThread current && current.scheduler == this) {
+            if (current.shard == target)
+                return recipient.receiveMessage(message);
+            queued.increment();
+            target.lanes[current.shard.index].offer(delivery);
+        }
+        else {
+            queued.increment();
+            target.inbound.offer(delivery);
+        }
+        target.wake();
+        // a shutdown between the check and the offer may have stopped the shard already, so take the Message back
+        // unless the shard's last drain claimed it
+        if (!running && delivery.claim()) {
+            queued.decrement();
+            logger.log(Level.WARNING, "couldn't deliver message to device with ID %d because scheduler %s is not running".formatted(recipient.identifier(), this));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of Messages queued for a shard and not yet handed to their Device
+     */
+    @Override
+    public long queued() {
+        return queued.sum();
+    }
+
+    /**
+     * Runs the event loop of the given shard until this ShardedScheduler is shut down and the shard is drained.
+     *
+     * @param shard the shard owned by the calling thread
+     */
+    private void loop(Shard shard) {
+        while (true) {
+            boolean stopping = !running;
+            int drained = shard.drain();
+            if (drained > 0) {
+                queued.add(-drained);
+                continue;
+            }
+            if (stopping)
+                return;
+            shard.idle = true;
+            if (shard.isEmpty())
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            shard.idle = false;
+        }
+    }
+
+    /**
+     * A Message waiting to be handed to the Device it was routed to, claimed once by whoever hands it over or takes
+     * it back.
+     */
+    private static final class Delivery {
+
+        /**
+         * VarHandle to claim a Delivery atomically
+         */
+        private static final VarHandle CLAIMED;
+
+        static {
+            try {
+                CLAIMED = MethodHandles.lookup().findVarHandle(Delivery.class, "claimed", boolean.class);
+            }
+            catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        /**
+         * the Device to hand the Message to
+         */
+        private final Device recipient;
+
+        /**
+         * the Message to deliver
+         */
+        private final Message message;
+
+        /**
+         * the position of this Delivery among those sent through its Lane; set by the producing shard before it is queued
+         */
+        private long sequence = 0;
+
+        /**
+         * whether a shard handed the Message over or the sender took it back
+         */
+        @SuppressWarnings("unused")
+        private volatile boolean claimed = false;
+
+        /**
+         * Creates a new unclaimed Delivery.
+         *
+         * @param recipient the Device to hand the Message to
+         * @param message the Message to deliver
+         */
+        private Delivery(Device recipient, Message message) {
+            this.recipient = recipient;
+            this.message = message;
+        }
+
+        /**
+         * Claims this Delivery.
+         *
+         * @return whether this call claimed it, rather than an earlier one
+         */
+        private boolean claim() {
+            return CLAIMED.compareAndSet(this, false, true);
+        }
+    }
+
+    /**
+     * One event loop and the queues that feed it.
+     */
+    private static class Shard {
+
+        /**
+         * position of this Shard in its ShardedScheduler
+         */
+        private final int index;
+
+        /**
+         * lanes[i] carries Messages from shard i to this Shard; lanes[index] is never used
+         */
+        private final Lane[] lanes;
+
+        /**
+         * Messages from threads outside the ShardedScheduler
+         */
+        private final Queue<Delivery> inbound = new ConcurrentLinkedQueue<>();
+
+        /**
+         * the event-loop thread of this Shard
+         */
+        private volatile Thread thread;
+
+        /**
+         * whether the event-loop thread is about to park
+         */
+        private volatile boolean idle = false;
+
+        /**
+         * Creates a new Shard with one ring from each other shard.
+         *
+         * @param index position of this Shard in its ShardedScheduler
+         * @param shardCount the number of shards in the ShardedScheduler
+         * @param ringCapacity the capacity of each ring
+         */
+        private Shard(int index, int shardCount, int ringCapacity) {
+            this.index = index;
+            this.lanes = new Lane[shardCount];
+            for (int i = 0; i < shardCount; i++)
+                lanes[i] = new Lane(ringCapacity);
+        }
+
+        /**
+         * Delivers every Message currently queued for this Shard.
+         *
+         * @return the number of Messages delivered, not counting those their sender took back
+         */
+        private int drain() {
+            int delivered = 0;
+            for (Lane lane : lanes)
+                delivered += lane.drain();
+            Delivery delivery;
+            while ((delivery = inbound.poll()) != null) {
+                if (handle(delivery))
+                    delivered++;
+            }
+            return delivered;
+        }
+
+        /**
+         * Returns whether no Message is queued for this Shard.
+         *
+         * @return whether every queue of this Shard is empty
+         */
+        private boolean isEmpty() {
+            for (Lane lane : lanes) {
+                if (lane.ring.size() > 0 || !lane.overflow.isEmpty())
+                    return false;
+            }
+            return inbound.isEmpty();
+        }
+
+        /**
+         * Unparks the event-loop thread if it is idle.
+         */
+        private void wake() {
+            if (idle)
+                LockSupport.unpark(thread);
+        }
+
+        /**
+         * Hands the given Delivery to its Device unless its sender took it back.
+         *
+         * @param delivery the Delivery to hand over
+         * @return whether this Shard claimed the Delivery
+         * Logs a warning if the Device throws, so one faulty Device can't stop the shard
+         * Drops the Message and commits a FlightEvents.Reject event if it expired while queued
+         */
+        private static boolean handle(Delivery delivery) {
+            if (!delivery.claim())
+                return false;
+            if (delivery.message.isExpired()) {
+                FlightEvents.reject(FlightEvents.Reason.EXPIRED, delivery.message);
+                return true;
+            }
+            try {
+                delivery.recipient.receiveMessage(delivery.message);
+            }
+            catch (RuntimeException e) {
+                logger.log(Level.WARNING, "device with ID %d threw while receiving a message: %s".formatted(delivery.recipient.identifier(), e));
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The Messages from one shard to another: a ring, and an overflow queue used from the moment the ring is full
+     * until the consumer has emptied it. Every Delivery is numbered as it is queued and the consumer always takes the
+     * next number from whichever head holds it, so later Messages never overtake earlier ones.
+     */
+    private static class Lane {
+
+        /**
+         * Messages from the producing shard while there is no overflow
+         */
+        private final SpscRing<Delivery> ring;
+
+        /**
+         * Messages from the producing shard that didn't fit in the ring, in order
+         */
+        private final Queue<Delivery> overflow = new ConcurrentLinkedQueue<>();
+
+        /**
+         * the sequence of the next Delivery queued; only used by the producing shard
+         */
+        private long sent = 0;
+
+        /**
+         * the sequence of the next Delivery to hand over; only used by the consuming shard
+         */
+        private long next = 0;
+
+        /**
+         * Creates a new empty Lane.
+         *
+         * @param ringCapacity the capacity of the ring
+         */
+        private Lane(int ringCapacity) {
+            this.ring = new SpscRing<>(ringCapacity);
+        }
+
+        /**
+         * Queues the given Delivery behind every Delivery offered before it; only called by the producing shard.
+         *
+         * @param delivery the Delivery to queue
+         */
+        private void offer(Delivery delivery) {
+            delivery.sequence = sent++;
+            if (!overflow.isEmpty() || !ring.offer(delivery))
+                overflow.offer(delivery);
+        }
+
+        /**
+         * Hands over every Delivery queued in order; only called by the consuming shard.
+         *
+         * @return the number of Messages delivered, not counting those their sender took back
+         */
+        private int drain() {
+            int delivered = 0;
+            while (true) {
+                Delivery delivery = ring.peek();
+                if (delivery != null && delivery.sequence == next)
+                    ring.poll();
+                else {
+                    delivery = overflow.peek();
+                    // the next Delivery isn't queued yet
+                    if (delivery == null || delivery.sequence != next)
+                        return delivered;
+                    overflow.poll();
+                }
+                next++;
+                if (Shard.handle(delivery))
+                    delivered++;
+            }
+        }
+    }
+
+    /**
+     * Event-loop thread that remembers which ShardedScheduler and shard it belongs to.
+     */
+    private static class ShardThread extends Thread {
+
+        /**
+         * the ShardedScheduler this ShardThread belongs to
+         */
+        private final ShardedScheduler scheduler;
+
+        /**
+         * the shard this ShardThread runs
+         */
+        private final Shard shard;
+
+        /**
+         * Creates a new daemon ShardThread for the given shard.
+         *
+         * @param scheduler the ShardedScheduler the shard belongs to
+         * @param shard the shard to run
+         */
+        private ShardThread(ShardedScheduler scheduler, Shard shard) {
+            super("shard-" + shard.index);
+            this.scheduler = scheduler;
+            this.shard = shard;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            scheduler.loop(shard);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ShardedSchedulerTest {
+
+    private final ShardedScheduler scheduler = new ShardedScheduler(4, 8);
+
+    @After
+    public void tearDown() throws InterruptedException {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void constructor() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedScheduler(0, 8));
+        assertEquals(scheduler.shardCount(), 4);
+    }
+
+    @Test
+    public void shardOf() {
+        assertEquals(scheduler.shardOf(new Mock.MockDevice(5, false)), 1);
+        assertEquals(scheduler.shardOf(new Mock.MockDevice(-1, false)), 3);
+    }
+
+    @Test
+    public void start() {
+        assertTrue(scheduler.start());
+        assertFalse(scheduler.start());
+    }
+
+    @Test
+    public void deliver() throws InterruptedException {
+        Mock.MockDevice device = new Mock.MockDevice(1, false);
+        Message message = Message.of(1, 1, "100");
+
+        assertThrows(NullPointerException.class, () -> scheduler.deliver(null, message));
+        assertThrows(NullPointerException.class, () -> scheduler.deliver(device, null));
+
+        // not started yet
+        assertFalse(scheduler.deliver(device, message));
+
+        CountDownLatch latch = new CountDownLatch(1);
+        Map<String, Thread> receivedOn = new ConcurrentHashMap<>();
+        new Mock.MockApplication(device) {
+            @Override
+            public void receiveMessage(Message message) {
+                receivedOn.put(message.payload(), Thread.currentThread());
+                latch.countDown();
+            }
+        }.connectToPort(1);
+
+        scheduler.start();
+        assertTrue(scheduler.deliver(device, message));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(receivedOn.get("100").getName(), "shard-1");
+    }
+
+    @Test
+    public void crossShardTraffic() throws InterruptedException {
+        Motherboard motherboard = new Motherboard();
+        motherboard.setScheduler(scheduler);
+        int devices = 8;
+        int hops = 1_000;
+        CountDownLatch done = new CountDownLatch(devices);
+        Map<Integer, Thread> owners = new ConcurrentHashMap<>();
+        Map<Integer, Boolean> sameOwner = new ConcurrentHashMap<>();
+
+        for (int i = 0; i < devices; i++) {
+            int id = i;
+            Mock.MockDevice device = new Mock.MockDevice(id, false);
+            device.setMotherboard(motherboard);
+            new Mock.MockApplication(device) {
+                private int received = 0;
+
+                @Override
+                public void receiveMessage(Message message) {
+                    Thread previous = owners.putIfAbsent(id, Thread.currentThread());
+                    if (previous != null && previous != Thread.currentThread())
+                        sameOwner.put(id, false);
+                    if (++received == hops)
+                        done.countDown();
+                    // pass the token on to the next device, which may live on another shard
+                    sendMessage(Message.of((id + 1) % devices, 0, message.payload()));
+                }
+            }.connectToPort(0);
+        }
+
+        scheduler.start();
+        for (int i = 0; i < devices; i++)
+            assertTrue(motherboard.sendMessage(Message.of(i, 0, "1")));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(sameOwner.isEmpty());
+        assertEquals(List.copyOf(owners.keySet()).size(), devices);
+    }
+
+    @Test
+    public void crossShardOrderWithFullRing() throws InterruptedException {
+        Motherboard motherboard = new Motherboard();
+        motherboard.setScheduler(scheduler);
+        int count = 200;
+        Mock.MockDevice sender = new Mock.MockDevice(0, false);
+        Mock.MockDevice receiver = new Mock.MockDevice(1, false);
+        sender.setMotherboard(motherboard);
+        receiver.setMotherboard(motherboard);
+        List<Integer> received = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(count);
+        new Mock.MockApplication(sender) {
+            @Override
+            public void receiveMessage(Message message) {
+                // far more than the ring between the two shards holds
+                for (int i = 0; i < count; i++)
+                    sendMessage(Message.of(1, 0, Integer.toBinaryString(i)));
+            }
+        }.connectToPort(0);
+        new Mock.MockApplication(receiver) {
+            @Override
+            public void receiveMessage(Message message) {
+                received.add(Integer.parseInt(message.payload(), 2));
+                done.countDown();
+            }
+        }.connectToPort(0);
+
+        scheduler.start();
+        assertTrue(motherboard.sendMessage(Message.of(0, 0, "1")));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < count; i++)
+            assertEquals(i, (int) received.get(i));
+    }
+
+    @Test
+    public void acceptedMessagesSurviveShutdown() throws InterruptedException {
+        Mock.MockDevice device = new Mock.MockDevice(1, false);
+        AtomicInteger received = new AtomicInteger();
+        new Mock.MockApplication(device) {
+            @Override
+            public void receiveMessage(Message message) {
+                received.incrementAndGet();
+            }
+        }.connectToPort(1);
+        AtomicInteger accepted = new AtomicInteger();
+        scheduler.start();
+        List<Thread> senders = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread sender = new Thread(() -> {
+                for (int j = 0; j < 2_000; j++) {
+                    if (scheduler.deliver(device, Message.of(1, 1, "1")))
+                        accepted.incrementAndGet();
+                }
+            });
+            senders.add(sender);
+            sender.start();
+        }
+        Thread.sleep(1);
+        scheduler.shutdown();
+        for (Thread sender : senders)
+            sender.join();
+
+        // every Message deliver accepted was handed over, even those racing the shutdown
+        assertEquals(received.get(), accepted.get());
+        assertEquals(scheduler.queued(), 0);
+    }
+}
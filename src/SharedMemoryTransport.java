@@ -0,0 +1,169 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Links a Motherboard to a Motherboard in another JVM on the same host through a memory-mapped file.
+ * The file holds two MappedRings, one per direction; the side that creates the file writes to the first and the
+ * side that opens it writes to the second. Frames are written in place into the ring, so sending a Message costs
+ * no system call and no copy beyond encoding it, and a poller thread reads the other ring with an adaptive
+ * spin-then-park strategy, so an idle link costs almost no CPU.
+ * Frames and RemoteDevices work exactly as they do for a MotherboardBridge.
+ */
+public class SharedMemoryTransport extends AbstractLink {
+
+    /**
+     * Logger to log descriptive warning messages instead of throwing exceptions
+     */
+    private static final Logger logger = Logger.getLogger(SharedMemoryTransport.class.getName());
+
+    /**
+     * how often the poller thread checks whether the local Devices changed and must be announced again, in nanoseconds
+     */
+    private static final long ANNOUNCE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * the ring this side writes frames to
+     */
+    private final MappedRing outbound;
+
+    /**
+     * the ring the other side writes frames to
+     */
+    private final MappedRing inbound;
+
+    /**
+     * serializes the threads sending on this side, since each ring has a single producer; held from claim to commit
+     */
+    private final ReentrantLock producerLock = new ReentrantLock();
+
+    /**
+     * the thread reading the inbound ring
+     */
+    private final Thread poller;
+
+    /**
+     * whether this SharedMemoryTransport has been closed
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Maps the given file, announces the local Devices and starts polling for frames from the other side.
+     *
+     * @param motherboard the local Motherboard
+     * @param file the file shared by both sides
+     * @param ringCapacity the number of bytes of frames each direction can hold, a power of two
+     * @param create whether this side creates the file; exactly one side must, and it must do so first
+     * @throws NullPointerException when the Motherboard or the file is null
+     * @throws IllegalArgumentException when the capacity is not a power of two of at least 16
+     * @throws IOException when the file can't be created, opened or mapped
+     */
+    protected SharedMemoryTransport(Motherboard motherboard, Path file, int ringCapacity, boolean create) throws IOException {
+        super(motherboard);
+        if (ringCapacity < 16 || Integer.bitCount(ringCapacity) != 1)
+            throw new IllegalArgumentException("ring capacity must be a power of two of at least 16 bytes");
+        int regionSize = MappedRing.regionSize(ringCapacity);
+        MappedByteBuffer mapped;
+        try (FileChannel channel = create
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (!create && channel.size() != 2L * regionSize)
+                throw new IOException("file %s does not hold two rings of %d bytes".formatted(file, ringCapacity));
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * regionSize);
+        }
+        MappedRing first = new MappedRing(mapped.slice(0, regionSize));
+        MappedRing second = new MappedRing(mapped.slice(regionSize, regionSize));
+        this.outbound = create ? first : second;
+        this.inbound = create ? second : first;
+        this.poller = new Thread(this::poll, "shm-poller");
+        poller.setDaemon(true);
+        announce();
+        poller.start();
+    }
+
+    /**
+     * Stops the poller thread and disconnects the RemoteDevices from the local Motherboard.
+     * The mapping is released once it is garbage collected.
+     */
+    public void close() {
+        closed = true;
+        try {
+            poller.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        removeRemoteDevices();
+    }
+
+    /**
+     * Reads frames from the inbound ring until this SharedMemoryTransport is closed, announcing the local Devices
+     * again whenever they change.
+     * Logs a warning and goes on polling if a frame fails or the ring is corrupt, so the link never goes quiet.
+     */
+    private void poll() {
+        BackoffIdleStrategy idle = new BackoffIdleStrategy(100, 10, 1_000, 1_000_000);
+        long lastAnnounceCheck = System.nanoTime();
+        while (!closed) {
+            int frames;
+            try {
+                frames = inbound.read(frame -> {
+                    try {
+                        handle(frame);
+                    }
+                    catch (RuntimeException e) {
+                        logger.log(Level.WARNING, "shared memory link of motherboard %s dropped a frame that failed: %s".formatted(motherboard, e));
+                    }
+                });
+            }
+            catch (RuntimeException e) {
+                logger.log(Level.WARNING, "shared memory ring of motherboard %s is corrupt and its pending frames were dropped: %s".formatted(motherboard, e));
+                frames = 1;
+            }
+            // a full ring fails the announce with a warning, so don't retry it on every spin
+            if (System.nanoTime() - lastAnnounceCheck >= ANNOUNCE_INTERVAL_NANOS) {
+                lastAnnounceCheck = System.nanoTime();
+                reannounce();
+            }
+            idle.idle(frames);
+        }
+    }
+
+    /**
+     * @param length the number of bytes in the frame
+     * @return a buffer in the outbound ring, or null if the ring is full
+     * Logs a warning if the ring is full
+     */
+    @Override
+    protected ByteBuffer claim(int length) {
+        producerLock.lock();
+        ByteBuffer frame = outbound.claim(length);
+        if (frame == null) {
+            producerLock.unlock();
+            logger.log(Level.WARNING, "shared memory ring of motherboard %s is full and dropped a frame of %d bytes".formatted(motherboard, length));
+        }
+        return frame;
+    }
+
+    /**
+     * Publishes the frame to the other side.
+     *
+     * @param frame the buffer returned by claim, with the frame written to it
+     */
+    @Override
+    protected void commit(ByteBuffer frame) {
+        try {
+            outbound.commit();
+        }
+        finally {
+            producerLock.unlock();
+        }
+    }
+}
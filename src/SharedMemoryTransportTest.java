@@ -0,0 +1,100 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SharedMemoryTransportTest {
+
+    private final Motherboard left = new Motherboard();
+    private final Motherboard right = new Motherboard();
+    private final BlockingQueue<Message> rightReceived = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> rightBroadcasts = new LinkedBlockingQueue<>();
+    private Path file;
+    private SharedMemoryTransport leftLink;
+    private SharedMemoryTransport rightLink;
+
+    private void link(int ringCapacity) throws Exception {
+        new Mock.MockDevice(1, true).setMotherboard(left);
+        Mock.MockDevice receiver = new Mock.MockDevice(2, true) {
+            @Override
+            public void receiveBroadcastMessage(String payload) {
+                rightBroadcasts.add(payload);
+            }
+        };
+        receiver.setMotherboard(right);
+        new Mock.MockApplication(receiver) {
+            @Override
+            public void receiveMessage(Message message) {
+                rightReceived.add(message);
+            }
+        }.connectToPort(7);
+
+        file = Files.createTempFile("pcic", ".shm");
+        leftLink = new SharedMemoryTransport(left, file, ringCapacity, true);
+        rightLink = new SharedMemoryTransport(right, file, ringCapacity, false);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((!left.hasDeviceWithID(2) || !right.hasDeviceWithID(1)) && System.nanoTime() < deadline)
+            Thread.sleep(5);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (leftLink != null)
+            leftLink.close();
+        if (rightLink != null)
+            rightLink.close();
+        if (file != null)
+            Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void forwardThroughSharedMemory() throws Exception {
+        link(4096);
+        assertEquals(leftLink.remoteDevices(), List.of(2));
+        assertEquals(rightLink.remoteDevices(), List.of(1));
+
+        assertTrue(left.sendMessage(Message.of(2, 7, "1011").withSender(1, 3).withCorrelation(9, true)));
+        Message received = rightReceived.poll(5, TimeUnit.SECONDS);
+        assertNotNull(received);
+        assertEquals(received.payload(), "1011");
+        assertEquals(received.sender().getAsInt(), 1);
+        assertEquals(received.senderPort(), 3);
+        assertEquals(received.correlation(), 9);
+        assertTrue(received.isReply());
+    }
+
+    @Test
+    public void broadcastCrossesTheLink() throws Exception {
+        link(4096);
+        left.sendBroadcastMessage("0110");
+        assertEquals(rightBroadcasts.poll(5, TimeUnit.SECONDS), "0110");
+    }
+
+    @Test
+    public void manyMessagesWrapTheRing() throws Exception {
+        link(256);
+        for (int i = 0; i < 500; i++) {
+            String payload = Integer.toBinaryString(i + 1);
+            while (!left.sendMessage(Message.of(2, 7, payload)))
+                Thread.yield();
+            Message received = rightReceived.poll(5, TimeUnit.SECONDS);
+            assertNotNull(received);
+            assertEquals(received.payload(), payload);
+        }
+    }
+
+    @Test
+    public void closeRemovesRemoteDevices() throws Exception {
+        link(4096);
+        leftLink.close();
+        assertFalse(left.hasDeviceWithID(2));
+        leftLink = null;
+    }
+}
@@ -0,0 +1,308 @@
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Scheduler that runs a Motherboard as a discrete-event simulation on a virtual clock instead of in real time.
+ * Every Message handed to it becomes an event due after the hop latency of its recipient, and run() hands the
+ * events to their Devices in order of virtual time on the calling thread, jumping the clock straight from one event
+ * to the next; Messages sent while handling an event become later events of the same run.
+ * Events due at the same time run in the order they were scheduled and latencies are drawn from a random generator
+ * seeded at construction, so the same scenario with the same seed always runs the same way. A Message with a time to
+ * live is refused, since its expiry is a deadline on the real clock that would make the run depend on how fast it ran.
+ * Broadcasts become one event per subscribed Device in the same way.
+ * A Simulation is not thread-safe: it must only be used by the thread that runs it.
+ */
+public class Simulation implements Scheduler {
+
+    /**
+     * Logger to log descriptive warning messages instead of throwing exceptions
+     */
+    private static final Logger logger = Logger.getLogger(Simulation.class.getName());
+
+    /**
+     * How long a Message takes from the Motherboard to the Device it was routed to.
+     */
+    @FunctionalInterface
+    public interface Latency {
+
+        /**
+         * Returns the hop latency of the given Message.
+         *
+         * @param recipient the Device the Message was routed to
+         * @param message the Message, or null for a broadcast payload
+         * @param random the seeded random generator of the Simulation
+         * @return the latency in nanoseconds, which can't be negative
+         */
+        long nanos(Device recipient, Message message, SplittableRandom random);
+
+        /**
+         * Returns a Latency that is always the given one.
+         *
+         * @param latency the hop latency
+         * @param unit the unit of the latency
+         * @return a fixed Latency
+         * @throws IllegalArgumentException when the latency is negative
+         */
+        static Latency fixed(long latency, TimeUnit unit) {
+            if (latency < 0)
+                throw new IllegalArgumentException("latency cannot be negative");
+            long nanos = unit.toNanos(latency);
+            return (recipient, message, random) -> nanos;
+        }
+
+        /**
+         * Returns a Latency drawn uniformly between the given bounds.
+         *
+         * @param min the shortest hop latency
+         * @param max the longest hop latency
+         * @param unit the unit of the bounds
+         * @return a uniformly random Latency
+         * @throws IllegalArgumentException when min is negative or greater than max
+         */
+        static Latency uniform(long min, long max, TimeUnit unit) {
+            if (min < 0 || max < min)
+                throw new IllegalArgumentException("latency bounds must not be negative and min can't exceed max");
+            long minNanos = unit.toNanos(min);
+            long maxNanos = unit.toNanos(max);
+            return (recipient, message, random) -> minNanos == maxNanos ? minNanos : random.nextLong(minNanos, maxNanos + 1);
+        }
+    }
+
+    /**
+     * the events not run yet, ordered by due time and then by scheduling order
+     */
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+
+    /**
+     * the random generator latencies are drawn from
+     */
+    private final SplittableRandom random;
+
+    /**
+     * the hop latency of every Message
+     */
+    private Latency latency;
+
+    /**
+     * the current virtual time in nanoseconds
+     */
+    private long now = 0;
+
+    /**
+     * number of events scheduled so far, which orders events due at the same time
+     */
+    private long sequence = 0;
+
+    /**
+     * number of events run so far
+     */
+    private long processed = 0;
+
+    /**
+     * Creates a new Simulation at virtual time 0 in which every hop takes the given Latency.
+     *
+     * @param seed the seed of the random generator latencies are drawn from
+     * @param latency the hop latency of every Message
+     * @throws NullPointerException when the Latency is null
+     */
+    protected Simulation(long seed, Latency latency) {
+        this.random = new SplittableRandom(seed);
+        this.latency = Objects.requireNonNull(latency);
+    }
+
+    /**
+     * Sets the hop latency of Messages scheduled from now on.
+     *
+     * @param latency the hop latency of every Message
+     * @throws NullPointerException when the Latency is null
+     */
+    protected void setLatency(Latency latency) {
+        this.latency = Objects.requireNonNull(latency);
+    }
+
+    /**
+     * Schedules the given Message to reach the given Device after its hop latency.
+     *
+     * @param recipient the Device the Message was routed to
+     * @param message the Message to deliver
+     * @return whether the Message was accepted for delivery, which it is unless it has a time to live
+     * @throws NullPointerException if the Device or the Message is null
+     * Logs a warning and returns false when the Message has a time to live
+     */
+    @Override
+    public boolean deliver(Device recipient, Message message) {
+        Objects.requireNonNull(recipient);
+        Objects.requireNonNull(message);
+        if (message.expires()) {
+            logger.log(Level.WARNING, "message to device with ID %d has a time to live on the real clock so it can't be simulated".formatted(message.recipient()));
+            return false;
+        }
+        long nanos = latency.nanos(recipient, message, random);
+        if (nanos < 0)
+            throw new IllegalStateException("latency cannot be negative");
+        add(nanos, new Delivery(recipient, message));
+        return true;
+    }
+
+    /**
+     * Schedules the given broadcast payload to reach the given Device after its hop latency, drawn with a null Message.
+     *
+     * @param recipient a Device that wants to receive broadcast messages
+     * @param payload the broadcast payload
+     * @return true, since a broadcast has no time to live
+     * @throws NullPointerException if the Device or the payload is null
+     */
+    @Override
+    public boolean deliverBroadcast(Device recipient, String payload) {
+        Objects.requireNonNull(recipient);
+        Objects.requireNonNull(payload);
+        long nanos = latency.nanos(recipient, null, random);
+        if (nanos < 0)
+            throw new IllegalStateException("latency cannot be negative");
+        add(nanos, () -> recipient.receiveBroadcastMessage(payload));
+        return true;
+    }
+
+    /**
+     * Schedules the given task to run after the given virtual delay, for instance to inject traffic into a scenario.
+     *
+     * @param task the task to run
+     * @param delay how long after the current virtual time to run the task
+     * @param unit the unit of the delay
+     * @throws NullPointerException when the task is null
+     * @throws IllegalArgumentException when the delay is negative
+     */
+    protected void schedule(Runnable task, long delay, TimeUnit unit) {
+        Objects.requireNonNull(task);
+        if (delay < 0)
+            throw new IllegalArgumentException("delay cannot be negative");
+        add(unit.toNanos(delay), task);
+    }
+
+    /**
+     * Runs events in order of virtual time until there are none left.
+     *
+     * @return the number of events run
+     */
+    protected long run() {
+        return runUntil(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs every event due up to the given virtual time and then moves the clock there.
+     *
+     * @param time the virtual time to stop at
+     * @param unit the unit of the time
+     * @return the number of events run
+     */
+    protected long runUntil(long time, TimeUnit unit) {
+        long end = unit.toNanos(time);
+        long before = processed;
+        Event event;
+        while ((event = events.peek()) != null && event.time <= end) {
+            events.poll();
+            now = event.time;
+            processed++;
+            try {
+                event.task.run();
+            }
+            catch (RuntimeException e) {
+                logger.log(Level.WARNING, "event at virtual time %d threw: %s".formatted(now, e));
+            }
+        }
+        if (end != Long.MAX_VALUE && end > now)
+            now = end;
+        return processed - before;
+    }
+
+    /**
+     * Runs the next event, if any.
+     *
+     * @return whether an event was run
+     */
+    protected boolean step() {
+        Event event = events.peek();
+        return event != null && runUntil(event.time, TimeUnit.NANOSECONDS) > 0;
+    }
+
+    /**
+     * Returns the current virtual time.
+     *
+     * @return the virtual time in nanoseconds since the start of the Simulation
+     */
+    protected long now() {
+        return now;
+    }
+
+    /**
+     * Returns the virtual clock, for instance for a TimerWheel or RateLimiter taking part in the Simulation.
+     *
+     * @return a source of the current virtual time in nanoseconds
+     */
+    protected LongSupplier clock() {
+        return this::now;
+    }
+
+    /**
+     * Returns the number of events run so far.
+     *
+     * @return the number of events run
+     */
+    protected long processed() {
+        return processed;
+    }
+
+    /**
+     * @return the number of events scheduled and not run yet
+     */
+    @Override
+    public long queued() {
+        return events.size();
+    }
+
+    /**
+     * Adds an event running the given task after the given number of nanoseconds.
+     */
+    private void add(long delayNanos, Runnable task) {
+        long time = now + delayNanos;
+        events.add(new Event(time < now ? Long.MAX_VALUE : time, sequence++, task));
+    }
+
+    /**
+     * Hands a Message to its Device when its event runs.
+     *
+     * @param recipient the Device the Message was routed to
+     * @param message the Message to deliver
+     */
+    private record Delivery(Device recipient, Message message) implements Runnable {
+
+        /**
+         * Calls recipient.receiveMessage(message)
+         */
+        @Override
+        public void run() {
+            recipient.receiveMessage(message);
+        }
+    }
+
+    /**
+     * A task due at a virtual time.
+     *
+     * @param time the virtual time the task is due at, in nanoseconds
+     * @param sequence the scheduling order, which breaks ties between tasks due at the same time
+     * @param task the task to run
+     */
+    private record Event(long time, long sequence, Runnable task) implements Comparable<Event> {
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SimulationTest {
+
+    /**
+     * Device that records the virtual time of every Message it receives and optionally forwards it to the next Device.
+     */
+    private static class Hop extends Mock.MockDevice {
+        private final Simulation simulation;
+        private final List<String> trace;
+        private final int next;
+
+        private Hop(int identifier, Simulation simulation, List<String> trace, int next) {
+            super(identifier, false);
+            this.simulation = simulation;
+            this.trace = trace;
+            this.next = next;
+        }
+
+        @Override
+        public boolean receiveMessage(Message message) {
+            trace.add(identifier + "@" + simulation.now());
+            if (next >= 0)
+                sendMessage(Message.of(next, 1, message.payload()));
+            return true;
+        }
+    }
+
+    @Test
+    public void constructor() {
+        assertThrows(NullPointerException.class, () -> new Simulation(1, null));
+        assertThrows(IllegalArgumentException.class, () -> Simulation.Latency.fixed(-1, TimeUnit.NANOSECONDS));
+        assertThrows(IllegalArgumentException.class, () -> Simulation.Latency.uniform(2, 1, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void chainRunsInVirtualTime() {
+        Simulation simulation = new Simulation(1, Simulation.Latency.fixed(5, TimeUnit.MICROSECONDS));
+        Motherboard motherboard = new Motherboard();
+        motherboard.setScheduler(simulation);
+        List<String> trace = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            new Hop(i, simulation, trace, i < 2 ? i + 1 : -1).setMotherboard(motherboard);
+
+        assertTrue(motherboard.sendMessage(Message.of(0, 1, "1")));
+        assertTrue(trace.isEmpty());
+        assertEquals(simulation.queued(), 1);
+
+        assertEquals(simulation.run(), 3);
+        assertEquals(trace, List.of("0@5000", "1@10000", "2@15000"));
+        assertEquals(simulation.now(), 15000);
+        assertEquals(simulation.queued(), 0);
+    }
+
+    @Test
+    public void runUntilAndStep() {
+        Simulation simulation = new Simulation(1, Simulation.Latency.fixed(10, TimeUnit.NANOSECONDS));
+        List<Long> fired = new ArrayList<>();
+        simulation.schedule(() -> fired.add(simulation.now()), 30, TimeUnit.NANOSECONDS);
+        simulation.schedule(() -> fired.add(simulation.now()), 10, TimeUnit.NANOSECONDS);
+        simulation.schedule(() -> fired.add(-simulation.now()), 10, TimeUnit.NANOSECONDS);
+        simulation.schedule(() -> { throw new IllegalStateException(); }, 40, TimeUnit.NANOSECONDS);
+        assertThrows(IllegalArgumentException.class, () -> simulation.schedule(() -> {}, -1, TimeUnit.NANOSECONDS));
+
+        assertEquals(simulation.runUntil(20, TimeUnit.NANOSECONDS), 2);
+        // same due time runs in scheduling order
+        assertEquals(fired, List.of(10L, -10L));
+        assertEquals(simulation.now(), 20);
+
+        assertTrue(simulation.step());
+        assertEquals(fired, List.of(10L, -10L, 30L));
+        // a throwing event doesn't stop the run
+        assertTrue(simulation.step());
+        assertFalse(simulation.step());
+        assertEquals(simulation.processed(), 4);
+    }
+
+    @Test
+    public void sameSeedSameRun() {
+        assertEquals(scenario(42), scenario(42));
+        assertNotEquals(scenario(42), scenario(7));
+    }
+
+    private static List<String> scenario(long seed) {
+        Simulation simulation = new Simulation(seed, Simulation.Latency.uniform(1, 100, TimeUnit.MICROSECONDS));
+        Motherboard motherboard = new Motherboard();
+        motherboard.setScheduler(simulation);
+        List<String> trace = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            new Hop(i, simulation, trace, -1).setMotherboard(motherboard);
+        for (int i = 0; i < 50; i++)
+            motherboard.sendMessage(Message.of(i, 1, "1"));
+        simulation.run();
+        return trace;
+    }
+
+    @Test
+    public void largeTopology() {
+        int devices = 100_000;
+        Simulation simulation = new Simulation(3, Simulation.Latency.uniform(1, 10, TimeUnit.MILLISECONDS));
+        Motherboard motherboard = new Motherboard(devices);
+        motherboard.setScheduler(simulation);
+        List<String> trace = new ArrayList<>(devices);
+        for (int i = 0; i < devices; i++)
+            new Hop(i, simulation, trace, -1).setMotherboard(motherboard);
+        for (int i = 0; i < devices; i++)
+            motherboard.sendMessage(Message.of(i, 1, "1"));
+
+        assertEquals(simulation.run(), devices);
+        assertEquals(trace.size(), devices);
+        // a hundred thousand hops of up to 10ms each take no more than 10ms of virtual time
+        assertTrue(simulation.now() <= TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    @Test
+    public void refusesMessagesWithTtl() {
+        Simulation simulation = new Simulation(1, Simulation.Latency.fixed(5, TimeUnit.MICROSECONDS));
+        Motherboard motherboard = new Motherboard();
+        motherboard.setScheduler(simulation);
+        List<String> trace = new ArrayList<>();
+        new Hop(0, simulation, trace, -1).setMotherboard(motherboard);
+
+        assertFalse(motherboard.sendMessage(Message.of(0, 1, "1").withTtl(1, TimeUnit.HOURS)));
+        assertEquals(simulation.queued(), 0);
+        assertEquals(simulation.run(), 0);
+        assertTrue(trace.isEmpty());
+    }
+
+    @Test
+    public void broadcastsRunInVirtualTime() {
+        Simulation simulation = new Simulation(1, Simulation.Latency.fixed(5, TimeUnit.MICROSECONDS));
+        Motherboard motherboard = new Motherboard();
+        motherboard.setScheduler(simulation);
+        motherboard.setParallelBroadcast(ForkJoinPool.commonPool(), 1);
+        List<String> trace = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int identifier = i;
+            new Mock.MockDevice(i, i != 1) {
+                @Override
+                public void receiveBroadcastMessage(String payload) {
+                    trace.add(identifier + "@" + simulation.now());
+                }
+            }.setMotherboard(motherboard);
+        }
+
+        // handed to the Simulation, not to the pool or the Devices
+        assertEquals(motherboard.broadcast("1", null), 2);
+        assertTrue(trace.isEmpty());
+        assertEquals(simulation.queued(), 2);
+
+        assertEquals(simulation.run(), 2);
+        assertEquals(trace.size(), 2);
+        assertTrue(trace.containsAll(List.of("0@5000", "2@5000")));
+    }
+}
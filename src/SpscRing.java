@@ -0,0 +1,111 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer with exactly one producer thread and exactly one consumer thread.
+ *
+ * @param <E> the type of element held in this SpscRing
+ */
+public class SpscRing<E> {
+
+    /**
+     * slots of this SpscRing; the length is always a power of two
+     */
+    private final AtomicReferenceArray<E> slots;
+
+    /**
+     * mask to turn a sequence number into a slot index
+     */
+    private final int mask;
+
+    /**
+     * sequence number of the next slot to read; only written by the consumer
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * sequence number of the next slot to write; only written by the producer
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Creates a new SpscRing that can hold at least the given number of elements.
+     *
+     * @param capacity the minimum number of elements this SpscRing can hold
+     * @throws IllegalArgumentException when the capacity is not positive or too large
+     */
+    protected SpscRing(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30))
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds the given element to this SpscRing; must only be called from the producer thread.
+     * Returns whether there was room for the element.
+     *
+     * @param element the element to add
+     * @return whether the element was added
+     * @throws NullPointerException when the element is null
+     */
+    protected boolean offer(E element) {
+        if (element == null)
+            throw new NullPointerException();
+        long sequence = tail.get();
+        if (sequence - head.get() > mask)
+            return false;
+        slots.lazySet((int) sequence & mask, element);
+        tail.lazySet(sequence + 1);
+        return true;
+    }
+
+    /**
+     * Removes and returns the oldest element of this SpscRing; must only be called from the consumer thread.
+     *
+     * @return the oldest element or null if this SpscRing is empty
+     */
+    protected E poll() {
+        long sequence = head.get();
+        if (sequence == tail.get())
+            return null;
+        int index = (int) sequence & mask;
+        E element = slots.get(index);
+        slots.lazySet(index, null);
+        head.lazySet(sequence + 1);
+        return element;
+    }
+
+    /**
+     * Returns the oldest element of this SpscRing without removing it; must only be called from the consumer thread.
+     *
+     * @return the oldest element or null if this SpscRing is empty
+     */
+    protected E peek() {
+        long sequence = head.get();
+        if (sequence == tail.get())
+            return null;
+        return slots.get((int) sequence & mask);
+    }
+
+    /**
+     * Returns the number of elements currently in this SpscRing; only an estimate while other threads are using it.
+     *
+     * @return the number of elements in this SpscRing
+     */
+    protected int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Returns the maximum number of elements this SpscRing can hold.
+     *
+     * @return the capacity of this SpscRing
+     */
+    protected int capacity() {
+        return mask + 1;
+    }
+}
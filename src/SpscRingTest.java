@@ -0,0 +1,74 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpscRingTest {
+
+    @Test
+    public void capacity() {
+        assertThrows(IllegalArgumentException.class, () -> new SpscRing<>(0));
+        assertEquals(new SpscRing<>(1).capacity(), 1);
+        assertEquals(new SpscRing<>(5).capacity(), 8);
+        assertEquals(new SpscRing<>(8).capacity(), 8);
+    }
+
+    @Test
+    public void offerAndPoll() {
+        SpscRing<Integer> ring = new SpscRing<>(2);
+
+        assertThrows(NullPointerException.class, () -> ring.offer(null));
+        assertNull(ring.poll());
+
+        assertTrue(ring.offer(1));
+        assertTrue(ring.offer(2));
+        assertFalse(ring.offer(3));
+        assertEquals(ring.size(), 2);
+
+        assertEquals(ring.poll(), Integer.valueOf(1));
+        assertTrue(ring.offer(3));
+        assertEquals(ring.poll(), Integer.valueOf(2));
+        assertEquals(ring.poll(), Integer.valueOf(3));
+        assertNull(ring.poll());
+        assertEquals(ring.size(), 0);
+    }
+
+    @Test
+    public void peek() {
+        SpscRing<Integer> ring = new SpscRing<>(2);
+        assertNull(ring.peek());
+
+        ring.offer(1);
+        ring.offer(2);
+        assertEquals(ring.peek(), Integer.valueOf(1));
+        assertEquals(ring.size(), 2);
+        assertEquals(ring.poll(), Integer.valueOf(1));
+        assertEquals(ring.peek(), Integer.valueOf(2));
+        ring.poll();
+        assertNull(ring.peek());
+    }
+
+    @Test
+    public void producerAndConsumerThreads() throws InterruptedException {
+        SpscRing<Integer> ring = new SpscRing<>(16);
+        int count = 10_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (!ring.offer(i))
+                    Thread.yield();
+            }
+        });
+        producer.start();
+
+        int expected = 0;
+        while (expected < count) {
+            Integer value = ring.poll();
+            if (value == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(value.intValue(), expected++);
+        }
+        producer.join();
+        assertNull(ring.poll());
+    }
+}
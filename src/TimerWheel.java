@@ -0,0 +1,389 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hierarchical timing wheel that runs tasks after a delay with O(1) schedule and cancel.
+ * Time is divided into ticks; each level of the wheel has the same number of slots, each slot of level k spans
+ * slots^k ticks and holds a linked list of the timeouts whose deadline falls in it. A timeout is placed on the
+ * lowest level whose span reaches its deadline and moves down a level each time the wheel reaches its slot, so
+ * each tick only visits the timeouts that are actually due, however many are pending far in the future.
+ * Timeouts are appended to the end of their slot, and one scheduled earlier for the same tick always sits on the
+ * same level or a higher one, which cascades first, so the tasks due on a tick run in the order they were scheduled.
+ * Levels above the first are only allocated once a timeout needs them.
+ * The wheel is advanced either by its own daemon thread (start) or explicitly (advance).
+ */
+public class TimerWheel {
+
+    /**
+     * Logger to log descriptive warning messages instead of throwing exceptions
+     */
+    private static final Logger logger = Logger.getLogger(TimerWheel.class.getName());
+
+    /**
+     * length of one tick in nanoseconds
+     */
+    private final long tickNanos;
+
+    /**
+     * levels[k][i] is the head of the list of timeouts in slot i of level k, whose previous is the tail of the list;
+     * null for levels not needed yet
+     */
+    private final Timeout[][] levels;
+
+    /**
+     * number of bits of a tick that select a slot within a level
+     */
+    private final int bits;
+
+    /**
+     * mask to turn the bits of a tick for one level into a slot index
+     */
+    private final int mask;
+
+    /**
+     * source of the current time in nanoseconds
+     */
+    private final LongSupplier clock;
+
+    /**
+     * clock value at tick 0
+     */
+    private final long origin;
+
+    /**
+     * the next tick to expire
+     */
+    private long tick = 0;
+
+    /**
+     * number of timeouts scheduled and neither expired nor cancelled
+     */
+    private int size = 0;
+
+    /**
+     * thread advancing this TimerWheel in real time; null until started
+     */
+    private Thread thread = null;
+
+    /**
+     * Creates a new TimerWheel with the given tick length and number of slots using System.nanoTime().
+     *
+     * @param tick the length of one tick
+     * @param unit the unit of the tick length
+     * @param slotCount the number of slots per level, rounded up to a power of two of at least 2
+     */
+    protected TimerWheel(long tick, TimeUnit unit, int slotCount) {
+        this(tick, unit, slotCount, System::nanoTime);
+    }
+
+    /**
+     * Creates a new TimerWheel with the given tick length, number of slots and clock.
+     *
+     * @param tick the length of one tick
+     * @param unit the unit of the tick length
+     * @param slotCount the number of slots per level, rounded up to a power of two of at least 2
+     * @param clock the source of the current time in nanoseconds
+     * @throws IllegalArgumentException when the tick length or slot count is not positive
+     * @throws NullPointerException when the clock is null
+     */
+    protected TimerWheel(long tick, TimeUnit unit, int slotCount, LongSupplier clock) {
+        if (tick <= 0)
+            throw new IllegalArgumentException("tick must be positive");
+        if (slotCount <= 0 || slotCount > (1 << 30))
+            throw new IllegalArgumentException("slot count must be between 1 and 2^30");
+        this.tickNanos = unit.toNanos(tick);
+        int slots = Math.max(2, Integer.highestOneBit(slotCount));
+        if (slots < slotCount)
+            slots <<= 1;
+        this.bits = Integer.numberOfTrailingZeros(slots);
+        this.mask = slots - 1;
+        this.levels = new Timeout[(Long.SIZE - 1 + bits - 1) / bits][];
+        this.levels[0] = new Timeout[slots];
+        this.clock = Objects.requireNonNull(clock);
+        this.origin = clock.getAsLong();
+    }
+
+    /**
+     * Schedules the given task to run once the given delay has passed.
+     * The task runs on the thread advancing this TimerWheel, up to one tick late.
+     *
+     * @param task the task to run
+     * @param delay how long to wait before running the task
+     * @param unit the unit of the delay
+     * @return a Timeout that can cancel the task
+     * @throws NullPointerException when the task is null
+     */
+    protected synchronized Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Objects.requireNonNull(task);
+        long elapsed = clock.getAsLong() - origin;
+        long deadline = Math.max(tick, ceilDiv(elapsed + Math.max(unit.toNanos(delay), 0), tickNanos));
+        Timeout timeout = new Timeout(this, task, deadline);
+        link(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Runs every task whose deadline has passed according to the clock.
+     *
+     * @return the number of tasks run
+     */
+    protected int advance() {
+        List<Timeout> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = (clock.getAsLong() - origin) / tickNanos;
+            if (size == 0 && tick <= now)
+                tick = now + 1;
+            for (; tick <= now; tick++) {
+                cascade();
+                expire(expired);
+            }
+        }
+        for (Timeout timeout : expired) {
+            try {
+                timeout.task.run();
+            }
+            catch (RuntimeException e) {
+                logger.log(Level.WARNING, "timer task %s threw: %s".formatted(timeout.task, e));
+            }
+        }
+        return expired.size();
+    }
+
+    /**
+     * Returns the number of tasks scheduled on this TimerWheel that have neither run nor been cancelled.
+     *
+     * @return the number of pending tasks
+     */
+    protected synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Starts a daemon thread that advances this TimerWheel once per tick.
+     * Returns whether a thread was started by this call.
+     *
+     * @return false if this TimerWheel was already started
+     */
+    protected synchronized boolean start() {
+        if (thread != null)
+            return false;
+        thread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                advance();
+                try {
+                    TimeUnit.NANOSECONDS.sleep(tickNanos);
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "timer-wheel");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Stops the thread advancing this TimerWheel, if any; pending tasks stay scheduled.
+     */
+    protected synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * Moves the Timeouts of every higher-level slot the current tick has reached down to the levels below,
+     * starting from the highest level so a Timeout can move down several levels at once.
+     */
+    private void cascade() {
+        for (int level = levels.length - 1; level > 0; level--) {
+            if (levels[level] == null || (tick & ((1L << (level * bits)) - 1)) != 0)
+                continue;
+            int index = (int) (tick >>> (level * bits)) & mask;
+            Timeout timeout = levels[level][index];
+            levels[level][index] = null;
+            // in list order, so Timeouts appended to the lower slots keep the order they were scheduled in
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.previous = null;
+                timeout.next = null;
+                link(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    /**
+     * Removes every Timeout in the first-level slot of the current tick, all of which are due.
+     *
+     * @param expired the list to add the removed Timeouts to
+     */
+    private void expire(List<Timeout> expired) {
+        Timeout[] slots = levels[0];
+        int index = (int) tick & mask;
+        Timeout timeout = slots[index];
+        slots[index] = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.previous = null;
+            timeout.next = null;
+            size--;
+            timeout.state = Timeout.EXPIRED;
+            expired.add(timeout);
+            timeout = next;
+        }
+    }
+
+    /**
+     * Adds the given Timeout to the end of the list of the slot its deadline falls in, on the lowest level
+     * whose span from the current tick reaches it.
+     *
+     * @param timeout the Timeout to add
+     */
+    private void link(Timeout timeout) {
+        long difference = timeout.deadline ^ tick;
+        int level = difference == 0 ? 0 : (Long.SIZE - 1 - Long.numberOfLeadingZeros(difference)) / bits;
+        if (levels[level] == null)
+            levels[level] = new Timeout[mask + 1];
+        int index = (int) (timeout.deadline >>> (level * bits)) & mask;
+        timeout.level = level;
+        Timeout head = levels[level][index];
+        if (head == null) {
+            timeout.previous = timeout;
+            levels[level][index] = timeout;
+        }
+        else {
+            timeout.previous = head.previous;
+            head.previous.next = timeout;
+            head.previous = timeout;
+        }
+    }
+
+    /**
+     * Removes the given Timeout from the list of its slot.
+     *
+     * @param timeout the Timeout to remove
+     */
+    private void unlink(Timeout timeout) {
+        Timeout[] slots = levels[timeout.level];
+        int index = (int) (timeout.deadline >>> (timeout.level * bits)) & mask;
+        Timeout head = slots[index];
+        if (timeout == head) {
+            slots[index] = timeout.next;
+            if (timeout.next != null)
+                timeout.next.previous = timeout.previous;
+        }
+        else {
+            timeout.previous.next = timeout.next;
+            if (timeout.next != null)
+                timeout.next.previous = timeout.previous;
+            else
+                head.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+    }
+
+    /**
+     * Cancels the given Timeout if it is still pending.
+     *
+     * @param timeout the Timeout to cancel
+     * @return whether the Timeout was pending
+     */
+    private synchronized boolean cancel(Timeout timeout) {
+        if (timeout.state != Timeout.PENDING)
+            return false;
+        unlink(timeout);
+        size--;
+        timeout.state = Timeout.CANCELLED;
+        return true;
+    }
+
+    /**
+     * Divides and rounds up for non-negative numbers.
+     */
+    private static long ceilDiv(long dividend, long divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    /**
+     * Handle to a task scheduled on a TimerWheel.
+     */
+    protected static class Timeout {
+
+        /** the task has neither run nor been cancelled */
+        private static final int PENDING = 0;
+        /** the task has been handed to the thread advancing the wheel */
+        private static final int EXPIRED = 1;
+        /** the task was cancelled before it ran */
+        private static final int CANCELLED = 2;
+
+        /**
+         * the TimerWheel this Timeout is scheduled on
+         */
+        private final TimerWheel wheel;
+
+        /**
+         * the task to run
+         */
+        private final Runnable task;
+
+        /**
+         * the tick at which the task is due
+         */
+        private final long deadline;
+
+        /**
+         * PENDING, EXPIRED or CANCELLED; guarded by the wheel
+         */
+        private int state = PENDING;
+
+        /**
+         * the level of the slot this Timeout is in; guarded by the wheel
+         */
+        private int level;
+
+        /**
+         * neighbours in the list of the slot, previous being the tail for the head; guarded by the wheel
+         */
+        private Timeout previous, next;
+
+        /**
+         * Creates a new pending Timeout.
+         */
+        private Timeout(TimerWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task so it never runs.
+         * Returns whether the task was still pending.
+         *
+         * @return false if the task already ran or was already cancelled
+         */
+        protected boolean cancel() {
+            return wheel.cancel(this);
+        }
+
+        /**
+         * Returns whether the task has been cancelled.
+         *
+         * @return whether cancel() succeeded on this Timeout
+         */
+        protected boolean isCancelled() {
+            synchronized (wheel) {
+                return state == CANCELLED;
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimerWheelTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final TimerWheel wheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 8, clock::get);
+
+    private void sleep(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    public void constructor() {
+        assertThrows(IllegalArgumentException.class, () -> new TimerWheel(0, TimeUnit.MILLISECONDS, 8));
+        assertThrows(IllegalArgumentException.class, () -> new TimerWheel(1, TimeUnit.MILLISECONDS, 0));
+        assertThrows(NullPointerException.class, () -> new TimerWheel(1, TimeUnit.MILLISECONDS, 8, null));
+    }
+
+    @Test
+    public void schedule() {
+        List<Integer> ran = new ArrayList<>();
+
+        assertThrows(NullPointerException.class, () -> wheel.schedule(null, 1, TimeUnit.MILLISECONDS));
+
+        wheel.schedule(() -> ran.add(3), 3, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> ran.add(1), 1, TimeUnit.MILLISECONDS);
+        // further away than one revolution of the wheel, in the same slot as the first task
+        wheel.schedule(() -> ran.add(11), 11, TimeUnit.MILLISECONDS);
+        assertEquals(wheel.size(), 3);
+
+        assertEquals(wheel.advance(), 0);
+        sleep(1);
+        assertEquals(wheel.advance(), 1);
+        sleep(2);
+        assertEquals(wheel.advance(), 1);
+        assertEquals(ran, List.of(1, 3));
+        sleep(7);
+        assertEquals(wheel.advance(), 0);
+        sleep(1);
+        assertEquals(wheel.advance(), 1);
+        assertEquals(ran, List.of(1, 3, 11));
+        assertEquals(wheel.size(), 0);
+    }
+
+    @Test
+    public void scheduleLongAfterLastAdvance() {
+        List<Integer> ran = new ArrayList<>();
+        wheel.schedule(() -> ran.add(5), 5, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> ran.add(500), 500, TimeUnit.MILLISECONDS);
+
+        sleep(100);
+        assertEquals(wheel.advance(), 1);
+        sleep(400);
+        assertEquals(wheel.advance(), 1);
+        assertEquals(ran, List.of(5, 500));
+    }
+
+    @Test
+    public void cancel() {
+        List<Integer> ran = new ArrayList<>();
+        TimerWheel.Timeout timeout = wheel.schedule(() -> ran.add(1), 1, TimeUnit.MILLISECONDS);
+        TimerWheel.Timeout other = wheel.schedule(() -> ran.add(2), 1, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertEquals(wheel.size(), 1);
+
+        sleep(1);
+        wheel.advance();
+        assertEquals(ran, List.of(2));
+        assertFalse(other.cancel());
+        assertFalse(other.isCancelled());
+    }
+
+    @Test
+    public void farDeadlinesCascadeDownTheLevels() {
+        List<Long> ran = new ArrayList<>();
+        long[] delays = {7, 8, 9, 63, 64, 65, 511, 512, 4_097, 1_000_000};
+        for (long delay : delays)
+            wheel.schedule(() -> ran.add(clock.get() / 1_000_000), delay, TimeUnit.MILLISECONDS);
+
+        for (int millis = 1; millis <= 1_000_000; millis++) {
+            sleep(1);
+            wheel.advance();
+        }
+        assertEquals(ran, List.of(7L, 8L, 9L, 63L, 64L, 65L, 511L, 512L, 4_097L, 1_000_000L));
+        assertEquals(wheel.size(), 0);
+    }
+
+    @Test
+    public void tasksDueOnTheSameTickRunInScheduleOrder() {
+        List<Integer> ran = new ArrayList<>();
+        // scheduled while the deadline is on the second level, then on the first, then on the tick itself
+        for (int i = 0; i < 3; i++) {
+            int task = i;
+            wheel.schedule(() -> ran.add(task), 20, TimeUnit.MILLISECONDS);
+        }
+        sleep(14);
+        wheel.advance();
+        TimerWheel.Timeout cancelled = wheel.schedule(() -> ran.add(-1), 6, TimeUnit.MILLISECONDS);
+        for (int i = 3; i < 6; i++) {
+            int task = i;
+            wheel.schedule(() -> ran.add(task), 6, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(cancelled.cancel());
+        sleep(5);
+        wheel.advance();
+        wheel.schedule(() -> ran.add(6), 1, TimeUnit.MILLISECONDS);
+
+        sleep(1);
+        assertEquals(wheel.advance(), 7);
+        assertEquals(ran, List.of(0, 1, 2, 3, 4, 5, 6));
+    }
+
+    @Test
+    public void cancelAfterCascading() {
+        List<Integer> ran = new ArrayList<>();
+        TimerWheel.Timeout timeout = wheel.schedule(() -> ran.add(1), 100, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> ran.add(2), 100, TimeUnit.MILLISECONDS);
+
+        sleep(97);
+        wheel.advance();
+        assertTrue(timeout.cancel());
+        sleep(3);
+        assertEquals(wheel.advance(), 1);
+        assertEquals(ran, List.of(2));
+    }
+
+    @Test
+    public void start() throws InterruptedException {
+        TimerWheel realTime = new TimerWheel(1, TimeUnit.MILLISECONDS, 64);
+        CountDownLatch latch = new CountDownLatch(1);
+        realTime.schedule(latch::countDown, 5, TimeUnit.MILLISECONDS);
+
+        assertTrue(realTime.start());
+        assertFalse(realTime.start());
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        realTime.stop();
+    }
+}
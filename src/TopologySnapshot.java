@@ -0,0 +1,180 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Saves the topology of a Motherboard to a compact binary file and rebuilds a Motherboard from it.
+ * The file holds a header followed by, for every Device, its identifier, whether it receives broadcasts and the
+ * ports its Applications listen on. Loading maps the file and presizes the Motherboard from the header, so a board
+ * of millions of Devices is rebuilt without resizing; the Devices and Applications themselves come from factories.
+ * RemoteDevices belong to their link and are left out.
+ */
+public class TopologySnapshot {
+
+    /**
+     * Logger to log descriptive warning messages instead of throwing exceptions
+     */
+    private static final Logger logger = Logger.getLogger(TopologySnapshot.class.getName());
+
+    /**
+     * first bytes of every snapshot: "PCIC"
+     */
+    private static final int MAGIC = 0x50434943;
+
+    /**
+     * version of the snapshot format
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * bytes before the first Device: magic, version, device count
+     */
+    private static final int HEADER = 4 + 4 + 4;
+
+    /**
+     * bytes of a Device before its ports: identifier, broadcast flag, port count
+     */
+    private static final int DEVICE_HEADER = 4 + 1 + 4;
+
+    /**
+     * Creates a new TopologySnapshot instance which is useless which is why this constructor is private.
+     */
+    private TopologySnapshot() {
+        super();
+    }
+
+    /**
+     * Creates the Devices of a Motherboard being loaded.
+     */
+    @FunctionalInterface
+    public interface DeviceFactory {
+
+        /**
+         * Creates a Device that is not connected to a Motherboard yet.
+         *
+         * @param identifier the identifier of the Device
+         * @param receiveBroadcast whether the Device receives broadcast messages
+         * @return the new Device, or null to leave the Device and its Applications out
+         */
+        Device create(int identifier, boolean receiveBroadcast);
+    }
+
+    /**
+     * Creates the Applications of a Motherboard being loaded.
+     */
+    @FunctionalInterface
+    public interface ApplicationFactory {
+
+        /**
+         * Creates an Application on the given Device that is not listening on a port yet.
+         *
+         * @param device the Device the Application is on
+         * @param port the port the Application will listen on
+         * @return the new Application, or null to leave the port empty
+         */
+        Application create(Device device, int port);
+    }
+
+    /**
+     * Writes the topology of the given Motherboard to the given file, replacing it.
+     *
+     * @param motherboard the Motherboard to save
+     * @param file the file to write
+     * @return the number of Devices saved
+     * @throws NullPointerException when the Motherboard or the file is null
+     * @throws IOException when the file can't be written
+     */
+    protected static int save(Motherboard motherboard, Path file) throws IOException {
+        Objects.requireNonNull(file);
+        List<Device> devices = new ArrayList<>();
+        // one copy of the ports per Device sizes the file and fills it, so an Application added meanwhile can't overflow it
+        List<Set<Integer>> ports = new ArrayList<>();
+        long size = HEADER;
+        for (Device device : motherboard.devices().values()) {
+            if (device instanceof RemoteDevice)
+                continue;
+            Set<Integer> devicePorts = device.portMapping().keySet();
+            devices.add(device);
+            ports.add(devicePorts);
+            size += DEVICE_HEADER + 4L * devicePorts.size();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(devices.size());
+            for (int i = 0; i < devices.size(); i++) {
+                Device device = devices.get(i);
+                buffer.putInt(device.identifier())
+                        .put((byte) (device.receiveBroadcast() ? 1 : 0))
+                        .putInt(ports.get(i).size());
+                for (int port : ports.get(i))
+                    buffer.putInt(port);
+            }
+            buffer.force();
+        }
+        return devices.size();
+    }
+
+    /**
+     * Builds a new Motherboard from the topology in the given file.
+     *
+     * @param file the file written by save
+     * @param devices creates every Device
+     * @param applications creates every Application
+     * @return the new Motherboard with every Device connected and every Application listening on its port
+     * @throws NullPointerException when an argument is null
+     * @throws IOException when the file can't be read or isn't a snapshot
+     * Logs a warning if a Device or Application can't be connected, and skips it
+     * Calls device.setMotherboard(motherboard)
+     * Calls application.connectToPort(port), so Applications that do more when they connect still do it
+     */
+    protected static Motherboard load(Path file, DeviceFactory devices, ApplicationFactory applications) throws IOException {
+        Objects.requireNonNull(devices);
+        Objects.requireNonNull(applications);
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.getInt() != MAGIC)
+                throw new IOException("%s is not a topology snapshot".formatted(file));
+            int version = buffer.getInt();
+            if (version != VERSION)
+                throw new IOException("topology snapshot %s has unsupported version %d".formatted(file, version));
+            int count = buffer.getInt();
+            if (count < 0)
+                throw new IOException("topology snapshot %s is corrupt".formatted(file));
+            Motherboard motherboard = new Motherboard(count);
+            for (int i = 0; i < count; i++) {
+                int identifier = buffer.getInt();
+                boolean receiveBroadcast = buffer.get() != 0;
+                int portCount = buffer.getInt();
+                Device device = devices.create(identifier, receiveBroadcast);
+                if (device != null && !device.setMotherboard(motherboard)) {
+                    logger.log(Level.WARNING, "device with ID %d appears twice in topology snapshot %s and was skipped".formatted(identifier, file));
+                    device = null;
+                }
+                for (int j = 0; j < portCount; j++) {
+                    int port = buffer.getInt();
+                    if (device == null)
+                        continue;
+                    Application application = applications.create(device, port);
+                    if (application != null && !application.connectToPort(port))
+                        logger.log(Level.WARNING, "application on port %d of device with ID %d could not be connected".formatted(port, identifier));
+                }
+            }
+            return motherboard;
+        }
+        catch (BufferUnderflowException e) {
+            throw new IOException("topology snapshot %s is truncated".formatted(file), e);
+        }
+    }
+}
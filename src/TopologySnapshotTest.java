@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TopologySnapshotTest {
+
+    private final Path file;
+
+    public TopologySnapshotTest() throws IOException {
+        file = Files.createTempFile("pcic", ".topology");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static Motherboard load(Path file) throws IOException {
+        return TopologySnapshot.load(file, Mock.MockDevice::new, (device, port) -> new Mock.MockApplication((AbstractDevice) device));
+    }
+
+    @Test
+    public void saveAndLoad() throws IOException {
+        Motherboard original = new Motherboard();
+        Mock.MockDevice first = new Mock.MockDevice(1, true);
+        first.setMotherboard(original);
+        new Mock.MockApplication(first).connectToPort(3);
+        new Mock.MockApplication(first).connectToPort(4);
+        new Mock.MockDevice(2, false).setMotherboard(original);
+
+        assertEquals(TopologySnapshot.save(original, file), 2);
+        Motherboard loaded = load(file);
+
+        assertEquals(loaded.devices().keySet(), Set.of(1, 2));
+        Device loadedFirst = loaded.devices().get(1);
+        assertTrue(loadedFirst.receiveBroadcast());
+        assertTrue(loadedFirst.connectedToMotherboard());
+        assertEquals(loadedFirst.portMapping().keySet(), Set.of(3, 4));
+        assertFalse(loaded.devices().get(2).receiveBroadcast());
+        assertTrue(loaded.devices().get(2).portMapping().isEmpty());
+    }
+
+    @Test
+    public void largeBoard() throws IOException {
+        Motherboard original = new Motherboard(100_000);
+        for (int i = 0; i < 100_000; i++) {
+            Mock.MockDevice device = new Mock.MockDevice(i, i % 2 == 0);
+            device.setMotherboard(original);
+            new Mock.MockApplication(device).connectToPort(i % 7);
+        }
+        TopologySnapshot.save(original, file);
+        Motherboard loaded = load(file);
+
+        assertEquals(loaded.devices().size(), 100_000);
+        assertEquals(loaded.devices().get(99_999).portMapping().keySet(), Set.of(99_999 % 7));
+    }
+
+    @Test
+    public void factoriesCanSkip() throws IOException {
+        Motherboard original = new Motherboard();
+        Mock.MockDevice device = new Mock.MockDevice(1, true);
+        device.setMotherboard(original);
+        new Mock.MockApplication(device).connectToPort(3);
+        new Mock.MockDevice(2, true).setMotherboard(original);
+        TopologySnapshot.save(original, file);
+
+        Motherboard loaded = TopologySnapshot.load(file,
+                (identifier, receiveBroadcast) -> identifier == 2 ? null : new Mock.MockDevice(identifier, receiveBroadcast),
+                (parent, port) -> null);
+        assertEquals(loaded.devices().keySet(), Set.of(1));
+        assertTrue(loaded.devices().get(1).portMapping().isEmpty());
+    }
+
+    @Test
+    public void remoteDevicesAreLeftOut() throws IOException {
+        Motherboard original = new Motherboard();
+        new Mock.MockDevice(1, true).setMotherboard(original);
+        MotherboardLink link = new MotherboardLink() {
+            public boolean forward(Message message) { return false; }
+            public boolean relayBroadcast(String payload) { return false; }
+            public List<Integer> remoteDevices() { return List.of(2); }
+            public void close() {}
+        };
+        new RemoteDevice(2, false, link).setMotherboard(original);
+
+        assertEquals(TopologySnapshot.save(original, file), 1);
+        assertEquals(load(file).devices().keySet(), Set.of(1));
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        assertThrows(IOException.class, () -> load(file));
+    }
+
+    @Test
+    public void rejectsTruncatedSnapshots() throws IOException {
+        Motherboard original = new Motherboard();
+        new Mock.MockDevice(1, true).setMotherboard(original);
+        TopologySnapshot.save(original, file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 2));
+        assertThrows(IOException.class, () -> load(file));
+    }
+
+    @Test
+    public void loadConnectsThroughTheApplication() throws IOException {
+        Motherboard original = new Motherboard();
+        Mock.MockDevice device = new Mock.MockDevice(1, false);
+        device.setMotherboard(original);
+        new Mock.MockApplication(device).connectToPort(5);
+        TopologySnapshot.save(original, file);
+
+        List<Integer> connected = new ArrayList<>();
+        Motherboard loaded = TopologySnapshot.load(file, Mock.MockDevice::new, (loadedDevice, port) -> new Mock.MockApplication((AbstractDevice) loadedDevice) {
+            @Override
+            public boolean connectToPort(int port) {
+                connected.add(port);
+                return super.connectToPort(port);
+            }
+        });
+        assertEquals(connected, List.of(5));
+        assertEquals(loaded.devices().get(1).portMapping().keySet(), Set.of(5));
+    }
+}
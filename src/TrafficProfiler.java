@@ -0,0 +1,558 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Finds the heaviest senders, recipients and (recipient, port) destinations of a Motherboard's traffic in fixed
+ * memory, however many identifiers there are. Every Message is counted in a count-min sketch per dimension, whose
+ * estimates never undercount and overcount by little once the sketch is wide enough, and a min-heap per dimension
+ * keeps the keys with the highest estimates seen. To report over a sliding window, the window is split into buckets,
+ * each with its own sketches and heaps; the oldest bucket is cleared and reused as time moves on, and a report sums
+ * the estimates of every bucket's candidates over the whole window.
+ * Recording threads are spread over a few stripes, each with its own buckets and lock, so concurrent senders don't
+ * contend on one monitor; a report adds up every stripe, and the memory used grows with the number of stripes.
+ */
+public class TrafficProfiler {
+
+    /**
+     * What traffic is attributed to.
+     */
+    public enum Dimension {
+        /**
+         * the Device a Message or broadcast came from, when known; every Message an Application sends is stamped
+         * with its Device, so only Messages handed straight to a Device or Motherboard may go unattributed
+         */
+        SENDERS,
+        /** the Device a Message is sent to */
+        RECIPIENTS,
+        /** the recipient and port a Message is sent to */
+        DESTINATIONS
+    }
+
+    /**
+     * A key and the estimated number of Messages attributed to it over the window.
+     *
+     * @param dimension what the key identifies
+     * @param key a Device identifier, or the recipient in the high and the port in the low 32 bits for DESTINATIONS
+     * @param count the estimated number of Messages, which is never less than the actual number
+     */
+    public record HeavyHitter(Dimension dimension, long key, long count) {
+
+        /**
+         * @return the identifier of the sender or recipient
+         */
+        public int identifier() {
+            return dimension == Dimension.DESTINATIONS ? (int) (key >>> 32) : (int) key;
+        }
+
+        /**
+         * @return the port on the recipient for DESTINATIONS, -1 otherwise
+         */
+        public int port() {
+            return dimension == Dimension.DESTINATIONS ? (int) key : -1;
+        }
+    }
+
+    /**
+     * odd multipliers giving each row of a sketch its own hash function
+     */
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L
+    };
+
+    /**
+     * the most stripes recording threads are spread over
+     */
+    private static final int MAX_STRIPES = 8;
+
+    /**
+     * number of rows of each sketch
+     */
+    private final int depth;
+
+    /**
+     * number of counters per row, a power of two
+     */
+    private final int width;
+
+    /**
+     * number of heavy hitters kept and reported per dimension
+     */
+    private final int topK;
+
+    /**
+     * length of one bucket in nanoseconds
+     */
+    private final long bucketNanos;
+
+    /**
+     * source of the current time in nanoseconds
+     */
+    private final LongSupplier clock;
+
+    /**
+     * clock value at the start of bucket 0
+     */
+    private final long origin;
+
+    /**
+     * number of buckets the window is split into
+     */
+    private final int bucketCount;
+
+    /**
+     * the stripes recording threads are spread over, a power of two of them
+     */
+    private final Stripe[] stripes;
+
+    /**
+     * Creates a new TrafficProfiler using System.nanoTime().
+     *
+     * @param depth the number of rows of each sketch, at most 8; more rows make overcounting less likely
+     * @param width the number of counters per row, rounded up to a power of two; more counters overcount by less
+     * @param topK the number of heavy hitters reported per dimension
+     * @param window the length of the sliding window reported over
+     * @param bucketCount the number of buckets the window is split into; more buckets slide more smoothly
+     * @param unit the unit of the window
+     * @throws IllegalArgumentException when a size is not positive, the depth is over 8 or a bucket would be shorter than 1ns
+     */
+    protected TrafficProfiler(int depth, int width, int topK, long window, int bucketCount, TimeUnit unit) {
+        this(depth, width, topK, window, bucketCount, unit, System::nanoTime);
+    }
+
+    /**
+     * Creates a new TrafficProfiler with the given clock.
+     *
+     * @param depth the number of rows of each sketch, at most 8
+     * @param width the number of counters per row, rounded up to a power of two
+     * @param topK the number of heavy hitters reported per dimension
+     * @param window the length of the sliding window reported over
+     * @param bucketCount the number of buckets the window is split into
+     * @param unit the unit of the window
+     * @param clock the source of the current time in nanoseconds
+     * @throws IllegalArgumentException when a size is not positive, the depth is over 8 or a bucket would be shorter than 1ns
+     * @throws NullPointerException when the clock is null
+     */
+    protected TrafficProfiler(int depth, int width, int topK, long window, int bucketCount, TimeUnit unit, LongSupplier clock) {
+        if (depth <= 0 || depth > SEEDS.length || width <= 0 || topK <= 0 || bucketCount <= 0)
+            throw new IllegalArgumentException("depth must be between 1 and %d and width, top K and bucket count positive".formatted(SEEDS.length));
+        if (width > 1 << 30)
+            throw new IllegalArgumentException("width cannot exceed 2^30");
+        long windowNanos = unit.toNanos(window);
+        if (windowNanos / bucketCount <= 0)
+            throw new IllegalArgumentException("window must be at least one nanosecond per bucket");
+        this.depth = depth;
+        this.width = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.topK = topK;
+        this.bucketNanos = windowNanos / bucketCount;
+        this.clock = Objects.requireNonNull(clock);
+        this.origin = clock.getAsLong();
+        this.bucketCount = bucketCount;
+        int stripeCount = Math.min(Runtime.getRuntime().availableProcessors(), MAX_STRIPES);
+        this.stripes = new Stripe[stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1];
+        for (int i = 0; i < stripes.length; i++)
+            stripes[i] = new Stripe();
+    }
+
+    /**
+     * Counts the given Message towards its sender, if known, its recipient and its destination.
+     *
+     * @param message a Message being sent
+     */
+    protected void record(Message message) {
+        Stripe stripe = stripe();
+        synchronized (stripe) {
+            Bucket bucket = stripe.rotate();
+            if (message.sender().isPresent())
+                bucket.add(Dimension.SENDERS, message.sender().getAsInt() & 0xFFFFFFFFL);
+            bucket.add(Dimension.RECIPIENTS, message.recipient() & 0xFFFFFFFFL);
+            bucket.add(Dimension.DESTINATIONS, destination(message.recipient(), message.port()));
+        }
+    }
+
+    /**
+     * Counts a broadcast towards the Device it came from, if known.
+     *
+     * @param origin the Device the broadcast came from, or null
+     */
+    protected void recordBroadcast(Device origin) {
+        Stripe stripe = stripe();
+        synchronized (stripe) {
+            Bucket bucket = stripe.rotate();
+            if (origin != null)
+                bucket.add(Dimension.SENDERS, origin.identifier() & 0xFFFFFFFFL);
+        }
+    }
+
+    /**
+     * Returns the keys with the most traffic in the given dimension over the sliding window.
+     *
+     * @param dimension what traffic is attributed to
+     * @return up to topK HeavyHitters, heaviest first
+     */
+    protected List<HeavyHitter> top(Dimension dimension) {
+        Set<Long> candidates = new HashSet<>();
+        for (Stripe stripe : stripes)
+            stripe.keys(dimension, candidates);
+        List<HeavyHitter> hitters = new ArrayList<>(candidates.size());
+        for (long key : candidates)
+            hitters.add(new HeavyHitter(dimension, key, windowEstimate(dimension, key)));
+        hitters.sort(Comparator.comparingLong(HeavyHitter::count).reversed().thenComparingLong(HeavyHitter::key));
+        return List.copyOf(hitters.subList(0, Math.min(topK, hitters.size())));
+    }
+
+    /**
+     * Returns the estimated traffic of the given key in the given dimension over the sliding window.
+     *
+     * @param dimension what traffic is attributed to
+     * @param key a Device identifier, or ((long) recipient &lt;&lt; 32) | port for DESTINATIONS
+     * @return an estimate that is never less than the actual number of Messages
+     */
+    protected long estimate(Dimension dimension, long key) {
+        return windowEstimate(dimension, key);
+    }
+
+    /**
+     * Returns the key DESTINATIONS uses for the given recipient and port.
+     *
+     * @param recipient the identifier of the recipient Device
+     * @param port the port on the recipient
+     * @return the recipient in the high and the port in the low 32 bits
+     */
+    protected static long destination(int recipient, int port) {
+        return ((long) recipient << 32) | (port & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Sums the estimates of the given key over every bucket of every stripe.
+     */
+    private long windowEstimate(Dimension dimension, long key) {
+        long total = 0;
+        for (Stripe stripe : stripes)
+            total += stripe.estimate(dimension, key);
+        return total;
+    }
+
+    /**
+     * Returns the stripe the calling thread records into.
+     */
+    private Stripe stripe() {
+        long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (hash >>> 32) & (stripes.length - 1)];
+    }
+
+    /**
+     * The buckets of the window that one share of the recording threads count into, guarded by the Stripe itself.
+     */
+    private class Stripe {
+
+        /**
+         * buckets[b % buckets.length] holds the counts of bucket number b
+         */
+        private final Bucket[] buckets = new Bucket[bucketCount];
+
+        /**
+         * number of the newest bucket
+         */
+        private long current = 0;
+
+        /**
+         * Creates a new Stripe with empty buckets.
+         */
+        private Stripe() {
+            for (int i = 0; i < buckets.length; i++)
+                buckets[i] = new Bucket();
+        }
+
+        /**
+         * Moves the window up to the current time, clearing the buckets that fell out of it; the caller holds the lock.
+         *
+         * @return the bucket of the current time
+         */
+        private Bucket rotate() {
+            long now = Math.max(0, (clock.getAsLong() - origin) / bucketNanos);
+            if (now > current) {
+                long cleared = Math.min(now - current, buckets.length);
+                for (long number = now - cleared + 1; number <= now; number++)
+                    buckets[(int) (number % buckets.length)].clear();
+                current = now;
+            }
+            return buckets[(int) (current % buckets.length)];
+        }
+
+        /**
+         * Adds the keys every bucket of this Stripe holds in its heap of the given dimension to the given set.
+         */
+        private synchronized void keys(Dimension dimension, Set<Long> into) {
+            rotate();
+            for (Bucket bucket : buckets)
+                bucket.heaps[dimension.ordinal()].keys(into);
+        }
+
+        /**
+         * Sums the estimates of the given key over every bucket of this Stripe.
+         */
+        private synchronized long estimate(Dimension dimension, long key) {
+            rotate();
+            long total = 0;
+            for (Bucket bucket : buckets)
+                total += bucket.estimate(dimension, key);
+            return total;
+        }
+    }
+
+    /**
+     * The sketches and heaps of one bucket of the window, one of each per Dimension.
+     */
+    private class Bucket {
+
+        /**
+         * sketches[dimension][row * width + column] counts the keys hashed to column by row
+         */
+        private final long[][] sketches = new long[Dimension.values().length][depth * width];
+
+        /**
+         * the keys with the highest estimates in this bucket, per Dimension
+         */
+        private final TopK[] heaps = new TopK[Dimension.values().length];
+
+        /**
+         * Creates a new empty Bucket.
+         */
+        private Bucket() {
+            for (int i = 0; i < heaps.length; i++)
+                heaps[i] = new TopK(topK);
+        }
+
+        /**
+         * Counts one Message for the given key and offers its new estimate to the heap.
+         */
+        private void add(Dimension dimension, long key) {
+            long[] sketch = sketches[dimension.ordinal()];
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                int index = row * width + column(row, key);
+                estimate = Math.min(estimate, ++sketch[index]);
+            }
+            heaps[dimension.ordinal()].offer(key, estimate);
+        }
+
+        /**
+         * Returns the estimate of the given key in this bucket: the smallest of its counters.
+         */
+        private long estimate(Dimension dimension, long key) {
+            long[] sketch = sketches[dimension.ordinal()];
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++)
+                estimate = Math.min(estimate, sketch[row * width + column(row, key)]);
+            return estimate;
+        }
+
+        /**
+         * Forgets every count of this Bucket so it can be reused for a new stretch of time.
+         */
+        private void clear() {
+            for (long[] sketch : sketches)
+                Arrays.fill(sketch, 0);
+            for (TopK heap : heaps)
+                heap.clear();
+        }
+
+        /**
+         * Returns the column the given key is counted in by the given row.
+         */
+        private int column(int row, long key) {
+            long hash = (key + 1) * SEEDS[row];
+            hash = (hash ^ (hash >>> 32)) * 0xD6E8FEB86659FD93L;
+            return (int) (hash >>> 32) & (width - 1);
+        }
+    }
+
+    /**
+     * Min-heap of the keys with the highest counts offered, with the position of each key so its count can be raised.
+     * Positions are kept in an open-addressing table of primitives, so counting a Message allocates nothing.
+     */
+    private static class TopK {
+
+        /**
+         * keys[i] is the key at position i of the heap
+         */
+        private final long[] keys;
+
+        /**
+         * counts[i] is the count of keys[i]; counts[0] is the smallest
+         */
+        private final long[] counts;
+
+        /**
+         * slots of the table from key to position, a power of two of them probed linearly
+         */
+        private final long[] slotKeys;
+
+        /**
+         * slotPositions[i] is the position of slotKeys[i] plus one, or 0 for an empty slot
+         */
+        private final int[] slotPositions;
+
+        /**
+         * number of keys in the heap
+         */
+        private int size = 0;
+
+        /**
+         * Creates a new empty TopK holding up to the given number of keys.
+         */
+        private TopK(int capacity) {
+            this.keys = new long[capacity];
+            this.counts = new long[capacity];
+            this.slotKeys = new long[Integer.highestOneBit(capacity) << 2];
+            this.slotPositions = new int[slotKeys.length];
+        }
+
+        /**
+         * Records the given count of the given key if it is in the heap, there is room, or it beats the smallest count.
+         */
+        private void offer(long key, long count) {
+            int position = position(key);
+            if (position >= 0) {
+                counts[position] = count;
+                siftDown(position);
+            }
+            else if (size < keys.length) {
+                keys[size] = key;
+                counts[size] = count;
+                put(key, size);
+                siftUp(size++);
+            }
+            else if (count > counts[0]) {
+                remove(keys[0]);
+                keys[0] = key;
+                counts[0] = count;
+                put(key, 0);
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Adds every key in the heap to the given set.
+         */
+        private void keys(Set<Long> into) {
+            for (int i = 0; i < size; i++)
+                into.add(keys[i]);
+        }
+
+        /**
+         * Empties the heap.
+         */
+        private void clear() {
+            size = 0;
+            Arrays.fill(slotPositions, 0);
+        }
+
+        /**
+         * Moves the entry at the given position up while it is smaller than its parent.
+         */
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (counts[parent] <= counts[position])
+                    return;
+                swap(parent, position);
+                position = parent;
+            }
+        }
+
+        /**
+         * Moves the entry at the given position down while it is larger than a child.
+         */
+        private void siftDown(int position) {
+            while (true) {
+                int smallest = position;
+                int left = 2 * position + 1;
+                int right = left + 1;
+                if (left < size && counts[left] < counts[smallest])
+                    smallest = left;
+                if (right < size && counts[right] < counts[smallest])
+                    smallest = right;
+                if (smallest == position)
+                    return;
+                swap(smallest, position);
+                position = smallest;
+            }
+        }
+
+        /**
+         * Swaps the entries at the given positions.
+         */
+        private void swap(int a, int b) {
+            long key = keys[a];
+            keys[a] = keys[b];
+            keys[b] = key;
+            long count = counts[a];
+            counts[a] = counts[b];
+            counts[b] = count;
+            put(keys[a], a);
+            put(keys[b], b);
+        }
+
+        /**
+         * Returns the slot the given key is probed from.
+         */
+        private int home(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & (slotKeys.length - 1);
+        }
+
+        /**
+         * Returns the slot holding the given key, or the empty slot it would go in.
+         */
+        private int slot(long key) {
+            int slot = home(key);
+            while (slotPositions[slot] != 0 && slotKeys[slot] != key)
+                slot = (slot + 1) & (slotKeys.length - 1);
+            return slot;
+        }
+
+        /**
+         * Returns the position of the given key in the heap, or -1 if it isn't in it.
+         */
+        private int position(long key) {
+            return slotPositions[slot(key)] - 1;
+        }
+
+        /**
+         * Records the position of the given key in the heap.
+         */
+        private void put(long key, int position) {
+            int slot = slot(key);
+            slotKeys[slot] = key;
+            slotPositions[slot] = position + 1;
+        }
+
+        /**
+         * Forgets the position of the given key, moving later keys of its probe run back so none is cut off.
+         */
+        private void remove(long key) {
+            int mask = slotKeys.length - 1;
+            int hole = slot(key);
+            if (slotPositions[hole] == 0)
+                return;
+            for (int next = (hole + 1) & mask; slotPositions[next] != 0; next = (next + 1) & mask) {
+                // the key in next may fill the hole only if the hole lies between its home slot and next
+                if (((next - home(slotKeys[next])) & mask) >= ((next - hole) & mask)) {
+                    slotKeys[hole] = slotKeys[next];
+                    slotPositions[hole] = slotPositions[next];
+                    hole = next;
+                }
+            }
+            slotPositions[hole] = 0;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class TrafficProfilerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private TrafficProfiler profiler;
+
+    @Before
+    public void setUp() {
+        profiler = new TrafficProfiler(4, 256, 3, 4, 4, TimeUnit.SECONDS, now::get);
+    }
+
+    private static Message message(int sender, int recipient, int port) {
+        return Message.of(recipient, port, "1").withSender(sender, 0);
+    }
+
+    @Test
+    public void constructor_invalidSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new TrafficProfiler(0, 16, 1, 1, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new TrafficProfiler(9, 16, 1, 1, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new TrafficProfiler(2, 0, 1, 1, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new TrafficProfiler(2, 16, 0, 1, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new TrafficProfiler(2, 16, 1, 3, 4, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void top_heaviestFirst() {
+        for (int sender = 1; sender <= 10; sender++) {
+            for (int i = 0; i < sender * 10; i++)
+                profiler.record(message(sender, 100 + sender % 2, sender));
+        }
+        List<TrafficProfiler.HeavyHitter> senders = profiler.top(TrafficProfiler.Dimension.SENDERS);
+        assertEquals(3, senders.size());
+        assertEquals(10, senders.get(0).identifier());
+        assertEquals(9, senders.get(1).identifier());
+        assertEquals(8, senders.get(2).identifier());
+        assertTrue(senders.get(0).count() >= 100);
+
+        List<TrafficProfiler.HeavyHitter> recipients = profiler.top(TrafficProfiler.Dimension.RECIPIENTS);
+        assertEquals(2, recipients.size());
+        assertEquals(100, recipients.get(0).identifier());
+        assertEquals(300, recipients.get(0).count());
+        assertEquals(101, recipients.get(1).identifier());
+        assertEquals(250, recipients.get(1).count());
+
+        TrafficProfiler.HeavyHitter destination = profiler.top(TrafficProfiler.Dimension.DESTINATIONS).get(0);
+        assertEquals(100, destination.identifier());
+        assertEquals(10, destination.port());
+        assertEquals(-1, senders.get(0).port());
+    }
+
+    @Test
+    public void estimate_neverUndercounts() {
+        for (int key = 0; key < 2000; key++) {
+            for (int i = 0; i <= key % 5; i++)
+                profiler.record(message(key, key, 0));
+        }
+        for (int key = 0; key < 2000; key++)
+            assertTrue(profiler.estimate(TrafficProfiler.Dimension.SENDERS, key) >= key % 5 + 1);
+        assertEquals(3, profiler.top(TrafficProfiler.Dimension.SENDERS).size());
+    }
+
+    @Test
+    public void window_forgetsOldTraffic() {
+        for (int i = 0; i < 50; i++)
+            profiler.record(message(1, 2, 3));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        for (int i = 0; i < 20; i++)
+            profiler.record(message(4, 5, 6));
+        assertEquals(50, profiler.top(TrafficProfiler.Dimension.SENDERS).get(0).count());
+        assertEquals(20, profiler.estimate(TrafficProfiler.Dimension.SENDERS, 4));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(3));
+        List<TrafficProfiler.HeavyHitter> senders = profiler.top(TrafficProfiler.Dimension.SENDERS);
+        assertEquals(1, senders.size());
+        assertEquals(4, senders.get(0).identifier());
+        assertEquals(0, profiler.estimate(TrafficProfiler.Dimension.SENDERS, 1));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(100));
+        assertTrue(profiler.top(TrafficProfiler.Dimension.RECIPIENTS).isEmpty());
+    }
+
+    @Test
+    public void destination_keyRoundTrips() {
+        profiler.record(message(1, 7, 9));
+        assertEquals(1, profiler.estimate(TrafficProfiler.Dimension.DESTINATIONS, TrafficProfiler.destination(7, 9)));
+        assertEquals(0, profiler.estimate(TrafficProfiler.Dimension.DESTINATIONS, TrafficProfiler.destination(9, 7)));
+    }
+
+    @Test
+    public void motherboard_recordsSendsAndBroadcasts() {
+        Motherboard motherboard = new Motherboard();
+        motherboard.setTrafficProfiler(profiler);
+        motherboard.sendMessage(Message.of(42, 1, "1"));
+        motherboard.sendMessage(Message.of(42, 1, "1"));
+        motherboard.sendBroadcastMessage("1");
+        assertEquals(2, profiler.estimate(TrafficProfiler.Dimension.RECIPIENTS, 42));
+        assertEquals(2, profiler.estimate(TrafficProfiler.Dimension.DESTINATIONS, TrafficProfiler.destination(42, 1)));
+        assertTrue(profiler.top(TrafficProfiler.Dimension.SENDERS).isEmpty());
+
+        motherboard.setTrafficProfiler(null);
+        motherboard.sendMessage(Message.of(42, 1, "1"));
+        assertEquals(2, profiler.estimate(TrafficProfiler.Dimension.RECIPIENTS, 42));
+    }
+
+    @Test
+    public void motherboard_attributesPlainMessagesToTheirDevice() {
+        Motherboard motherboard = new Motherboard();
+        motherboard.setTrafficProfiler(profiler);
+        Mock.MockDevice device = new Mock.MockDevice(7, false);
+        device.setMotherboard(motherboard);
+        Mock.MockApplication application = new Mock.MockApplication(device);
+        application.connectToPort(1);
+        // no sender header, and nothing listens on 42
+        application.sendMessage(Message.of(42, 1, "1"));
+        application.sendMessage(Message.of(42, 1, "1"));
+        assertEquals(2, profiler.estimate(TrafficProfiler.Dimension.SENDERS, 7));
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int sender = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++)
+                    profiler.record(message(sender, 42, 1));
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(4000, profiler.estimate(TrafficProfiler.Dimension.RECIPIENTS, 42));
+        assertEquals(4000, profiler.top(TrafficProfiler.Dimension.RECIPIENTS).get(0).count());
+        assertEquals(1000, profiler.estimate(TrafficProfiler.Dimension.SENDERS, 3));
+    }
+}